@@ -26,7 +26,10 @@
  */
 package org.spout.api.chat.channel;
 
+import java.util.Collection;
 import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Map;
 import java.util.Set;
 import java.util.WeakHashMap;
 
@@ -36,7 +39,12 @@ import org.spout.api.chat.ChatArguments;
 import org.spout.api.chat.ChatTemplate;
 import org.spout.api.chat.Placeholder;
 import org.spout.api.command.CommandSource;
+import org.spout.api.entity.Player;
 import org.spout.api.event.player.PlayerChatEvent;
+import org.spout.api.protocol.Message;
+import org.spout.api.protocol.Protocol;
+import org.spout.api.protocol.Session;
+import org.spout.api.protocol.SharedMessage;
 import org.spout.api.util.Named;
 
 /**
@@ -90,10 +98,45 @@ public abstract class ChatChannel implements Named {
 	public void broadcastToReceivers(ChatArguments message) {
 		ChatArguments formatted = applyPlaceholders(message);
 
-		for (CommandSource source : getReceivers()) {
-			source.sendMessage(formatted);
-		}
+		send(formatted, getReceivers());
+	}
 
+	/**
+	 * Sends a message to many receivers.<br>
+	 * <br>
+	 * For players whose protocol supports {@link Protocol#getChatMessage(ChatArguments)}, the message is only
+	 * rendered and encoded once per protocol and the same encoded message is sent to every player.  Other
+	 * receivers are sent the message through {@link CommandSource#sendMessage(ChatArguments)}.
+	 *
+	 * @param message The message to send
+	 * @param receivers The receivers of the message
+	 */
+	protected static void send(ChatArguments message, Collection<CommandSource> receivers) {
+		Map<Protocol, Message> messages = null;
+		for (CommandSource source : receivers) {
+			Session session = source instanceof Player ? ((Player) source).getSession() : null;
+			Protocol protocol = session == null ? null : session.getProtocol();
+			if (protocol == null) {
+				source.sendMessage(message);
+				continue;
+			}
+			if (messages == null) {
+				messages = new IdentityHashMap<Protocol, Message>();
+			}
+			Message shared = messages.get(protocol);
+			if (shared == null && !messages.containsKey(protocol)) {
+				shared = protocol.getChatMessage(message);
+				if (shared != null) {
+					shared = new SharedMessage(shared);
+				}
+				messages.put(protocol, shared);
+			}
+			if (shared == null) {
+				source.sendMessage(message);
+			} else {
+				session.send(false, shared);
+			}
+		}
 	}
 
 	private ChatArguments applyPlaceholders(ChatArguments message) {
@@ -156,14 +199,12 @@ public abstract class ChatChannel implements Named {
 			Set<CommandSource> alreadyReceived = Sets.newHashSet();
 			for (ChatChannel channel : getAllChannels()) {
 				if (channel.isReceiver(receiving)) {
-					Set<CommandSource> sendTo = channel.getReceivers();
+					Set<CommandSource> sendTo = Sets.newHashSet(channel.getReceivers());
 					sendTo.removeAll(alreadyReceived);
 					if (sendTo.size() > 0) {
 						ChatArguments formatted = channel.applyPlaceholders(message);
 
-						for (CommandSource source : sendTo) {
-							source.sendMessage(formatted);
-						}
+						send(formatted, sendTo);
 
 						alreadyReceived.addAll(sendTo);
 					}
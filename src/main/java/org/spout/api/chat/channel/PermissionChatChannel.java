@@ -27,8 +27,8 @@
 package org.spout.api.chat.channel;
 
 import com.google.common.collect.Sets;
-import org.spout.api.Spout;
 import org.spout.api.command.CommandSource;
+import org.spout.api.permissions.PermissionCache;
 import org.spout.api.permissions.PermissionsSubject;
 
 import java.util.Collections;
@@ -39,6 +39,8 @@ import java.util.Set;
  */
 public class PermissionChatChannel extends ChatChannel {
 	private final String permission;
+	private Set<PermissionsSubject> lastSubjects = null;
+	private Set<CommandSource> lastReceivers = null;
 
 	public PermissionChatChannel(String name, String permission) {
 		super(name);
@@ -46,8 +48,12 @@ public class PermissionChatChannel extends ChatChannel {
 	}
 
 	@Override
-	public Set<CommandSource> getReceivers() {
-		Set<PermissionsSubject> permsResult = Spout.getEngine().getAllWithNode(permission);
+	public synchronized Set<CommandSource> getReceivers() {
+		Set<PermissionsSubject> permsResult = PermissionCache.getInstance().getAllWithNode(permission);
+		// The cache creates a new set when the subjects change
+		if (permsResult == lastSubjects) {
+			return lastReceivers;
+		}
 		Set<CommandSource> ret = Sets.newHashSet();
 
 		for (PermissionsSubject subj : permsResult) {
@@ -56,7 +62,9 @@ public class PermissionChatChannel extends ChatChannel {
 			}
 		}
 
-		return Collections.unmodifiableSet(ret);
+		lastSubjects = permsResult;
+		lastReceivers = Collections.unmodifiableSet(ret);
+		return lastReceivers;
 	}
 
 	@Override
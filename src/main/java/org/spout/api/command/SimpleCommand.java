@@ -36,10 +36,7 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import javax.annotation.Nullable;
 
-import com.google.common.base.Predicate;
-import com.google.common.collect.Collections2;
 import org.apache.commons.lang3.Validate;
 import org.spout.api.Engine;
 import org.spout.api.Spout;
@@ -55,13 +52,18 @@ import org.spout.api.exception.MissingCommandException;
 import org.spout.api.exception.WrappedCommandException;
 import org.spout.api.plugin.Platform;
 import org.spout.api.util.Named;
-import org.spout.api.util.StringUtil;
+import org.spout.api.util.StringTrie;
 
 import gnu.trove.set.TCharSet;
 import gnu.trove.set.hash.TCharHashSet;
 
 public class SimpleCommand implements Command {
 	protected final Map<String, Command> children = new HashMap<String, Command>();
+	/**
+	 * Index of the lower case child names, rebuilt after the children change
+	 */
+	private StringTrie<Command> childIndex = null;
+	private static final int MAX_COMPLETIONS = 50;
 	protected Command parent;
 	private final Named owner;
 	private boolean locked;
@@ -100,6 +102,7 @@ public class SimpleCommand implements Command {
 		}
 
 		children.put(primaryName, sub);
+		childrenChanged();
 		sub.parent = this;
 		if (wasLocked) {
 			lock(owner);
@@ -392,24 +395,7 @@ public class SimpleCommand implements Command {
 			return null;
 		}
 
-		int minDistance = -1;
-		for (Map.Entry<String, Command> entry : children.entrySet()) {
-			int distance = StringUtil.getLevenshteinDistance(name, entry.getKey().toLowerCase());
-			if (minDistance < 0 || distance < minDistance) {
-				command = entry.getValue();
-				minDistance = distance;
-			}
-		}
-
-		if (minDistance <= 0) {
-			return null;
-		}
-
-		if (minDistance >= 2) {
-			return null;
-		}
-
-		return command;
+		return getChildIndex().getClosest(name, 1);
 	}
 
 	@Override
@@ -430,6 +416,7 @@ public class SimpleCommand implements Command {
 				}
 			}
 		}
+		childrenChanged();
 		for (Map.Entry<String, Command> entry : removeAliases.entrySet()) {
 			entry.getValue().removeAlias(entry.getKey());
 		}
@@ -468,6 +455,7 @@ public class SimpleCommand implements Command {
 				cmd.removeChildren(owner);
 			}
 		}
+		childrenChanged();
 		for (Map.Entry<String, Command> entry : removeAliases.entrySet()) {
 			entry.getValue().removeAlias(entry.getKey());
 		}
@@ -539,6 +527,7 @@ public class SimpleCommand implements Command {
 					children.put(alias, child);
 				}
 			}
+			childrenChanged();
 			return changed;
 		}
 	}
@@ -616,29 +605,51 @@ public class SimpleCommand implements Command {
 		return null;
 	}
 
-	public List<ChatArguments> getMatchingChildren(final String plainString) {
-		List<ChatArguments> responses = new ArrayList<ChatArguments>();
+	public List<ChatArguments> getMatchingChildren(String plainString) {
+		plainString = plainString.toLowerCase();
 		List<String> names = new ArrayList<String>();
-
-		names.addAll(
-				Collections2.filter(getChildNames(), new Predicate<String>() {
-					@Override
-					public boolean apply(@Nullable String s) {
-						return s != null
-								&& !s.equalsIgnoreCase(plainString)
-								&& s.toLowerCase().startsWith(plainString.toLowerCase());
-					}
-				}));
-
+		getChildIndex().getKeysWithPrefix(plainString, names, Integer.MAX_VALUE);
+		names.remove(plainString);
+		// Shorter names are closer to the input, so they are kept when there are too many
 		Collections.sort(names, new Comparator<String>() {
 			@Override
 			public int compare(String a, String b) {
-				return StringUtil.getLevenshteinDistance(plainString, b) - StringUtil.getLevenshteinDistance(plainString,  a);
+				return a.length() - b.length();
 			}
 		});
+		int count = Math.min(names.size(), MAX_COMPLETIONS);
+		List<ChatArguments> responses = new ArrayList<ChatArguments>(count);
+		for (int i = 0; i < count; i++) {
+			responses.add(new ChatArguments(names.get(i)));
+		}
 		return responses;
 	}
 
+	/**
+	 * Marks the child index as out of date, must be called after the children are changed
+	 */
+	protected void childrenChanged() {
+		synchronized (children) {
+			childIndex = null;
+		}
+	}
+
+	private StringTrie<Command> getChildIndex() {
+		synchronized (children) {
+			if (childIndex == null) {
+				StringTrie<Command> index = new StringTrie<Command>();
+				for (Map.Entry<String, Command> entry : children.entrySet()) {
+					String name = entry.getKey().toLowerCase();
+					if (index.get(name) == null) {
+						index.put(name, entry.getValue());
+					}
+				}
+				childIndex = index;
+			}
+			return childIndex;
+		}
+	}
+
     @Override
     public Command getParent() {
         return this.parent;
@@ -28,7 +28,12 @@ package org.spout.api.component;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.logging.Level;
 
 import com.google.common.base.Preconditions;
@@ -43,6 +48,16 @@ public class BaseComponentHolder implements ComponentHolder {
 	 * Map of class name, component
 	 */
 	private final BiMap<Class<? extends Component>, Component> components = HashBiMap.create();
+	/**
+	 * Map of every key and component supertype to a component, replaced whenever a component is added or detached
+	 */
+	private volatile Map<Class<?>, Component> index = Collections.emptyMap();
+	private volatile List<Component> componentList = Collections.emptyList();
+	/**
+	 * Cache of the component supertypes of each component class, cleared when a plugin is disabled so plugin
+	 * classes are not kept loaded
+	 */
+	private static final ConcurrentHashMap<Class<?>, Class<?>[]> hierarchies = new ConcurrentHashMap<Class<?>, Class<?>[]>();
 	private final DatatableComponent data;
 	public BaseComponentHolder() {
 		data = add(DatatableComponent.class);
@@ -113,6 +128,7 @@ public class BaseComponentHolder implements ComponentHolder {
 				try {
 					if (component.attachTo(this)) {
 						components.put(key, component);
+						rebuildIndex();
 						if (attach) {
 							try {
 								component.onAttached();
@@ -120,6 +136,7 @@ public class BaseComponentHolder implements ComponentHolder {
 								// Remove the component from the component map if onAttached can't be
 								// called, pass exception to next catch block.
 								components.remove(key);
+								rebuildIndex();
 								throw e;
 							}
 						}
@@ -141,6 +158,7 @@ public class BaseComponentHolder implements ComponentHolder {
 	
 			if (component != null && component.isDetachable()) {
 				components.inverse().remove(component);
+				rebuildIndex();
 				try {
 					component.onDetached();
 				} catch (Exception e) {
@@ -156,15 +174,7 @@ public class BaseComponentHolder implements ComponentHolder {
 	@Override
 	public <T extends Component> T get(Class<T> type) {
 		Preconditions.checkNotNull(type);
-		if (type == null) {
-			return null;
-		}
-		Component component = components.get(type);
-
-		if (component == null) {
-			component = findComponent(type);
-		}
-		return (T) component;
+		return (T) index.get(type);
 	}
 
 	@SuppressWarnings("unchecked")
@@ -190,9 +200,7 @@ public class BaseComponentHolder implements ComponentHolder {
 
 	@Override
 	public Collection<Component> values() {
-		synchronized(components) {
-			return new ArrayList<Component>(components.values());
-		}
+		return new ArrayList<Component>(componentList);
 	}
 
 	@Override
@@ -200,17 +208,49 @@ public class BaseComponentHolder implements ComponentHolder {
 		return data;
 	}
 
-	@SuppressWarnings("unchecked")
-	private <T extends Component> T findComponent(Class<T> type) {
-		Preconditions.checkNotNull(type);
-		synchronized(components) {
-			for (Component component : values()) {
-				if (type.isAssignableFrom(component.getClass())) {
-					return (T) component;
+	/**
+	 * Rebuilds the lookup index from the component map, must be called while synchronized on the component map
+	 */
+	private void rebuildIndex() {
+		Map<Class<?>, Component> newIndex = new HashMap<Class<?>, Component>(components.size() * 4);
+		for (Map.Entry<Class<? extends Component>, Component> e : components.entrySet()) {
+			newIndex.put(e.getKey(), e.getValue());
+		}
+		for (Component component : components.values()) {
+			for (Class<?> type : getHierarchy(component.getClass())) {
+				if (!newIndex.containsKey(type)) {
+					newIndex.put(type, component);
 				}
 			}
 		}
+		componentList = new ArrayList<Component>(components.values());
+		index = newIndex;
+	}
+
+	/**
+	 * Clears the cached component hierarchies.  This is called when a plugin is disabled, so the
+	 * cache does not keep the classes of the plugin loaded.
+	 */
+	public static void clearHierarchyCache() {
+		hierarchies.clear();
+	}
 
-		return null;
+	/**
+	 * Gets the class and all superclasses of a component class which are themselves components
+	 *
+	 * @param type the component class
+	 * @return the component types
+	 */
+	private static Class<?>[] getHierarchy(Class<?> type) {
+		Class<?>[] hierarchy = hierarchies.get(type);
+		if (hierarchy == null) {
+			List<Class<?>> types = new ArrayList<Class<?>>();
+			for (Class<?> c = type; c != null && Component.class.isAssignableFrom(c); c = c.getSuperclass()) {
+				types.add(c);
+			}
+			hierarchy = types.toArray(new Class<?>[types.size()]);
+			hierarchies.putIfAbsent(type, hierarchy);
+		}
+		return hierarchy;
 	}
 }
@@ -0,0 +1,338 @@
+/*
+ * This file is part of SpoutAPI.
+ *
+ * Copyright (c) 2011-2012, Spout LLC <http://www.spout.org/>
+ * SpoutAPI is licensed under the Spout License Version 1.
+ *
+ * SpoutAPI is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * In addition, 180 days after any changes are published, you can use the
+ * software, incorporating those changes, under the terms of the MIT license,
+ * as described in the Spout License Version 1.
+ *
+ * SpoutAPI is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License,
+ * the MIT license and the Spout License Version 1 along with this program.
+ * If not, see <http://www.gnu.org/licenses/> for the GNU Lesser General Public
+ * License and see <http://spout.in/licensev1> for the full license, including
+ * the MIT license.
+ */
+package org.spout.api.component;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.logging.Level;
+
+import org.spout.api.Spout;
+
+/**
+ * Ticks components grouped by their concrete class.<br>
+ * <br>
+ * Each group is ticked in a single loop, rather than ticking every component of an owner in turn.  Groups
+ * of components marked with {@link ThreadsafeTick} are split between the threads of an executor, if one
+ * is provided.<br>
+ * <br>
+ * Components may be registered and unregistered from any thread, the changes are applied at the start
+ * of the next tick.
+ */
+public class ComponentSystem {
+	/**
+	 * The minimum number of components given to each thread when a group is split
+	 */
+	private static final int MIN_SPLIT_SIZE = 64;
+	private final ConcurrentHashMap<Class<? extends Component>, ComponentGroup> groups = new ConcurrentHashMap<Class<? extends Component>, ComponentGroup>();
+	private final ExecutorService executor;
+	private final int parallelism;
+
+	/**
+	 * Creates a component system which ticks all groups in the calling thread
+	 */
+	public ComponentSystem() {
+		this(null, 1);
+	}
+
+	/**
+	 * Creates a component system
+	 *
+	 * @param executor the executor used to tick thread-safe groups, or null to tick in the calling thread
+	 * @param parallelism the maximum number of parts to split each thread-safe group into
+	 */
+	public ComponentSystem(ExecutorService executor, int parallelism) {
+		if (parallelism < 1) {
+			throw new IllegalArgumentException("Parallelism must be at least 1");
+		}
+		this.executor = executor;
+		this.parallelism = parallelism;
+	}
+
+	/**
+	 * Adds a component to be ticked from the next tick
+	 *
+	 * @param component the component
+	 */
+	public void register(Component component) {
+		getGroup(component.getClass()).pending.add(new PendingChange(component, true));
+	}
+
+	/**
+	 * Removes a component, it will not be ticked from the next tick
+	 *
+	 * @param component the component
+	 */
+	public void unregister(Component component) {
+		ComponentGroup group = groups.get(component.getClass());
+		if (group != null) {
+			group.pending.add(new PendingChange(component, false));
+		}
+	}
+
+	/**
+	 * Ticks all registered components
+	 *
+	 * @param dt time since the last tick
+	 */
+	public void tick(float dt) {
+		for (ComponentGroup group : groups.values()) {
+			group.tick(dt);
+		}
+	}
+
+	/**
+	 * Gets the group for a component type
+	 *
+	 * @param type the concrete component class
+	 * @return the group, or null if no component of the type has been registered
+	 */
+	public ComponentGroup get(Class<? extends Component> type) {
+		return groups.get(type);
+	}
+
+	/**
+	 * Gets all component groups, which hold the tick time statistics for each component type
+	 *
+	 * @return the groups
+	 */
+	public Collection<ComponentGroup> getGroups() {
+		return Collections.unmodifiableCollection(groups.values());
+	}
+
+	private ComponentGroup getGroup(Class<? extends Component> type) {
+		ComponentGroup group = groups.get(type);
+		if (group == null) {
+			group = new ComponentGroup(type);
+			ComponentGroup old = groups.putIfAbsent(type, group);
+			if (old != null) {
+				group = old;
+			}
+		}
+		return group;
+	}
+
+	private static void tick(List<Component> components, int start, int end, float dt) {
+		for (int i = start; i < end; i++) {
+			Component component = components.get(i);
+			try {
+				component.tick(dt);
+			} catch (Exception e) {
+				Spout.getEngine().getLogger().log(Level.SEVERE, "Error while ticking component " + component.getClass() + ": ", e);
+			}
+		}
+	}
+
+	/**
+	 * All registered components of a single concrete class
+	 */
+	public class ComponentGroup {
+		private final Class<? extends Component> type;
+		private final boolean threadsafe;
+		private final ArrayList<Component> components = new ArrayList<Component>();
+		/**
+		 * The components in the tick list by identity, so a component registered more than once is ticked once
+		 */
+		private final Set<Component> members = Collections.newSetFromMap(new IdentityHashMap<Component, Boolean>());
+		/**
+		 * Registrations and unregistrations in the order they were made, only the last change to each component applies
+		 */
+		private final ConcurrentLinkedQueue<PendingChange> pending = new ConcurrentLinkedQueue<PendingChange>();
+		private volatile int size = 0;
+		private volatile long ticks = 0;
+		private volatile long lastTickTime = 0;
+		private volatile long totalTickTime = 0;
+
+		private ComponentGroup(Class<? extends Component> type) {
+			this.type = type;
+			this.threadsafe = type.isAnnotationPresent(ThreadsafeTick.class);
+		}
+
+		private void tick(float dt) {
+			applyChanges();
+			long start = System.nanoTime();
+			int count = components.size();
+			int parts = threadsafe && executor != null ? Math.min(parallelism, count / MIN_SPLIT_SIZE) : 1;
+			if (parts > 1) {
+				tickParallel(dt, parts);
+			} else {
+				ComponentSystem.tick(components, 0, count, dt);
+			}
+			long time = System.nanoTime() - start;
+			lastTickTime = time;
+			totalTickTime += time;
+			ticks++;
+		}
+
+		private void tickParallel(final float dt, int parts) {
+			final int count = components.size();
+			List<Callable<Void>> tasks = new ArrayList<Callable<Void>>(parts);
+			for (int i = 0; i < parts; i++) {
+				final int start = (int) ((long) count * i / parts);
+				final int end = (int) ((long) count * (i + 1) / parts);
+				tasks.add(new Callable<Void>() {
+					@Override
+					public Void call() {
+						ComponentSystem.tick(components, start, end, dt);
+						return null;
+					}
+				});
+			}
+			try {
+				for (Future<Void> f : executor.invokeAll(tasks)) {
+					f.get();
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			} catch (ExecutionException e) {
+				Spout.getEngine().getLogger().log(Level.SEVERE, "Error while ticking components " + type + ": ", e.getCause());
+			}
+		}
+
+		private void applyChanges() {
+			if (pending.isEmpty()) {
+				return;
+			}
+			Map<Component, Boolean> latest = new IdentityHashMap<Component, Boolean>();
+			ArrayList<Component> changed = new ArrayList<Component>();
+			PendingChange change;
+			while ((change = pending.poll()) != null) {
+				if (latest.put(change.component, change.register) == null) {
+					changed.add(change.component);
+				}
+			}
+			// New components registered and unregistered in the same tick are never ticked
+			ArrayList<Component> added = new ArrayList<Component>();
+			boolean removed = false;
+			for (Component component : changed) {
+				if (latest.get(component)) {
+					if (members.add(component)) {
+						added.add(component);
+					}
+				} else if (members.remove(component)) {
+					removed = true;
+				}
+			}
+			if (removed) {
+				int j = 0;
+				for (int i = 0; i < components.size(); i++) {
+					Component component = components.get(i);
+					if (members.contains(component)) {
+						components.set(j++, component);
+					}
+				}
+				components.subList(j, components.size()).clear();
+			}
+			components.addAll(added);
+			size = components.size();
+		}
+
+		/**
+		 * Gets the concrete class of the components in this group
+		 *
+		 * @return the component class
+		 */
+		public Class<? extends Component> getType() {
+			return type;
+		}
+
+		/**
+		 * Gets if the components in this group may be ticked in parallel
+		 *
+		 * @return true if the group is thread-safe
+		 */
+		public boolean isThreadsafe() {
+			return threadsafe;
+		}
+
+		/**
+		 * Gets the number of components ticked in the last tick
+		 *
+		 * @return the number of components
+		 */
+		public int getSize() {
+			return size;
+		}
+
+		/**
+		 * Gets the number of times this group has been ticked
+		 *
+		 * @return the number of ticks
+		 */
+		public long getTicks() {
+			return ticks;
+		}
+
+		/**
+		 * Gets the time taken to tick this group in the last tick
+		 *
+		 * @return the time in nanoseconds
+		 */
+		public long getLastTickTime() {
+			return lastTickTime;
+		}
+
+		/**
+		 * Gets the total time spent ticking this group
+		 *
+		 * @return the time in nanoseconds
+		 */
+		public long getTotalTickTime() {
+			return totalTickTime;
+		}
+
+		/**
+		 * Gets the average time taken to tick this group
+		 *
+		 * @return the time in nanoseconds
+		 */
+		public long getAverageTickTime() {
+			long t = ticks;
+			return t == 0 ? 0 : totalTickTime / t;
+		}
+	}
+
+	private static class PendingChange {
+		private final Component component;
+		private final boolean register;
+
+		private PendingChange(Component component, boolean register) {
+			this.component = component;
+			this.register = register;
+		}
+	}
+}
@@ -67,19 +67,19 @@ public class TransformComponent extends EntityComponent {
 	}
 
 	public boolean isDirty() {
-		return !transform.equals(transformLive);
+		return isPositionDirty() || isRotationDirty() || isScaleDirty();
 	}
 
 	public boolean isPositionDirty() {
-		return !transform.getPosition().equals(transformLive.getPosition());
+		return !transform.isPositionEqual(transformLive);
 	}
 
 	public boolean isRotationDirty() {
-		return !transform.getRotation().equals(transformLive.getRotation());
+		return !transform.isRotationEqual(transformLive);
 	}
 
 	public boolean isScaleDirty() {
-		return !transform.getScale().equals(transformLive.getScale());
+		return !transform.isScaleEqual(transformLive);
 	}
 
 	public Point getPosition() {
@@ -155,12 +155,16 @@ abstract class AbstractData{
 	public abstract void decompress(byte[] compressed);
 
 	public void output(OutputStream out) throws IOException {
+		output(out, VarInt.Format.LEGACY);
+	}
+
+	public void output(OutputStream out, VarInt.Format format) throws IOException {
 		out.write(getObjectTypeId());
-		VarInt.writeInt(out, hashCode());
+		format.writeInt(out, hashCode());
 		byte[] compressed = compress();
 		int expectedLength = fixedLength();
 		if (expectedLength == -1) {
-			VarInt.writeInt(out, compressed != null ? compressed.length : 0);
+			format.writeInt(out, compressed != null ? compressed.length : 0);
 		} else if (expectedLength != (compressed == null ? 0 : compressed.length)) {
 			throw new IllegalStateException("Fixed length DatatableObject did not match actual length");
 		}
@@ -170,15 +174,19 @@ abstract class AbstractData{
 	}
 
 	public static AbstractData input(InputStream in) throws IOException {
+		return input(in, VarInt.Format.LEGACY);
+	}
+
+	public static AbstractData input(InputStream in, VarInt.Format format) throws IOException {
 		int typeId = in.read();
 		if (typeId == -1) {
 			throw new EOFException("InputStream did not contain a DatatableObject");
 		}
-		int key = VarInt.readInt(in);
+		int key = format.readInt(in);
 		AbstractData obj = newInstance(typeId, key);
 		int expectedLength = obj.fixedLength();
 		if (expectedLength == -1) {
-			expectedLength = VarInt.readInt(in);
+			expectedLength = format.readInt(in);
 		}
 		if (expectedLength > 0) {
 			byte[] compressed = new byte[expectedLength];
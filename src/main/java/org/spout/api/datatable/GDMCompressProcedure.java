@@ -39,16 +39,18 @@ class GDMCompressProcedure implements TIntObjectProcedure<AbstractData> {
 	private final HashSet<String> stringKeys = new HashSet<String>();
 	private final OutputStream stringOutput;
 	private final OutputStream objectOutput;
+	private final VarInt.Format format;
 
 	public int strings = 0;
 	public int objects = 0;
 
 	private final GenericDatatableMap map;
 
-	public GDMCompressProcedure(GenericDatatableMap map, OutputStream stringOutput, OutputStream objectOutput) {
+	public GDMCompressProcedure(GenericDatatableMap map, OutputStream stringOutput, OutputStream objectOutput, VarInt.Format format) {
 		this.map = map;
 		this.stringOutput = stringOutput;
 		this.objectOutput = objectOutput;
+		this.format = format;
 	}
 
 	@Override
@@ -57,15 +59,15 @@ class GDMCompressProcedure implements TIntObjectProcedure<AbstractData> {
 		if (stringKey != null) {
 			if (stringKeys.add(stringKey)) {
 				try {
-					VarInt.writeInt(stringOutput, a);
-					VarInt.writeString(stringOutput, stringKey);
+					format.writeInt(stringOutput, a);
+					format.writeString(stringOutput, stringKey);
 					strings++;
 				} catch (IOException e) {
 					return false;
 				}
 			}
 			try {
-				b.output(objectOutput);
+				b.output(objectOutput, format);
 				objects++;
 			} catch (IOException e) {
 				return false;
@@ -44,6 +44,13 @@ import org.spout.api.util.StringMap;
 import org.spout.api.util.VarInt;
 
 class GenericDatatableMap implements DatatableMap {
+	/**
+	 * Markers written ahead of an output map, the marker itself always uses the legacy format.  The compact
+	 * marker is also written at the start of compressed data in the compact format
+	 */
+	private static final int LEGACY_MARKER = -1;
+	private static final int COMPACT_MARKER = -2;
+	private static volatile VarInt.Format defaultFormat = VarInt.Format.LEGACY;
 	private static final StringMap ROOT_STRING_MAP = new StringMap(null, new MemoryStore<Integer>(), 0, Short.MAX_VALUE, GenericDatatableMap.class.getName());
 	private final StringMap stringmap;
 	private final TSynchronizedIntObjectMap<AbstractData> map = new TSynchronizedIntObjectMap<AbstractData>(new TIntObjectHashMap<AbstractData>());
@@ -135,12 +142,42 @@ class GenericDatatableMap implements DatatableMap {
 		return value;
 	}
 
+	/**
+	 * Sets the format used by {@link #compress()} and {@link #output(OutputStream)}
+	 * @param format to write maps in
+	 */
+	static void setDefaultFormat(VarInt.Format format) {
+		if (format == null) {
+			throw new NullPointerException("Format can not be null");
+		}
+		defaultFormat = format;
+	}
+
+	/**
+	 * Gets the format used by {@link #compress()} and {@link #output(OutputStream)}
+	 * @return the format
+	 */
+	static VarInt.Format getDefaultFormat() {
+		return defaultFormat;
+	}
+
 	@Override
 	public byte[] compress() {
+		return compress(defaultFormat);
+	}
+
+	/**
+	 * Compresses this map using the given integer and string format.<br>
+	 * The {@link VarInt.Format#COMPACT} format is marked at the start of the data, so {@link #decompress(byte[])}
+	 * reads data in either format.  Legacy data starts with the number of strings, which is never negative.
+	 * @param format to write the map in
+	 * @return the compressed data
+	 */
+	public byte[] compress(VarInt.Format format) {
 		final ByteArrayOutputStream stringOutput = new ByteArrayOutputStream();
 		final ByteArrayOutputStream objectOutput = new ByteArrayOutputStream();
 
-		GDMCompressProcedure procedure = new GDMCompressProcedure(this, stringOutput, objectOutput);
+		GDMCompressProcedure procedure = new GDMCompressProcedure(this, stringOutput, objectOutput, format);
 
 		boolean success = map.forEachEntry(procedure);
 
@@ -151,10 +188,13 @@ class GenericDatatableMap implements DatatableMap {
 		ByteArrayOutputStream out = new ByteArrayOutputStream();
 
 		try {
-			VarInt.writeInt(out, procedure.strings);
-			VarInt.writeInt(out, procedure.objects);
-			out.write(stringOutput.toByteArray());
-			out.write(objectOutput.toByteArray());
+			if (format == VarInt.Format.COMPACT) {
+				VarInt.writeInt(out, COMPACT_MARKER);
+			}
+			format.writeInt(out, procedure.strings);
+			format.writeInt(out, procedure.objects);
+			stringOutput.writeTo(out);
+			objectOutput.writeTo(out);
 		} catch (IOException e) {
 			e.printStackTrace();
 			return null;
@@ -168,16 +208,23 @@ class GenericDatatableMap implements DatatableMap {
 		}
 		InputStream in = new ByteArrayInputStream(compressedData);
 		TIntIntHashMap keyReplacement = new TIntIntHashMap();
+		final VarInt.Format format;
 		int strings = VarInt.readInt(in);
-		int objects = VarInt.readInt(in);
+		if (strings == COMPACT_MARKER) {
+			format = VarInt.Format.COMPACT;
+			strings = format.readInt(in);
+		} else {
+			format = VarInt.Format.LEGACY;
+		}
+		int objects = format.readInt(in);
 		for (int i = 0; i < strings; i++) {
-			int key = VarInt.readInt(in);
-			String string = VarInt.readString(in);
+			int key = format.readInt(in);
+			String string = format.readString(in);
 			int newKey = getIntKey(string);
 			keyReplacement.put(key, newKey);
 		}
 		for (int i = 0; i < objects; i++) {
-			AbstractData obj = AbstractData.input(in);
+			AbstractData obj = AbstractData.input(in, format);
 			int key = obj.hashCode() + 0;
 			if (!keyReplacement.contains(key)) {
 				throw new IOException("Unknown key when decompressing GenericDatatableMap");
@@ -194,10 +241,27 @@ class GenericDatatableMap implements DatatableMap {
 		decompress(compressedData, true);
 	}
 
+	/**
+	 * Writes this map to a stream in the default format, see {@link ManagedHashMap#setSerializationFormat(VarInt.Format)}
+	 * @param out to write to
+	 * @throws IOException
+	 */
 	public void output(OutputStream out) throws IOException {
-		VarInt.writeInt(out, -1);
-		byte[] compressed = compress();
-		VarInt.writeInt(out, compressed.length);
+		output(out, defaultFormat);
+	}
+
+	/**
+	 * Writes this map to a stream using the given integer and string format.<br>
+	 * The format is recorded ahead of the data, so {@link #input(InputStream)} can read maps written in either format.
+	 * Only readers which recognise the format marker can read the {@link VarInt.Format#COMPACT} format.
+	 * @param out to write to
+	 * @param format to write the map in
+	 * @throws IOException
+	 */
+	public void output(OutputStream out, VarInt.Format format) throws IOException {
+		VarInt.writeInt(out, format == VarInt.Format.COMPACT ? COMPACT_MARKER : LEGACY_MARKER);
+		byte[] compressed = compress(format);
+		format.writeInt(out, compressed.length);
 		out.write(compressed);
 	}
 
@@ -207,10 +271,15 @@ class GenericDatatableMap implements DatatableMap {
 
 	public void input(InputStream in, boolean wipe) throws IOException {
 		int id = VarInt.readInt(in);
-		if (id != -1) {
+		final VarInt.Format format;
+		if (id == LEGACY_MARKER) {
+			format = VarInt.Format.LEGACY;
+		} else if (id == COMPACT_MARKER) {
+			format = VarInt.Format.COMPACT;
+		} else {
 			throw new IOException("Unable to parse GenericDatatableMap");
 		}
-		int length = VarInt.readInt(in);
+		int length = format.readInt(in);
 		byte[] compressed = new byte[length];
 		while (length > 0) {
 			length -= in.read(compressed, compressed.length - length, length);
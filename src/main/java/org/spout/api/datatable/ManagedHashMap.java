@@ -39,6 +39,7 @@ import java.util.Set;
 
 import org.apache.commons.lang3.builder.HashCodeBuilder;
 import org.spout.api.map.DefaultedKey;
+import org.spout.api.util.VarInt;
 
 /**
  * Manages a string keyed, serializable object hashmap that can be serialized easily
@@ -51,6 +52,28 @@ public class ManagedHashMap implements SerializableMap{
 		this.map = new GenericDatatableMap();
 	}
 
+	/**
+	 * Sets the format used to serialize all managed maps.<br>
+	 * <br>
+	 * The default is {@link VarInt.Format#LEGACY}.  Data in either format can always be deserialized, but older
+	 * versions can only read the legacy format, so {@link VarInt.Format#COMPACT} should only be enabled, for example
+	 * by a configuration setting, once every reader of the serialized data supports it.
+	 *
+	 * @param format to serialize maps in
+	 */
+	public static void setSerializationFormat(VarInt.Format format) {
+		GenericDatatableMap.setDefaultFormat(format);
+	}
+
+	/**
+	 * Gets the format used to serialize all managed maps
+	 *
+	 * @return the format
+	 */
+	public static VarInt.Format getSerializationFormat() {
+		return GenericDatatableMap.getDefaultFormat();
+	}
+
 	@Override
 	public int size() {
 		return map.size();
@@ -0,0 +1,86 @@
+/*
+ * This file is part of SpoutAPI.
+ *
+ * Copyright (c) 2011-2012, Spout LLC <http://www.spout.org/>
+ * SpoutAPI is licensed under the Spout License Version 1.
+ *
+ * SpoutAPI is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * In addition, 180 days after any changes are published, you can use the
+ * software, incorporating those changes, under the terms of the MIT license,
+ * as described in the Spout License Version 1.
+ *
+ * SpoutAPI is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License,
+ * the MIT license and the Spout License Version 1 along with this program.
+ * If not, see <http://www.gnu.org/licenses/> for the GNU Lesser General Public
+ * License and see <http://spout.in/licensev1> for the full license, including
+ * the MIT license.
+ */
+package org.spout.api.event.server.permissions;
+
+import org.spout.api.event.Event;
+import org.spout.api.event.HandlerList;
+import org.spout.api.permissions.PermissionsSubject;
+
+/**
+ * This event should be called by plugins which manage permissions whenever permissions or groups change,
+ * so that cached permission results are discarded.
+ *
+ * @see org.spout.api.permissions.PermissionCache
+ */
+public class PermissionsChangeEvent extends Event {
+	private static final HandlerList handlers = new HandlerList();
+	private final PermissionsSubject subject;
+	private final String node;
+
+	/**
+	 * Creates an event for a change which may affect any subject and node
+	 */
+	public PermissionsChangeEvent() {
+		this(null, null);
+	}
+
+	/**
+	 * Creates an event for a change to the permissions of a subject and/or node
+	 *
+	 * @param subject the subject whose permissions or groups changed, or null if any subject may be affected
+	 * @param node the node which changed, or null if any node may be affected
+	 */
+	public PermissionsChangeEvent(PermissionsSubject subject, String node) {
+		this.subject = subject;
+		this.node = node;
+	}
+
+	/**
+	 * The subject whose permissions or groups changed.
+	 * @return subject, or null if any subject may be affected
+	 */
+	public PermissionsSubject getSubject() {
+		return subject;
+	}
+
+	/**
+	 * The node which changed.
+	 * @return node, or null if any node may be affected
+	 */
+	public String getNode() {
+		return node;
+	}
+
+	@Override
+	public HandlerList getHandlers() {
+		return handlers;
+	}
+
+	public static HandlerList getHandlerList() {
+		return handlers;
+	}
+}
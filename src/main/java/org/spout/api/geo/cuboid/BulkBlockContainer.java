@@ -0,0 +1,51 @@
+/*
+ * This file is part of SpoutAPI.
+ *
+ * Copyright (c) 2011-2012, Spout LLC <http://www.spout.org/>
+ * SpoutAPI is licensed under the Spout License Version 1.
+ *
+ * SpoutAPI is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * In addition, 180 days after any changes are published, you can use the
+ * software, incorporating those changes, under the terms of the MIT license,
+ * as described in the Spout License Version 1.
+ *
+ * SpoutAPI is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License,
+ * the MIT license and the Spout License Version 1 along with this program.
+ * If not, see <http://www.gnu.org/licenses/> for the GNU Lesser General Public
+ * License and see <http://spout.in/licensev1> for the full license, including
+ * the MIT license.
+ */
+package org.spout.api.geo.cuboid;
+
+/**
+ * A BlockContainer which accepts whole runs of blocks at once, in the order given by {@link #getOrder()}.
+ */
+public interface BulkBlockContainer extends BlockContainer {
+
+	/**
+	 * Sets the states for the next blocks in the sequence.
+	 * 
+	 * @param states the packed block states
+	 * @param offset of the first state in the array
+	 * @param length the number of states to set
+	 */
+	public void setBlockFullStates(int[] states, int offset, int length);
+
+	/**
+	 * Sets the same state for the next blocks in the sequence.
+	 * 
+	 * @param state the packed block state
+	 * @param count the number of blocks to set
+	 */
+	public void fillBlockFullState(int state, int count);
+
+}
@@ -115,21 +115,27 @@ public abstract class Chunk extends Cube implements AreaBlockAccess, AreaPhysics
 	public abstract ChunkSnapshot getSnapshot(SnapshotType type, EntityType entities, ExtraData data);
 	
 	/**
-	 * Fills the given block container with the block data for this chunk
+	 * Fills the given block container with the block data for this chunk<br>
+	 * <br>
+	 * Containers implementing {@link BulkBlockContainer} receive the data in bulk, see {@link ContainerFiller}.
 	 * 
 	 * @param container
 	 */
 	public abstract void fillBlockContainer(BlockContainer container);
 	
 	/**
-	 * Fills the given light container with the sky light data for this chunk
+	 * Fills the given light container with the sky light data for this chunk<br>
+	 * <br>
+	 * Containers implementing {@link BulkLightContainer} receive the data in bulk, see {@link ContainerFiller}.
 	 * 
 	 * @param container
 	 */
 	public abstract void fillSkyLightContainer(LightContainer container);
 	
 	/**
-	 * Fills the given light container with the block light data for this chunk
+	 * Fills the given light container with the block light data for this chunk<br>
+	 * <br>
+	 * Containers implementing {@link BulkLightContainer} receive the data in bulk, see {@link ContainerFiller}.
 	 * 
 	 * @param container
 	 */
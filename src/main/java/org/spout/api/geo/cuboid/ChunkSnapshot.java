@@ -53,14 +53,35 @@ public abstract class ChunkSnapshot extends Cube implements AreaBlockSource {
 	 */
 	public final static int BASE_MASK = -CHUNK_SIZE;
 
+	private volatile ChunkSnapshotView view;
+
 	public ChunkSnapshot(World world, float x, float y, float z) {
 		super(new Point(world, x, y, z), CHUNK_SIZE);
 	}
 
+	/**
+	 * Gets a read-only view of the blocks and light of this snapshot.<br/><br/>
+	 * 
+	 * Unlike the raw array getters, the view does not copy the chunk data for every caller.
+	 * Implementations backed by shared storage should override this method to return a view of
+	 * that storage; by default the view is built once from the raw array getters.
+	 * 
+	 * @return view of the blocks and light
+	 */
+	public ChunkSnapshotView getView() {
+		ChunkSnapshotView view = this.view;
+		if (view == null) {
+			view = new ChunkSnapshotView(getBlockIds(), getBlockData(), getBlockLight(), getSkyLight(), -1);
+			this.view = view;
+		}
+		return view;
+	}
+
 	/**
 	 * Gets a copy of the raw block ids.
 	 * 
 	 * @return raw block ids
+	 * @see #getView()
 	 */
 	public abstract short[] getBlockIds();
 
@@ -68,6 +89,7 @@ public abstract class ChunkSnapshot extends Cube implements AreaBlockSource {
 	 * Gets a copy of the raw block data.
 	 * 
 	 * @return block data
+	 * @see #getView()
 	 */
 	public abstract short[] getBlockData();
 
@@ -76,6 +98,7 @@ public abstract class ChunkSnapshot extends Cube implements AreaBlockSource {
 	 * 
 	 * Light is stored in nibbles, with the first index even, the second odd.
 	 * @return raw block light data
+	 * @see #getView()
 	 */
 	public abstract byte[] getBlockLight();
 
@@ -84,6 +107,7 @@ public abstract class ChunkSnapshot extends Cube implements AreaBlockSource {
 	 * 
 	 * Light is stored in nibbles, with the first index even, the second odd.
 	 * @return raw skylight data
+	 * @see #getView()
 	 */
 	public abstract byte[] getSkyLight();
 
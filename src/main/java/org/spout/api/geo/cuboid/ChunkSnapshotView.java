@@ -0,0 +1,304 @@
+/*
+ * This file is part of SpoutAPI.
+ *
+ * Copyright (c) 2011-2012, Spout LLC <http://www.spout.org/>
+ * SpoutAPI is licensed under the Spout License Version 1.
+ *
+ * SpoutAPI is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * In addition, 180 days after any changes are published, you can use the
+ * software, incorporating those changes, under the terms of the MIT license,
+ * as described in the Spout License Version 1.
+ *
+ * SpoutAPI is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License,
+ * the MIT license and the Spout License Version 1 along with this program.
+ * If not, see <http://www.gnu.org/licenses/> for the GNU Lesser General Public
+ * License and see <http://spout.in/licensev1> for the full license, including
+ * the MIT license.
+ */
+package org.spout.api.geo.cuboid;
+
+import org.spout.api.material.BlockMaterial;
+import org.spout.api.material.block.BlockFullState;
+import org.spout.api.util.map.concurrent.AtomicBlockStore;
+import org.spout.api.util.map.concurrent.VersionedBlockStore;
+
+/**
+ * An immutable view of the blocks and light of a chunk.<br>
+ * <br>
+ * The view shares its storage between all of its readers, so accessing a
+ * few blocks copies nothing, and a view taken of a chunk which has not
+ * changed can be reused, see {@link #of(AtomicBlockStore, ChunkSnapshotView)}.<br>
+ * <br>
+ * Coordinates are masked to the chunk, so both chunk and world coordinates
+ * are accepted. Accessing a kind of data which was not included in the view
+ * throws an {@link IllegalStateException}.
+ */
+public final class ChunkSnapshotView {
+	private static final int MASK = ChunkSnapshot.CHUNK_SIZE - 1;
+	private static final int SHIFT = ChunkSnapshot.CHUNK_SIZE_BITS;
+	private static final int DOUBLE_SHIFT = SHIFT << 1;
+	/**
+	 * The number of blocks in a row along the x-axis
+	 */
+	public static final int ROW_SIZE = ChunkSnapshot.CHUNK_SIZE;
+	/**
+	 * The number of blocks in a plane of constant y
+	 */
+	public static final int PLANE_SIZE = ROW_SIZE * ROW_SIZE;
+	/**
+	 * The number of blocks in a chunk
+	 */
+	public static final int VOLUME = PLANE_SIZE * ROW_SIZE;
+	/**
+	 * The version of views read from a store which is not a {@link VersionedBlockStore}
+	 */
+	public static final int NO_VERSION = -1;
+	private final short[] blockIds;
+	private final short[] blockData;
+	private final byte[] blockLight;
+	private final byte[] skyLight;
+	private final int version;
+
+	/**
+	 * Creates a view backed by the given arrays. The arrays are not copied
+	 * and must not be modified afterwards.<br>
+	 * <br>
+	 * Blocks are indexed as (y << 8) | (z << 4) | x. Light is stored in
+	 * nibbles, with the even index in the low nibble and the odd index in the
+	 * high nibble.
+	 *
+	 * @param blockIds the block ids, or null if not included
+	 * @param blockData the block data, or null if not included
+	 * @param blockLight the block light, or null if not included
+	 * @param skyLight the sky light, or null if not included
+	 * @param version the version of the block store the blocks were read from
+	 */
+	public ChunkSnapshotView(short[] blockIds, short[] blockData, byte[] blockLight, byte[] skyLight, int version) {
+		checkLength(blockIds == null ? VOLUME : blockIds.length, VOLUME, "block ids");
+		checkLength(blockData == null ? VOLUME : blockData.length, VOLUME, "block data");
+		checkLength(blockLight == null ? VOLUME / 2 : blockLight.length, VOLUME / 2, "block light");
+		checkLength(skyLight == null ? VOLUME / 2 : skyLight.length, VOLUME / 2, "sky light");
+		this.blockIds = blockIds;
+		this.blockData = blockData;
+		this.blockLight = blockLight;
+		this.skyLight = skyLight;
+		this.version = version;
+	}
+
+	private static void checkLength(int length, int expected, String name) {
+		if (length != expected) {
+			throw new IllegalArgumentException("Expected " + expected + " elements of " + name + ", got " + length);
+		}
+	}
+
+	/**
+	 * Gets a view of the blocks in the given store. If the store is a
+	 * {@link VersionedBlockStore} and has not changed since the previous
+	 * view was taken, the previous view is returned.
+	 *
+	 * @param store to read
+	 * @param previous view of the store, or null
+	 * @return a view of the blocks in the store
+	 */
+	public static ChunkSnapshotView of(AtomicBlockStore store, ChunkSnapshotView previous) {
+		if (!(store instanceof VersionedBlockStore)) {
+			return new ChunkSnapshotView(store.getBlockIdArray(), store.getDataArray(), null, null, NO_VERSION);
+		}
+		int version = ((VersionedBlockStore) store).getVersion();
+		if (previous != null && previous.version == version && previous.blockIds != null && previous.blockData != null) {
+			return previous;
+		}
+		// The version is read first, so a modification during the copy causes the next call to copy again
+		return new ChunkSnapshotView(store.getBlockIdArray(), store.getDataArray(), null, null, version);
+	}
+
+	/**
+	 * Gets the version of the block store this view was read from
+	 *
+	 * @return the version, or {@link #NO_VERSION} if the store does not track one
+	 */
+	public int getVersion() {
+		return version;
+	}
+
+	public boolean hasBlockIds() {
+		return blockIds != null;
+	}
+
+	public boolean hasBlockData() {
+		return blockData != null;
+	}
+
+	public boolean hasLight() {
+		return blockLight != null && skyLight != null;
+	}
+
+	public short getBlockId(int x, int y, int z) {
+		return getBlockIds()[getIndex(x, y, z)];
+	}
+
+	public short getBlockData(int x, int y, int z) {
+		return getBlockDataArray()[getIndex(x, y, z)];
+	}
+
+	/**
+	 * Gets the packed id and data of a block, see {@link BlockFullState#getPacked(short, short)}
+	 */
+	public int getBlockFullState(int x, int y, int z) {
+		int index = getIndex(x, y, z);
+		return BlockFullState.getPacked(getBlockIds()[index], getBlockDataArray()[index]);
+	}
+
+	/**
+	 * Gets the material of a block, or null if the id is not a block material
+	 */
+	public BlockMaterial getBlockMaterial(int x, int y, int z) {
+		int index = getIndex(x, y, z);
+		BlockMaterial material = BlockMaterial.get(getBlockIds()[index]);
+		return material == null ? null : material.getSubMaterial(getBlockDataArray()[index]);
+	}
+
+	public byte getBlockLight(int x, int y, int z) {
+		return getNibble(getBlockLightArray(), getIndex(x, y, z));
+	}
+
+	public byte getBlockSkyLight(int x, int y, int z) {
+		return getNibble(getSkyLightArray(), getIndex(x, y, z));
+	}
+
+	/**
+	 * Copies the ids of a row of blocks along the x-axis
+	 *
+	 * @param y of the row
+	 * @param z of the row
+	 * @param target to copy to, with room for {@link #ROW_SIZE} elements
+	 * @param offset of the first element in the target
+	 */
+	public void getBlockIdRow(int y, int z, short[] target, int offset) {
+		System.arraycopy(getBlockIds(), getIndex(0, y, z), target, offset, ROW_SIZE);
+	}
+
+	/**
+	 * Copies the data of a row of blocks along the x-axis
+	 *
+	 * @param y of the row
+	 * @param z of the row
+	 * @param target to copy to, with room for {@link #ROW_SIZE} elements
+	 * @param offset of the first element in the target
+	 */
+	public void getBlockDataRow(int y, int z, short[] target, int offset) {
+		System.arraycopy(getBlockDataArray(), getIndex(0, y, z), target, offset, ROW_SIZE);
+	}
+
+	/**
+	 * Copies the ids of a plane of blocks of constant y, in z-major order
+	 *
+	 * @param y of the plane
+	 * @param target to copy to, with room for {@link #PLANE_SIZE} elements
+	 * @param offset of the first element in the target
+	 */
+	public void getBlockIdPlane(int y, short[] target, int offset) {
+		System.arraycopy(getBlockIds(), getIndex(0, y, 0), target, offset, PLANE_SIZE);
+	}
+
+	/**
+	 * Copies the data of a plane of blocks of constant y, in z-major order
+	 *
+	 * @param y of the plane
+	 * @param target to copy to, with room for {@link #PLANE_SIZE} elements
+	 * @param offset of the first element in the target
+	 */
+	public void getBlockDataPlane(int y, short[] target, int offset) {
+		System.arraycopy(getBlockDataArray(), getIndex(0, y, 0), target, offset, PLANE_SIZE);
+	}
+
+	/**
+	 * Copies the packed states of a plane of blocks of constant y, in z-major order
+	 *
+	 * @param y of the plane
+	 * @param target to copy to, with room for {@link #PLANE_SIZE} elements
+	 * @param offset of the first element in the target
+	 */
+	public void getBlockFullStatePlane(int y, int[] target, int offset) {
+		short[] ids = getBlockIds();
+		short[] data = getBlockDataArray();
+		int index = getIndex(0, y, 0);
+		for (int i = 0; i < PLANE_SIZE; i++, index++) {
+			target[offset + i] = BlockFullState.getPacked(ids[index], data[index]);
+		}
+	}
+
+	/**
+	 * Gets a copy of the raw block ids.
+	 */
+	public short[] copyBlockIds() {
+		return getBlockIds().clone();
+	}
+
+	/**
+	 * Gets a copy of the raw block data.
+	 */
+	public short[] copyBlockData() {
+		return getBlockDataArray().clone();
+	}
+
+	/**
+	 * Gets a copy of the raw block light, stored in nibbles.
+	 */
+	public byte[] copyBlockLight() {
+		return getBlockLightArray().clone();
+	}
+
+	/**
+	 * Gets a copy of the raw sky light, stored in nibbles.
+	 */
+	public byte[] copySkyLight() {
+		return getSkyLightArray().clone();
+	}
+
+	private short[] getBlockIds() {
+		if (blockIds == null) {
+			throw new IllegalStateException("Block ids are not included in this view");
+		}
+		return blockIds;
+	}
+
+	private short[] getBlockDataArray() {
+		if (blockData == null) {
+			throw new IllegalStateException("Block data is not included in this view");
+		}
+		return blockData;
+	}
+
+	private byte[] getBlockLightArray() {
+		if (blockLight == null) {
+			throw new IllegalStateException("Block light is not included in this view");
+		}
+		return blockLight;
+	}
+
+	private byte[] getSkyLightArray() {
+		if (skyLight == null) {
+			throw new IllegalStateException("Sky light is not included in this view");
+		}
+		return skyLight;
+	}
+
+	private static int getIndex(int x, int y, int z) {
+		return (y & MASK) << DOUBLE_SHIFT | (z & MASK) << SHIFT | x & MASK;
+	}
+
+	private static byte getNibble(byte[] array, int index) {
+		byte value = array[index >> 1];
+		return (byte) ((index & 1) == 0 ? value & 0xF : (value >> 4) & 0xF);
+	}
+}
@@ -0,0 +1,190 @@
+/*
+ * This file is part of SpoutAPI.
+ *
+ * Copyright (c) 2011-2012, Spout LLC <http://www.spout.org/>
+ * SpoutAPI is licensed under the Spout License Version 1.
+ *
+ * SpoutAPI is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * In addition, 180 days after any changes are published, you can use the
+ * software, incorporating those changes, under the terms of the MIT license,
+ * as described in the Spout License Version 1.
+ *
+ * SpoutAPI is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License,
+ * the MIT license and the Spout License Version 1 along with this program.
+ * If not, see <http://www.gnu.org/licenses/> for the GNU Lesser General Public
+ * License and see <http://spout.in/licensev1> for the full license, including
+ * the MIT license.
+ */
+package org.spout.api.geo.cuboid;
+
+import org.spout.api.material.block.BlockFullState;
+
+/**
+ * Transfers block and light arrays into containers, converting between the
+ * {@link ContainerFillOrder} of the arrays and the order of the container.<br>
+ * <br>
+ * {@link BulkBlockContainer}s and {@link BulkLightContainer}s receive a plane
+ * at a time, and a single fill call when every element holds the same value.
+ * Other containers receive one call per element.
+ */
+public final class ContainerFiller {
+	private ContainerFiller() {
+	}
+
+	/**
+	 * Fills a container with blocks
+	 * 
+	 * @param container to fill
+	 * @param ids the block ids
+	 * @param data the block data, or null if all data is zero
+	 * @param sourceOrder the order of the arrays
+	 * @param sizeX of the region
+	 * @param sizeY of the region
+	 * @param sizeZ of the region
+	 */
+	public static void fill(BlockContainer container, short[] ids, short[] data, ContainerFillOrder sourceOrder, int sizeX, int sizeY, int sizeZ) {
+		int volume = sizeX * sizeY * sizeZ;
+		BulkBlockContainer bulk = container instanceof BulkBlockContainer ? (BulkBlockContainer) container : null;
+
+		if (volume > 0 && isUniform(ids, volume) && (data == null || isUniform(data, volume))) {
+			int state = BlockFullState.getPacked(ids[0], data == null ? 0 : data[0]);
+			if (bulk != null) {
+				bulk.fillBlockFullState(state, volume);
+			} else {
+				for (int i = 0; i < volume; i++) {
+					container.setBlockFullState(state);
+				}
+			}
+			return;
+		}
+
+		ContainerFillOrder order = container.getOrder();
+		int thirdStep = order.thirdStep(sourceOrder, sizeX, sizeY, sizeZ);
+		int secondStep = order.secondStep(sourceOrder, sizeX, sizeY, sizeZ);
+		int firstStep = order.firstStep(sourceOrder, sizeX, sizeY, sizeZ);
+
+		int thirdMax = order.getThirdSize(sizeX, sizeY, sizeZ);
+		int secondMax = order.getSecondSize(sizeX, sizeY, sizeZ);
+		int firstMax = order.getFirstSize(sizeX, sizeY, sizeZ);
+
+		int[] plane = bulk == null ? null : new int[firstMax * secondMax];
+		int sourceIndex = 0;
+		for (int third = 0; third < thirdMax; third++) {
+			int secondStart = sourceIndex;
+			int planeIndex = 0;
+			for (int second = 0; second < secondMax; second++) {
+				int firstStart = sourceIndex;
+				for (int first = 0; first < firstMax; first++) {
+					int state = BlockFullState.getPacked(ids[sourceIndex], data == null ? 0 : data[sourceIndex]);
+					if (plane != null) {
+						plane[planeIndex++] = state;
+					} else {
+						container.setBlockFullState(state);
+					}
+					sourceIndex += firstStep;
+				}
+				sourceIndex = firstStart + secondStep;
+			}
+			if (plane != null) {
+				bulk.setBlockFullStates(plane, 0, planeIndex);
+			}
+			sourceIndex = secondStart + thirdStep;
+		}
+	}
+
+	/**
+	 * Fills a container with light levels
+	 * 
+	 * @param container to fill
+	 * @param light the light levels, stored in nibbles with the even index in the low nibble
+	 * @param sourceOrder the order of the array
+	 * @param sizeX of the region
+	 * @param sizeY of the region
+	 * @param sizeZ of the region
+	 */
+	public static void fill(LightContainer container, byte[] light, ContainerFillOrder sourceOrder, int sizeX, int sizeY, int sizeZ) {
+		int volume = sizeX * sizeY * sizeZ;
+		BulkLightContainer bulk = container instanceof BulkLightContainer ? (BulkLightContainer) container : null;
+
+		if (volume > 0 && isUniformNibbles(light, volume)) {
+			byte level = getNibble(light, 0);
+			if (bulk != null) {
+				bulk.fillLightLevel(level, volume);
+			} else {
+				for (int i = 0; i < volume; i++) {
+					container.setLightLevel(level);
+				}
+			}
+			return;
+		}
+
+		ContainerFillOrder order = container.getOrder();
+		int thirdStep = order.thirdStep(sourceOrder, sizeX, sizeY, sizeZ);
+		int secondStep = order.secondStep(sourceOrder, sizeX, sizeY, sizeZ);
+		int firstStep = order.firstStep(sourceOrder, sizeX, sizeY, sizeZ);
+
+		int thirdMax = order.getThirdSize(sizeX, sizeY, sizeZ);
+		int secondMax = order.getSecondSize(sizeX, sizeY, sizeZ);
+		int firstMax = order.getFirstSize(sizeX, sizeY, sizeZ);
+
+		byte[] plane = bulk == null ? null : new byte[firstMax * secondMax];
+		int sourceIndex = 0;
+		for (int third = 0; third < thirdMax; third++) {
+			int secondStart = sourceIndex;
+			int planeIndex = 0;
+			for (int second = 0; second < secondMax; second++) {
+				int firstStart = sourceIndex;
+				for (int first = 0; first < firstMax; first++) {
+					byte level = getNibble(light, sourceIndex);
+					if (plane != null) {
+						plane[planeIndex++] = level;
+					} else {
+						container.setLightLevel(level);
+					}
+					sourceIndex += firstStep;
+				}
+				sourceIndex = firstStart + secondStep;
+			}
+			if (plane != null) {
+				bulk.setLightLevels(plane, 0, planeIndex);
+			}
+			sourceIndex = secondStart + thirdStep;
+		}
+	}
+
+	private static boolean isUniform(short[] array, int length) {
+		short value = array[0];
+		for (int i = 1; i < length; i++) {
+			if (array[i] != value) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static boolean isUniformNibbles(byte[] array, int volume) {
+		byte level = getNibble(array, 0);
+		byte packed = (byte) (level << 4 | level);
+		int bytes = volume >> 1;
+		for (int i = 0; i < bytes; i++) {
+			if (array[i] != packed) {
+				return false;
+			}
+		}
+		return (volume & 1) == 0 || getNibble(array, volume - 1) == level;
+	}
+
+	private static byte getNibble(byte[] array, int index) {
+		byte value = array[index >> 1];
+		return (byte) ((index & 1) == 0 ? value & 0xF : (value >> 4) & 0xF);
+	}
+}
@@ -39,106 +39,193 @@ import org.spout.api.util.StringUtil;
 import org.spout.api.util.concurrent.SpinLock;
 import org.spout.api.util.thread.Threadsafe;
 
+/**
+ * The position, rotation and scale of an object.<br>
+ * <br>
+ * The components are published together as one immutable state.  Writers are serialized by a lock and replace
+ * the state, readers never block and always see the three components of a single write.  The getters return the
+ * stored values, so they do not allocate.
+ */
 @ThreadSafe
 public final class Transform implements Serializable {
-	private static final long serialVersionUID = 2L;
+	private static final long serialVersionUID = 3L;
+	/**
+	 * The number of floats used to store a transform, see {@link #get(float[])}
+	 */
+	public static final int SIZE = 10;
+	public static final int POSITION = 0;
+	public static final int ROTATION = 3;
+	public static final int SCALE = 7;
 
 	private final SpinLock lock = new SpinLock();
-	private Point position; 
-	private Quaternion rotation;
-	private Vector3 scale;
+	private volatile State state;
+
 	public Transform() {
 		this(Point.invalid, Quaternion.IDENTITY, Vector3.ONE);
 	}
 
 	public Transform(Point position, Quaternion rotation, Vector3 scale) {
-		this.position = position;
-		this.rotation = rotation;
-		this.scale = scale;
+		this.state = new State(position, rotation, scale);
 	}
 
 	public Point getPosition() {
-		try {
-			lock.lock();
-			return position;
-		} finally {
-			lock.unlock();
-		}
+		return state.position;
+	}
+
+	/**
+	 * Copies the coordinates of the position into an array
+	 *
+	 * @param dest the array of at least 3 floats
+	 * @return the world of the position
+	 */
+	public World getPosition(float[] dest) {
+		Point p = state.position;
+		dest[0] = p.getX();
+		dest[1] = p.getY();
+		dest[2] = p.getZ();
+		return p.getWorld();
 	}
 
 	public void setPosition(Point position) {
+		lock.lock();
 		try {
-			lock.lock();
-			this.position = position;
+			State s = state;
+			state = new State(position, s.rotation, s.scale);
 		} finally {
 			lock.unlock();
 		}
 	}
+
+	public void setPosition(World world, float x, float y, float z) {
+		setPosition(new Point(world, x, y, z));
+	}
 	
 	public void translate(Vector3 offset) {
+		lock.lock();
 		try {
-			lock.lock();
-			this.position = this.position.add(offset);
+			State s = state;
+			state = new State(s.position.add(offset), s.rotation, s.scale);
 		} finally {
 			lock.unlock();
 		}
 	}
 	
 	public void translate(float x, float y, float z) {
+		lock.lock();
 		try {
-			lock.lock();
-			this.position = this.position.add(x, y, z);
+			State s = state;
+			state = new State(s.position.add(x, y, z), s.rotation, s.scale);
 		} finally {
 			lock.unlock();
 		}
 	}
 	
 	public void translateAndSetRotation(Vector3 offset, Quaternion rotation) {
+		lock.lock();
 		try {
-			lock.lock();
-			this.position = this.position.add(offset);
-			this.rotation = rotation;
+			State s = state;
+			state = new State(s.position.add(offset), rotation, s.scale);
 		} finally {
 			lock.unlock();
 		}
 	}
 
 	public Quaternion getRotation() {
-		try {
-			lock.lock();
-			return rotation;
-		} finally {
-			lock.unlock();
-		}
+		return state.rotation;
+	}
+
+	/**
+	 * Copies the x, y, z and w components of the rotation into an array
+	 *
+	 * @param dest the array of at least 4 floats
+	 */
+	public void getRotation(float[] dest) {
+		Quaternion r = state.rotation;
+		dest[0] = r.getX();
+		dest[1] = r.getY();
+		dest[2] = r.getZ();
+		dest[3] = r.getW();
 	}
 
 	public void setRotation(Quaternion rotation) {
+		lock.lock();
 		try {
-			lock.lock();
-			this.rotation = rotation;
+			State s = state;
+			state = new State(s.position, rotation, s.scale);
 		} finally {
 			lock.unlock();
 		}
 	}
 
+	/**
+	 * Sets the rotation from the components of a quaternion
+	 *
+	 * @param x the x component
+	 * @param y the y component
+	 * @param z the z component
+	 * @param w the w component
+	 */
+	public void setRotation(float x, float y, float z, float w) {
+		setRotation(new Quaternion(x, y, z, w, true));
+	}
+
 	public Vector3 getScale() {
-		try {
-			lock.lock();
-			return scale;
-		} finally {
-			lock.unlock();
-		}
+		return state.scale;
+	}
+
+	/**
+	 * Copies the components of the scale into an array
+	 *
+	 * @param dest the array of at least 3 floats
+	 */
+	public void getScale(float[] dest) {
+		Vector3 s = state.scale;
+		dest[0] = s.getX();
+		dest[1] = s.getY();
+		dest[2] = s.getZ();
 	}
 
 	public void setScale(Vector3 scale) {
+		lock.lock();
 		try {
-			lock.lock();
-			this.scale = scale;
+			State s = state;
+			state = new State(s.position, s.rotation, scale);
 		} finally {
 			lock.unlock();
 		}
 	}
 
+	public void setScale(float x, float y, float z) {
+		setScale(new Vector3(x, y, z));
+	}
+
+	/**
+	 * Copies all components of this transform into an array.<br>
+	 * <br>
+	 * The position starts at {@link #POSITION}, the rotation at {@link #ROTATION} and the scale at {@link #SCALE}.
+	 *
+	 * @param dest the array of at least {@link #SIZE} floats
+	 * @return the world of the position
+	 */
+	@Threadsafe
+	public World get(float[] dest) {
+		State state = this.state;
+		Point p = state.position;
+		Quaternion r = state.rotation;
+		Vector3 s = state.scale;
+		dest[0] = p.getX();
+		dest[1] = p.getY();
+		dest[2] = p.getZ();
+		dest[3] = r.getX();
+		dest[4] = r.getY();
+		dest[5] = r.getZ();
+		dest[6] = r.getW();
+		dest[7] = s.getX();
+		dest[8] = s.getY();
+		dest[9] = s.getZ();
+		return p.getWorld();
+	}
+
 	/**
 	 * Atomically sets the value of this transform to the value of another
 	 * transform
@@ -151,12 +238,12 @@ public final class Transform implements Serializable {
 		if (transform == null) {
 			throw new NullPointerException("Transform can not be a null argument!");
 		}
-
+		State s = transform.state;
+		lock.lock();
 		try {
-			transform.lock.lock();
-			set(transform.position, transform.rotation, transform.scale);
+			state = s;
 		} finally {
-			transform.lock.unlock();
+			lock.unlock();
 		}
 	}
 
@@ -164,6 +251,20 @@ public final class Transform implements Serializable {
 	 * Atomically sets the value of this transform.
 	 *
 	 * @param world the world
+	 * @param values the components of the transform, in the order used by {@link #get(float[])}
+	 */
+	@Threadsafe
+	public void set(World world, float[] values) {
+		set(world, values[0], values[1], values[2], values[3], values[4], values[5], values[6], values[7], values[8], values[9]);
+	}
+
+	/**
+	 * Atomically sets the value of this transform.<br>
+	 * <br>
+	 * The rotation is given as the x, y, z and w components of a quaternion, as written by {@link #get(float[])},
+	 * not as an angle and axis.
+	 *
+	 * @param world the world
 	 * @param px the x coordinate of the position
 	 * @param py the y coordinate of the position
 	 * @param pz the z coordinate of the position
@@ -177,7 +278,7 @@ public final class Transform implements Serializable {
 	 */
 	@Threadsafe
 	public void set(World world, float px, float py, float pz, float rx, float ry, float rz, float rw, float sx, float sy, float sz) {
-		this.set(new Point(world, px, py, pz), new Quaternion(rx, ry, rz, rw), new Vector3(sx, sy, sz));
+		set(new Point(world, px, py, pz), new Quaternion(rx, ry, rz, rw, true), new Vector3(sx, sy, sz));
 	}
 
 	/**
@@ -189,11 +290,10 @@ public final class Transform implements Serializable {
 	 */
 	@Threadsafe
 	public void set(Point p, Quaternion r, Vector3 s) {
+		State state = new State(p, r, s);
+		lock.lock();
 		try {
-			lock.lock();
-			this.position = p;
-			this.rotation = r;
-			this.scale = s;
+			this.state = state;
 		} finally {
 			lock.unlock();
 		}
@@ -206,36 +306,59 @@ public final class Transform implements Serializable {
 	 */
 	@Threadsafe
 	public Transform copy() {
-		try {
-			lock.lock();
-			return new Transform(position, rotation, scale);
-		} finally {
-			lock.unlock();
-		}
+		Transform t = new Transform();
+		t.set(this);
+		return t;
+	}
+
+	/**
+	 * Gets if the position of this transform is equal to the position of another transform
+	 *
+	 * @param other the other transform
+	 * @return true if the positions are equal
+	 */
+	@Threadsafe
+	public boolean isPositionEqual(Transform other) {
+		return state.position.equals(other.state.position);
+	}
+
+	/**
+	 * Gets if the rotation of this transform is equal to the rotation of another transform
+	 *
+	 * @param other the other transform
+	 * @return true if the rotations are equal
+	 */
+	@Threadsafe
+	public boolean isRotationEqual(Transform other) {
+		return state.rotation.equals(other.state.rotation);
+	}
+
+	/**
+	 * Gets if the scale of this transform is equal to the scale of another transform
+	 *
+	 * @param other the other transform
+	 * @return true if the scales are equal
+	 */
+	@Threadsafe
+	public boolean isScaleEqual(Transform other) {
+		return state.scale.equals(other.state.scale);
 	}
 
 	/**
 	 * Gets a String representation of this transform
-	 * 
-	 * Note: unsafe, could return torn values
 	 *
 	 * @return the string
 	 */
 	@Override
 	public String toString() {
-		return getClass().getSimpleName() + StringUtil.toString(position, rotation, scale);
+		State s = state;
+		return getClass().getSimpleName() + StringUtil.toString(s.position, s.rotation, s.scale);
 	}
 
 	@Override
 	public int hashCode() {
-		HashCodeBuilder builder = new HashCodeBuilder(41, 63);
-		try {
-			lock.lock();
-			builder.append(position).append(rotation).append(scale);
-		} finally {
-			lock.unlock();
-		}
-		return builder.toHashCode();
+		State s = state;
+		return new HashCodeBuilder(41, 63).append(s.position).append(s.rotation).append(s.scale).toHashCode();
 	}
 
 	@Override
@@ -243,15 +366,9 @@ public final class Transform implements Serializable {
 		if (!(other instanceof Transform)) {
 			return false;
 		}
-		Transform t = (Transform) other;
-		try {
-			lock.lock();
-			t.lock.lock();
-			return position.equals(t.position) && rotation.equals(t.rotation) && scale.equals(t.scale);
-		} finally {
-			lock.unlock();
-			t.lock.unlock();
-		}
+		State s = state;
+		State t = ((Transform) other).state;
+		return s.position.equals(t.position) && s.rotation.equals(t.rotation) && s.scale.equals(t.scale);
 	}
 
 	/**
@@ -287,4 +404,17 @@ public final class Transform implements Serializable {
 	public Vector3 upVector() {
 		return MathHelper.transform(Vector3.UP, getRotation());
 	}
+
+	private static final class State implements Serializable {
+		private static final long serialVersionUID = 1L;
+		private final Point position;
+		private final Quaternion rotation;
+		private final Vector3 scale;
+
+		private State(Point position, Quaternion rotation, Vector3 scale) {
+			this.position = position;
+			this.rotation = rotation;
+			this.scale = scale;
+		}
+	}
 }
@@ -0,0 +1,44 @@
+/*
+ * This file is part of SpoutAPI.
+ *
+ * Copyright (c) 2011-2012, Spout LLC <http://www.spout.org/>
+ * SpoutAPI is licensed under the Spout License Version 1.
+ *
+ * SpoutAPI is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * In addition, 180 days after any changes are published, you can use the
+ * software, incorporating those changes, under the terms of the MIT license,
+ * as described in the Spout License Version 1.
+ *
+ * SpoutAPI is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License,
+ * the MIT license and the Spout License Version 1 along with this program.
+ * If not, see <http://www.gnu.org/licenses/> for the GNU Lesser General Public
+ * License and see <http://spout.in/licensev1> for the full license, including
+ * the MIT license.
+ */
+package org.spout.api.inventory;
+
+/**
+ * Represents a viewer which can receive the changes to many slots of an inventory at once.
+ *
+ * @see Inventory#beginBatch()
+ */
+public interface BatchInventoryViewer extends InventoryViewer {
+	/**
+	 * Inform the viewer that several items have changed.  Each slot is only included once, with the
+	 * item in the slot at the end of the batch.
+	 *
+	 * @param inventory The {@link Inventory} in which the slots have changed.
+	 * @param slots The slot numbers which have changed, in ascending order.
+	 * @param items The {@link ItemStack}s which the slots have changed to.
+	 */
+	public void onSlotsSet(Inventory inventory, int[] slots, ItemStack[] items);
+}
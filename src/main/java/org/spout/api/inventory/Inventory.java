@@ -27,6 +27,7 @@
 package org.spout.api.inventory;
 
 import java.io.Serializable;
+import java.util.BitSet;
 import java.util.Collection;
 import java.util.HashSet;
 import java.util.Iterator;
@@ -57,6 +58,14 @@ public class Inventory implements Serializable, Cloneable, List<ItemStack> {
 	 * items.
 	 */
 	private final ItemStack[] contents;
+	/**
+	 * The slots changed during the current batch
+	 */
+	private transient BitSet dirtySlots = null;
+	/**
+	 * The number of batches currently open
+	 */
+	private transient int batchDepth = 0;
 
 	/**
 	 * Constructs a new Inventory with an initial capacity.
@@ -206,12 +215,21 @@ public class Inventory implements Serializable, Cloneable, List<ItemStack> {
 	}
 
 	/**
-	 * Updates the slot to the current item in the slot and notifies all viewers
+	 * Updates the slot to the current item in the slot and notifies all viewers.<br>
+	 * <br>
+	 * If a batch is open, the slot is marked as changed and the viewers are notified when the batch ends.
 	 *
 	 * @param slot to update
 	 * @return {@link ItemStack} at the slot
 	 */
 	public void update(int slot) {
+		if (batchDepth > 0) {
+			if (dirtySlots == null) {
+				dirtySlots = new BitSet(contents.length);
+			}
+			dirtySlots.set(slot);
+			return;
+		}
 		ItemStack item = get(slot);
 		onSlotChanged(slot, item);
 		for (InventoryViewer viewer : viewers) {
@@ -223,11 +241,69 @@ public class Inventory implements Serializable, Cloneable, List<ItemStack> {
 	 * Updates all slots in the inventory for all viewers
 	 */
 	public void updateAll() {
-		for (int slot = 0; slot < contents.length; slot++) {
-			update(slot);
+		beginBatch();
+		try {
+			for (int slot = 0; slot < contents.length; slot++) {
+				update(slot);
+			}
+		} finally {
+			endBatch();
+		}
+	}
+
+	/**
+	 * Starts a batch of changes.  Until the matching call to {@link #endBatch()}, changed slots are
+	 * only recorded, and each viewer is notified once of all changed slots when the batch ends.<br>
+	 * <br>
+	 * Batches may be nested, the viewers are notified when the outermost batch ends.
+	 */
+	public void beginBatch() {
+		batchDepth++;
+	}
+
+	/**
+	 * Ends a batch of changes, notifying the viewers of the changed slots if this is the outermost batch.<br>
+	 * <br>
+	 * {@link BatchInventoryViewer}s receive a single update with all changed slots, other viewers receive
+	 * one update for each changed slot.
+	 */
+	public void endBatch() {
+		if (batchDepth <= 0) {
+			throw new IllegalStateException("No batch has been started");
+		}
+		if (--batchDepth > 0 || dirtySlots == null || dirtySlots.isEmpty()) {
+			return;
+		}
+		int[] slots = new int[dirtySlots.cardinality()];
+		ItemStack[] items = new ItemStack[slots.length];
+		int i = 0;
+		for (int slot = dirtySlots.nextSetBit(0); slot >= 0; slot = dirtySlots.nextSetBit(slot + 1)) {
+			slots[i] = slot;
+			items[i] = get(slot);
+			onSlotChanged(slot, items[i]);
+			i++;
+		}
+		dirtySlots.clear();
+		for (InventoryViewer viewer : viewers) {
+			if (viewer instanceof BatchInventoryViewer) {
+				((BatchInventoryViewer) viewer).onSlotsSet(this, slots, items);
+			} else {
+				for (i = 0; i < slots.length; i++) {
+					viewer.onSlotSet(this, slots[i], items[i]);
+				}
+			}
 		}
 	}
 
+	/**
+	 * Gets if a batch of changes is open
+	 *
+	 * @return true if changes are being batched
+	 */
+	public boolean isBatching() {
+		return batchDepth > 0;
+	}
+
 	/**
 	 * Constructs a new {@link Grid} with the specified row length
 	 *
@@ -294,21 +370,26 @@ public class Inventory implements Serializable, Cloneable, List<ItemStack> {
 	 * @param item to attempt to add to the inventory
 	 */
 	public void add(int firstSlot, int lastSlot, ItemStack item) {
-		for (int index = firstSlot; index < lastSlot; index++) {
-			ItemStack slot = get(index);
-			if (slot == null) {
-				set(index, item);
-				item.setAmount(0);
-				return;
-			}
-			if (!slot.equalsIgnoreSize(item)) {
-				continue;
-			}
-			slot.stack(item);
-			set(index, slot);
-			if (item.isEmpty()) {
-				return;
+		beginBatch();
+		try {
+			for (int index = firstSlot; index < lastSlot; index++) {
+				ItemStack slot = get(index);
+				if (slot == null) {
+					set(index, item);
+					item.setAmount(0);
+					return;
+				}
+				if (!slot.equalsIgnoreSize(item)) {
+					continue;
+				}
+				slot.stack(item);
+				set(index, slot);
+				if (item.isEmpty()) {
+					return;
+				}
 			}
+		} finally {
+			endBatch();
 		}
 	}
 
@@ -472,13 +553,18 @@ public class Inventory implements Serializable, Cloneable, List<ItemStack> {
 	 */
 	@Override
 	public boolean addAll(Collection<? extends ItemStack> items) {
-		Iterator<? extends ItemStack> i = items.iterator();
-		while (i.hasNext()) {
-			ItemStack next = i.next();
-			if (next == null) {
-				continue;
+		beginBatch();
+		try {
+			Iterator<? extends ItemStack> i = items.iterator();
+			while (i.hasNext()) {
+				ItemStack next = i.next();
+				if (next == null) {
+					continue;
+				}
+				add(next);
 			}
-			add(next);
+		} finally {
+			endBatch();
 		}
 		return true;
 	}
@@ -494,9 +580,14 @@ public class Inventory implements Serializable, Cloneable, List<ItemStack> {
 	 */
 	@Override
 	public boolean addAll(int i, Collection<? extends ItemStack> items) {
-		Iterator<? extends ItemStack> iter = items.iterator();
-		while (iter.hasNext()) {
-			add(i, iter.next());
+		beginBatch();
+		try {
+			Iterator<? extends ItemStack> iter = items.iterator();
+			while (iter.hasNext()) {
+				add(i, iter.next());
+			}
+		} finally {
+			endBatch();
 		}
 		return true;
 	}
@@ -509,18 +600,23 @@ public class Inventory implements Serializable, Cloneable, List<ItemStack> {
 	 */
 	@Override
 	public boolean removeAll(Collection<?> objects) {
-		Iterator<?> iter = objects.iterator();
-		while (iter.hasNext()) {
-			Object o = iter.next();
-			for (int i = 0; i < contents.length; i++) {
-				ItemStack item = get(i);
-				if (item == null) {
-					continue;
-				}
-				if (item.equals(o) || item.getMaterial().equals(o)) {
-					set(i, null);
+		beginBatch();
+		try {
+			Iterator<?> iter = objects.iterator();
+			while (iter.hasNext()) {
+				Object o = iter.next();
+				for (int i = 0; i < contents.length; i++) {
+					ItemStack item = get(i);
+					if (item == null) {
+						continue;
+					}
+					if (item.equals(o) || item.getMaterial().equals(o)) {
+						set(i, null);
+					}
 				}
 			}
+		} finally {
+			endBatch();
 		}
 		return true;
 	}
@@ -535,13 +631,18 @@ public class Inventory implements Serializable, Cloneable, List<ItemStack> {
 	 */
 	@Override
 	public boolean retainAll(Collection<?> objects) {
-		for (ItemStack item : contents) {
-			if (item == null) {
-				continue;
-			}
-			if (!objects.contains(item)) {
-				remove(item);
+		beginBatch();
+		try {
+			for (ItemStack item : contents) {
+				if (item == null) {
+					continue;
+				}
+				if (!objects.contains(item)) {
+					remove(item);
+				}
 			}
+		} finally {
+			endBatch();
 		}
 		return true;
 	}
@@ -552,8 +653,13 @@ public class Inventory implements Serializable, Cloneable, List<ItemStack> {
 	 */
 	@Override
 	public void clear() {
-		for (int i = 0; i < contents.length; i++) {
-			set(i, null);
+		beginBatch();
+		try {
+			for (int i = 0; i < contents.length; i++) {
+				set(i, null);
+			}
+		} finally {
+			endBatch();
 		}
 	}
 
@@ -0,0 +1,407 @@
+/*
+ * This file is part of SpoutAPI.
+ *
+ * Copyright (c) 2011-2012, Spout LLC <http://www.spout.org/>
+ * SpoutAPI is licensed under the Spout License Version 1.
+ *
+ * SpoutAPI is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * In addition, 180 days after any changes are published, you can use the
+ * software, incorporating those changes, under the terms of the MIT license,
+ * as described in the Spout License Version 1.
+ *
+ * SpoutAPI is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License,
+ * the MIT license and the Spout License Version 1 along with this program.
+ * If not, see <http://www.gnu.org/licenses/> for the GNU Lesser General Public
+ * License and see <http://spout.in/licensev1> for the full license, including
+ * the MIT license.
+ */
+package org.spout.api.inventory.recipe;
+
+import gnu.trove.map.hash.TLongObjectHashMap;
+
+import java.util.List;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.spout.api.material.Material;
+
+/**
+ * A hash index of shaped and shapeless recipes.<br>
+ * <br>
+ * Shapeless recipes are keyed by an order independent hash of their ingredients and shaped recipes by a hash
+ * of their trimmed ingredient grid.  Matching a recipe is a hash lookup followed by a check of the few
+ * recipes with the same key, and does not allocate.<br>
+ * <br>
+ * Although this can technically be used by any class, it really should only be used internally in a RecipeManager.
+ */
+public class RecipeIndex {
+	private static final long NULL_KEY = 0x9E3779B97F4A7C15L;
+	private final ReadWriteLock lock = new ReentrantReadWriteLock();
+	private final TLongObjectHashMap<Entry[]> shapeless = new TLongObjectHashMap<Entry[]>();
+	private final TLongObjectHashMap<Entry[]> shaped = new TLongObjectHashMap<Entry[]>();
+
+	/**
+	 * Adds a shapeless recipe to the index
+	 *
+	 * @param recipe the recipe
+	 * @return true if the recipe was added
+	 */
+	public boolean addRecipe(ShapelessRecipe recipe) {
+		List<Material> ingredients = recipe.getIngredients();
+		int count = 0;
+		for (Material m : ingredients) {
+			if (m != null) {
+				count++;
+			}
+		}
+		Material[] materials = new Material[count];
+		count = 0;
+		for (Material m : ingredients) {
+			if (m != null) {
+				materials[count++] = m;
+			}
+		}
+		return add(shapeless, unorderedHash(ingredients), new Entry(recipe, materials, 0));
+	}
+
+	/**
+	 * Adds a shaped recipe to the index
+	 *
+	 * @param recipe the recipe
+	 * @return true if the recipe was added
+	 */
+	public boolean addRecipe(ShapedRecipe recipe) {
+		List<List<Material>> rows = recipe.getIngredientRows();
+		Bounds b = new Bounds();
+		if (!b.find(rows)) {
+			return false;
+		}
+		Material[] materials = new Material[b.width * b.height];
+		for (int y = 0; y < b.height; y++) {
+			List<Material> row = rows.get(b.y + y);
+			for (int x = 0; x < b.width; x++) {
+				materials[y * b.width + x] = get(row, b.x + x);
+			}
+		}
+		return add(shaped, gridHash(rows, b, false), new Entry(recipe, materials, b.width));
+	}
+
+	/**
+	 * Removes a recipe from the index
+	 *
+	 * @param recipe the recipe
+	 * @return true if the recipe was removed
+	 */
+	public boolean removeRecipe(Recipe recipe) {
+		TLongObjectHashMap<Entry[]> map;
+		long key;
+		if (recipe instanceof ShapedRecipe) {
+			List<List<Material>> rows = ((ShapedRecipe) recipe).getIngredientRows();
+			Bounds b = new Bounds();
+			if (!b.find(rows)) {
+				return false;
+			}
+			map = shaped;
+			key = gridHash(rows, b, false);
+		} else {
+			map = shapeless;
+			key = unorderedHash(recipe.getIngredients());
+		}
+		lock.writeLock().lock();
+		try {
+			Entry[] entries = map.get(key);
+			if (entries == null) {
+				return false;
+			}
+			for (int i = 0; i < entries.length; i++) {
+				if (entries[i].recipe == recipe) {
+					if (entries.length == 1) {
+						map.remove(key);
+					} else {
+						Entry[] newEntries = new Entry[entries.length - 1];
+						System.arraycopy(entries, 0, newEntries, 0, i);
+						System.arraycopy(entries, i + 1, newEntries, i, entries.length - i - 1);
+						map.put(key, newEntries);
+					}
+					return true;
+				}
+			}
+			return false;
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Removes all recipes from the index
+	 */
+	public void clear() {
+		lock.writeLock().lock();
+		try {
+			shapeless.clear();
+			shaped.clear();
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Finds the shapeless recipe made from the given materials, in any order.<br>
+	 * <br>
+	 * Recipes which do not include data also match materials which are sub materials of the ingredients.
+	 *
+	 * @param materials the materials, null entries are ignored
+	 * @return the recipe, or null if there is no match
+	 */
+	public ShapelessRecipe matchShapelessRecipe(List<Material> materials) {
+		long exactHash = 0;
+		long rootHash = 0;
+		int count = 0;
+		for (int i = 0; i < materials.size(); i++) {
+			Material m = materials.get(i);
+			if (m != null) {
+				exactHash += key(m);
+				rootHash += key(root(m));
+				count++;
+			}
+		}
+		if (count == 0) {
+			return null;
+		}
+		lock.readLock().lock();
+		try {
+			Entry[] entries = shapeless.get(mix(exactHash + count));
+			if (entries != null) {
+				for (Entry e : entries) {
+					if (e.matchesUnordered(materials, count, false)) {
+						return (ShapelessRecipe) e.recipe;
+					}
+				}
+			}
+			entries = shapeless.get(mix(rootHash + count));
+			if (entries != null) {
+				for (Entry e : entries) {
+					if (!e.recipe.getIncludeData() && e.matchesUnordered(materials, count, true)) {
+						return (ShapelessRecipe) e.recipe;
+					}
+				}
+			}
+			return null;
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Finds the shaped recipe made from the given grid of materials.  Empty rows and columns around the
+	 * materials are ignored.<br>
+	 * <br>
+	 * Recipes which do not include data also match materials which are sub materials of the ingredients.
+	 *
+	 * @param materials the rows of materials, null entries are empty slots
+	 * @return the recipe, or null if there is no match
+	 */
+	public ShapedRecipe matchShapedRecipe(List<List<Material>> materials) {
+		Bounds b = new Bounds();
+		if (!b.find(materials)) {
+			return null;
+		}
+		lock.readLock().lock();
+		try {
+			Entry[] entries = shaped.get(gridHash(materials, b, false));
+			if (entries != null) {
+				for (Entry e : entries) {
+					if (e.matchesGrid(materials, b, false)) {
+						return (ShapedRecipe) e.recipe;
+					}
+				}
+			}
+			entries = shaped.get(gridHash(materials, b, true));
+			if (entries != null) {
+				for (Entry e : entries) {
+					if (!e.recipe.getIncludeData() && e.matchesGrid(materials, b, true)) {
+						return (ShapedRecipe) e.recipe;
+					}
+				}
+			}
+			return null;
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	private boolean add(TLongObjectHashMap<Entry[]> map, long key, Entry entry) {
+		lock.writeLock().lock();
+		try {
+			Entry[] entries = map.get(key);
+			if (entries == null) {
+				map.put(key, new Entry[] {entry});
+				return true;
+			}
+			for (Entry e : entries) {
+				if (e.recipe == entry.recipe) {
+					return false;
+				}
+			}
+			Entry[] newEntries = new Entry[entries.length + 1];
+			System.arraycopy(entries, 0, newEntries, 0, entries.length);
+			newEntries[entries.length] = entry;
+			map.put(key, newEntries);
+			return true;
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	private static long unorderedHash(List<Material> materials) {
+		long hash = 0;
+		int count = 0;
+		for (int i = 0; i < materials.size(); i++) {
+			Material m = materials.get(i);
+			if (m != null) {
+				hash += key(m);
+				count++;
+			}
+		}
+		return mix(hash + count);
+	}
+
+	private static long gridHash(List<List<Material>> rows, Bounds b, boolean root) {
+		long hash = b.width * 31 + b.height;
+		for (int y = 0; y < b.height; y++) {
+			List<Material> row = rows.get(b.y + y);
+			for (int x = 0; x < b.width; x++) {
+				Material m = get(row, b.x + x);
+				hash = hash * 0x100000001B3L + key(root ? root(m) : m);
+			}
+		}
+		return mix(hash);
+	}
+
+	private static Material get(List<Material> row, int x) {
+		return x < row.size() ? row.get(x) : null;
+	}
+
+	private static Material root(Material m) {
+		return m == null ? null : m.getRoot();
+	}
+
+	private static long key(Material m) {
+		if (m == null) {
+			return NULL_KEY;
+		}
+		return mix(((long) m.getId() << 16) | (m.getData() & 0xFFFF));
+	}
+
+	private static long mix(long h) {
+		h ^= h >>> 33;
+		h *= 0xFF51AFD7ED558CCDL;
+		h ^= h >>> 33;
+		h *= 0xC4CEB9FE1A85EC53L;
+		h ^= h >>> 33;
+		return h;
+	}
+
+	private static class Bounds {
+		private int x, y, width, height;
+
+		public boolean find(List<List<Material>> rows) {
+			int minX = Integer.MAX_VALUE, maxX = -1, minY = -1, maxY = -1;
+			for (int j = 0; j < rows.size(); j++) {
+				List<Material> row = rows.get(j);
+				for (int i = 0; i < row.size(); i++) {
+					if (row.get(i) != null) {
+						if (minY == -1) {
+							minY = j;
+						}
+						maxY = j;
+						minX = Math.min(minX, i);
+						maxX = Math.max(maxX, i);
+					}
+				}
+			}
+			if (maxX == -1) {
+				return false;
+			}
+			x = minX;
+			y = minY;
+			width = maxX - minX + 1;
+			height = maxY - minY + 1;
+			return true;
+		}
+	}
+
+	private static class Entry {
+		private final Recipe recipe;
+		private final Material[] materials;
+		private final int width;
+
+		public Entry(Recipe recipe, Material[] materials, int width) {
+			this.recipe = recipe;
+			this.materials = materials;
+			this.width = width;
+		}
+
+		public boolean matchesUnordered(List<Material> input, int count, boolean root) {
+			if (count != materials.length) {
+				return false;
+			}
+			boolean[] usedArray = count > 64 ? new boolean[count] : null;
+			long used = 0;
+			for (int i = 0; i < input.size(); i++) {
+				Material m = input.get(i);
+				if (m == null) {
+					continue;
+				}
+				if (root) {
+					m = m.getRoot();
+				}
+				boolean found = false;
+				for (int j = 0; j < materials.length; j++) {
+					boolean isUsed = usedArray == null ? (used & (1L << j)) != 0 : usedArray[j];
+					if (!isUsed && materials[j] == m) {
+						if (usedArray == null) {
+							used |= 1L << j;
+						} else {
+							usedArray[j] = true;
+						}
+						found = true;
+						break;
+					}
+				}
+				if (!found) {
+					return false;
+				}
+			}
+			return true;
+		}
+
+		public boolean matchesGrid(List<List<Material>> input, Bounds b, boolean root) {
+			if (b.width != width || b.height * width != materials.length) {
+				return false;
+			}
+			for (int y = 0; y < b.height; y++) {
+				List<Material> row = input.get(b.y + y);
+				for (int x = 0; x < width; x++) {
+					Material m = get(row, b.x + x);
+					if (root) {
+						m = root(m);
+					}
+					if (m != materials[y * width + x]) {
+						return false;
+					}
+				}
+			}
+			return true;
+		}
+	}
+}
@@ -27,16 +27,15 @@
 package org.spout.api.inventory.recipe;
 
 import java.lang.reflect.Array;
-import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
-import java.util.Comparator;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import org.spout.api.Spout;
 
 import org.spout.api.material.Material;
@@ -50,6 +49,8 @@ public class SimpleRecipeManager implements RecipeManager {
 	private final Map<Integer, RecipeTree> allShapedRecipes = new ConcurrentHashMap<Integer, RecipeTree>();
 	private final Map<Integer, Set<ShapelessRecipe>> allShapelessRecipes = new ConcurrentHashMap<Integer, Set<ShapelessRecipe>>();
 	private final Map<Integer, Set<SmeltedRecipe>> allSmeltedRecipes = new ConcurrentHashMap<Integer, Set<SmeltedRecipe>>();
+	private final ConcurrentMap<Plugin, RecipeIndex> registeredRecipeIndexes = new ConcurrentHashMap<Plugin, RecipeIndex>();
+	private final RecipeIndex allRecipeIndex = new RecipeIndex();
 
 	@Override
 	public boolean register(Recipe recipe) {
@@ -84,6 +85,7 @@ public class SimpleRecipeManager implements RecipeManager {
 				registeredShapedRecipes.get(plugin).put(recipe.getIngredients().size(), recipes);
 			}
 			failed = !registeredShapedRecipes.get(plugin).get(recipe.getIngredients().size()).addRecipe(recipe) || failed;
+			getIndex(plugin).addRecipe(recipe);
 		}
 
 		if (allShapedRecipes.get(recipe.getIngredients().size()) == null) {
@@ -91,6 +93,7 @@ public class SimpleRecipeManager implements RecipeManager {
 			allShapedRecipes.put(recipe.getIngredients().size(), recipes);
 		}
 		failed = !allShapedRecipes.get(recipe.getIngredients().size()).addRecipe(recipe) || failed;
+		allRecipeIndex.addRecipe(recipe);
 		return !failed;
 	}
 
@@ -108,6 +111,7 @@ public class SimpleRecipeManager implements RecipeManager {
 				registeredShapelessRecipes.get(plugin).put(recipe.getIngredients().size(), recipes);
 			}
 			failed = !registeredShapelessRecipes.get(plugin).get(recipe.getIngredients().size()).add(recipe) || failed;
+			getIndex(plugin).addRecipe(recipe);
 		}
 
 		if (allShapelessRecipes.get(recipe.getIngredients().size()) == null) {
@@ -115,6 +119,7 @@ public class SimpleRecipeManager implements RecipeManager {
 			allShapelessRecipes.put(recipe.getIngredients().size(), recipes);
 		}
 		failed = !allShapelessRecipes.get(recipe.getIngredients().size()).add(recipe) || failed;
+		allRecipeIndex.addRecipe(recipe);
 		return !failed;
 	}
 
@@ -177,11 +182,13 @@ public class SimpleRecipeManager implements RecipeManager {
 				return false;
 			}
 			failed = !registeredShapedRecipes.get(plugin).get(recipe.getIngredients().size()).removeRecipe(recipe) || failed;
+			getIndex(plugin).removeRecipe(recipe);
 		}
 		if (!allShapedRecipes.containsKey(recipe.getIngredients().size())) {
 			return false;
 		}
 		failed = !allShapedRecipes.get(recipe.getIngredients().size()).removeRecipe(recipe) || failed;
+		allRecipeIndex.removeRecipe(recipe);
 		return !failed;
 	}
 
@@ -199,11 +206,13 @@ public class SimpleRecipeManager implements RecipeManager {
 				return false;
 			}
 			failed = !registeredShapelessRecipes.get(recipe.getPlugin()).get(recipe.getIngredients().size()).remove(recipe) || failed;
+			getIndex(plugin).removeRecipe(recipe);
 		}
 		if (!allShapelessRecipes.containsKey(recipe.getIngredients().size())) {
 			return false;
 		}
 		failed = !allShapelessRecipes.get(recipe.getIngredients().size()).remove(recipe) || failed;
+		allRecipeIndex.removeRecipe(recipe);
 		return !failed;
 	}
 
@@ -214,6 +223,8 @@ public class SimpleRecipeManager implements RecipeManager {
 		allRecipes.clear();
 		allShapedRecipes.clear();
 		allShapelessRecipes.clear();
+		registeredRecipeIndexes.clear();
+		allRecipeIndex.clear();
 	}
 
 	@Override
@@ -254,99 +265,20 @@ public class SimpleRecipeManager implements RecipeManager {
 
 	@Override
 	public ShapedRecipe matchShapedRecipe(List<List<Material>> materials) {
-		Set<Material> set = new HashSet<Material>();
-		List<List<Material>> list = new ArrayList<List<Material>>();
-		List<List<Material>> parentList = new ArrayList<List<Material>>();
-		for (List<Material> materialsRow : materials) {
-			List<Material> parentRow = new ArrayList<Material>();
-			List<Material> row = new ArrayList<Material>();
-			for (Material m : materialsRow) {
-				row.add(m);
-				Material parent = m;
-				if (m != null) {
-					set.add(m);
-					if (m.isSubMaterial()) {
-						parent = m.getParentMaterial();
-					}
-				}
-				parentRow.add(parent);
-			}
-			parentList.add(parentRow);
-			list.add(row);
-		}
-
-		if (!allShapedRecipes.containsKey(set.size())) {
-			return null;
-		}
-		ShapedRecipe recipe = allShapedRecipes.get(set.size()).matchShapedRecipe(list, true);
-		if (recipe == null) {
-			recipe = allShapedRecipes.get(set.size()).matchShapedRecipe(parentList, false);
-		}
-		return recipe;
+		return allRecipeIndex.matchShapedRecipe(materials);
 	}
 
 	@Override
 	public ShapelessRecipe matchShapelessRecipe(List<Material> materials) {
-		Set<Material> unique = new HashSet<Material>();
-		List<Material> parentList = new ArrayList<Material>();
-		for (Material m : materials) {
-			while (m.isSubMaterial()) {
-				m = m.getParentMaterial();
-			}
-			parentList.add(m);
-		}
-		unique.addAll(parentList);
-		unique.removeAll(Collections.singletonList(null));
-
-		ShapelessRecipe recipe = null;
-		if (!allShapelessRecipes.containsKey(unique.size())) {
-			return null;
-		}
-		for (ShapelessRecipe r : allShapelessRecipes.get(unique.size())) {
-			if (r.getIncludeData()) {
-				List<Material> materialsCopy = new ArrayList<Material>(materials);
-				List<Material> ingredientsCopy = new ArrayList<Material>(r.getIngredients());
-				Collections.sort(materialsCopy, new MaterialComparable());
-				Collections.sort(ingredientsCopy, new MaterialComparable());
-				if (materialsCopy.equals(ingredientsCopy)) {
-					recipe = r;
-					break;
-				}
-			} else {
-				List<Material> parentsCopy = new ArrayList<Material>(parentList);
-				List<Material> ingredientsCopy = new ArrayList<Material>(r.getIngredients());
-				Collections.sort(parentsCopy, new MaterialComparable());
-				Collections.sort(ingredientsCopy, new MaterialComparable());
-				if (parentsCopy.equals(ingredientsCopy)) {
-					recipe = r;
-					break;
-				}
-			}
-		}
-		return recipe;
+		return allRecipeIndex.matchShapelessRecipe(materials);
 	}
 
 	@Override
 	public ShapedRecipe matchShapedRecipe(Plugin plugin, List<List<Material>> materials) {
-		Set<Material> set = new HashSet<Material>();
-		List<List<Material>> parentList = new ArrayList<List<Material>>();
-		for (List<Material> row : materials) {
-			List<Material> parentRow = new ArrayList<Material>();
-			for (Material m : row) {
-				parentRow.add(m);
-				if (m != null) {
-					set.add(m);
-				}
-			}
-			parentList.add(parentRow);
-		}
-
 		ShapedRecipe recipe = null;
-		if (registeredShapedRecipes.containsKey(plugin) && registeredShapedRecipes.get(plugin).containsKey(set.size())) {
-			recipe = registeredShapedRecipes.get(plugin).get(set.size()).matchShapedRecipe(materials, true);
-			if (recipe == null) {
-				recipe = registeredShapedRecipes.get(plugin).get(set.size()).matchShapedRecipe(parentList, false);
-			}
+		RecipeIndex index = registeredRecipeIndexes.get(plugin);
+		if (index != null) {
+			recipe = index.matchShapedRecipe(materials);
 		}
 
 		if (recipe == null) {
@@ -358,64 +290,28 @@ public class SimpleRecipeManager implements RecipeManager {
 
 	@Override
 	public ShapelessRecipe matchShapelessRecipe(Plugin plugin, List<Material> materials) {
-		Set<Material> unique = new HashSet<Material>();
-		List<Material> parentList = new ArrayList<Material>();
-		for (Material m : materials) {
-			if (m.isSubMaterial()) {
-				m = m.getParentMaterial();
-			}
-			parentList.add(m);
-		}
-		unique.addAll(parentList);
-		unique.removeAll(Collections.singletonList(null));
-
 		ShapelessRecipe recipe = null;
-		if (registeredShapelessRecipes.containsKey(plugin) && registeredShapelessRecipes.get(plugin).containsKey(unique.size())) {
-			for (ShapelessRecipe r : registeredShapelessRecipes.get(plugin).get(unique.size())) {
-				if (r.getIncludeData()) {
-					List<Material> materialsCopy = new ArrayList<Material>(materials);
-					List<Material> ingredientsCopy = new ArrayList<Material>(r.getIngredients());
-					Collections.sort(materialsCopy, new MaterialComparable());
-					Collections.sort(ingredientsCopy, new MaterialComparable());
-					if (materialsCopy.equals(ingredientsCopy)) {
-						recipe = r;
-						break;
-					}
-				} else {
-					List<Material> parentsCopy = new ArrayList<Material>(parentList);
-					List<Material> ingredientsCopy = new ArrayList<Material>(r.getIngredients());
-					Collections.sort(parentsCopy, new MaterialComparable());
-					Collections.sort(ingredientsCopy, new MaterialComparable());
-					if (parentsCopy.equals(ingredientsCopy)) {
-						recipe = r;
-						break;
-					}
-				}
-			}
+		RecipeIndex index = registeredRecipeIndexes.get(plugin);
+		if (index != null) {
+			recipe = index.matchShapelessRecipe(materials);
 		}
+
 		if (recipe == null) {
 			recipe = matchShapelessRecipe(materials);
 		}
 
 		return recipe;
 	}
-	
-	private static class MaterialComparable implements Comparator<Material> {
-		@Override
-		public int compare(Material o1, Material o2) {
-			if (o1 == null) {
-				if (o2 == null) {
-					return 0;
-				}
-				return -1;
-			}
-			if (o2 == null) {
-				return 1;
-			}
-			if (o1.equals(o2)) {
-				return 0;
+
+	private RecipeIndex getIndex(Plugin plugin) {
+		RecipeIndex index = registeredRecipeIndexes.get(plugin);
+		if (index == null) {
+			index = new RecipeIndex();
+			RecipeIndex old = registeredRecipeIndexes.putIfAbsent(plugin, index);
+			if (old != null) {
+				index = old;
 			}
-			return o1.getName().compareTo(o2.getName());
 		}
+		return index;
 	}
 }
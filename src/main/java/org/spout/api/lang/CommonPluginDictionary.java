@@ -33,6 +33,7 @@ import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.Writer;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Enumeration;
 import java.util.HashMap;
@@ -43,6 +44,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.jar.JarEntry;
 import java.util.jar.JarFile;
 import java.util.logging.Level;
@@ -50,6 +52,7 @@ import java.util.regex.Pattern;
 
 import org.apache.commons.io.IOUtils;
 import org.spout.api.Spout;
+import org.spout.api.chat.ChatArguments;
 import org.spout.api.command.CommandSource;
 import org.spout.api.plugin.Plugin;
 import org.yaml.snakeyaml.DumperOptions.FlowStyle;
@@ -66,7 +69,12 @@ public abstract class CommonPluginDictionary implements PluginDictionary {
 	protected Plugin plugin;
 	private final TIntObjectHashMap<LanguageDictionary> languageDictionaries = new TIntObjectHashMap<LanguageDictionary>();
 	private int nextId = 0;
-	private final HashMap<String, HashMap<String, Integer>> classes = new HashMap<String, HashMap<String,Integer>>(10);
+	/**
+	 * The maximum number of untranslated source templates kept
+	 */
+	private static final int MAX_SOURCE_TEMPLATES = 1024;
+	private final ConcurrentHashMap<String, ConcurrentHashMap<String, Integer>> classes = new ConcurrentHashMap<String, ConcurrentHashMap<String,Integer>>(10);
+	private final ConcurrentHashMap<String, MessageTemplate> sourceTemplates = new ConcurrentHashMap<String, MessageTemplate>();
 	private final LinkedList<Integer> idList = new LinkedList<Integer>();
 	private final LanguageDictionary codedLanguage = new LanguageDictionary(null);
 
@@ -113,7 +121,7 @@ public abstract class CommonPluginDictionary implements PluginDictionary {
 		LinkedHashMap<String, Object> dump = new LinkedHashMap<String, Object>();
 		dump.put("nextId", nextId);
 		LinkedHashMap<Integer, LinkedHashMap<String, String>> ids = new LinkedHashMap<Integer, LinkedHashMap<String,String>>();
-		for (Entry<String, HashMap<String, Integer>> e1 : classes.entrySet()) {
+		for (Entry<String, ConcurrentHashMap<String, Integer>> e1 : classes.entrySet()) {
 			for (Entry<String, Integer> e2 : e1.getValue().entrySet()) {
 				String clazz = e1.getKey();
 				String source = e2.getKey();
@@ -197,42 +205,52 @@ public abstract class CommonPluginDictionary implements PluginDictionary {
 	 * @return the translation
 	 */
 	public String tr(String source, CommandSource receiver, String foundClass, Object[] args) {
-		String use = source;
-		Locale preferred = receiver.getPreferredLocale();
-	
-		// Search for translation
-		LanguageDictionary dict = getDictionary(preferred);
 		Number num = 0;
 		if (args.length >= 1 && args[0] instanceof Number) {
 			num = (Number) args[0];
 		}
-		if (dict != null) {
-			int key = getKey(source, foundClass);
-			if (key != NO_ID) {
-				String translation = dict.getTranslation(key, num);
-				if (translation != null) {
-					use = translation;
+		return getTemplate(source, receiver.getPreferredLocale(), getKey(source, foundClass), num).format(args);
+	}
+
+	/**
+	 * Gets the template for the translation of source into the given locale
+	 *
+	 * @param source the string to translate
+	 * @param locale to translate into
+	 * @param key of the source string, or {@link #NO_ID}
+	 * @param num used to select the translation if it depends on a number
+	 * @return the translation, or the source if there is none
+	 */
+	protected MessageTemplate getTemplate(String source, Locale locale, int key, Number num) {
+		if (key != NO_ID && locale != null) {
+			LanguageDictionary dict = getDictionary(locale);
+			if (dict != null) {
+				MessageTemplate template = dict.getTemplate(key, num);
+				if (template != null) {
+					return template;
 				}
 			}
 		}
-	
-		use = replacePlaceholders(use, args);
-		return use;
+		return getSourceTemplate(source);
 	}
 
-	protected String replacePlaceholders(String source, Object... args) {
-		//Check for null
+	private MessageTemplate getSourceTemplate(String source) {
 		if (source == null) {
-			return "null";
+			source = "null";
 		}
-
-		// Replace placeholders
-		int i = 0;
-		for (Object arg : args) {
-			source = source.replaceAll("%" + i, (arg != null ? arg.toString() : "null"));
-			i++;
+		MessageTemplate template = sourceTemplates.get(source);
+		if (template == null) {
+			template = MessageTemplate.compile(source);
+			if (sourceTemplates.size() >= MAX_SOURCE_TEMPLATES) {
+				sourceTemplates.clear();
+			}
+			sourceTemplates.put(source, template);
 		}
-		return source;
+		return template;
+	}
+
+	protected String replacePlaceholders(String source, Object... args) {
+		return getSourceTemplate(source).format(args);
 	}
 
 	public Plugin getPlugin() {
@@ -244,14 +262,15 @@ public abstract class CommonPluginDictionary implements PluginDictionary {
 	}
 
 	public void setKey(String source, String clazz, int id) {
-		synchronized (classes) {
-			HashMap<String, Integer> idmap = classes.get(clazz);
-			if (idmap == null) {
-				idmap = new HashMap<String, Integer>();
-				classes.put(clazz, idmap);
+		ConcurrentHashMap<String, Integer> idmap = classes.get(clazz);
+		if (idmap == null) {
+			idmap = new ConcurrentHashMap<String, Integer>();
+			ConcurrentHashMap<String, Integer> old = classes.putIfAbsent(clazz, idmap);
+			if (old != null) {
+				idmap = old;
 			}
-			idmap.put(source, id);
 		}
+		idmap.put(source, id);
 		synchronized (idList) {
 			idList.add(id);
 		}
@@ -261,33 +280,46 @@ public abstract class CommonPluginDictionary implements PluginDictionary {
 	}
 
 	public int getKey(String source, String clazz) {
-		synchronized (classes) {
-			HashMap<String, Integer> idmap = classes.get(clazz);			
-			if (idmap == null) {
-				return NO_ID;
-			} else {
-				Integer id = idmap.get(source);
-				if (id != null) {
-					return id;
-				}
-			}
+		if (source == null || clazz == null) {
 			return NO_ID;
 		}
+		ConcurrentHashMap<String, Integer> idmap = classes.get(clazz);
+		if (idmap != null) {
+			Integer id = idmap.get(source);
+			if (id != null) {
+				return id;
+			}
+		}
+		return NO_ID;
 	}
 
+	/**
+	 * Sends the translation of source to all receivers in their preferred language.<br/>
+	 * Receivers are grouped by locale, so the translation is only formatted once per locale and the same message is sent
+	 * to every receiver of that locale.
+	 *
+	 * @param source the string to translate
+	 * @param receivers the receivers to send the message to
+	 * @param clazz the class that called the translation
+	 * @param args any object given will be inserted into the target string for each %0, %1 asf
+	 */
 	public void broadcast(String source, CommandSource[] receivers, String clazz, Object[] args) {
 		int key = getKey(source, clazz);
-		for (CommandSource receiver:receivers) {
-			String use = source;
-			LanguageDictionary dict = getDictionary(receiver.getPreferredLocale());
-			if (dict != null) {
-				String translation = dict.getTranslation(key);
-				if (translation != null) {
-					use = translation;
-				}
+		Map<Locale, List<CommandSource>> groups = new HashMap<Locale, List<CommandSource>>();
+		for (CommandSource receiver : receivers) {
+			Locale locale = receiver.getPreferredLocale();
+			List<CommandSource> group = groups.get(locale);
+			if (group == null) {
+				group = new ArrayList<CommandSource>();
+				groups.put(locale, group);
+			}
+			group.add(receiver);
+		}
+		for (Entry<Locale, List<CommandSource>> entry : groups.entrySet()) {
+			ChatArguments message = new ChatArguments(getTemplate(source, entry.getKey(), key, 0).format(args));
+			for (CommandSource receiver : entry.getValue()) {
+				receiver.sendMessage(message);
 			}
-			use = replacePlaceholders(use, args);
-			receiver.sendMessage(use);
 		}
 	}
 
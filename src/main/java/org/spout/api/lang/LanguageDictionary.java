@@ -39,6 +39,7 @@ import org.yaml.snakeyaml.nodes.Tag;
 public class LanguageDictionary {
 	private Locale locale;
 	HashMap<Integer, Object> translations = new HashMap<Integer, Object>();
+	private final HashMap<Integer, MessageTemplate> templates = new HashMap<Integer, MessageTemplate>();
 	
 	public LanguageDictionary(Locale locale) {
 		this.locale = locale;
@@ -46,6 +47,11 @@ public class LanguageDictionary {
 	
 	public void setTranslation(int id, Object object) {
 		translations.put(id, object);
+		if (object instanceof String) {
+			templates.put(id, MessageTemplate.compile((String) object));
+		} else {
+			templates.remove(id);
+		}
 	}
 	
 	public String getTranslation(int id) {
@@ -63,6 +69,25 @@ public class LanguageDictionary {
 		}
 	}
 	
+	/**
+	 * Gets the translation for the given id as a template.<br/>
+	 * Plain translations are compiled when they are set, translations depending on a number are compiled on each call.
+	 *
+	 * @param id of the translation
+	 * @param number used to select the translation if it depends on a number
+	 * @return the template, or null if there is no translation
+	 */
+	public MessageTemplate getTemplate(int id, Number number) {
+		MessageTemplate template = templates.get(id);
+		if (template == null) {
+			String translation = getTranslation(id, number);
+			if (translation != null) {
+				template = MessageTemplate.compile(translation);
+			}
+		}
+		return template;
+	}
+	
 	public Locale getLocale() {
 		return locale;
 	}
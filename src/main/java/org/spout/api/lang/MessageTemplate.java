@@ -0,0 +1,135 @@
+/*
+ * This file is part of SpoutAPI.
+ *
+ * Copyright (c) 2011-2012, Spout LLC <http://www.spout.org/>
+ * SpoutAPI is licensed under the Spout License Version 1.
+ *
+ * SpoutAPI is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * In addition, 180 days after any changes are published, you can use the
+ * software, incorporating those changes, under the terms of the MIT license,
+ * as described in the Spout License Version 1.
+ *
+ * SpoutAPI is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License,
+ * the MIT license and the Spout License Version 1 along with this program.
+ * If not, see <http://www.gnu.org/licenses/> for the GNU Lesser General Public
+ * License and see <http://spout.in/licensev1> for the full license, including
+ * the MIT license.
+ */
+package org.spout.api.lang;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A translation string split into literal segments and %0, %1 asf placeholders, so formatting does not need to search the string again.<br/>
+ * A placeholder is a % followed by all the digits after it, placeholders without a matching argument are kept as they are.
+ */
+public final class MessageTemplate {
+	private final String source;
+	/**
+	 * The literal segments, segments[i] comes before the placeholder arguments[i]
+	 */
+	private final String[] segments;
+	private final int[] arguments;
+	private final String[] placeholders;
+	private final int length;
+
+	private MessageTemplate(String source, String[] segments, int[] arguments, String[] placeholders) {
+		this.source = source;
+		this.segments = segments;
+		this.arguments = arguments;
+		this.placeholders = placeholders;
+		int length = 0;
+		for (String segment : segments) {
+			length += segment.length();
+		}
+		this.length = length;
+	}
+
+	/**
+	 * Compiles the given string into a template
+	 *
+	 * @param source the string to compile
+	 * @return the template
+	 */
+	public static MessageTemplate compile(String source) {
+		List<String> segments = new ArrayList<String>();
+		List<String> placeholders = new ArrayList<String>();
+		int start = 0;
+		int index = source.indexOf('%');
+		while (index != -1) {
+			int end = index + 1;
+			while (end < source.length() && end - index <= 9 && Character.isDigit(source.charAt(end))) {
+				end++;
+			}
+			if (end > index + 1) {
+				segments.add(source.substring(start, index));
+				placeholders.add(source.substring(index, end));
+				start = end;
+			}
+			index = source.indexOf('%', end);
+		}
+		segments.add(source.substring(start));
+
+		int[] arguments = new int[placeholders.size()];
+		for (int i = 0; i < arguments.length; i++) {
+			arguments[i] = Integer.parseInt(placeholders.get(i).substring(1));
+		}
+		return new MessageTemplate(source, segments.toArray(new String[segments.size()]), arguments, placeholders.toArray(new String[arguments.length]));
+	}
+
+	/**
+	 * Gets the string this template was compiled from
+	 *
+	 * @return the source string
+	 */
+	public String getSource() {
+		return source;
+	}
+
+	/**
+	 * Gets if this template contains any placeholders
+	 *
+	 * @return true if there are placeholders
+	 */
+	public boolean hasPlaceholders() {
+		return arguments.length > 0;
+	}
+
+	/**
+	 * Inserts the given arguments into the placeholders of this template
+	 *
+	 * @param args any object given will be inserted for each %0, %1 asf
+	 * @return the formatted string
+	 */
+	public String format(Object... args) {
+		if (arguments.length == 0) {
+			return source;
+		}
+		StringBuilder builder = new StringBuilder(length + arguments.length * 8);
+		for (int i = 0; i < arguments.length; i++) {
+			builder.append(segments[i]);
+			int arg = arguments[i];
+			if (arg < args.length) {
+				builder.append(args[arg]);
+			} else {
+				builder.append(placeholders[i]);
+			}
+		}
+		return builder.append(segments[arguments.length]).toString();
+	}
+
+	@Override
+	public String toString() {
+		return source;
+	}
+}
@@ -32,7 +32,6 @@ import org.spout.api.Server;
 import org.spout.api.Spout;
 import org.spout.api.command.CommandSource;
 import org.spout.api.plugin.CommonClassLoader;
-import org.spout.api.plugin.CommonPlugin;
 import org.spout.api.plugin.CommonPluginManager;
 import org.spout.api.plugin.Platform;
 import org.spout.api.plugin.Plugin;
@@ -59,14 +58,13 @@ import org.spout.api.plugin.Plugin;
  * <pre>import static org.spout.api.lang.Translation.tr;
  *...
  *tr("hello", player);</pre></p>
+ * <p>The static methods inspect the stack on every call to find the calling plugin and class. Code which translates often should
+ * keep a {@link Translator} from {@link #getTranslator(Class)} instead.</p>
  * 
  */
 
 // TODO: ChatStyle integration
 public class Translation {
-	
-	
-	private static String foundClass = null;
 	private static final String LANG_PACKAGE = "org.spout.api.lang";
 	/**
 	 * Returns the translation of source into the receivers preferred language
@@ -76,12 +74,11 @@ public class Translation {
 	 * @return the translation
 	 */
 	public static String tr(String source, CommandSource receiver, Object ...args) {
-		Plugin plugin = getPluginForStacktrace();
-		if (plugin == null) {
+		Translator translator = getTranslatorForStacktrace();
+		if (translator == null) {
 			return source;
 		}
-		PluginDictionary pldict = plugin.getDictionary();
-		return pldict.tr(source, receiver, foundClass, args);
+		return translator.tr(source, receiver, args);
 	}
 	
 	/**
@@ -107,32 +104,43 @@ public class Translation {
 	 * @param args any object given will be inserted into the target string for each %0, %1 asf
 	 */
 	public static void broadcast(String source, CommandSource receivers[], Object ...args) {
-		Plugin plugin = getPluginForStacktrace();
-		PluginDictionary pldict = plugin.getDictionary();
-		pldict.broadcast(source, receivers, foundClass, args);
+		getTranslatorForStacktrace().broadcast(source, receivers, args);
+	}
+
+	/**
+	 * Gets a translator for the plugin which loaded the given class
+	 * @param clazz the class the translated strings belong to
+	 * @return the translator
+	 */
+	public static Translator getTranslator(Class<?> clazz) {
+		return getTranslator(clazz.getName());
+	}
+
+	private static Translator getTranslator(String clazz) {
+		Plugin plugin = clazz == null ? null : CommonClassLoader.getPlugin(clazz);
+		if (plugin == null) {
+			plugin = ((CommonPluginManager) Spout.getPluginManager()).getMetaPlugin();
+		}
+		PluginDictionary dictionary = plugin.getDictionary();
+		return dictionary == null ? null : new Translator(dictionary, clazz);
 	}
 	
-	private static Plugin getPluginForStacktrace() {
+	private static Translator getTranslatorForStacktrace() {
 		StackTraceElement[] trace = Thread.currentThread().getStackTrace();
 		boolean canSeePlugin = false;
+		String clazz = null;
 		for (int i = 0; i < trace.length; i++) {
-			String clazz = trace[i].getClassName();
-			foundClass = clazz;
+			clazz = trace[i].getClassName();
 			if (clazz.startsWith(LANG_PACKAGE)) {
 				// Skip all classes in the org.spout.api.lang package
 				canSeePlugin = true;
 				continue;
 			}
 			if (canSeePlugin) {
-				CommonPlugin plugin = CommonClassLoader.getPlugin(clazz);
-				if (plugin != null) {
-					return plugin;
-				} else {
-					return ((CommonPluginManager) Spout.getPluginManager()).getMetaPlugin();
-				}
+				break;
 			}
 		}
-		return ((CommonPluginManager) Spout.getPluginManager()).getMetaPlugin();
+		return getTranslator(clazz);
 	}
 	
 	/**
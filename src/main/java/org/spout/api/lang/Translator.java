@@ -0,0 +1,92 @@
+/*
+ * This file is part of SpoutAPI.
+ *
+ * Copyright (c) 2011-2012, Spout LLC <http://www.spout.org/>
+ * SpoutAPI is licensed under the Spout License Version 1.
+ *
+ * SpoutAPI is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * In addition, 180 days after any changes are published, you can use the
+ * software, incorporating those changes, under the terms of the MIT license,
+ * as described in the Spout License Version 1.
+ *
+ * SpoutAPI is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License,
+ * the MIT license and the Spout License Version 1 along with this program.
+ * If not, see <http://www.gnu.org/licenses/> for the GNU Lesser General Public
+ * License and see <http://spout.in/licensev1> for the full license, including
+ * the MIT license.
+ */
+package org.spout.api.lang;
+
+import org.spout.api.command.CommandSource;
+
+/**
+ * Translates strings using the dictionary of one plugin, on behalf of one class.<br/>
+ * Unlike the static methods in {@link Translation}, a translator does not inspect the stack to find the calling plugin and class,
+ * so it should be created once and kept by the class using it:
+ * <pre>private static final Translator translator = Translation.getTranslator(MyClass.class);
+ *...
+ *player.sendMessage(translator.tr("You've been teleported to %1", player, target));</pre>
+ */
+public final class Translator {
+	private final PluginDictionary dictionary;
+	private final String className;
+
+	public Translator(PluginDictionary dictionary, Class<?> clazz) {
+		this(dictionary, clazz.getName());
+	}
+
+	public Translator(PluginDictionary dictionary, String className) {
+		if (dictionary == null) {
+			throw new IllegalArgumentException("Dictionary cannot be null");
+		}
+		this.dictionary = dictionary;
+		this.className = className;
+	}
+
+	/**
+	 * Returns the translation of source into the receivers preferred language
+	 * @param source the string to translate
+	 * @param receiver the receiver who will see the message
+	 * @param args any object given will be inserted into the target string for each %0, %1 asf
+	 * @return the translation
+	 */
+	public String tr(String source, CommandSource receiver, Object... args) {
+		return dictionary.tr(source, receiver, className, args);
+	}
+
+	/**
+	 * Broadcasts the source string to all CommandSources given in receivers<br/>
+	 * Will translate the source string into each CommandSource's respective target language.
+	 * @param source the string to translate
+	 * @param receivers the receivers to send the message to
+	 * @param args any object given will be inserted into the target string for each %0, %1 asf
+	 */
+	public void broadcast(String source, CommandSource[] receivers, Object... args) {
+		dictionary.broadcast(source, receivers, className, args);
+	}
+
+	/**
+	 * Gets the dictionary used for translations
+	 * @return the dictionary
+	 */
+	public PluginDictionary getDictionary() {
+		return dictionary;
+	}
+
+	/**
+	 * Gets the name of the class the translated strings belong to
+	 * @return the class name
+	 */
+	public String getClassName() {
+		return className;
+	}
+}
@@ -156,6 +156,7 @@ public class BlockMaterial extends Material implements Placeable {
 	 */
 	public BlockMaterial setFriction(float slip) {
 		this.friction = slip;
+		MaterialRegistry.invalidateProperties();
 		return this;
 	}
 
@@ -176,6 +177,7 @@ public class BlockMaterial extends Material implements Placeable {
 	 */
 	public BlockMaterial setHardness(float hardness) {
 		this.hardness = hardness;
+		MaterialRegistry.invalidateProperties();
 		return this;
 	}
 
@@ -217,6 +219,7 @@ public class BlockMaterial extends Material implements Placeable {
 	 */
 	public BlockMaterial setOpacity(int level) {
 		this.opacity = (byte) MathHelper.clamp(level, 0, 15);
+		MaterialRegistry.invalidateProperties();
 		return this;
 	}
 
@@ -426,6 +429,7 @@ public class BlockMaterial extends Material implements Placeable {
 	 */
 	public BlockMaterial setOcclusion(short data, BlockFaces faces) {
 		this.getOcclusion(data).set(faces);
+		MaterialRegistry.invalidateProperties();
 		return this;
 	}
 
@@ -439,6 +443,7 @@ public class BlockMaterial extends Material implements Placeable {
 	 */
 	public BlockMaterial setOcclusion(short data, BlockFace face) {
 		this.getOcclusion(data).set(face);
+		MaterialRegistry.invalidateProperties();
 		return this;
 	}
 
@@ -460,6 +465,7 @@ public class BlockMaterial extends Material implements Placeable {
 	 */
 	public BlockMaterial setCollision(CollisionStrategy strategy) {
 		this.collision.setStrategy(strategy);
+		MaterialRegistry.invalidateProperties();
 		return this;
 	}
 
@@ -508,6 +514,7 @@ public class BlockMaterial extends Material implements Placeable {
 	public BlockMaterial setInvisible() {
 		this.invisible = true;
 		this.occlusion.set(BlockFaces.NONE);
+		MaterialRegistry.invalidateProperties();
 		return this;
 	}
 
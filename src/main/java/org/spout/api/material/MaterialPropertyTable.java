@@ -0,0 +1,312 @@
+/*
+ * This file is part of SpoutAPI.
+ *
+ * Copyright (c) 2011-2012, Spout LLC <http://www.spout.org/>
+ * SpoutAPI is licensed under the Spout License Version 1.
+ *
+ * SpoutAPI is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * In addition, 180 days after any changes are published, you can use the
+ * software, incorporating those changes, under the terms of the MIT license,
+ * as described in the Spout License Version 1.
+ *
+ * SpoutAPI is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License,
+ * the MIT license and the Spout License Version 1 along with this program.
+ * If not, see <http://www.gnu.org/licenses/> for the GNU Lesser General Public
+ * License and see <http://spout.in/licensev1> for the full license, including
+ * the MIT license.
+ */
+package org.spout.api.material;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.spout.api.material.block.BlockFullState;
+import org.spout.api.math.MathHelper;
+
+/**
+ * An immutable snapshot of the block properties of all registered materials,
+ * indexed by packed block state.<br>
+ * <br>
+ * The properties are stored in primitive arrays, so that lighting and
+ * collision code can scan the states of a chunk without dereferencing
+ * {@link Material} instances. Use {@link MaterialRegistry#getProperties()} to
+ * obtain the current table.<br>
+ * <br>
+ * The table captures the values returned by the {@link BlockMaterial}
+ * getters when it is built. Materials whose getters depend on other state
+ * must call {@link MaterialRegistry#invalidateProperties()} when that state
+ * changes.
+ */
+public final class MaterialPropertyTable {
+	/**
+	 * Flag set for solid blocks
+	 */
+	public static final byte SOLID = 0x1;
+	/**
+	 * Flag set for blocks which have collision
+	 */
+	public static final byte COLLISION = 0x2;
+	/**
+	 * Flag set for invisible blocks
+	 */
+	public static final byte INVISIBLE = 0x4;
+	/**
+	 * Flag set for blocks which act as a placement obstacle
+	 */
+	public static final byte PLACEMENT_OBSTACLE = 0x8;
+	private final int version;
+	private final int[] offsets = new int[1 << 16];
+	private final short[] masks = new short[1 << 16];
+	/**
+	 * The data bits which select no sub material, states with any of these bits use the root's entry
+	 */
+	private final short[] uncovered = new short[1 << 16];
+	private final byte[] opacity;
+	private final byte[] occlusion;
+	private final byte[] flags;
+	private final float[] friction;
+	private final float[] hardness;
+
+	MaterialPropertyTable(int version, AtomicReference<Material>[] materials) {
+		this.version = version;
+
+		// Index 0 describes ids without a registered block material
+		int size = 1;
+		for (int id = 0; id < materials.length; id++) {
+			Material material = materials[id].get();
+			if (material instanceof BlockMaterial) {
+				masks[id] = getMask(material);
+				offsets[id] = size;
+				size += (masks[id] & 0xFFFF) + 1;
+				if (material.hasSubMaterials()) {
+					// The root's entry follows the entries of the sub materials
+					uncovered[id] = (short) (material.getDataMask() & ~masks[id]);
+					size++;
+				}
+			}
+		}
+
+		opacity = new byte[size];
+		occlusion = new byte[size];
+		flags = new byte[size];
+		friction = new float[size];
+		hardness = new float[size];
+
+		for (int id = 0; id < materials.length; id++) {
+			int offset = offsets[id];
+			if (offset == 0) {
+				continue;
+			}
+			BlockMaterial root = (BlockMaterial) materials[id].get();
+			int mask = masks[id] & 0xFFFF;
+			int last = root.hasSubMaterials() ? mask + 1 : mask;
+			for (int data = 0; data <= last; data++) {
+				Material sub = data <= mask ? root.getSubMaterial((short) data) : root;
+				BlockMaterial material = sub instanceof BlockMaterial ? (BlockMaterial) sub : root;
+				int index = offset + data;
+				opacity[index] = material.getOpacity();
+				occlusion[index] = material.getOcclusion((short) data).get();
+				friction[index] = material.getFriction();
+				hardness[index] = material.getHardness();
+				byte f = 0;
+				if (material.isSolid()) {
+					f |= SOLID;
+				}
+				if (material.hasCollision()) {
+					f |= COLLISION;
+				}
+				if (material.isInvisible()) {
+					f |= INVISIBLE;
+				}
+				if (material.isPlacementObstacle()) {
+					f |= PLACEMENT_OBSTACLE;
+				}
+				flags[index] = f;
+			}
+		}
+	}
+
+	/**
+	 * Gets the smallest mask which covers the data of all sub materials
+	 */
+	private static short getMask(Material root) {
+		if (!root.hasSubMaterials()) {
+			return 0;
+		}
+		int max = getSubMaterialData(root);
+		return (short) ((MathHelper.roundUpPow2(max + 1) - 1) & root.getDataMask());
+	}
+
+	private static int getSubMaterialData(Material material) {
+		int data = 0;
+		for (Material sub : material.getSubMaterials()) {
+			data |= sub.getData() & 0xFFFF;
+			if (sub.hasSubMaterials()) {
+				data |= getSubMaterialData(sub);
+			}
+		}
+		return data;
+	}
+
+	int getVersion() {
+		return version;
+	}
+
+	/**
+	 * Gets the index of the properties of a packed block state. Data bits
+	 * outside of the data mask of the state's material are ignored, and data
+	 * which selects no sub material uses the properties of the material
+	 * itself, as {@link Material#getSubMaterial(short)} does.
+	 *
+	 * @param packedState the packed state, see {@link BlockFullState#getPacked(short, short)}
+	 * @return the index of the state's properties
+	 */
+	public int getIndex(int packedState) {
+		int id = packedState >>> 16;
+		int mask = masks[id] & 0xFFFF;
+		if ((packedState & uncovered[id]) != 0) {
+			return offsets[id] + mask + 1;
+		}
+		return offsets[id] + (packedState & mask);
+	}
+
+	/**
+	 * Gets the number of entries in this table
+	 *
+	 * @return the size
+	 */
+	public int size() {
+		return opacity.length;
+	}
+
+	/**
+	 * Gets the opacity of a block state, see {@link BlockMaterial#getOpacity()}
+	 *
+	 * @param packedState the packed state
+	 * @return the opacity
+	 */
+	public byte getOpacity(int packedState) {
+		return opacity[getIndex(packedState)];
+	}
+
+	/**
+	 * Gets the opacity at an index returned by {@link #getIndex(int)}
+	 *
+	 * @param index of the state
+	 * @return the opacity
+	 */
+	public byte getOpacityAt(int index) {
+		return opacity[index];
+	}
+
+	/**
+	 * Gets the occluded faces of a block state as a bitmask of
+	 * {@link org.spout.api.material.block.BlockFace} masks, see
+	 * {@link BlockMaterial#getOcclusion(short)}
+	 *
+	 * @param packedState the packed state
+	 * @return the occlusion mask
+	 */
+	public byte getOcclusion(int packedState) {
+		return occlusion[getIndex(packedState)];
+	}
+
+	/**
+	 * Gets the occlusion mask at an index returned by {@link #getIndex(int)}
+	 *
+	 * @param index of the state
+	 * @return the occlusion mask
+	 */
+	public byte getOcclusionAt(int index) {
+		return occlusion[index];
+	}
+
+	/**
+	 * Gets the flags of a block state, a combination of {@link #SOLID},
+	 * {@link #COLLISION}, {@link #INVISIBLE} and {@link #PLACEMENT_OBSTACLE}
+	 *
+	 * @param packedState the packed state
+	 * @return the flags
+	 */
+	public byte getFlags(int packedState) {
+		return flags[getIndex(packedState)];
+	}
+
+	/**
+	 * Gets the flags at an index returned by {@link #getIndex(int)}
+	 *
+	 * @param index of the state
+	 * @return the flags
+	 */
+	public byte getFlagsAt(int index) {
+		return flags[index];
+	}
+
+	/**
+	 * Gets if a block state is solid, see {@link BlockMaterial#isSolid()}
+	 *
+	 * @param packedState the packed state
+	 * @return true if solid
+	 */
+	public boolean isSolid(int packedState) {
+		return (flags[getIndex(packedState)] & SOLID) != 0;
+	}
+
+	/**
+	 * Gets if a block state has collision, see {@link BlockMaterial#hasCollision()}
+	 *
+	 * @param packedState the packed state
+	 * @return true if the block has collision
+	 */
+	public boolean hasCollision(int packedState) {
+		return (flags[getIndex(packedState)] & COLLISION) != 0;
+	}
+
+	/**
+	 * Gets the friction of a block state, see {@link BlockMaterial#getFriction()}
+	 *
+	 * @param packedState the packed state
+	 * @return the friction
+	 */
+	public float getFriction(int packedState) {
+		return friction[getIndex(packedState)];
+	}
+
+	/**
+	 * Gets the friction at an index returned by {@link #getIndex(int)}
+	 *
+	 * @param index of the state
+	 * @return the friction
+	 */
+	public float getFrictionAt(int index) {
+		return friction[index];
+	}
+
+	/**
+	 * Gets the hardness of a block state, see {@link BlockMaterial#getHardness()}
+	 *
+	 * @param packedState the packed state
+	 * @return the hardness
+	 */
+	public float getHardness(int packedState) {
+		return hardness[getIndex(packedState)];
+	}
+
+	/**
+	 * Gets the hardness at an index returned by {@link #getIndex(int)}
+	 *
+	 * @param index of the state
+	 * @return the hardness
+	 */
+	public float getHardnessAt(int index) {
+		return hardness[index];
+	}
+}
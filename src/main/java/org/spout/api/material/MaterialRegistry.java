@@ -29,6 +29,7 @@ package org.spout.api.material;
 import java.io.File;
 import java.util.HashSet;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicReference;
 
 import org.spout.api.Spout;
@@ -47,6 +48,9 @@ public abstract class MaterialRegistry {
 	@SuppressWarnings("unchecked")
 	private final static AtomicReference<Material>[] materialLookup = new AtomicReference[MAX_SIZE];
 	private static boolean setup = false;
+	private final static AtomicInteger propertiesVersion = new AtomicInteger();
+	private static volatile MaterialPropertyTable properties;
+	private final static Object propertiesLock = new Object();
 	private final static BinaryFileStore store = new BinaryFileStore();
 	private final static StringMap materialRegistry = new StringMap(null, store, 1, Short.MAX_VALUE, Material.class.getName());
 
@@ -88,6 +92,7 @@ public abstract class MaterialRegistry {
 		if (material.isSubMaterial()) {
 			material.getParentMaterial().registerSubMaterial(material);
 			nameLookup.put(formatName(material.getDisplayName()), material);
+			invalidateProperties();
 			return material.getParentMaterial().getId();
 		} else {
 			int id = materialRegistry.register(material.getName());
@@ -96,6 +101,7 @@ public abstract class MaterialRegistry {
 			}
 
 			nameLookup.put(formatName(material.getDisplayName()), material);
+			invalidateProperties();
 			return id;
 		}
 	}
@@ -113,6 +119,7 @@ public abstract class MaterialRegistry {
 		}
 
 		nameLookup.put(formatName(material.getName()), material);
+		invalidateProperties();
 		return id;
 	}
 
@@ -158,6 +165,40 @@ public abstract class MaterialRegistry {
 		return material.getSubMaterial(BlockFullState.getData(packedState));
 	}
 
+	/**
+	 * Gets the block property table for all registered materials.<br/>
+	 * 
+	 * The table is rebuilt on the first call after a material is registered or
+	 * {@link #invalidateProperties()} is called, and is immutable afterwards.
+	 * 
+	 * @return the current property table
+	 */
+	public static MaterialPropertyTable getProperties() {
+		int version = propertiesVersion.get();
+		MaterialPropertyTable table = properties;
+		if (table == null || table.getVersion() != version) {
+			// Only one thread builds the table, the others wait for it instead of building their own
+			synchronized (propertiesLock) {
+				version = propertiesVersion.get();
+				table = properties;
+				if (table == null || table.getVersion() != version) {
+					table = new MaterialPropertyTable(version, materialLookup);
+					properties = table;
+				}
+			}
+		}
+		return table;
+	}
+
+	/**
+	 * Marks the block property table as outdated, so it is rebuilt on the next call to {@link #getProperties()}.<br/>
+	 * 
+	 * This is called automatically when a material is registered or a block property setter is used.
+	 */
+	public static void invalidateProperties() {
+		propertiesVersion.incrementAndGet();
+	}
+
 	/**
 	 * Returns all current materials in the game
 	 *
@@ -33,6 +33,7 @@ import org.spout.api.event.Order;
 import org.spout.api.event.Result;
 import org.spout.api.event.server.permissions.PermissionGetAllWithNodeEvent;
 import org.spout.api.event.server.permissions.PermissionNodeEvent;
+import org.spout.api.event.server.permissions.PermissionsChangeEvent;
 import org.spout.api.exception.ConfigurationException;
 import org.spout.api.util.config.Configuration;
 import org.spout.api.util.config.ConfigurationHolder;
@@ -92,6 +93,7 @@ public class DefaultPermissions extends ConfigurationHolderConfiguration impleme
 		}
 		defaultPermissions.clear();
 		defaultPermissions.addAll(DEFAULTS.getStringList());
+		engine.getEventManager().callEvent(new PermissionsChangeEvent());
 	}
 
 	@EventHandler(order = Order.LATEST)
@@ -136,7 +138,9 @@ public class DefaultPermissions extends ConfigurationHolderConfiguration impleme
 	 * @param node The node to add
 	 */
 	public void addDefaultPermission(String node) {
-		pluginDefaultPermissions.add(node);
+		if (pluginDefaultPermissions.add(node)) {
+			engine.getEventManager().callEvent(new PermissionsChangeEvent(null, node));
+		}
 	}
 
 	/**
@@ -170,7 +174,10 @@ public class DefaultPermissions extends ConfigurationHolderConfiguration impleme
 				try {
 					save();
 				} catch (ConfigurationException ignore) {}
+			} else {
+				return;
 			}
 		}
+		engine.getEventManager().callEvent(new PermissionsChangeEvent(null, node));
 	}
 }
@@ -0,0 +1,324 @@
+/*
+ * This file is part of SpoutAPI.
+ *
+ * Copyright (c) 2011-2012, Spout LLC <http://www.spout.org/>
+ * SpoutAPI is licensed under the Spout License Version 1.
+ *
+ * SpoutAPI is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * In addition, 180 days after any changes are published, you can use the
+ * software, incorporating those changes, under the terms of the MIT license,
+ * as described in the Spout License Version 1.
+ *
+ * SpoutAPI is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License,
+ * the MIT license and the Spout License Version 1 along with this program.
+ * If not, see <http://www.gnu.org/licenses/> for the GNU Lesser General Public
+ * License and see <http://spout.in/licensev1> for the full license, including
+ * the MIT license.
+ */
+package org.spout.api.permissions;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.spout.api.Spout;
+import org.spout.api.event.EventHandler;
+import org.spout.api.event.EventManager;
+import org.spout.api.event.Listener;
+import org.spout.api.event.Order;
+import org.spout.api.event.Result;
+import org.spout.api.event.player.PlayerJoinEvent;
+import org.spout.api.event.player.PlayerLeaveEvent;
+import org.spout.api.event.server.permissions.PermissionGetAllWithNodeEvent;
+import org.spout.api.event.server.permissions.PermissionNodeEvent;
+import org.spout.api.event.server.permissions.PermissionsChangeEvent;
+import org.spout.api.event.server.plugin.PluginDisableEvent;
+import org.spout.api.event.server.plugin.PluginEnableEvent;
+import org.spout.api.geo.World;
+
+import com.google.common.collect.MapMaker;
+
+/**
+ * Caches the results of permission checks.<br>
+ * <br>
+ * A check which is not cached is resolved by calling a {@link PermissionNodeEvent}, later checks of the same
+ * subject, world and node are a map lookup.  The sets of subjects with a node, used for broadcasts, are resolved
+ * once with a {@link PermissionGetAllWithNodeEvent} and then kept up to date as subjects are checked, as players
+ * join and as players leave.<br>
+ * <br>
+ * Cached results are discarded when a {@link PermissionsChangeEvent} is called or a plugin is enabled or disabled.
+ * Results are held weakly by subject and world, so subjects which are no longer referenced elsewhere are released.
+ */
+public class PermissionCache implements Listener {
+	/**
+	 * The key used for checks without a world
+	 */
+	private static final Object GLOBAL = new Object();
+	private static volatile PermissionCache instance = null;
+	private final EventManager eventManager;
+	private final ConcurrentMap<PermissionsSubject, ConcurrentMap<Object, ConcurrentMap<String, Boolean>>> results = new MapMaker().weakKeys().makeMap();
+	private final ConcurrentMap<String, Set<PermissionsSubject>> receivers = new ConcurrentHashMap<String, Set<PermissionsSubject>>();
+	/**
+	 * Incremented on every invalidation, so results resolved during an invalidation are not cached
+	 */
+	private final AtomicInteger generation = new AtomicInteger(0);
+	private final AtomicLong hits = new AtomicLong(0);
+	private final AtomicLong misses = new AtomicLong(0);
+
+	public PermissionCache(EventManager eventManager) {
+		this.eventManager = eventManager;
+		eventManager.registerEvents(this, this);
+	}
+
+	/**
+	 * Gets the permission cache for the event manager of the current engine, which is created on first use
+	 *
+	 * @return the permission cache
+	 */
+	public static PermissionCache getInstance() {
+		EventManager events = Spout.getEventManager();
+		PermissionCache cache = instance;
+		if (cache != null && cache.eventManager == events) {
+			return cache;
+		}
+		synchronized (PermissionCache.class) {
+			if (instance == null || instance.eventManager != events) {
+				instance = new PermissionCache(events);
+			}
+			return instance;
+		}
+	}
+
+	/**
+	 * Gets whether a subject has a permission
+	 *
+	 * @param subject the subject
+	 * @param world the world, or null for a global check
+	 * @param node the node
+	 * @return true if the subject has the permission
+	 */
+	public boolean hasPermission(PermissionsSubject subject, World world, String node) {
+		ConcurrentMap<String, Boolean> nodes = getNodes(subject, world);
+		Boolean result = nodes.get(node);
+		if (result != null) {
+			hits.incrementAndGet();
+			return result;
+		}
+		misses.incrementAndGet();
+		int gen = generation.get();
+		result = eventManager.callEvent(new PermissionNodeEvent(world, subject, node)).getResult() == Result.ALLOW;
+		nodes.put(node, result);
+		if (world == null) {
+			updateReceivers(node, subject, result);
+		}
+		if (gen != generation.get()) {
+			nodes.remove(node);
+		}
+		return result;
+	}
+
+	/**
+	 * Gets all subjects with a node.  The returned set is not modified, a new set is created whenever
+	 * the subjects with the node change.
+	 *
+	 * @param node the node
+	 * @return the subjects with the node
+	 */
+	public Set<PermissionsSubject> getAllWithNode(String node) {
+		Set<PermissionsSubject> subjects = receivers.get(node);
+		if (subjects == null) {
+			int gen = generation.get();
+			subjects = eventManager.callEvent(new PermissionGetAllWithNodeEvent(node)).getAllowedReceivers();
+			if (gen == generation.get()) {
+				Set<PermissionsSubject> old = receivers.putIfAbsent(node, subjects);
+				if (old != null) {
+					subjects = old;
+				}
+			}
+		}
+		return subjects;
+	}
+
+	/**
+	 * Discards the cached results for a subject, for example when its groups change.  The subject is
+	 * checked again for each node with an up to date set of subjects.
+	 *
+	 * @param subject the subject
+	 */
+	public void invalidate(PermissionsSubject subject) {
+		generation.incrementAndGet();
+		results.remove(subject);
+		for (String node : receivers.keySet()) {
+			hasPermission(subject, null, node);
+		}
+	}
+
+	/**
+	 * Discards the cached results for a node.  Checks are resolved through the wildcard nodes above the checked node,
+	 * so a node ending in * discards the results of every node under its prefix.
+	 *
+	 * @param node the node
+	 */
+	public void invalidate(String node) {
+		if (!node.endsWith("*")) {
+			generation.incrementAndGet();
+			for (Map<Object, ConcurrentMap<String, Boolean>> worlds : results.values()) {
+				for (Map<String, Boolean> nodes : worlds.values()) {
+					nodes.remove(node);
+				}
+			}
+			receivers.remove(node);
+			return;
+		}
+		String prefix = node.substring(0, node.length() - 1);
+		if (prefix.indexOf('*') != -1) {
+			invalidateAll();
+			return;
+		}
+		generation.incrementAndGet();
+		for (Map<Object, ConcurrentMap<String, Boolean>> worlds : results.values()) {
+			for (Map<String, Boolean> nodes : worlds.values()) {
+				removePrefixed(nodes.keySet(), prefix);
+			}
+		}
+		removePrefixed(receivers.keySet(), prefix);
+	}
+
+	/**
+	 * Discards all cached results
+	 */
+	public void invalidateAll() {
+		generation.incrementAndGet();
+		results.clear();
+		receivers.clear();
+	}
+
+	/**
+	 * Removes a subject from the cache, for example when a player leaves
+	 *
+	 * @param subject the subject
+	 */
+	public void remove(PermissionsSubject subject) {
+		results.remove(subject);
+		for (String node : receivers.keySet()) {
+			updateReceivers(node, subject, false);
+		}
+	}
+
+	/**
+	 * Gets the number of checks answered from the cache
+	 *
+	 * @return the number of hits
+	 */
+	public long getHits() {
+		return hits.get();
+	}
+
+	/**
+	 * Gets the number of checks which were resolved by calling an event
+	 *
+	 * @return the number of misses
+	 */
+	public long getMisses() {
+		return misses.get();
+	}
+
+	@EventHandler(order = Order.MONITOR)
+	protected void onPermissionsChange(PermissionsChangeEvent event) {
+		if (event.getSubject() != null) {
+			invalidate(event.getSubject());
+		} else if (event.getNode() != null) {
+			invalidate(event.getNode());
+		} else {
+			invalidateAll();
+		}
+	}
+
+	@EventHandler(order = Order.MONITOR)
+	protected void onPlayerJoin(PlayerJoinEvent event) {
+		if (event.isCancelled()) {
+			return;
+		}
+		// Adds the player to the subject sets of the nodes it has
+		for (String node : receivers.keySet()) {
+			hasPermission(event.getPlayer(), null, node);
+		}
+	}
+
+	@EventHandler(order = Order.MONITOR)
+	protected void onPlayerLeave(PlayerLeaveEvent event) {
+		remove(event.getPlayer());
+	}
+
+	@EventHandler(order = Order.MONITOR)
+	protected void onPluginEnable(PluginEnableEvent event) {
+		invalidateAll();
+	}
+
+	@EventHandler(order = Order.MONITOR)
+	protected void onPluginDisable(PluginDisableEvent event) {
+		invalidateAll();
+	}
+
+	private ConcurrentMap<String, Boolean> getNodes(PermissionsSubject subject, World world) {
+		ConcurrentMap<Object, ConcurrentMap<String, Boolean>> worlds = results.get(subject);
+		if (worlds == null) {
+			worlds = new MapMaker().weakKeys().makeMap();
+			ConcurrentMap<Object, ConcurrentMap<String, Boolean>> old = results.putIfAbsent(subject, worlds);
+			if (old != null) {
+				worlds = old;
+			}
+		}
+		Object key = world == null ? GLOBAL : world;
+		ConcurrentMap<String, Boolean> nodes = worlds.get(key);
+		if (nodes == null) {
+			nodes = new ConcurrentHashMap<String, Boolean>();
+			ConcurrentMap<String, Boolean> old = worlds.putIfAbsent(key, nodes);
+			if (old != null) {
+				nodes = old;
+			}
+		}
+		return nodes;
+	}
+
+	private static void removePrefixed(Set<String> nodes, String prefix) {
+		for (Iterator<String> i = nodes.iterator(); i.hasNext();) {
+			if (i.next().startsWith(prefix)) {
+				i.remove();
+			}
+		}
+	}
+
+	private void updateReceivers(String node, PermissionsSubject subject, boolean hasNode) {
+		while (true) {
+			Set<PermissionsSubject> subjects = receivers.get(node);
+			if (subjects == null || subjects.contains(subject) == hasNode) {
+				return;
+			}
+			Set<PermissionsSubject> updated = new HashSet<PermissionsSubject>(subjects);
+			if (hasNode) {
+				updated.add(subject);
+			} else {
+				updated.remove(subject);
+			}
+			if (receivers.replace(node, subjects, Collections.unmodifiableSet(updated))) {
+				return;
+			}
+		}
+	}
+}
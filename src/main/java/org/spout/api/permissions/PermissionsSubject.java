@@ -31,7 +31,10 @@ import org.spout.api.geo.World;
 import org.spout.api.util.Named;
 
 /**
- * Interface for classes that can have permissions attached to them.
+ * Interface for classes that can have permissions attached to them.<br>
+ * <br>
+ * Implementations should answer {@link #hasPermission(World, String)} through {@link PermissionCache#hasPermission(PermissionsSubject, World, String)},
+ * so repeated checks do not call a {@link org.spout.api.event.server.permissions.PermissionNodeEvent}.
  */
 public interface PermissionsSubject extends DataSubject {
 	/**
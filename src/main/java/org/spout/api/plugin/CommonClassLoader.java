@@ -26,21 +26,47 @@
  */
 package org.spout.api.plugin;
 
+import java.io.File;
+import java.io.IOException;
+import java.net.URISyntaxException;
 import java.net.URL;
 import java.net.URLClassLoader;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
-import java.util.HashMap;
+import java.util.Enumeration;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
 
 public class CommonClassLoader extends URLClassLoader {
-	private final Map<String, Class<?>> classes = new HashMap<String, Class<?>>();
+	/**
+	 * The maximum number of class names kept in the negative lookup cache before it is flushed
+	 */
+	private static final int MAX_MISSES = 4096;
+	private final Map<String, Class<?>> classes = new ConcurrentHashMap<String, Class<?>>();
 	private final CommonPluginLoader loader;
-	private CommonPlugin plugin;
-	private static HashMap<String, CommonPlugin> pluginsForClassNames = new HashMap<String, CommonPlugin>(500);
-	private static Set<CommonClassLoader> loaders = new HashSet<CommonClassLoader>();
+	private volatile CommonPlugin plugin;
+	private static final ConcurrentMap<String, CommonPlugin> pluginsForClassNames = new ConcurrentHashMap<String, CommonPlugin>(500);
+	private static final Set<CommonClassLoader> loaders = new CopyOnWriteArraySet<CommonClassLoader>();
+	/**
+	 * Loaders which have a url that could not be indexed, these are searched for every package
+	 */
+	private static final Set<CommonClassLoader> unindexed = new CopyOnWriteArraySet<CommonClassLoader>();
+	private static final ConcurrentMap<String, Set<CommonClassLoader>> packages = new ConcurrentHashMap<String, Set<CommonClassLoader>>();
+	private static final ConcurrentMap<String, ScannedJar> scanned = new ConcurrentHashMap<String, ScannedJar>();
+	private static final Set<String> misses = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
 
 	public CommonClassLoader(final CommonPluginLoader loader, final ClassLoader parent) {
 		super(new URL[0], parent);
@@ -51,11 +77,31 @@ public class CommonClassLoader extends URLClassLoader {
 	@Override
 	protected void addURL(URL url) {
 		super.addURL(url);
+		ScannedJar jar = scanned.remove(url.toExternalForm());
+		Set<String> names = jar != null && jar.isCurrent() ? jar.names : scanPackages(url);
+		if (names == null) {
+			unindexed.add(this);
+		} else {
+			for (String name : names) {
+				Set<CommonClassLoader> set = packages.get(name);
+				if (set == null) {
+					set = new CopyOnWriteArraySet<CommonClassLoader>();
+					Set<CommonClassLoader> old = packages.putIfAbsent(name, set);
+					if (old != null) {
+						set = old;
+					}
+				}
+				set.add(this);
+			}
+		}
+		misses.clear();
 	}
 
 	protected void setPlugin(CommonPlugin plugin) {
 		this.plugin = plugin;
 		pluginsForClassNames.put(plugin.getClass().getName(), plugin);
+		// Lookups made while the plugin was loading did not search this loader
+		misses.clear();
 	}
 
 	protected CommonPlugin getPlugin() {
@@ -82,7 +128,10 @@ public class CommonClassLoader extends URLClassLoader {
 
 			if (result != null) {
 				classes.put(name, result);
-				pluginsForClassNames.put(name, plugin);
+				CommonPlugin plugin = this.plugin;
+				if (plugin != null) {
+					pluginsForClassNames.put(name, plugin);
+				}
 			} else {
 				throw new ClassNotFoundException(name);
 			}
@@ -114,12 +163,170 @@ public class CommonClassLoader extends URLClassLoader {
 	}
 	
 	public static Class<?> findPluginClass(String name) throws ClassNotFoundException {
-		for (CommonClassLoader loader : loaders) {
-			Class<?> clazz = loader.findClass(name);
-			if (clazz != null) {
-				return clazz;
+		if (!misses.contains(name)) {
+			for (CommonClassLoader loader : getLoaders(name)) {
+				try {
+					return loader.findClass(name, false);
+				} catch (ClassNotFoundException ignored) {
+				}
 			}
+			addMiss(name);
 		}
 		throw new ClassNotFoundException("Class " + name + " was unable to be found");
 	}
+
+	/**
+	 * Gets the loaders which may be able to define the given class, based on the packages contained in their jars.
+	 *
+	 * @param className of the class
+	 * @return the loaders to search, in no particular order
+	 */
+	protected static Collection<CommonClassLoader> getLoaders(String className) {
+		Set<CommonClassLoader> indexed = packages.get(getPackageName(className));
+		if (unindexed.isEmpty()) {
+			return indexed == null ? Collections.<CommonClassLoader>emptySet() : indexed;
+		}
+		List<CommonClassLoader> result = new ArrayList<CommonClassLoader>(unindexed);
+		if (indexed != null) {
+			result.addAll(indexed);
+		}
+		return result;
+	}
+
+	/**
+	 * Checks whether the given class was already searched for in all plugin loaders without being found.<br/>
+	 * The cache is cleared whenever a new url is added to any plugin loader, or a plugin finishes loading.
+	 *
+	 * @param className of the class
+	 * @return true if the class is known to be missing
+	 */
+	protected static boolean isMiss(String className) {
+		return misses.contains(className);
+	}
+
+	/**
+	 * Records a class that could not be found in any plugin loader
+	 *
+	 * @param className of the class
+	 */
+	protected static void addMiss(String className) {
+		if (misses.size() >= MAX_MISSES) {
+			misses.clear();
+		}
+		misses.add(className);
+	}
+
+	/**
+	 * Scans the given jar files in parallel, so that their package indexes are ready when the loaders for them are created.
+	 *
+	 * @param files to scan, files which are not jars are ignored
+	 */
+	public static void scanJars(Collection<File> files) {
+		List<Callable<Void>> tasks = new ArrayList<Callable<Void>>(files.size());
+		for (final File file : files) {
+			if (!file.isFile() || !file.getName().endsWith(".jar")) {
+				continue;
+			}
+			tasks.add(new Callable<Void>() {
+				@Override
+				public Void call() throws Exception {
+					URL url = file.toURI().toURL();
+					long modified = file.lastModified();
+					long length = file.length();
+					Set<String> names = scanPackages(url);
+					if (names != null) {
+						scanned.put(url.toExternalForm(), new ScannedJar(file, modified, length, names));
+					}
+					return null;
+				}
+			});
+		}
+		if (tasks.size() < 2) {
+			return;
+		}
+
+		ExecutorService executor = Executors.newFixedThreadPool(Math.min(tasks.size(), Runtime.getRuntime().availableProcessors()));
+		try {
+			for (Future<Void> future : executor.invokeAll(tasks)) {
+				try {
+					future.get();
+				} catch (ExecutionException ignored) {
+					// The jar is scanned again, and the error reported, when it is loaded
+				}
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	/**
+	 * Gets the names of all packages containing classes in the given jar url
+	 *
+	 * @param url of the jar
+	 * @return the package names, or null if the url is not a readable jar file
+	 */
+	protected static Set<String> scanPackages(URL url) {
+		if (!"file".equals(url.getProtocol()) || !url.getPath().endsWith(".jar")) {
+			return null;
+		}
+
+		JarFile jar = null;
+		try {
+			jar = new JarFile(new File(url.toURI()));
+			Set<String> result = new HashSet<String>();
+			Enumeration<JarEntry> entries = jar.entries();
+			while (entries.hasMoreElements()) {
+				String name = entries.nextElement().getName();
+				if (name.endsWith(".class")) {
+					int index = name.lastIndexOf('/');
+					result.add(index == -1 ? "" : name.substring(0, index).replace('/', '.'));
+				}
+			}
+			return result;
+		} catch (IOException e) {
+			return null;
+		} catch (URISyntaxException e) {
+			return null;
+		} catch (IllegalArgumentException e) {
+			return null;
+		} finally {
+			if (jar != null) {
+				try {
+					jar.close();
+				} catch (IOException ignored) {
+				}
+			}
+		}
+	}
+
+	private static String getPackageName(String className) {
+		int index = className.lastIndexOf('.');
+		return index == -1 ? "" : className.substring(0, index);
+	}
+
+	/**
+	 * The result of scanning a jar ahead of its loader being created
+	 */
+	private static class ScannedJar {
+		private final File file;
+		private final long modified;
+		private final long length;
+		private final Set<String> names;
+
+		public ScannedJar(File file, long modified, long length, Set<String> names) {
+			this.file = file;
+			this.modified = modified;
+			this.length = length;
+			this.names = names;
+		}
+
+		/**
+		 * Checks that the jar was not replaced, by an update for example, since it was scanned
+		 */
+		public boolean isCurrent() {
+			return file.lastModified() == modified && file.length() == length;
+		}
+	}
 }
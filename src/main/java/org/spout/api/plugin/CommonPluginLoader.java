@@ -43,6 +43,7 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.lang.reflect.Constructor;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
@@ -52,7 +53,7 @@ import java.util.jar.JarFile;
 import java.util.logging.Level;
 import java.util.regex.Pattern;
 
-public class CommonPluginLoader implements PluginLoader {
+public class CommonPluginLoader implements ConcurrentPluginLoader {
 	public static final String YAML_SPOUT = "properties.yml";
 	public static final String YAML_OTHER = "plugin.yml";
 
@@ -61,7 +62,7 @@ public class CommonPluginLoader implements PluginLoader {
 	private final CommonSecurityManager manager;
 	private final double key;
 	@SuppressWarnings("unchecked")
-	private final Map<String, CommonClassLoader> loaders = new CaseInsensitiveMap();
+	private final Map<String, CommonClassLoader> loaders = Collections.synchronizedMap(new CaseInsensitiveMap());
 
 	public CommonPluginLoader(final Engine engine, final CommonSecurityManager manager, final double key) {
 		this.engine = engine;
@@ -77,51 +78,56 @@ public class CommonPluginLoader implements PluginLoader {
 
 	@Override
 	@UnsafeMethod
-	public synchronized void enablePlugin(Plugin plugin) {
+	public void enablePlugin(Plugin plugin) {
 		if (!CommonPlugin.class.isAssignableFrom(plugin.getClass())) {
 			throw new IllegalArgumentException("Cannot enable plugin with this PluginLoader as it is of the wrong type!");
 		}
-		if (!plugin.isEnabled()) {
-			CommonPlugin cp = (CommonPlugin) plugin;
-			String name = cp.getDescription().getName();
+		// Different plugins may be enabled concurrently, see CommonPluginManager.enablePlugins
+		synchronized (plugin) {
+			if (!plugin.isEnabled()) {
+				CommonPlugin cp = (CommonPlugin) plugin;
+				String name = cp.getDescription().getName();
+
+				if (!loaders.containsKey(name)) {
+					loaders.put(name, (CommonClassLoader) cp.getClassLoader());
+				}
 
-			if (!loaders.containsKey(name)) {
-				loaders.put(name, (CommonClassLoader) cp.getClassLoader());
-			}
+				try {
+					cp.setEnabled(true);
+					cp.onEnable();
+				} catch (Throwable e) {
+					engine.getLogger().log(Level.SEVERE, "An error occured when enabling '" + plugin.getDescription().getFullName() + "': " + e.getMessage(), e);
+				}
 
-			try {
-				cp.setEnabled(true);
-				cp.onEnable();
-			} catch (Throwable e) {
-				engine.getLogger().log(Level.SEVERE, "An error occured when enabling '" + plugin.getDescription().getFullName() + "': " + e.getMessage(), e);
+				engine.getEventManager().callEvent(new PluginEnableEvent(cp));
 			}
-
-			engine.getEventManager().callEvent(new PluginEnableEvent(cp));
 		}
 	}
 
 	@Override
 	@UnsafeMethod
-	public synchronized void disablePlugin(Plugin paramPlugin) {
+	public void disablePlugin(Plugin paramPlugin) {
 		if (!CommonPlugin.class.isAssignableFrom(paramPlugin.getClass())) {
 			throw new IllegalArgumentException("Cannot disable plugin with this PluginLoader as it is of the wrong type!");
 		}
-		if (paramPlugin.isEnabled()) {
-			CommonPlugin cp = (CommonPlugin) paramPlugin;
-			String name = cp.getDescription().getName();
+		synchronized (paramPlugin) {
+			if (paramPlugin.isEnabled()) {
+				CommonPlugin cp = (CommonPlugin) paramPlugin;
+				String name = cp.getDescription().getName();
 
-			if (!loaders.containsKey(name)) {
-				loaders.put(name, (CommonClassLoader) cp.getClassLoader());
-			}
+				if (!loaders.containsKey(name)) {
+					loaders.put(name, (CommonClassLoader) cp.getClassLoader());
+				}
 
-			try {
-				cp.setEnabled(false);
-				cp.onDisable();
-			} catch (Throwable t) {
-				engine.getLogger().log(Level.SEVERE, "An error occurred when disabling plugin '" + paramPlugin.getDescription().getFullName() + "' : " + t.getMessage(), t);
-			}
+				try {
+					cp.setEnabled(false);
+					cp.onDisable();
+				} catch (Throwable t) {
+					engine.getLogger().log(Level.SEVERE, "An error occurred when disabling plugin '" + paramPlugin.getDescription().getFullName() + "' : " + t.getMessage(), t);
+				}
 
-			engine.getEventManager().callEvent(new PluginDisableEvent(cp));
+				engine.getEventManager().callEvent(new PluginDisableEvent(cp));
+			}
 		}
 	}
 
@@ -132,12 +138,14 @@ public class CommonPluginLoader implements PluginLoader {
 
 	@Override
 	public synchronized Plugin loadPlugin(File paramFile, boolean ignoresoftdepends) throws InvalidPluginException, UnknownDependencyException, InvalidDescriptionFileException {
+		return loadPlugin(paramFile, getDescription(paramFile), ignoresoftdepends);
+	}
+
+	@Override
+	public Plugin loadPlugin(File paramFile, PluginDescriptionFile desc, boolean ignoresoftdepends) throws InvalidPluginException, UnknownDependencyException {
 		CommonPlugin result;
-		PluginDescriptionFile desc;
 		CommonClassLoader loader;
 
-		desc = getDescription(paramFile);
-
 		File dataFolder = new File(paramFile.getParentFile(), desc.getName());
 
 		processDependencies(desc);
@@ -186,7 +194,7 @@ public class CommonPluginLoader implements PluginLoader {
 	 * @param description Plugin description element
 	 * @throws UnknownSoftDependencyException
 	 */
-	protected synchronized void processSoftDependencies(PluginDescriptionFile description) throws UnknownSoftDependencyException {
+	protected void processSoftDependencies(PluginDescriptionFile description) throws UnknownSoftDependencyException {
 		List<String> softdepend = description.getSoftDepends();
 		if (softdepend == null) {
 			softdepend = new ArrayList<String>();
@@ -206,7 +214,7 @@ public class CommonPluginLoader implements PluginLoader {
 	 * @param desc Plugin description element
 	 * @throws UnknownDependencyException
 	 */
-	protected synchronized void processDependencies(PluginDescriptionFile desc) throws UnknownDependencyException {
+	protected void processDependencies(PluginDescriptionFile desc) throws UnknownDependencyException {
 		List<String> depends = desc.getDepends();
 		if (depends == null) {
 			depends = new ArrayList<String>();
@@ -229,7 +237,8 @@ public class CommonPluginLoader implements PluginLoader {
 	 * @throws InvalidPluginException
 	 * @throws InvalidDescriptionFileException
 	 */
-	protected synchronized PluginDescriptionFile getDescription(File file) throws InvalidPluginException, InvalidDescriptionFileException {
+	@Override
+	public PluginDescriptionFile getDescription(File file) throws InvalidPluginException, InvalidDescriptionFileException {
 		if (!file.exists()) {
 			throw new InvalidPluginException(file.getName() + " does not exist!");
 		}
@@ -276,53 +285,60 @@ public class CommonPluginLoader implements PluginLoader {
 
 	protected Class<?> getClassByName(final String name, final CommonClassLoader commonLoader) {
 		CommonPlugin plugin = commonLoader.getPlugin();
-		Set<String> ignore = new HashSet<String>();
-		try {
-			ignore.add(plugin.getName());
-		} catch (NullPointerException nfe) {
+		if (plugin == null) {
 			Spout.getLogger().severe("Could not load " + name + ". Spout couldn't find the class, ask the developer to verify it exists");
 			return null;
 		}
+		if (CommonClassLoader.isMiss(name)) {
+			return null;
+		}
+		Set<CommonClassLoader> ignore = new HashSet<CommonClassLoader>();
+		ignore.add(commonLoader);
 
 		if (plugin.getDescription().getDepends() != null) {
 			for (String dependency : plugin.getDescription().getDepends()) {
-				try {
-					Class<?> clazz = loaders.get(dependency).findClass(name, false);
-					if (clazz != null) {
-						return clazz;
-					}
-				} catch (ClassNotFoundException ignored) {
+				Class<?> clazz = findClass(name, loaders.get(dependency), ignore);
+				if (clazz != null) {
+					return clazz;
 				}
-				ignore.add(dependency);
 			}
 		}
 
 		if (plugin.getDescription().getSoftDepends() != null) {
 			for (String softDependency : plugin.getDescription().getSoftDepends()) {
-				try {
-					Class<?> clazz = loaders.get(softDependency).findClass(name, false);
-					if (clazz != null) {
-						return clazz;
-					}
-				} catch (ClassNotFoundException ignored) {
+				Class<?> clazz = findClass(name, loaders.get(softDependency), ignore);
+				if (clazz != null) {
+					return clazz;
 				}
-				ignore.add(softDependency);
 			}
 		}
 
-		for (String current : loaders.keySet()) {
-			if (ignore.contains(current)) {
+		boolean searchedAll = true;
+		for (CommonClassLoader loader : CommonClassLoader.getLoaders(name)) {
+			if (loader.getPlugin() == null) {
+				// The plugin is still being loaded, its classes may be found later
+				searchedAll = false;
 				continue;
 			}
-			CommonClassLoader loader = loaders.get(current);
-			try {
-				Class<?> clazz = loader.findClass(name, false);
-				if (clazz != null) {
-					return clazz;
-				}
-			} catch (ClassNotFoundException ignored) {
+			Class<?> clazz = findClass(name, loader, ignore);
+			if (clazz != null) {
+				return clazz;
 			}
 		}
+		if (searchedAll) {
+			CommonClassLoader.addMiss(name);
+		}
 		return null;
 	}
+
+	private static Class<?> findClass(String name, CommonClassLoader loader, Set<CommonClassLoader> ignore) {
+		if (loader == null || !ignore.add(loader)) {
+			return null;
+		}
+		try {
+			return loader.findClass(name, false);
+		} catch (ClassNotFoundException ignored) {
+			return null;
+		}
+	}
 }
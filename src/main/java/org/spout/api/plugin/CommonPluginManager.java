@@ -28,27 +28,40 @@ package org.spout.api.plugin;
 
 import org.apache.commons.io.FileUtils;
 import org.spout.api.Engine;
+import org.spout.api.component.BaseComponentHolder;
 import org.spout.api.event.HandlerList;
 import org.spout.api.exception.InvalidDescriptionFileException;
 import org.spout.api.exception.InvalidPluginException;
 import org.spout.api.exception.UnknownDependencyException;
 import org.spout.api.meta.SpoutMetaPlugin;
 import org.spout.api.plugin.security.CommonSecurityManager;
+import org.spout.api.util.config.annotated.AnnotatedConfiguration;
+import org.spout.api.util.config.serialization.Serialization;
 
 import java.io.File;
 import java.io.IOException;
 import java.lang.reflect.Constructor;
 import java.util.ArrayList;
-import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.logging.Level;
-import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 public class CommonPluginManager implements PluginManager {
@@ -56,10 +69,12 @@ public class CommonPluginManager implements PluginManager {
 	private final CommonSecurityManager manager;
 	private final double key;
 	private final SpoutMetaPlugin metaPlugin;
-	private final Map<Pattern, PluginLoader> loaders = new HashMap<Pattern, PluginLoader>();
-	private final Map<String, Plugin> names = new HashMap<String, Plugin>();
-	private final List<Plugin> plugins = new ArrayList<Plugin>();
-	private File updateDir;
+	private final Map<Pattern, PluginLoader> loaders = new ConcurrentHashMap<Pattern, PluginLoader>();
+	private final Map<String, Plugin> names = Collections.synchronizedMap(new HashMap<String, Plugin>());
+	private final List<Plugin> plugins = new CopyOnWriteArrayList<Plugin>();
+	private final Map<String, Long> loadTimes = new ConcurrentHashMap<String, Long>();
+	private final Map<String, Long> enableTimes = new ConcurrentHashMap<String, Long>();
+	private volatile File updateDir;
 
 	public CommonPluginManager(final Engine engine, final CommonSecurityManager manager, final double key) {
 		this.engine = engine;
@@ -102,10 +117,29 @@ public class CommonPluginManager implements PluginManager {
 
 	public synchronized Plugin loadPlugin(File paramFile, boolean ignoreSoftDependencies) throws InvalidPluginException, InvalidDescriptionFileException, UnknownDependencyException {
 		boolean locked = manager.lock(key);
-		File update = null;
 
+		applyUpdate(paramFile);
+
+		Plugin result = null;
+		PluginLoader loader = getLoader(paramFile);
+		if (loader != null) {
+			long start = System.nanoTime();
+			result = loader.loadPlugin(paramFile, ignoreSoftDependencies);
+			if (result != null) {
+				addPlugin(result, System.nanoTime() - start);
+			}
+		}
+
+		if (locked) {
+			manager.unlock(key);
+		}
+		return result;
+	}
+
+	private void applyUpdate(File paramFile) {
+		File updateDir = this.updateDir;
 		if (updateDir != null && updateDir.isDirectory()) {
-			update = new File(updateDir, paramFile.getName());
+			File update = new File(updateDir, paramFile.getName());
 			if (update.exists() && update.isFile()) {
 				try {
 					FileUtils.copyFile(update, paramFile);
@@ -115,35 +149,34 @@ public class CommonPluginManager implements PluginManager {
 				update.delete();
 			}
 		}
+	}
 
-		Set<Pattern> patterns = loaders.keySet();
-		Plugin result = null;
-
-		for (Pattern pattern : patterns) {
-			String name = paramFile.getName();
-			Matcher m = pattern.matcher(name);
-
-			if (m.find()) {
-				PluginLoader loader = loaders.get(pattern);
-				result = loader.loadPlugin(paramFile, ignoreSoftDependencies);
-
-				if (result != null) {
-					break;
-				}
+	private PluginLoader getLoader(File paramFile) {
+		String name = paramFile.getName();
+		for (Map.Entry<Pattern, PluginLoader> entry : loaders.entrySet()) {
+			if (entry.getKey().matcher(name).find()) {
+				return entry.getValue();
 			}
 		}
+		return null;
+	}
 
-		if (result != null) {
-			plugins.add(result);
-			names.put(result.getDescription().getName(), result);
-		}
-
-		if (locked) {
-			manager.unlock(key);
-		}
-		return result;
+	private void addPlugin(Plugin plugin, long loadTime) {
+		plugins.add(plugin);
+		names.put(plugin.getDescription().getName(), plugin);
+		loadTimes.put(plugin.getDescription().getName(), loadTime);
 	}
 
+	/**
+	 * Loads all plugins in a directory.<br/>
+	 * The descriptions of plugins with a {@link ConcurrentPluginLoader} are read in parallel, after which each plugin
+	 * is loaded as soon as all plugins it depends or soft depends on have been loaded. Plugins marked as threadsafe in
+	 * their description are loaded on a bounded pool, other plugins are loaded one at a time on the calling thread.<br/>
+	 * Plugins of other loaders, and plugins whose dependencies were not loaded, are then loaded one at a time.
+	 *
+	 * @param paramFile the directory
+	 * @return plugins loaded, in the order they finished loading
+	 */
 	@Override
 	public synchronized List<Plugin> loadPlugins(File paramFile) {
 		if (!paramFile.isDirectory()) {
@@ -156,37 +189,138 @@ public class CommonPluginManager implements PluginManager {
 
 		loadMetaPlugin();
 
-		List<Plugin> result = new ArrayList<Plugin>();
-		LinkedList<File> files = new LinkedList<File>(Arrays.asList(paramFile.listFiles()));
+		final File directory = paramFile;
+		List<File> files = new ArrayList<File>();
+		for (File file : paramFile.listFiles()) {
+			if (!file.isDirectory()) {
+				files.add(file);
+			}
+		}
+		CommonClassLoader.scanJars(files);
+
+		final List<Plugin> result = Collections.synchronizedList(new ArrayList<Plugin>());
+		final List<File> sequential = Collections.synchronizedList(new ArrayList<File>());
+		boolean locked = manager.lock(key);
+		ExecutorService executor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+		try {
+			List<PluginNode> nodes = readDescriptions(directory, files, sequential, executor);
+			schedule(nodes, executor, new PluginTask() {
+				@Override
+				public void run(PluginNode node) {
+					long start = System.nanoTime();
+					Plugin plugin = null;
+					try {
+						// Soft dependencies are already ordered by the scheduler
+						plugin = node.loader.loadPlugin(node.file, node.description, true);
+					} catch (UnknownDependencyException e) {
+						// The dependency may be a plugin of another loader, so it is retried with those plugins
+						sequential.add(node.file);
+					} catch (InvalidPluginException e) {
+						logLoadError(directory, node.file, e);
+					}
+					if (plugin != null) {
+						addPlugin(plugin, System.nanoTime() - start);
+						result.add(plugin);
+					}
+				}
+			});
+			loadSequentially(directory, sequential, result);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} finally {
+			executor.shutdown();
+			if (!locked) {
+				manager.unlock(key);
+			}
+		}
+
+		return Collections.unmodifiableList(new ArrayList<Plugin>(result));
+	}
+
+	private List<PluginNode> readDescriptions(final File directory, List<File> files, final List<File> sequential, ExecutorService executor) throws InterruptedException {
+		List<Callable<PluginNode>> tasks = new ArrayList<Callable<PluginNode>>(files.size());
+		for (final File file : files) {
+			tasks.add(new Callable<PluginNode>() {
+				@Override
+				public PluginNode call() {
+					applyUpdate(file);
+					PluginLoader loader = getLoader(file);
+					if (loader == null) {
+						return null;
+					} else if (!(loader instanceof ConcurrentPluginLoader)) {
+						sequential.add(file);
+						return null;
+					}
+					try {
+						return new PluginNode(file, (ConcurrentPluginLoader) loader, ((ConcurrentPluginLoader) loader).getDescription(file));
+					} catch (InvalidPluginException e) {
+						logLoadError(directory, file, e);
+					} catch (InvalidDescriptionFileException e) {
+						logLoadError(directory, file, e);
+					}
+					return null;
+				}
+			});
+		}
+
+		List<PluginNode> result = new ArrayList<PluginNode>(files.size());
+		Set<String> read = new HashSet<String>();
+		for (Future<PluginNode> future : executor.invokeAll(tasks)) {
+			PluginNode node = getResult(future);
+			if (node == null) {
+				continue;
+			}
+			if (!read.add(node.getName()) || names.containsKey(node.description.getName())) {
+				safelyLog(Level.SEVERE, "Unable to load '" + node.file.getName() + "' in directory '" + directory.getPath() + "': a plugin named '" + node.description.getName() + "' is already loaded", null);
+				continue;
+			}
+			result.add(node);
+		}
+		return result;
+	}
+
+	private void logLoadError(File directory, File file, Exception e) {
+		safelyLog(Level.SEVERE, new StringBuilder().append("Unable to load '").append(file.getName()).append("' in directory '").append(directory.getPath()).append("': ").append(e.getMessage()).toString(), e);
+	}
+
+	/**
+	 * Loads the files one at a time, in passes, until a pass loads no plugin. The last pass ignores soft dependencies.
+	 *
+	 * @param directory the files are in
+	 * @param files to load
+	 * @param result to add the loaded plugins to
+	 */
+	private void loadSequentially(File directory, List<File> files, List<Plugin> result) {
+		LinkedList<File> remaining = new LinkedList<File>(files);
 		boolean failed = false;
 		boolean lastPass = false;
 
-		while (!failed || lastPass) {
+		while (!remaining.isEmpty() && (!failed || lastPass)) {
 			failed = true;
-			Iterator<File> iterator = files.iterator();
+			Iterator<File> iterator = remaining.iterator();
 
 			while (iterator.hasNext()) {
 				File file = iterator.next();
+				PluginLoader loader = getLoader(file);
 				Plugin plugin = null;
 
-				if (file.isDirectory()) {
-					iterator.remove();
-					continue;
-				}
-
 				try {
-					plugin = loadPlugin(file, lastPass);
+					long start = System.nanoTime();
+					plugin = loader.loadPlugin(file, lastPass);
+					if (plugin != null) {
+						addPlugin(plugin, System.nanoTime() - start);
+					}
 					iterator.remove();
 				} catch (UnknownDependencyException e) {
 					if (lastPass) {
-						safelyLog(Level.SEVERE, new StringBuilder().append("Unable to load '").append(file.getName()).append("' in directory '").append(paramFile.getPath()).append("': ").append(e.getMessage()).toString(), e);
+						logLoadError(directory, file, e);
 						iterator.remove();
 					}
 				} catch (InvalidDescriptionFileException e) {
-					safelyLog(Level.SEVERE, new StringBuilder().append("Unable to load '").append(file.getName()).append("' in directory '").append(paramFile.getPath()).append("': ").append(e.getMessage()).toString(), e);
+					logLoadError(directory, file, e);
 					iterator.remove();
 				} catch (InvalidPluginException e) {
-					safelyLog(Level.SEVERE, new StringBuilder().append("Unable to load '").append(file.getName()).append("' in directory '").append(paramFile.getPath()).append("': ").append(e.getMessage()).toString(), e);
+					logLoadError(directory, file, e);
 					iterator.remove();
 				}
 
@@ -202,8 +336,163 @@ public class CommonPluginManager implements PluginManager {
 				lastPass = true;
 			}
 		}
+	}
 
-		return Collections.unmodifiableList(result);
+	/**
+	 * Enables all loaded plugins with the load order.<br/>
+	 * Each plugin is enabled once all plugins it depends or soft depends on have been enabled. Plugins marked as
+	 * threadsafe in their description are enabled on a bounded pool, other plugins are enabled one at a time on the
+	 * calling thread.
+	 *
+	 * @param order the load order of the plugins to enable, or null to enable all plugins
+	 */
+	public void enablePlugins(LoadOrder order) {
+		List<PluginNode> nodes = new ArrayList<PluginNode>();
+		for (Plugin plugin : plugins) {
+			if (plugin != metaPlugin && !plugin.isEnabled() && (order == null || order == plugin.getDescription().getLoad())) {
+				nodes.add(new PluginNode(plugin));
+			}
+		}
+		if (nodes.isEmpty()) {
+			return;
+		}
+
+		boolean locked = manager.lock(key);
+		ExecutorService executor = Executors.newFixedThreadPool(Math.min(nodes.size(), Runtime.getRuntime().availableProcessors()));
+		try {
+			schedule(nodes, executor, new PluginTask() {
+				@Override
+				public void run(PluginNode node) {
+					enablePlugin(node.plugin);
+				}
+			});
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} finally {
+			executor.shutdown();
+			if (!locked) {
+				manager.unlock(key);
+			}
+		}
+	}
+
+	/**
+	 * Runs the task for each node, once the task has completed for all the nodes it depends or soft depends on.<br/>
+	 * Threadsafe nodes are run on the executor, other nodes are run one at a time on the calling thread.<br/>
+	 * If the remaining nodes depend on each other, a node with only soft dependencies left is run first. If there is
+	 * none, a node is run regardless of its dependencies and is expected to fail.
+	 *
+	 * @param nodes to run the task for
+	 * @param executor to run the tasks on
+	 * @param task to run
+	 * @throws InterruptedException if interrupted while waiting for a task
+	 */
+	private void schedule(Collection<PluginNode> nodes, ExecutorService executor, final PluginTask task) throws InterruptedException {
+		Map<String, PluginNode> byName = new HashMap<String, PluginNode>();
+		for (PluginNode node : nodes) {
+			byName.put(node.getName(), node);
+		}
+		for (PluginNode node : nodes) {
+			node.link(byName, node.description.getDepends(), true);
+			node.link(byName, node.description.getSoftDepends(), false);
+		}
+
+		CompletionService<PluginNode> completion = new ExecutorCompletionService<PluginNode>(executor);
+		Set<PluginNode> remaining = new LinkedHashSet<PluginNode>(nodes);
+		LinkedList<PluginNode> serial = new LinkedList<PluginNode>();
+		int running = 0;
+		while (!remaining.isEmpty() || !serial.isEmpty() || running > 0) {
+			Iterator<PluginNode> i = remaining.iterator();
+			while (i.hasNext()) {
+				final PluginNode node = i.next();
+				if (!node.waiting.isEmpty()) {
+					continue;
+				}
+				i.remove();
+				if (!node.description.isThreadsafe()) {
+					serial.add(node);
+					continue;
+				}
+				running++;
+				completion.submit(new Callable<PluginNode>() {
+					@Override
+					public PluginNode call() {
+						run(task, node);
+						return node;
+					}
+				});
+			}
+
+			Future<PluginNode> finished;
+			while ((finished = completion.poll()) != null) {
+				running--;
+				complete(getResult(finished));
+			}
+
+			if (!serial.isEmpty()) {
+				PluginNode node = serial.removeFirst();
+				run(task, node);
+				complete(node);
+			} else if (running > 0) {
+				running--;
+				complete(getResult(completion.take()));
+			} else if (!remaining.isEmpty()) {
+				PluginNode next = remaining.iterator().next();
+				for (PluginNode node : remaining) {
+					if (node.waitingHard == 0) {
+						next = node;
+						break;
+					}
+				}
+				next.waiting.clear();
+			}
+		}
+	}
+
+	private void run(PluginTask task, PluginNode node) {
+		try {
+			task.run(node);
+		} catch (Throwable t) {
+			safelyLog(Level.SEVERE, "An error occurred while processing plugin '" + node.description.getFullName() + "': " + t.getMessage(), t);
+		}
+	}
+
+	private static void complete(PluginNode done) {
+		for (PluginNode dependent : done.dependents) {
+			if (dependent.waiting.remove(done) && dependent.hard.contains(done)) {
+				dependent.waitingHard--;
+			}
+		}
+	}
+
+	private static <T> T getResult(Future<T> future) throws InterruptedException {
+		try {
+			return future.get();
+		} catch (ExecutionException e) {
+			throw new IllegalStateException("Plugin task failed", e.getCause());
+		}
+	}
+
+	/**
+	 * Gets the time it took to load the plugin
+	 *
+	 * @param plugin name
+	 * @return the load time in nanoseconds, or -1 if the plugin was not loaded by this manager
+	 */
+	public long getLoadTime(String plugin) {
+		Long time = loadTimes.get(plugin);
+		return time == null ? -1 : time;
+	}
+
+	/**
+	 * Gets the time it took to enable the plugin, the last time it was enabled
+	 *
+	 * @param plugin name
+	 * @return the enable time in nanoseconds, or -1 if the plugin was never enabled by this manager
+	 */
+	public long getEnableTime(String plugin) {
+		Long time = enableTimes.get(plugin);
+		return time == null ? -1 : time;
 	}
 
 	@Override
@@ -233,11 +522,13 @@ public class CommonPluginManager implements PluginManager {
 		if (!plugin.isEnabled()) {
 			boolean locked = manager.lock(key);
 
+			long start = System.nanoTime();
 			try {
 				plugin.getPluginLoader().enablePlugin(plugin);
 			} catch (Exception e) {
 				safelyLog(Level.SEVERE, "An error occurred in the Plugin Loader while enabling plugin '" + plugin.getDescription().getFullName() + "': " + e.getMessage(), e);
 			}
+			enableTimes.put(plugin.getDescription().getName(), System.nanoTime() - start);
 
 			if (!locked) {
 				manager.unlock(key);
@@ -258,6 +549,9 @@ public class CommonPluginManager implements PluginManager {
 				HandlerList.unregisterAll(plugin);
 				engine.getServiceManager().unregisterAll(plugin);
 				engine.getRootCommand().removeChildren(plugin);
+				BaseComponentHolder.clearHierarchyCache();
+				AnnotatedConfiguration.clearBindingCache();
+				Serialization.clearCaches();
 			} catch (Exception e) {
 				safelyLog(Level.SEVERE, "An error occurred in the Plugin Loader while disabling plugin '" + plugin.getDescription().getFullName() + "': " + e.getMessage(), e);
 			}
@@ -288,4 +582,57 @@ public class CommonPluginManager implements PluginManager {
 	public SpoutMetaPlugin getMetaPlugin() {
 		return metaPlugin;
 	}
+
+	private static interface PluginTask {
+		public void run(PluginNode node);
+	}
+
+	/**
+	 * A plugin in the dependency graph built by {@link CommonPluginManager#schedule}
+	 */
+	private static class PluginNode {
+		private final File file;
+		private final ConcurrentPluginLoader loader;
+		private final Plugin plugin;
+		private final PluginDescriptionFile description;
+		private final Set<PluginNode> waiting = new HashSet<PluginNode>();
+		private final Set<PluginNode> hard = new HashSet<PluginNode>();
+		private final List<PluginNode> dependents = new ArrayList<PluginNode>();
+		private int waitingHard;
+
+		public PluginNode(File file, ConcurrentPluginLoader loader, PluginDescriptionFile description) {
+			this.file = file;
+			this.loader = loader;
+			this.plugin = null;
+			this.description = description;
+		}
+
+		public PluginNode(Plugin plugin) {
+			this.file = null;
+			this.loader = null;
+			this.plugin = plugin;
+			this.description = plugin.getDescription();
+		}
+
+		public String getName() {
+			return description.getName().toLowerCase();
+		}
+
+		public void link(Map<String, PluginNode> nodes, List<String> dependencies, boolean required) {
+			if (dependencies == null) {
+				return;
+			}
+			for (String dependency : dependencies) {
+				PluginNode node = nodes.get(dependency.toLowerCase());
+				if (node == null || node == this || !waiting.add(node)) {
+					continue;
+				}
+				node.dependents.add(this);
+				if (required) {
+					hard.add(node);
+					waitingHard++;
+				}
+			}
+		}
+	}
 }
@@ -0,0 +1,65 @@
+/*
+ * This file is part of SpoutAPI.
+ *
+ * Copyright (c) 2011-2012, Spout LLC <http://www.spout.org/>
+ * SpoutAPI is licensed under the Spout License Version 1.
+ *
+ * SpoutAPI is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * In addition, 180 days after any changes are published, you can use the
+ * software, incorporating those changes, under the terms of the MIT license,
+ * as described in the Spout License Version 1.
+ *
+ * SpoutAPI is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License,
+ * the MIT license and the Spout License Version 1 along with this program.
+ * If not, see <http://www.gnu.org/licenses/> for the GNU Lesser General Public
+ * License and see <http://spout.in/licensev1> for the full license, including
+ * the MIT license.
+ */
+package org.spout.api.plugin;
+
+import java.io.File;
+
+import org.spout.api.exception.InvalidDescriptionFileException;
+import org.spout.api.exception.InvalidPluginException;
+import org.spout.api.exception.UnknownDependencyException;
+
+/**
+ * A {@link PluginLoader} which can read the description of a plugin without loading it.<br/>
+ * {@link CommonPluginManager} reads the descriptions of these plugins ahead of loading them, so it can load them in
+ * dependency order and load threadsafe plugins concurrently. Plugins of other loaders are loaded one at a time.<br/>
+ * <br/>
+ * Both methods of this interface may be called from several threads at once, for different files. Enabling and
+ * disabling may also be called from several threads at once, for different plugins.
+ */
+public interface ConcurrentPluginLoader extends PluginLoader {
+	/**
+	 * Loads the file as a plugin, using a description previously read by {@link #getDescription(File)}
+	 *
+	 * @param file
+	 * @param description of the plugin
+	 * @param ignoreSoftDependencies ignores soft dependencies when it attempts to load the plugin
+	 * @return instance of the plugin
+	 * @throws InvalidPluginException
+	 * @throws UnknownDependencyException
+	 */
+	public abstract Plugin loadPlugin(File file, PluginDescriptionFile description, boolean ignoreSoftDependencies) throws InvalidPluginException, UnknownDependencyException;
+
+	/**
+	 * Reads the description of the plugin in the file, without loading it
+	 *
+	 * @param file
+	 * @return the plugin's description
+	 * @throws InvalidPluginException
+	 * @throws InvalidDescriptionFileException
+	 */
+	public abstract PluginDescriptionFile getDescription(File file) throws InvalidPluginException, InvalidDescriptionFileException;
+}
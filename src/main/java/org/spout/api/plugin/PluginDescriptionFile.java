@@ -56,6 +56,7 @@ public class PluginDescriptionFile {
 	private List<String> authors = new ArrayList<String>();
 	private String website;
 	private boolean reload;
+	private boolean threadsafe;
 	private Platform platform;
 	private LoadOrder load;
 	private String main;
@@ -135,6 +136,10 @@ public class PluginDescriptionFile {
 			reload = getEntry("reload", Boolean.class, map);
 		}
 
+		if (map.containsKey("threadsafe")) {
+			threadsafe = getEntry("threadsafe", Boolean.class, map);
+		}
+
 		if (map.containsKey("website")) {
 			website = getEntry("website", String.class, map);
 		}
@@ -234,6 +239,15 @@ public class PluginDescriptionFile {
 		return reload;
 	}
 
+	/**
+	 * Returns true if the plugin can be loaded on another thread, at the same time as other plugins
+	 *
+	 * @return threadsafe
+	 */
+	public boolean isThreadsafe() {
+		return threadsafe;
+	}
+
 	/**
 	 * Returns the plugin's platform
 	 *
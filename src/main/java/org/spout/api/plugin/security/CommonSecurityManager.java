@@ -28,7 +28,7 @@ package org.spout.api.plugin.security;
 
 public class CommonSecurityManager extends SecurityManager implements Secure {
 	private final double key;
-	private boolean locked = false;
+	private volatile boolean locked = false;
 
 	public CommonSecurityManager(final double key) {
 		this.key = key;
@@ -0,0 +1,356 @@
+/*
+ * This file is part of SpoutAPI.
+ *
+ * Copyright (c) 2011-2012, Spout LLC <http://www.spout.org/>
+ * SpoutAPI is licensed under the Spout License Version 1.
+ *
+ * SpoutAPI is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * In addition, 180 days after any changes are published, you can use the
+ * software, incorporating those changes, under the terms of the MIT license,
+ * as described in the Spout License Version 1.
+ *
+ * SpoutAPI is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License,
+ * the MIT license and the Spout License Version 1 along with this program.
+ * If not, see <http://www.gnu.org/licenses/> for the GNU Lesser General Public
+ * License and see <http://spout.in/licensev1> for the full license, including
+ * the MIT license.
+ */
+package org.spout.api.protocol;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.spout.api.event.EventHandler;
+import org.spout.api.event.Listener;
+import org.spout.api.event.Order;
+import org.spout.api.event.chunk.ChunkUnloadEvent;
+import org.spout.api.event.world.WorldUnloadEvent;
+import org.spout.api.geo.World;
+import org.spout.api.geo.cuboid.Chunk;
+
+/**
+ * A cache of the messages used to send chunks to players.<br>
+ * <br>
+ * When many players need the same chunk, it only has to be serialized and compressed once.  The messages
+ * are stored as {@link SharedMessage}s, so they are also only encoded once per protocol.<br>
+ * <br>
+ * Entries are keyed by world, chunk coordinates and protocol and are only returned while the version of the
+ * chunk matches the version the messages were created for.  No reference to the chunk is kept, the entries of
+ * a chunk are removed when it is unloaded, since the version of a reloaded chunk starts again.  The cache holds
+ * at most a fixed number of bytes, based on the sizes given when messages are added, and the least recently
+ * used entries are evicted first.<br>
+ * <br>
+ * The entries are also indexed by world and chunk coordinates, so the entries of a chunk or world are found
+ * without scanning the cache.
+ */
+public class ChunkMessageCache implements Listener {
+	private final long maxSize;
+	private final LinkedHashMap<Key, Entry> entries = new LinkedHashMap<Key, Entry>(16, 0.75F, true);
+	private final HashMap<UUID, HashMap<ChunkKey, List<Key>>> index = new HashMap<UUID, HashMap<ChunkKey, List<Key>>>();
+	private final AtomicLong hits = new AtomicLong(0);
+	private final AtomicLong misses = new AtomicLong(0);
+	private final AtomicLong evictions = new AtomicLong(0);
+	private long size = 0;
+
+	/**
+	 * Creates a chunk message cache
+	 *
+	 * @param maxSize the maximum size of the cached messages, in bytes
+	 */
+	public ChunkMessageCache(long maxSize) {
+		this.maxSize = maxSize;
+	}
+
+	/**
+	 * Gets the cached messages for a chunk
+	 *
+	 * @param chunk the chunk
+	 * @param protocol the protocol the messages were created for
+	 * @param version the current version of the chunk
+	 * @return the messages, or null if no messages are cached for this version of the chunk
+	 */
+	public synchronized List<Message> get(Chunk chunk, Protocol protocol, int version) {
+		Key key = new Key(chunk, protocol);
+		Entry entry = entries.get(key);
+		if (entry == null) {
+			misses.incrementAndGet();
+			return null;
+		} else if (entry.version != version) {
+			remove(key);
+			misses.incrementAndGet();
+			return null;
+		}
+		hits.incrementAndGet();
+		return entry.messages;
+	}
+
+	/**
+	 * Adds the messages for a chunk to the cache, replacing any previous messages.<br>
+	 * <br>
+	 * The returned list contains the shared form of the messages and should be sent instead of the given messages.
+	 *
+	 * @param chunk the chunk
+	 * @param protocol the protocol the messages were created for
+	 * @param version the version of the chunk the messages were created from
+	 * @param messages the messages
+	 * @param messageSize the estimated size of the messages in bytes
+	 * @return the shared messages
+	 */
+	public synchronized List<Message> put(Chunk chunk, Protocol protocol, int version, List<Message> messages, int messageSize) {
+		List<Message> shared = new ArrayList<Message>(messages.size());
+		for (Message message : messages) {
+			shared.add(message instanceof SharedMessage ? message : new SharedMessage(message));
+		}
+		shared = Collections.unmodifiableList(shared);
+		if (messageSize > maxSize) {
+			return shared;
+		}
+
+		Key key = new Key(chunk, protocol);
+		Entry old = entries.put(key, new Entry(version, shared, messageSize));
+		if (old == null) {
+			addToIndex(key);
+		} else {
+			size -= old.size;
+		}
+		size += messageSize;
+
+		Iterator<Map.Entry<Key, Entry>> i = entries.entrySet().iterator();
+		while (size > maxSize && i.hasNext()) {
+			Map.Entry<Key, Entry> eldest = i.next();
+			size -= eldest.getValue().size;
+			i.remove();
+			removeFromIndex(eldest.getKey());
+			evictions.incrementAndGet();
+		}
+		return shared;
+	}
+
+	/**
+	 * Removes all cached messages for a chunk
+	 *
+	 * @param chunk the chunk
+	 */
+	public synchronized void invalidate(Chunk chunk) {
+		HashMap<ChunkKey, List<Key>> chunks = index.get(chunk.getWorld().getUID());
+		if (chunks == null) {
+			return;
+		}
+		List<Key> keys = chunks.remove(new ChunkKey(chunk));
+		if (keys != null) {
+			removeAll(keys);
+			if (chunks.isEmpty()) {
+				index.remove(chunk.getWorld().getUID());
+			}
+		}
+	}
+
+	/**
+	 * Removes all cached messages for the chunks of a world
+	 *
+	 * @param world the world
+	 */
+	public synchronized void invalidate(World world) {
+		HashMap<ChunkKey, List<Key>> chunks = index.remove(world.getUID());
+		if (chunks != null) {
+			for (List<Key> keys : chunks.values()) {
+				removeAll(keys);
+			}
+		}
+	}
+
+	/**
+	 * Removes all cached messages
+	 */
+	public synchronized void clear() {
+		entries.clear();
+		index.clear();
+		size = 0;
+	}
+
+	/**
+	 * Gets the estimated size of the cached messages
+	 *
+	 * @return the size in bytes
+	 */
+	public synchronized long getSize() {
+		return size;
+	}
+
+	/**
+	 * Gets the number of chunks in the cache
+	 *
+	 * @return the number of entries
+	 */
+	public synchronized int getEntries() {
+		return entries.size();
+	}
+
+	/**
+	 * Gets the number of lookups which found messages for the current version of a chunk
+	 *
+	 * @return the number of hits
+	 */
+	public long getHits() {
+		return hits.get();
+	}
+
+	/**
+	 * Gets the number of lookups which did not find messages for the current version of a chunk
+	 *
+	 * @return the number of misses
+	 */
+	public long getMisses() {
+		return misses.get();
+	}
+
+	/**
+	 * Gets the number of entries removed to keep the cache within its maximum size
+	 *
+	 * @return the number of evictions
+	 */
+	public long getEvictions() {
+		return evictions.get();
+	}
+
+	@EventHandler(order = Order.MONITOR)
+	protected void onChunkUnload(ChunkUnloadEvent event) {
+		if (!event.isCancelled()) {
+			invalidate(event.getChunk());
+		}
+	}
+
+	@EventHandler(order = Order.MONITOR)
+	protected void onWorldUnload(WorldUnloadEvent event) {
+		invalidate(event.getWorld());
+	}
+
+	private void remove(Key key) {
+		Entry old = entries.remove(key);
+		if (old != null) {
+			size -= old.size;
+			removeFromIndex(key);
+		}
+	}
+
+	private void removeAll(List<Key> keys) {
+		for (Key key : keys) {
+			Entry old = entries.remove(key);
+			if (old != null) {
+				size -= old.size;
+			}
+		}
+	}
+
+	private void addToIndex(Key key) {
+		HashMap<ChunkKey, List<Key>> chunks = index.get(key.chunk.world);
+		if (chunks == null) {
+			chunks = new HashMap<ChunkKey, List<Key>>();
+			index.put(key.chunk.world, chunks);
+		}
+		List<Key> keys = chunks.get(key.chunk);
+		if (keys == null) {
+			// Usually only one protocol is in use
+			keys = new ArrayList<Key>(1);
+			chunks.put(key.chunk, keys);
+		}
+		keys.add(key);
+	}
+
+	private void removeFromIndex(Key key) {
+		HashMap<ChunkKey, List<Key>> chunks = index.get(key.chunk.world);
+		if (chunks == null) {
+			return;
+		}
+		List<Key> keys = chunks.get(key.chunk);
+		if (keys != null && keys.remove(key) && keys.isEmpty()) {
+			chunks.remove(key.chunk);
+			if (chunks.isEmpty()) {
+				index.remove(key.chunk.world);
+			}
+		}
+	}
+
+	private static class ChunkKey {
+		private final UUID world;
+		private final int x;
+		private final int y;
+		private final int z;
+
+		public ChunkKey(Chunk chunk) {
+			this.world = chunk.getWorld().getUID();
+			this.x = chunk.getX();
+			this.y = chunk.getY();
+			this.z = chunk.getZ();
+		}
+
+		@Override
+		public int hashCode() {
+			int hash = world.hashCode();
+			hash = hash * 31 + x;
+			hash = hash * 31 + y;
+			return hash * 31 + z;
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if (!(o instanceof ChunkKey)) {
+				return false;
+			}
+			ChunkKey other = (ChunkKey) o;
+			return x == other.x && y == other.y && z == other.z && world.equals(other.world);
+		}
+	}
+
+	private static class Key {
+		private final ChunkKey chunk;
+		private final Protocol protocol;
+
+		public Key(Chunk chunk, Protocol protocol) {
+			this.chunk = new ChunkKey(chunk);
+			this.protocol = protocol;
+		}
+
+		@Override
+		public int hashCode() {
+			return chunk.hashCode() * 31 + System.identityHashCode(protocol);
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if (!(o instanceof Key)) {
+				return false;
+			}
+			Key other = (Key) o;
+			return protocol == other.protocol && chunk.equals(other.chunk);
+		}
+	}
+
+	private static class Entry {
+		private final int version;
+		private final List<Message> messages;
+		private final int size;
+
+		public Entry(int version, List<Message> messages, int size) {
+			this.version = version;
+			this.messages = messages;
+			this.size = size;
+		}
+	}
+}
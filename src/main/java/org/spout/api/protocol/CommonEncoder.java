@@ -60,6 +60,9 @@ public class CommonEncoder extends PostprocessEncoder {
 					protocol = Spout.getEngine().getProtocol(c.getLocalAddress());
 				}
 			}
+			if (msg instanceof SharedMessage) {
+				return ((SharedMessage) msg).getEncoded(protocol, upstream);
+			}
 			Message message = (Message) msg;
 
 			Class<? extends Message> clazz = message.getClass();
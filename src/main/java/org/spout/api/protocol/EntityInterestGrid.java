@@ -0,0 +1,262 @@
+/*
+ * This file is part of SpoutAPI.
+ *
+ * Copyright (c) 2011-2012, Spout LLC <http://www.spout.org/>
+ * SpoutAPI is licensed under the Spout License Version 1.
+ *
+ * SpoutAPI is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * In addition, 180 days after any changes are published, you can use the
+ * software, incorporating those changes, under the terms of the MIT license,
+ * as described in the Spout License Version 1.
+ *
+ * SpoutAPI is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License,
+ * the MIT license and the Spout License Version 1 along with this program.
+ * If not, see <http://www.gnu.org/licenses/> for the GNU Lesser General Public
+ * License and see <http://spout.in/licensev1> for the full license, including
+ * the MIT license.
+ */
+package org.spout.api.protocol;
+
+import gnu.trove.iterator.TIntObjectIterator;
+import gnu.trove.iterator.TLongObjectIterator;
+import gnu.trove.map.hash.TIntObjectHashMap;
+import gnu.trove.map.hash.TLongObjectHashMap;
+import gnu.trove.set.hash.TIntHashSet;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.spout.api.entity.Entity;
+import org.spout.api.event.EventHandler;
+import org.spout.api.event.Listener;
+import org.spout.api.event.Order;
+import org.spout.api.event.entity.EntityDespawnEvent;
+import org.spout.api.geo.World;
+import org.spout.api.geo.discrete.Point;
+import org.spout.api.util.hashing.Int21TripleHashed;
+
+/**
+ * A grid of chunk sized cells which tracks which entities are in each chunk.<br>
+ * <br>
+ * Entities are moved between cells when their snapshot position crosses into a new chunk,
+ * so each observer only has to look at the cells within its view distance to find the
+ * entities it should see, rather than testing every entity on the server.<br>
+ * <br>
+ * Cells are updated during the snapshot stage and read during the pre-snapshot stage.  The engine calls
+ * {@link #update(Entity, Point)} with the snapshot position of each entity after copying its snapshot,
+ * and entities are removed when an {@link EntityDespawnEvent} is called or they are updated after being removed.
+ */
+public class EntityInterestGrid implements Listener {
+	private final ReadWriteLock lock = new ReentrantReadWriteLock();
+	private final Map<World, TLongObjectHashMap<Cell>> worlds = new HashMap<World, TLongObjectHashMap<Cell>>();
+	private final TIntObjectHashMap<Cell> entityCells = new TIntObjectHashMap<Cell>();
+
+	/**
+	 * Moves the entity into the cell containing the given position.
+	 *
+	 * @param entity the entity
+	 * @param position the snapshot position of the entity
+	 */
+	public void update(Entity entity, Point position) {
+		World world = position.getWorld();
+		if (world == null || entity.isRemoved()) {
+			remove(entity);
+			return;
+		}
+		int cx = position.getChunkX();
+		int cy = position.getChunkY();
+		int cz = position.getChunkZ();
+		int id = entity.getId();
+		// Most entities stay in the same chunk between snapshots, which only needs the read lock
+		lock.readLock().lock();
+		try {
+			if (isInCell(entityCells.get(id), world, cx, cy, cz)) {
+				return;
+			}
+		} finally {
+			lock.readLock().unlock();
+		}
+		lock.writeLock().lock();
+		try {
+			Cell old = entityCells.get(id);
+			if (old != null) {
+				if (isInCell(old, world, cx, cy, cz)) {
+					return;
+				}
+				removeFromCell(old, id);
+			}
+			TLongObjectHashMap<Cell> cells = worlds.get(world);
+			if (cells == null) {
+				cells = new TLongObjectHashMap<Cell>();
+				worlds.put(world, cells);
+			}
+			long key = Int21TripleHashed.key(cx, cy, cz);
+			Cell cell = cells.get(key);
+			if (cell == null) {
+				cell = new Cell(world, cx, cy, cz);
+				cells.put(key, cell);
+			}
+			cell.entities.put(id, entity);
+			entityCells.put(id, cell);
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Removes the entity from the grid
+	 *
+	 * @param entity the entity
+	 */
+	public void remove(Entity entity) {
+		int id = entity.getId();
+		lock.writeLock().lock();
+		try {
+			Cell old = entityCells.remove(id);
+			if (old != null) {
+				removeFromCell(old, id);
+			}
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	@EventHandler(order = Order.MONITOR)
+	protected void onEntityDespawn(EntityDespawnEvent event) {
+		if (!event.isCancelled()) {
+			remove(event.getEntity());
+		}
+	}
+
+	/**
+	 * Gets the number of entities in the grid
+	 *
+	 * @return the number of entities
+	 */
+	public int size() {
+		lock.readLock().lock();
+		try {
+			return entityCells.size();
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Compares the entities within view distance of a position against the entities an observer has been sent.<br>
+	 * <br>
+	 * Entities which are visible but have not been sent are added to the spawn list, entities which are visible,
+	 * have been sent and have a dirty transform are added to the update list.  Entities which have been sent but
+	 * are no longer visible, or have been removed, are added to the destroy list.
+	 *
+	 * @param center the position of the observer
+	 * @param chunkRadius the view distance in chunks
+	 * @param synced the entities sent to the observer, by id
+	 * @param spawn the list to add entities to spawn to
+	 * @param destroy the list to add entities to destroy to
+	 * @param update the list to add entities to update to
+	 */
+	public void diff(Point center, int chunkRadius, TIntObjectHashMap<Entity> synced, List<Entity> spawn, List<Entity> destroy, List<Entity> update) {
+		TIntHashSet visible = new TIntHashSet();
+		lock.readLock().lock();
+		try {
+			TLongObjectHashMap<Cell> cells = center.getWorld() == null ? null : worlds.get(center.getWorld());
+			if (cells != null) {
+				int cx = center.getChunkX();
+				int cy = center.getChunkY();
+				int cz = center.getChunkZ();
+				int width = (chunkRadius << 1) + 1;
+				if (cells.size() < width * width * width) {
+					TLongObjectIterator<Cell> i = cells.iterator();
+					while (i.hasNext()) {
+						i.advance();
+						Cell cell = i.value();
+						if (Math.abs(cell.x - cx) <= chunkRadius && Math.abs(cell.y - cy) <= chunkRadius && Math.abs(cell.z - cz) <= chunkRadius) {
+							addVisible(cell, synced, visible, spawn, update);
+						}
+					}
+				} else {
+					for (int x = cx - chunkRadius; x <= cx + chunkRadius; x++) {
+						for (int y = cy - chunkRadius; y <= cy + chunkRadius; y++) {
+							for (int z = cz - chunkRadius; z <= cz + chunkRadius; z++) {
+								Cell cell = cells.get(Int21TripleHashed.key(x, y, z));
+								if (cell != null) {
+									addVisible(cell, synced, visible, spawn, update);
+								}
+							}
+						}
+					}
+				}
+			}
+		} finally {
+			lock.readLock().unlock();
+		}
+		TIntObjectIterator<Entity> i = synced.iterator();
+		while (i.hasNext()) {
+			i.advance();
+			if (!visible.contains(i.key())) {
+				destroy.add(i.value());
+			}
+		}
+	}
+
+	private void addVisible(Cell cell, TIntObjectHashMap<Entity> synced, TIntHashSet visible, List<Entity> spawn, List<Entity> update) {
+		TIntObjectIterator<Entity> i = cell.entities.iterator();
+		while (i.hasNext()) {
+			i.advance();
+			Entity entity = i.value();
+			if (entity.isRemoved()) {
+				continue;
+			}
+			int id = i.key();
+			visible.add(id);
+			if (!synced.containsKey(id)) {
+				spawn.add(entity);
+			} else if (entity.getTransform().isDirty()) {
+				update.add(entity);
+			}
+		}
+	}
+
+	private void removeFromCell(Cell cell, int id) {
+		cell.entities.remove(id);
+		if (cell.entities.isEmpty()) {
+			TLongObjectHashMap<Cell> cells = worlds.get(cell.world);
+			cells.remove(Int21TripleHashed.key(cell.x, cell.y, cell.z));
+			if (cells.isEmpty()) {
+				worlds.remove(cell.world);
+			}
+		}
+	}
+
+	private static boolean isInCell(Cell cell, World world, int x, int y, int z) {
+		return cell != null && cell.world == world && cell.x == x && cell.y == y && cell.z == z;
+	}
+
+	private static class Cell {
+		private final World world;
+		private final int x;
+		private final int y;
+		private final int z;
+		private final TIntObjectHashMap<Entity> entities = new TIntObjectHashMap<Entity>();
+
+		public Cell(World world, int x, int y, int z) {
+			this.world = world;
+			this.x = x;
+			this.y = y;
+			this.z = z;
+		}
+	}
+}
@@ -0,0 +1,133 @@
+/*
+ * This file is part of SpoutAPI.
+ *
+ * Copyright (c) 2011-2012, Spout LLC <http://www.spout.org/>
+ * SpoutAPI is licensed under the Spout License Version 1.
+ *
+ * SpoutAPI is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * In addition, 180 days after any changes are published, you can use the
+ * software, incorporating those changes, under the terms of the MIT license,
+ * as described in the Spout License Version 1.
+ *
+ * SpoutAPI is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License,
+ * the MIT license and the Spout License Version 1 along with this program.
+ * If not, see <http://www.gnu.org/licenses/> for the GNU Lesser General Public
+ * License and see <http://spout.in/licensev1> for the full license, including
+ * the MIT license.
+ */
+package org.spout.api.protocol;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.spout.api.entity.Entity;
+import org.spout.api.protocol.reposition.NullRepositionManager;
+import org.spout.api.protocol.reposition.RepositionManager;
+import org.spout.api.scheduler.TickStage;
+
+/**
+ * Caches the update messages for entities for the duration of a tick.<br>
+ * <br>
+ * When many players observe the same entity, the update messages are only generated once
+ * per {@link EntityProtocol} and the resulting messages are wrapped in {@link SharedMessage}s,
+ * so they are also only encoded once.  The cost of updating entities then depends on the number
+ * of entities which changed, rather than the number of entities multiplied by the number of observers.<br>
+ * <br>
+ * Messages are only shared between observers which do not reposition coordinates.  When a
+ * {@link RepositionManager} other than the {@link NullRepositionManager} is used, the messages
+ * are generated for that observer alone.
+ */
+public class EntityUpdateCache {
+	private final AtomicReference<TickCache> cache = new AtomicReference<TickCache>(new TickCache(-1));
+
+	/**
+	 * Gets the messages to update the entity, see {@link EntityProtocol#getUpdateMessages(Entity, RepositionManager)}.<br>
+	 * <br>
+	 * The returned list is shared and must not be modified.
+	 *
+	 * @param protocol the entity protocol used to generate the messages
+	 * @param entity the entity
+	 * @param rm the reposition manager
+	 * @return messages to send
+	 */
+	public List<Message> getUpdateMessages(EntityProtocol protocol, Entity entity, RepositionManager rm) {
+		if (rm != NullRepositionManager.getInstance()) {
+			return protocol.getUpdateMessages(entity, rm);
+		}
+
+		ConcurrentMap<EntityProtocol, ConcurrentMap<Integer, List<Message>>> tickCache = getTickCache().messages;
+		ConcurrentMap<Integer, List<Message>> protocolCache = tickCache.get(protocol);
+		if (protocolCache == null) {
+			protocolCache = new ConcurrentHashMap<Integer, List<Message>>();
+			ConcurrentMap<Integer, List<Message>> old = tickCache.putIfAbsent(protocol, protocolCache);
+			if (old != null) {
+				protocolCache = old;
+			}
+		}
+
+		Integer id = entity.getId();
+		List<Message> messages = protocolCache.get(id);
+		if (messages == null) {
+			messages = share(protocol.getUpdateMessages(entity, rm));
+			List<Message> old = protocolCache.putIfAbsent(id, messages);
+			if (old != null) {
+				messages = old;
+			}
+		}
+		return messages;
+	}
+
+	/**
+	 * Removes all cached messages
+	 */
+	public void clear() {
+		cache.set(new TickCache(TickStage.getTick()));
+	}
+
+	private TickCache getTickCache() {
+		long tick = TickStage.getTick();
+		while (true) {
+			TickCache current = cache.get();
+			if (current.tick == tick) {
+				return current;
+			}
+			TickCache next = new TickCache(tick);
+			if (cache.compareAndSet(current, next)) {
+				return next;
+			}
+		}
+	}
+
+	private static List<Message> share(List<Message> messages) {
+		if (messages == null || messages.isEmpty()) {
+			return Collections.emptyList();
+		}
+		List<Message> shared = new ArrayList<Message>(messages.size());
+		for (Message message : messages) {
+			shared.add(message instanceof SharedMessage ? message : new SharedMessage(message));
+		}
+		return Collections.unmodifiableList(shared);
+	}
+
+	private static class TickCache {
+		private final long tick;
+		private final ConcurrentMap<EntityProtocol, ConcurrentMap<Integer, List<Message>>> messages = new ConcurrentHashMap<EntityProtocol, ConcurrentMap<Integer, List<Message>>>();
+
+		public TickCache(long tick) {
+			this.tick = tick;
+		}
+	}
+}
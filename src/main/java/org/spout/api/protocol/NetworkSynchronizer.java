@@ -26,23 +26,28 @@
  */
 package org.spout.api.protocol;
 
-import gnu.trove.set.hash.TIntHashSet;
+import gnu.trove.map.hash.TIntObjectHashMap;
 
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicReference;
 
 import org.spout.api.Spout;
 import org.spout.api.entity.Entity;
 import org.spout.api.entity.Player;
 import org.spout.api.event.EventHandler;
+import org.spout.api.event.EventManager;
 import org.spout.api.exception.EventException;
 import org.spout.api.geo.LoadOption;
 import org.spout.api.geo.World;
@@ -50,7 +55,9 @@ import org.spout.api.geo.cuboid.Chunk;
 import org.spout.api.geo.discrete.Point;
 import org.spout.api.material.BlockMaterial;
 import org.spout.api.math.IntVector3;
+import org.spout.api.math.MathHelper;
 import org.spout.api.math.Quaternion;
+import org.spout.api.math.Vector3;
 import org.spout.api.protocol.event.ProtocolEvent;
 import org.spout.api.protocol.event.ProtocolEventExecutor;
 import org.spout.api.protocol.event.ProtocolEventListener;
@@ -58,6 +65,7 @@ import org.spout.api.protocol.reposition.NullRepositionManager;
 import org.spout.api.protocol.reposition.RepositionManager;
 import org.spout.api.scheduler.TickStage;
 import org.spout.api.util.OutwardIterator;
+import org.spout.api.util.TokenBucket;
 
 public abstract class NetworkSynchronizer {
 	protected final Player player;
@@ -65,6 +73,14 @@ public abstract class NetworkSynchronizer {
 	protected final AtomicReference<Protocol> protocol = new AtomicReference<Protocol>(null);
 
 	private final static int CHUNKS_PER_TICK = 20;
+	private final static int MIN_CHUNKS_PER_TICK = 2;
+	private final static int MAX_CHUNKS_PER_TICK = CHUNKS_PER_TICK * 2;
+	private final static int PRIORITY_CHUNK_MULTIPLIER = 4;
+
+	private final static EntityUpdateCache entityUpdateCache = new EntityUpdateCache();
+	private final static EntityInterestGrid interestGrid = new EntityInterestGrid();
+	private final static ChunkMessageCache chunkMessageCache = new ChunkMessageCache(64 * 1024 * 1024);
+	private final static AtomicBoolean listenersRegistered = new AtomicBoolean(false);
 
 	private final int viewDistance;
 	private final int blockViewDistance;
@@ -77,6 +93,8 @@ public abstract class NetworkSynchronizer {
 	private final Set<Point> priorityChunkSendQueue = new LinkedHashSet<Point>();
 	private final Set<Point> chunkSendQueue = new LinkedHashSet<Point>();
 	private final Set<Point> chunkFreeQueue = new LinkedHashSet<Point>();
+	private final ChunkOrder priorityChunkOrder = new ChunkOrder();
+	private final ChunkOrder chunkOrder = new ChunkOrder();
 
 	private final Set<Point> initializedChunks = new LinkedHashSet<Point>();
 	private final Set<Point> activeChunks = new LinkedHashSet<Point>();
@@ -95,7 +113,13 @@ public abstract class NetworkSynchronizer {
 	private final AtomicReference<RepositionManager> rm = new AtomicReference<RepositionManager>(NullRepositionManager.getInstance());
 
 	//Holds all entities that have ever been sync'd to this Synchronizer
-	private final TIntHashSet synchronizedEntities = new TIntHashSet();
+	private final TIntObjectHashMap<Entity> synchronizedEntities = new TIntObjectHashMap<Entity>();
+
+	// Limits the number of chunks sent each tick, the rate adapts to the throughput of the session
+	private final TokenBucket chunkSendBudget = new TokenBucket(CHUNKS_PER_TICK, MIN_CHUNKS_PER_TICK, MAX_CHUNKS_PER_TICK, MAX_CHUNKS_PER_TICK);
+	private long fillStartTime = 0;
+	private volatile long timeToFullView = 0;
+	private volatile int chunkQueueDepth = 0;
 
 	public NetworkSynchronizer(Session session, int minViewDistance) {
 		this.session = session;
@@ -108,6 +132,12 @@ public abstract class NetworkSynchronizer {
 		}
 		viewDistance = blockViewDistance >> Chunk.BLOCKS.BITS;
 		blockMinimumViewDistance = minViewDistance * Chunk.BLOCKS.SIZE;
+		// The shared caches listen for unloads and despawns, so they do not keep stale entries
+		EventManager events = Spout.getEngine() == null ? null : Spout.getEventManager();
+		if (events != null && listenersRegistered.compareAndSet(false, true)) {
+			events.registerEvents(chunkMessageCache, chunkMessageCache);
+			events.registerEvents(interestGrid, interestGrid);
+		}
 	}
 
 	public void setRespawned() {
@@ -284,9 +314,9 @@ public abstract class NetworkSynchronizer {
 		activeChunks.clear();
 		initializedChunks.clear();
 		lastChunkCheck = Point.invalid;
+		fillStartTime = 0;
 	}
 	
-	private int chunksSent = 0;
 	private Set<Chunk> unsendable = new HashSet<Chunk>();
 
 	public void preSnapshot() {
@@ -314,8 +344,9 @@ public abstract class NetworkSynchronizer {
 
 				chunkFreeQueue.clear();
 
-				int modifiedChunksPerTick = (!priorityChunkSendQueue.isEmpty() ? 4 : 1) * CHUNKS_PER_TICK;
-				chunksSent = Math.max(0, chunksSent - modifiedChunksPerTick);
+				// Never more than one tick's worth of sends, the multiplier only pays back overdrawn chunks faster
+				int sendLimit = canMeasureSendBacklog() ? chunkSendBudget.getRate() : CHUNKS_PER_TICK;
+				chunkSendBudget.refill(!priorityChunkSendQueue.isEmpty() ? PRIORITY_CHUNK_MULTIPLIER : 1, sendLimit);
 
 				for (Point p : chunkInitQueue) {
 					if (initializedChunks.add(p)) {
@@ -328,13 +359,14 @@ public abstract class NetworkSynchronizer {
 				Iterator<Point> i;
 				
 				i = priorityChunkSendQueue.iterator();
-				while (i.hasNext() && chunksSent < CHUNKS_PER_TICK) {
+				while (i.hasNext() && chunkSendBudget.hasTokens()) {
 					Point p = i.next();
 					Chunk c = p.getWorld().getChunkFromBlock(p);
 					i = attemptSendChunk(i, priorityChunkSendQueue, c, unsendable);
 				}
 				
 				if (!priorityChunkSendQueue.isEmpty()) {
+					updateChunkSendRate();
 					return;
 				}
 				
@@ -346,16 +378,95 @@ public abstract class NetworkSynchronizer {
 				boolean tickTimeRemaining = Spout.getScheduler().getRemainingTickTime() > 0;
 
 				i = chunkSendQueue.iterator();
-				while (i.hasNext() && chunksSent < CHUNKS_PER_TICK && tickTimeRemaining) {
+				while (i.hasNext() && chunkSendBudget.hasTokens() && tickTimeRemaining) {
 					Point p = i.next();
 					Chunk c = p.getWorld().getChunkFromBlock(p);
 					i = attemptSendChunk(i, chunkSendQueue, c, unsendable);
 					tickTimeRemaining = Spout.getScheduler().getRemainingTickTime() > 0;
 				}
+
+				updateChunkSendRate();
 			}
 		}
 
 	}
+
+	/**
+	 * Adjusts the chunk send rate after chunks have been sent for the tick and updates the chunk queue metrics.<br>
+	 * <br>
+	 * If the synchronizer can measure its send backlog, the rate is halved when the session cannot keep up or the
+	 * server is overloaded, and increased by one chunk per tick when the budget was used up with chunks still waiting
+	 * to be sent.  Otherwise the rate stays at the fixed default.
+	 */
+	private void updateChunkSendRate() {
+		int queued = priorityChunkSendQueue.size() + chunkSendQueue.size();
+		// Without a measure of the connection the rate can not safely grow, so the fixed rate is kept
+		if (canMeasureSendBacklog()) {
+			if (isSendBacklogged() || Spout.getScheduler().isServerOverloaded()) {
+				chunkSendBudget.decreaseRate();
+			} else if (queued > 0 && !chunkSendBudget.hasTokens()) {
+				chunkSendBudget.increaseRate(1);
+			}
+		}
+
+		chunkQueueDepth = queued;
+		if (queued == 0 && fillStartTime != 0) {
+			timeToFullView = (System.nanoTime() - fillStartTime) / 1000000L;
+			fillStartTime = 0;
+		}
+	}
+
+	/**
+	 * Gets if the session has more data waiting to be written than the connection can currently carry.<br>
+	 * <br>
+	 * While this returns true, the number of chunks sent per tick is reduced.  Implementations should return
+	 * true when the outbound buffer of the session's channel is full.
+	 *
+	 * @return true if the session is backlogged
+	 */
+	protected boolean isSendBacklogged() {
+		return false;
+	}
+
+	/**
+	 * Gets if {@link #isSendBacklogged()} reports the state of the connection.<br>
+	 * <br>
+	 * The chunk send rate only adapts to the connection when this returns true, otherwise the fixed default
+	 * rate is used.  Implementations which override {@link #isSendBacklogged()} should return true.
+	 *
+	 * @return true if the send backlog can be measured
+	 */
+	protected boolean canMeasureSendBacklog() {
+		return false;
+	}
+
+	/**
+	 * Gets the number of chunks waiting to be sent to the player
+	 *
+	 * @return the number of queued chunks
+	 */
+	public int getChunkSendQueueDepth() {
+		return chunkQueueDepth;
+	}
+
+	/**
+	 * Gets the time it took for the last complete view of chunks to be sent, after a login, teleport or
+	 * move which required new chunks
+	 *
+	 * @return the time in ms
+	 */
+	public long getTimeToFullView() {
+		return timeToFullView;
+	}
+
+	/**
+	 * Gets the number of chunks which may currently be sent per tick
+	 *
+	 * @return the chunk send rate
+	 */
+	public int getChunkSendRate() {
+		return chunkSendBudget.getRate();
+	}
 	
 	protected boolean canSendChunk(Chunk c, Set<Chunk> unsendable) {
 		return c.canSend();
@@ -375,14 +486,14 @@ public abstract class NetworkSynchronizer {
 						if (initializedChunks.contains(base)) {
 							activeChunks.add(base);
 						}
-						chunksSent++;
+						chunkSendBudget.consume(1);
 					}
 				}
 				if (updated) {
 					i = queue.iterator();
 				}
 			}
-			chunksSent++;
+			chunkSendBudget.consume(1);
 		}
 		return i;
 	}
@@ -459,25 +570,80 @@ public abstract class NetworkSynchronizer {
 		int cz = bz >> Chunk.BLOCKS.BITS;
 
 		Iterator<IntVector3> itr = new OutwardIterator(cx, cy, cz, viewDistance);
-
-		priorityChunkSendQueue.clear();
-		chunkSendQueue.clear();
+		Vector3 direction = MathHelper.getDirectionVector(player.getTransform().getRotation());
 
 		while (itr.hasNext()) {
 			IntVector3 v = itr.next();
 			Point base = new Point(world, v.getX() << Chunk.BLOCKS.BITS, v.getY() << Chunk.BLOCKS.BITS, v.getZ() << Chunk.BLOCKS.BITS);
 			boolean inTargetArea = playerChunkBase.getMaxDistance(base) <= blockMinimumViewDistance;
 			if (!activeChunks.contains(base)) {
+				float priority = getPriority(base, currentPosition, direction);
 				if (inTargetArea) {
-					priorityChunkSendQueue.add(base);
+					priorityChunkOrder.add(base, priority);
 				} else {
-					chunkSendQueue.add(base);
+					chunkOrder.add(base, priority);
 				}
 			}
 			if (!initializedChunks.contains(base)) {
 				chunkInitQueue.add(base);
 			}
 		}
+
+		priorityChunkOrder.drainTo(priorityChunkSendQueue);
+		chunkOrder.drainTo(chunkSendQueue);
+
+		if (fillStartTime == 0 && !(priorityChunkSendQueue.isEmpty() && chunkSendQueue.isEmpty())) {
+			fillStartTime = System.nanoTime();
+		}
+	}
+
+	/**
+	 * Gets the send priority of a chunk, lower values are sent first.  Chunks in front of the player are
+	 * treated as closer than chunks behind the player.
+	 *
+	 * @param base the base of the chunk
+	 * @param position the position of the player
+	 * @param direction the direction the player is facing
+	 * @return the priority
+	 */
+	private static float getPriority(Point base, Point position, Vector3 direction) {
+		float dx = base.getX() + Chunk.BLOCKS.HALF_SIZE - position.getX();
+		float dy = base.getY() + Chunk.BLOCKS.HALF_SIZE - position.getY();
+		float dz = base.getZ() + Chunk.BLOCKS.HALF_SIZE - position.getZ();
+		float distance = (float) Math.sqrt(dx * dx + dy * dy + dz * dz);
+		float facing = distance == 0 ? 1 : (dx * direction.getX() + dy * direction.getY() + dz * direction.getZ()) / distance;
+		return distance * (1.5F - 0.5F * facing);
+	}
+
+	/**
+	 * Collects the chunks of a send queue with their priorities, so the queue is filled once in priority order.<br>
+	 * <br>
+	 * The arrays are kept between view recalculations, and points are sorted by packing the priority and the index
+	 * of the point into a long, so no objects are created per chunk.
+	 */
+	private static class ChunkOrder {
+		private Point[] points = new Point[64];
+		private long[] keys = new long[64];
+		private int size = 0;
+
+		public void add(Point point, float priority) {
+			if (size == points.length) {
+				points = Arrays.copyOf(points, size << 1);
+				keys = Arrays.copyOf(keys, size << 1);
+			}
+			// Priorities are never negative, so their bits sort in the same order as their values
+			keys[size] = ((long) Float.floatToIntBits(priority) << 32) | size;
+			points[size++] = point;
+		}
+
+		public void drainTo(Set<Point> queue) {
+			Arrays.sort(keys, 0, size);
+			for (int i = 0; i < size; i++) {
+				queue.add(points[(int) keys[i]]);
+			}
+			Arrays.fill(points, 0, size, null);
+			size = 0;
+		}
 	}
 
 	/**
@@ -502,6 +668,138 @@ public abstract class NetworkSynchronizer {
 		throw new IllegalStateException("No entity protocol available for core class");
 	}
 
+	/**
+	 * Gets the entity protocol used to update an entity for this player.<br>
+	 * <br>
+	 * The default implementation returns null, so no update messages are sent.
+	 *
+	 * @param e the entity
+	 * @return the entity protocol, or null if the entity is not updated by this synchronizer
+	 */
+	protected EntityProtocol getEntityProtocol(Entity e) {
+		return null;
+	}
+
+	/**
+	 * Gets the messages to update the entity for this player.<br>
+	 * <br>
+	 * The messages are generated once per tick and shared by all synchronizers which do not reposition
+	 * coordinates, see {@link EntityUpdateCache}.  The returned list must not be modified.
+	 *
+	 * @param ep the entity protocol for the entity
+	 * @param e the entity
+	 * @return messages to send
+	 */
+	protected List<Message> getUpdateMessages(EntityProtocol ep, Entity e) {
+		return entityUpdateCache.getUpdateMessages(ep, e, rm.get());
+	}
+
+	/**
+	 * Gets the cache used to share entity update messages between synchronizers
+	 *
+	 * @return the entity update cache
+	 */
+	public static EntityUpdateCache getEntityUpdateCache() {
+		return entityUpdateCache;
+	}
+
+	/**
+	 * Gets the grid which tracks the chunk each entity is in.<br>
+	 * <br>
+	 * The engine should call {@link EntityInterestGrid#update(Entity, Point)} for each entity when it copies
+	 * the entity snapshots, despawned entities are removed from the grid automatically.
+	 *
+	 * @return the entity interest grid
+	 */
+	public static EntityInterestGrid getInterestGrid() {
+		return interestGrid;
+	}
+
+	/**
+	 * Gets the cache used to share chunk messages between synchronizers
+	 *
+	 * @return the chunk message cache
+	 */
+	public static ChunkMessageCache getChunkMessageCache() {
+		return chunkMessageCache;
+	}
+
+	/**
+	 * Gets the cached messages to send a chunk, if the chunk has not changed since they were created.<br>
+	 * <br>
+	 * Messages are only shared between synchronizers which do not reposition coordinates, null is always
+	 * returned if this synchronizer has a repositioning manager.
+	 *
+	 * @param c the chunk
+	 * @param version the current version of the chunk
+	 * @return the messages, or null if they need to be created
+	 */
+	protected List<Message> getCachedChunkMessages(Chunk c, int version) {
+		Protocol p = protocol.get();
+		if (p == null || rm.get() != NullRepositionManager.getInstance()) {
+			return null;
+		}
+		return chunkMessageCache.get(c, p, version);
+	}
+
+	/**
+	 * Adds the messages to send a chunk to the shared cache.<br>
+	 * <br>
+	 * The returned messages should be sent instead of the given messages, so that they are only encoded once.
+	 *
+	 * @param c the chunk
+	 * @param version the version of the chunk the messages were created from
+	 * @param messages the messages
+	 * @param size the estimated size of the messages in bytes
+	 * @return the messages to send
+	 */
+	protected List<Message> cacheChunkMessages(Chunk c, int version, List<Message> messages, int size) {
+		Protocol p = protocol.get();
+		if (p == null || rm.get() != NullRepositionManager.getInstance()) {
+			return messages;
+		}
+		return chunkMessageCache.put(c, p, version, messages, size);
+	}
+
+	/**
+	 * Synchronizes the entities within view distance of the player, using the {@link EntityInterestGrid}.<br>
+	 * <br>
+	 * {@link #syncEntity(Entity, boolean, boolean, boolean)} is called for each entity which has to be
+	 * destroyed, spawned or updated, so only the entities near the player are visited.  This should be called
+	 * once per tick during the pre-snapshot stage, instead of calling syncEntity for every entity, after the
+	 * engine has updated the grid with the snapshot positions of the entities.
+	 */
+	public void syncEntities() {
+		List<Entity> spawn = new ArrayList<Entity>();
+		List<Entity> destroy = new ArrayList<Entity>();
+		List<Entity> update = new ArrayList<Entity>();
+		getEntityChanges(spawn, destroy, update);
+		for (Entity e : destroy) {
+			syncEntity(e, false, true, false);
+		}
+		for (Entity e : spawn) {
+			syncEntity(e, true, false, false);
+		}
+		for (Entity e : update) {
+			syncEntity(e, false, false, true);
+		}
+	}
+
+	/**
+	 * Finds the entities which should be spawned, destroyed or updated for this player, based on the
+	 * entities within view distance and the entities which have already been synchronized.<br>
+	 * <br>
+	 * This method should be called during the pre-snapshot stage, see {@link EntityInterestGrid#diff}.
+	 *
+	 * @param spawn the list to add entities to spawn to
+	 * @param destroy the list to add entities to destroy to
+	 * @param update the list to add entities to update to
+	 */
+	protected void getEntityChanges(List<Entity> spawn, List<Entity> destroy, List<Entity> update) {
+		Point position = player.getTransform().getPosition();
+		interestGrid.diff(position, viewDistance, synchronizedEntities, spawn, destroy, update);
+	}
+
 	/**
 	 * Sends a chunk to the client.
 	 *
@@ -615,6 +913,9 @@ public abstract class NetworkSynchronizer {
 	/**
 	 * Instructs the client to update the entities state and position<br><br>
 	 *
+	 * Updates of spawned entities send the messages from {@link #getUpdateMessages(EntityProtocol, Entity)}
+	 * using the entity protocol from {@link #getEntityProtocol(Entity)}.
+	 *
 	 * @param e the entity
 	 * @param spawn is True when the entity just spawned
 	 * @param destroy is True when the entity just got destroyed
@@ -622,13 +923,23 @@ public abstract class NetworkSynchronizer {
 	 */
 	public void syncEntity(Entity e, boolean spawn, boolean destroy, boolean update) {
 		if (spawn) {
-			if (!synchronizedEntities.contains(e.getId())) {
-				synchronizedEntities.add(e.getId());
+			if (!synchronizedEntities.containsKey(e.getId())) {
+				synchronizedEntities.put(e.getId(), e);
 			}
 		} else if (destroy) {
-			if (synchronizedEntities.contains(e.getId())) {
+			if (synchronizedEntities.containsKey(e.getId())) {
 				synchronizedEntities.remove(e.getId());
 			}
+		} else if (update && synchronizedEntities.containsKey(e.getId())) {
+			EntityProtocol ep = getEntityProtocol(e);
+			if (ep != null) {
+				List<Message> messages = getUpdateMessages(ep, e);
+				if (messages != null) {
+					for (Message msg : messages) {
+						session.send(false, msg);
+					}
+				}
+			}
 		}
 	}
 
@@ -646,7 +957,7 @@ public abstract class NetworkSynchronizer {
 	}
 
 	public boolean hasSpawned(Entity e) {
-		return synchronizedEntities.contains(e.getId());
+		return synchronizedEntities.containsKey(e.getId());
 	}
 	
 	/**
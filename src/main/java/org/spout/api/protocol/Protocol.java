@@ -173,6 +173,20 @@ public abstract class Protocol {
 	 */
 	public abstract Message getCommandMessage(Command command, ChatArguments arguments);
 
+	/**
+	 * Gets a packet which shows a chat message to a player.<br>
+	 * <br>
+	 * The message must not depend on the receiving player, so that it can be encoded once and sent to every
+	 * player receiving a broadcast.  Protocols which do not support this return null, and broadcasts are then
+	 * sent through {@link org.spout.api.command.CommandSource#sendMessage(ChatArguments)}.
+	 *
+	 * @param message The chat message
+	 * @return The chat packet, or null if not supported
+	 */
+	public Message getChatMessage(ChatArguments message) {
+		return null;
+	}
+
 	/**
 	 * Gets the introduction message that the client sends to the server on connect
 	 *
@@ -0,0 +1,129 @@
+/*
+ * This file is part of SpoutAPI.
+ *
+ * Copyright (c) 2011-2012, Spout LLC <http://www.spout.org/>
+ * SpoutAPI is licensed under the Spout License Version 1.
+ *
+ * SpoutAPI is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * In addition, 180 days after any changes are published, you can use the
+ * software, incorporating those changes, under the terms of the MIT license,
+ * as described in the Spout License Version 1.
+ *
+ * SpoutAPI is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License,
+ * the MIT license and the Spout License Version 1 along with this program.
+ * If not, see <http://www.gnu.org/licenses/> for the GNU Lesser General Public
+ * License and see <http://spout.in/licensev1> for the full license, including
+ * the MIT license.
+ */
+package org.spout.api.protocol;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.jboss.netty.buffer.ChannelBuffer;
+import org.jboss.netty.buffer.ChannelBuffers;
+
+/**
+ * A wrapper for a {@link Message} which is sent to many sessions.<br>
+ * <br>
+ * The wrapped message is encoded the first time it is written and the encoded
+ * buffers are reused for every later session using the same {@link Protocol}.
+ * Each session receives its own view of the shared, unmodified buffers.
+ */
+public final class SharedMessage implements Message {
+	private final Message message;
+	private final AtomicReference<Encoded> encoded = new AtomicReference<Encoded>();
+
+	public SharedMessage(Message message) {
+		if (message == null) {
+			throw new IllegalArgumentException("Message may not be null");
+		} else if (message instanceof SharedMessage) {
+			throw new IllegalArgumentException("Shared messages may not be nested");
+		}
+		this.message = message;
+	}
+
+	/**
+	 * Gets the message which is being shared
+	 *
+	 * @return the message
+	 */
+	public Message getMessage() {
+		return message;
+	}
+
+	/**
+	 * Gets the encoded form of the message, including the protocol header.<br>
+	 * <br>
+	 * The message is only encoded again if it is written using a different protocol or direction.
+	 *
+	 * @param protocol the protocol to encode with
+	 * @param upstream true if the message is sent to the server
+	 * @return a new buffer backed by the shared encoded data
+	 * @throws IOException
+	 */
+	@SuppressWarnings("unchecked")
+	public ChannelBuffer getEncoded(Protocol protocol, boolean upstream) throws IOException {
+		Encoded e = encoded.get();
+		if (e == null || e.protocol != protocol || e.upstream != upstream) {
+			Class<? extends Message> clazz = message.getClass();
+			MessageCodec<Message> codec = (MessageCodec<Message>) protocol.getCodecLookupService().find(clazz);
+			if (codec == null) {
+				throw new IOException("Unknown message type: " + clazz + ".");
+			}
+			ChannelBuffer messageBuf = codec.encode(upstream, message);
+			ChannelBuffer headerBuf = protocol.writeHeader(codec, messageBuf);
+			e = new Encoded(protocol, upstream, headerBuf, messageBuf);
+			encoded.set(e);
+		}
+		return ChannelBuffers.wrappedBuffer(e.header.duplicate(), e.body.duplicate());
+	}
+
+	@Override
+	public int getChannelId() {
+		return message.getChannelId();
+	}
+
+	@Override
+	public String toString() {
+		return "SharedMessage{" + message.toString() + "}";
+	}
+
+	@Override
+	public boolean equals(Object other) {
+		if (other == this) {
+			return true;
+		} else if (!(other instanceof SharedMessage)) {
+			return false;
+		}
+		return message.equals(((SharedMessage) other).message);
+	}
+
+	@Override
+	public int hashCode() {
+		return message.hashCode();
+	}
+
+	private static class Encoded {
+		private final Protocol protocol;
+		private final boolean upstream;
+		private final ChannelBuffer header;
+		private final ChannelBuffer body;
+
+		public Encoded(Protocol protocol, boolean upstream, ChannelBuffer header, ChannelBuffer body) {
+			this.protocol = protocol;
+			this.upstream = upstream;
+			this.header = header;
+			this.body = body;
+		}
+	}
+}
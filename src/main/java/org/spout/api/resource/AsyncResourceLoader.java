@@ -0,0 +1,515 @@
+/*
+ * This file is part of SpoutAPI.
+ *
+ * Copyright (c) 2011-2012, Spout LLC <http://www.spout.org/>
+ * SpoutAPI is licensed under the Spout License Version 1.
+ *
+ * SpoutAPI is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * In addition, 180 days after any changes are published, you can use the
+ * software, incorporating those changes, under the terms of the MIT license,
+ * as described in the Spout License Version 1.
+ *
+ * SpoutAPI is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License,
+ * the MIT license and the Spout License Version 1 along with this program.
+ * If not, see <http://www.gnu.org/licenses/> for the GNU Lesser General Public
+ * License and see <http://spout.in/licensev1> for the full license, including
+ * the MIT license.
+ */
+package org.spout.api.resource;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.io.input.CountingInputStream;
+
+import org.spout.api.Spout;
+import org.spout.api.util.future.SimpleFuture;
+
+/**
+ * A {@link ResourceLoader} that decodes resources on an {@link Executor} and
+ * keeps the decoded resources in a bounded cache keyed by URI.<br>
+ * <br>
+ * Concurrent requests for the same URI share a single load, but each request
+ * receives its own future, so cancelling one does not affect the others. The cache is
+ * bounded by the total weight of its entries, as estimated by a
+ * {@link ResourceWeigher}, and evicts the least recently used resources first.
+ *
+ * @param <E> type of resource loaded
+ */
+public class AsyncResourceLoader<E extends Resource> implements ResourceLoader<E> {
+	private final ResourceLoader<E> loader;
+	private final ResourcePathResolver resolver;
+	private final Executor executor;
+	private final ResourceWeigher<? super E> weigher;
+	private final long maxWeight;
+	private final ConcurrentMap<URI, PendingLoad<E>> pending = new ConcurrentHashMap<URI, PendingLoad<E>>();
+	private final LinkedHashMap<URI, CachedResource<E>> cache = new LinkedHashMap<URI, CachedResource<E>>(16, 0.75f, true);
+	private long weight = 0;
+	private final AtomicLong hits = new AtomicLong();
+	private final AtomicLong misses = new AtomicLong();
+	private final AtomicLong loads = new AtomicLong();
+	private final AtomicLong failures = new AtomicLong();
+	private final AtomicLong loadTime = new AtomicLong();
+
+	/**
+	 * Creates a loader which reads resources through the {@link org.spout.api.FileSystem}.
+	 *
+	 * @param loader used to decode the resources
+	 * @param executor to decode the resources on
+	 * @param weigher to estimate the weight of the decoded resources with
+	 * @param maxWeight the maximum total weight of the cached resources
+	 */
+	public AsyncResourceLoader(ResourceLoader<E> loader, Executor executor, ResourceWeigher<? super E> weigher, long maxWeight) {
+		this(loader, null, executor, weigher, maxWeight);
+	}
+
+	/**
+	 * Creates a loader which reads resources through the given resolver.
+	 *
+	 * @param loader used to decode the resources
+	 * @param resolver to open the resource streams with, or null to use the {@link org.spout.api.FileSystem}
+	 * @param executor to decode the resources on
+	 * @param weigher to estimate the weight of the decoded resources with
+	 * @param maxWeight the maximum total weight of the cached resources
+	 */
+	public AsyncResourceLoader(ResourceLoader<E> loader, ResourcePathResolver resolver, Executor executor, ResourceWeigher<? super E> weigher, long maxWeight) {
+		if (loader == null || executor == null || weigher == null) {
+			throw new IllegalArgumentException("Loader, executor and weigher may not be null");
+		}
+		if (maxWeight < 0) {
+			throw new IllegalArgumentException("Maximum weight may not be negative");
+		}
+		this.loader = loader;
+		this.resolver = resolver;
+		this.executor = executor;
+		this.weigher = weigher;
+		this.maxWeight = maxWeight;
+	}
+
+	/**
+	 * Gets the resource that corresponds with the given URI without blocking.<br>
+	 * <br>
+	 * Callers requesting the same URI while it is loading share the load, but
+	 * every caller receives its own future. Cancelling a future only affects
+	 * its caller, the load continues for the other callers.
+	 *
+	 * @param resource to load
+	 * @return a future for the loaded resource
+	 */
+	public Future<E> getResourceAsync(final URI resource) {
+		E cached = getCached(resource);
+		if (cached != null) {
+			hits.incrementAndGet();
+			return completed(cached);
+		}
+
+		final PendingLoad<E> load = new PendingLoad<E>();
+		PendingLoad<E> existing = pending.putIfAbsent(resource, load);
+		if (existing != null) {
+			hits.incrementAndGet();
+			return existing.join();
+		}
+
+		// The resource may have been cached between the lookup and claiming the load
+		cached = getCached(resource);
+		if (cached != null) {
+			hits.incrementAndGet();
+			pending.remove(resource, load);
+			load.setResult(cached);
+			return completed(cached);
+		}
+
+		misses.incrementAndGet();
+		Future<E> future = load.join();
+		try {
+			executor.execute(new Runnable() {
+				@Override
+				public void run() {
+					load(resource, load);
+				}
+			});
+		} catch (RejectedExecutionException e) {
+			failures.incrementAndGet();
+			pending.remove(resource, load);
+			load.setThrowable(e);
+		}
+		return future;
+	}
+
+	@Override
+	public E getResource(URI resource) throws ResourceNotFoundException {
+		try {
+			E result = getResourceAsync(resource).get();
+			if (result == null) {
+				throw new ResourceNotFoundException(resource.toString());
+			}
+			return result;
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new ResourceNotFoundException(resource.toString());
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof ResourceNotFoundException) {
+				throw (ResourceNotFoundException) cause;
+			} else if (cause instanceof RuntimeException) {
+				throw (RuntimeException) cause;
+			} else if (cause instanceof Error) {
+				throw (Error) cause;
+			}
+			throw new RuntimeException("Unable to load " + resource, cause);
+		}
+	}
+
+	@Override
+	public E getResource(InputStream stream) {
+		return loader.getResource(stream);
+	}
+
+	@Override
+	public String getFallbackResourceName() {
+		return loader.getFallbackResourceName();
+	}
+
+	@Override
+	public String getProtocol() {
+		return loader.getProtocol();
+	}
+
+	@Override
+	public String[] getExtensions() {
+		return loader.getExtensions();
+	}
+
+	/**
+	 * Gets the resource for the given URI if it is cached.
+	 *
+	 * @param resource to look up
+	 * @return the cached resource, or null if it is not cached
+	 */
+	public E getCached(URI resource) {
+		synchronized (cache) {
+			CachedResource<E> entry = cache.get(resource);
+			return entry == null ? null : entry.resource;
+		}
+	}
+
+	/**
+	 * Removes the given resource from the cache.<br>
+	 * <br>
+	 * A load of the resource which is in progress still completes the
+	 * futures of its callers, but its result is not cached, and later
+	 * requests start a new load.
+	 *
+	 * @param resource to remove
+	 * @return true if the resource was cached or loading
+	 */
+	public boolean invalidate(URI resource) {
+		synchronized (cache) {
+			boolean loading = invalidatePending(resource);
+			CachedResource<E> entry = cache.remove(resource);
+			if (entry == null) {
+				return loading;
+			}
+			weight -= entry.weight;
+			return true;
+		}
+	}
+
+	/**
+	 * Removes all resources from the cache. Loads in progress are not cached,
+	 * see {@link #invalidate(URI)}.
+	 */
+	public void invalidateAll() {
+		synchronized (cache) {
+			for (URI resource : pending.keySet()) {
+				invalidatePending(resource);
+			}
+			cache.clear();
+			weight = 0;
+		}
+	}
+
+	/**
+	 * Gets the loader used to decode the resources.
+	 *
+	 * @return the resource loader
+	 */
+	public ResourceLoader<E> getLoader() {
+		return loader;
+	}
+
+	/**
+	 * Gets the number of resources in the cache.
+	 *
+	 * @return the number of cached resources
+	 */
+	public int getCachedCount() {
+		synchronized (cache) {
+			return cache.size();
+		}
+	}
+
+	/**
+	 * Gets the total weight of the cached resources.
+	 *
+	 * @return the cached weight
+	 */
+	public long getWeight() {
+		synchronized (cache) {
+			return weight;
+		}
+	}
+
+	/**
+	 * Gets the maximum total weight of the cached resources.
+	 *
+	 * @return the maximum weight
+	 */
+	public long getMaxWeight() {
+		return maxWeight;
+	}
+
+	/**
+	 * Gets the number of requests served from the cache or joined to a load
+	 * already in progress.
+	 *
+	 * @return the hit count
+	 */
+	public long getHitCount() {
+		return hits.get();
+	}
+
+	/**
+	 * Gets the number of requests which started a new load.
+	 *
+	 * @return the miss count
+	 */
+	public long getMissCount() {
+		return misses.get();
+	}
+
+	/**
+	 * Gets the fraction of requests which did not start a new load.
+	 *
+	 * @return the hit rate, between 0 and 1
+	 */
+	public double getHitRate() {
+		long hits = this.hits.get();
+		long total = hits + misses.get();
+		return total == 0 ? 0 : (double) hits / total;
+	}
+
+	/**
+	 * Gets the number of resources loaded successfully.
+	 *
+	 * @return the load count
+	 */
+	public long getLoadCount() {
+		return loads.get();
+	}
+
+	/**
+	 * Gets the number of loads which failed.
+	 *
+	 * @return the failure count
+	 */
+	public long getFailureCount() {
+		return failures.get();
+	}
+
+	/**
+	 * Gets the total time spent reading and decoding resources.
+	 *
+	 * @return the load time, in nanoseconds
+	 */
+	public long getTotalLoadTime() {
+		return loadTime.get();
+	}
+
+	/**
+	 * Gets the average time spent reading and decoding a resource.
+	 *
+	 * @return the average load time, in nanoseconds
+	 */
+	public long getAverageLoadTime() {
+		long loads = this.loads.get() + failures.get();
+		return loads == 0 ? 0 : loadTime.get() / loads;
+	}
+
+	/**
+	 * Opens the stream for the given resource.
+	 *
+	 * @param resource to open
+	 * @return the stream
+	 * @throws ResourceNotFoundException if the resource does not exist
+	 */
+	protected InputStream openStream(URI resource) throws ResourceNotFoundException {
+		InputStream stream;
+		if (resolver == null) {
+			stream = Spout.getFilesystem().getResourceStream(resource);
+		} else {
+			stream = resolver.getStream(resource);
+		}
+		if (stream == null) {
+			throw new ResourceNotFoundException(resource.toString());
+		}
+		return stream;
+	}
+
+	/**
+	 * Gets the weigher used to estimate the weight of the decoded resources.
+	 *
+	 * @return the resource weigher
+	 */
+	public ResourceWeigher<? super E> getWeigher() {
+		return weigher;
+	}
+
+	private void load(URI resource, PendingLoad<E> load) {
+		long start = System.nanoTime();
+		try {
+			CountingInputStream stream = new CountingInputStream(openStream(resource));
+			E result;
+			try {
+				result = loader.getResource(stream);
+			} finally {
+				try {
+					stream.close();
+				} catch (IOException ignore) {
+				}
+			}
+			if (result == null) {
+				throw new ResourceNotFoundException(resource.toString());
+			}
+			result.path = resource;
+			loadTime.addAndGet(System.nanoTime() - start);
+			loads.incrementAndGet();
+			cache(resource, load, result, weigher.getWeight(result, stream.getByteCount()));
+			// Later requests are served from the cache once the load is no longer pending
+			pending.remove(resource, load);
+			load.setResult(result);
+		} catch (Throwable t) {
+			loadTime.addAndGet(System.nanoTime() - start);
+			failures.incrementAndGet();
+			pending.remove(resource, load);
+			load.setThrowable(t);
+		}
+	}
+
+	private void cache(URI resource, PendingLoad<E> load, E result, long resultWeight) {
+		if (resultWeight > maxWeight) {
+			return;
+		}
+		synchronized (cache) {
+			if (load.invalidated) {
+				return;
+			}
+			CachedResource<E> old = cache.put(resource, new CachedResource<E>(result, resultWeight));
+			if (old != null) {
+				weight -= old.weight;
+			}
+			weight += resultWeight;
+			Iterator<Map.Entry<URI, CachedResource<E>>> i = cache.entrySet().iterator();
+			while (weight > maxWeight && i.hasNext()) {
+				weight -= i.next().getValue().weight;
+				i.remove();
+			}
+		}
+	}
+
+	/**
+	 * Stops the load in progress for a resource from being cached, must be called while holding the cache lock
+	 */
+	private boolean invalidatePending(URI resource) {
+		PendingLoad<E> load = pending.remove(resource);
+		if (load == null) {
+			return false;
+		}
+		load.invalidated = true;
+		return true;
+	}
+
+	private static <E> Future<E> completed(E result) {
+		SimpleFuture<E> future = new SimpleFuture<E>();
+		future.setResult(result);
+		return future;
+	}
+
+	/**
+	 * A load shared by every caller requesting the same URI while it is in
+	 * progress. Each caller waits on its own future, which is completed with
+	 * the result of the load.
+	 */
+	private static class PendingLoad<E> {
+		private final List<SimpleFuture<E>> waiters = new ArrayList<SimpleFuture<E>>(1);
+		/**
+		 * Set while holding the cache lock if the resource is invalidated during the load
+		 */
+		private boolean invalidated = false;
+		private boolean done = false;
+		private E result;
+		private Throwable throwable;
+
+		public synchronized Future<E> join() {
+			SimpleFuture<E> future = new SimpleFuture<E>();
+			if (!done) {
+				waiters.add(future);
+			} else if (throwable != null) {
+				future.setThrowable(throwable);
+			} else {
+				future.setResult(result);
+			}
+			return future;
+		}
+
+		public synchronized void setResult(E result) {
+			this.result = result;
+			done = true;
+			for (SimpleFuture<E> future : waiters) {
+				future.setResult(result);
+			}
+			waiters.clear();
+		}
+
+		public synchronized void setThrowable(Throwable throwable) {
+			this.throwable = throwable;
+			done = true;
+			for (SimpleFuture<E> future : waiters) {
+				future.setThrowable(throwable);
+			}
+			waiters.clear();
+		}
+	}
+
+	private static class CachedResource<E> {
+		private final E resource;
+		private final long weight;
+
+		public CachedResource(E resource, long weight) {
+			this.resource = resource;
+			this.weight = weight;
+		}
+	}
+}
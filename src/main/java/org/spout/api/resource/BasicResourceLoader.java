@@ -42,11 +42,15 @@ public abstract class BasicResourceLoader<E extends Resource> implements Resourc
 	@Override
 	public E getResource(URI resource) throws ResourceNotFoundException {
 		InputStream s = Spout.getFilesystem().getResourceStream(resource);
-		E r = getResource(s);
+		E r;
 		try {
-			s.close();
-		} catch (IOException e) {			
-			e.printStackTrace();
+			r = getResource(s);
+		} finally {
+			try {
+				s.close();
+			} catch (IOException e) {
+				e.printStackTrace();
+			}
 		}
 		r.path = resource;
 		return r;
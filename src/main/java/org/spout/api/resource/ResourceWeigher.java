@@ -0,0 +1,45 @@
+/*
+ * This file is part of SpoutAPI.
+ *
+ * Copyright (c) 2011-2012, Spout LLC <http://www.spout.org/>
+ * SpoutAPI is licensed under the Spout License Version 1.
+ *
+ * SpoutAPI is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * In addition, 180 days after any changes are published, you can use the
+ * software, incorporating those changes, under the terms of the MIT license,
+ * as described in the Spout License Version 1.
+ *
+ * SpoutAPI is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License,
+ * the MIT license and the Spout License Version 1 along with this program.
+ * If not, see <http://www.gnu.org/licenses/> for the GNU Lesser General Public
+ * License and see <http://spout.in/licensev1> for the full license, including
+ * the MIT license.
+ */
+package org.spout.api.resource;
+
+/**
+ * Estimates the memory used by a decoded resource, for caches bounded by weight.
+ *
+ * @param <E> type of resource weighed
+ */
+public interface ResourceWeigher<E extends Resource> {
+	/**
+	 * Gets the weight of a decoded resource. The bytes read are the size of
+	 * the encoded resource, which for compressed formats such as images is
+	 * much smaller than the decoded resource.
+	 *
+	 * @param resource that was decoded
+	 * @param bytesRead the number of bytes read while decoding
+	 * @return the weight of the resource
+	 */
+	public long getWeight(E resource, long bytesRead);
+}
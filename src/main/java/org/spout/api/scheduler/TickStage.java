@@ -177,17 +177,32 @@ public class TickStage {
 	}
 
 	private static int stage = TICKSTART;
+	private static volatile long tick = 0;
 
 	/**
 	 * Sets the current stage. This is not synchronised, so should only be
-	 * called during the stable period between stages.
+	 * called during the stable period between stages.<br>
+	 * <br>
+	 * Entering the TICKSTART stage starts a new tick.
 	 *
 	 * @param stage the stage
 	 */
 	public static void setStage(int stage) {
+		if (stage == TICKSTART && TickStage.stage != TICKSTART) {
+			tick++;
+		}
 		TickStage.stage = stage;
 	}
 
+	/**
+	 * Gets the number of the current tick.  This number is increased every time the TICKSTART stage is entered.
+	 *
+	 * @return the tick number
+	 */
+	public static long getTick() {
+		return tick;
+	}
+
 	/**
 	 * Checks if the current stages is one of the valid allowed stages.
 	 *
@@ -0,0 +1,266 @@
+/*
+ * This file is part of SpoutAPI.
+ *
+ * Copyright (c) 2011-2012, Spout LLC <http://www.spout.org/>
+ * SpoutAPI is licensed under the Spout License Version 1.
+ *
+ * SpoutAPI is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * In addition, 180 days after any changes are published, you can use the
+ * software, incorporating those changes, under the terms of the MIT license,
+ * as described in the Spout License Version 1.
+ *
+ * SpoutAPI is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License,
+ * the MIT license and the Spout License Version 1 along with this program.
+ * If not, see <http://www.gnu.org/licenses/> for the GNU Lesser General Public
+ * License and see <http://spout.in/licensev1> for the full license, including
+ * the MIT license.
+ */
+package org.spout.api.util;
+
+import java.util.Arrays;
+import java.util.Collection;
+
+/**
+ * A prefix tree which maps strings to values.<br>
+ * <br>
+ * Exact lookups and prefix searches take time proportional to the length of the key.  Fuzzy lookups walk the
+ * tree computing one row of the edit distance matrix per node, and skip any branch which cannot be within the
+ * maximum distance.<br>
+ * <br>
+ * Keys are stored in the node at which they end, so searches return the original strings without allocating
+ * new ones.  Children are kept sorted, so searches return keys in lexicographic order.
+ *
+ * @param <T> the value type
+ */
+public class StringTrie<T> {
+	private Node<T> root = new Node<T>();
+	private int size = 0;
+	private int depth = 0;
+
+	/**
+	 * Maps a key to a value
+	 *
+	 * @param key the key
+	 * @param value the value
+	 * @return the previous value, or null if the key was not mapped
+	 */
+	public T put(String key, T value) {
+		Node<T> node = root;
+		for (int i = 0; i < key.length(); i++) {
+			node = node.getOrAddChild(key.charAt(i));
+		}
+		T old = node.value;
+		if (node.key == null) {
+			size++;
+		}
+		node.key = key;
+		node.value = value;
+		depth = Math.max(depth, key.length());
+		return old;
+	}
+
+	/**
+	 * Gets the value mapped to a key
+	 *
+	 * @param key the key
+	 * @return the value, or null if the key is not mapped
+	 */
+	public T get(String key) {
+		Node<T> node = find(key);
+		return node == null ? null : node.value;
+	}
+
+	/**
+	 * Removes the mapping for a key
+	 *
+	 * @param key the key
+	 * @return the value which was mapped to the key, or null if the key was not mapped
+	 */
+	public T remove(String key) {
+		Node<T> node = find(key);
+		if (node == null || node.key == null) {
+			return null;
+		}
+		T old = node.value;
+		node.key = null;
+		node.value = null;
+		size--;
+		return old;
+	}
+
+	/**
+	 * Removes all mappings
+	 */
+	public void clear() {
+		root = new Node<T>();
+		size = 0;
+		depth = 0;
+	}
+
+	/**
+	 * Gets the number of keys in the tree
+	 *
+	 * @return the number of keys
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Adds every key which starts with the given prefix to a collection, in lexicographic order
+	 *
+	 * @param prefix the prefix
+	 * @param keys the collection to add the keys to
+	 * @param limit the maximum number of keys to add
+	 * @return the number of keys added
+	 */
+	public int getKeysWithPrefix(String prefix, Collection<? super String> keys, int limit) {
+		Node<T> node = find(prefix);
+		if (node == null || limit <= 0) {
+			return 0;
+		}
+		return collect(node, keys, limit);
+	}
+
+	/**
+	 * Finds the value of the key which is closest to the given key, if it is within a maximum edit distance.
+	 * If several keys are equally close, the first in lexicographic order is used.
+	 *
+	 * @param key the key
+	 * @param maxDistance the maximum Levenshtein distance
+	 * @return the value, or null if no key is within the distance
+	 */
+	public T getClosest(String key, int maxDistance) {
+		int length = key.length();
+		int rows = Math.min(depth, length + maxDistance) + 1;
+		int[][] matrix = new int[rows][length + 1];
+		for (int i = 0; i <= length; i++) {
+			matrix[0][i] = i;
+		}
+		Search<T> search = new Search<T>(key, matrix, maxDistance);
+		if (root.key != null && length <= maxDistance) {
+			search.found(root, length);
+		}
+		for (int i = 0; i < root.size; i++) {
+			search.search(root.nodes[i], root.chars[i], 1);
+		}
+		return search.best == null ? null : search.best.value;
+	}
+
+	private Node<T> find(String key) {
+		Node<T> node = root;
+		for (int i = 0; i < key.length() && node != null; i++) {
+			node = node.getChild(key.charAt(i));
+		}
+		return node;
+	}
+
+	private int collect(Node<T> node, Collection<? super String> keys, int limit) {
+		int added = 0;
+		if (node.key != null) {
+			keys.add(node.key);
+			added++;
+		}
+		for (int i = 0; i < node.size && added < limit; i++) {
+			added += collect(node.nodes[i], keys, limit - added);
+		}
+		return added;
+	}
+
+	private static class Search<T> {
+		private final String key;
+		private final int[][] matrix;
+		private final int maxDistance;
+		private Node<T> best = null;
+		private int bestDistance = Integer.MAX_VALUE;
+
+		public Search(String key, int[][] matrix, int maxDistance) {
+			this.key = key;
+			this.matrix = matrix;
+			this.maxDistance = maxDistance;
+		}
+
+		public void search(Node<T> node, char c, int row) {
+			if (row >= matrix.length) {
+				return;
+			}
+			int[] previous = matrix[row - 1];
+			int[] current = matrix[row];
+			current[0] = row;
+			int min = row;
+			for (int i = 1; i < current.length; i++) {
+				int cost = key.charAt(i - 1) == c ? 0 : 1;
+				int value = Math.min(Math.min(current[i - 1] + 1, previous[i] + 1), previous[i - 1] + cost);
+				current[i] = value;
+				if (value < min) {
+					min = value;
+				}
+			}
+			int distance = current[current.length - 1];
+			if (node.key != null && distance <= maxDistance) {
+				found(node, distance);
+			}
+			if (min > maxDistance || min > bestDistance) {
+				return;
+			}
+			for (int i = 0; i < node.size; i++) {
+				search(node.nodes[i], node.chars[i], row + 1);
+			}
+		}
+
+		public void found(Node<T> node, int distance) {
+			if (distance < bestDistance) {
+				best = node;
+				bestDistance = distance;
+			}
+		}
+	}
+
+	private static class Node<T> {
+		private char[] chars = null;
+		private Node<T>[] nodes = null;
+		private int size = 0;
+		private String key = null;
+		private T value = null;
+
+		public Node<T> getChild(char c) {
+			if (size == 0) {
+				return null;
+			}
+			int i = Arrays.binarySearch(chars, 0, size, c);
+			return i < 0 ? null : nodes[i];
+		}
+
+		@SuppressWarnings("unchecked")
+		public Node<T> getOrAddChild(char c) {
+			int i = size == 0 ? -1 : Arrays.binarySearch(chars, 0, size, c);
+			if (i >= 0) {
+				return nodes[i];
+			}
+			i = -(i + 1);
+			if (chars == null) {
+				chars = new char[2];
+				nodes = new Node[2];
+			} else if (size == chars.length) {
+				chars = Arrays.copyOf(chars, size * 2);
+				nodes = Arrays.copyOf(nodes, size * 2);
+			}
+			System.arraycopy(chars, i, chars, i + 1, size - i);
+			System.arraycopy(nodes, i, nodes, i + 1, size - i);
+			Node<T> node = new Node<T>();
+			chars[i] = c;
+			nodes[i] = node;
+			size++;
+			return node;
+		}
+	}
+}
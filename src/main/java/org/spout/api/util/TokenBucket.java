@@ -0,0 +1,163 @@
+/*
+ * This file is part of SpoutAPI.
+ *
+ * Copyright (c) 2011-2012, Spout LLC <http://www.spout.org/>
+ * SpoutAPI is licensed under the Spout License Version 1.
+ *
+ * SpoutAPI is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * In addition, 180 days after any changes are published, you can use the
+ * software, incorporating those changes, under the terms of the MIT license,
+ * as described in the Spout License Version 1.
+ *
+ * SpoutAPI is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License,
+ * the MIT license and the Spout License Version 1 along with this program.
+ * If not, see <http://www.gnu.org/licenses/> for the GNU Lesser General Public
+ * License and see <http://spout.in/licensev1> for the full license, including
+ * the MIT license.
+ */
+package org.spout.api.util;
+
+/**
+ * A token bucket used to limit the rate of an operation.<br>
+ * <br>
+ * Tokens are added by calling {@link #refill()}, usually once per tick, and the bucket never holds more than its capacity.
+ * Consuming tokens may take the bucket below zero, so that operations which cost more than the remaining tokens are paid
+ * back out of the following refills.<br>
+ * <br>
+ * The refill rate can be adjusted using additive increase and multiplicative decrease, which lets the rate follow the
+ * throughput the consumer is actually able to sustain.<br>
+ * <br>
+ * This class is not thread safe.
+ */
+public class TokenBucket {
+	private final int minRate;
+	private final int maxRate;
+	private final int capacity;
+	private int rate;
+	private int tokens;
+
+	/**
+	 * Creates a token bucket
+	 *
+	 * @param rate the initial number of tokens added per refill
+	 * @param minRate the minimum rate
+	 * @param maxRate the maximum rate
+	 * @param capacity the maximum number of tokens the bucket may hold
+	 */
+	public TokenBucket(int rate, int minRate, int maxRate, int capacity) {
+		if (minRate <= 0 || minRate > maxRate) {
+			throw new IllegalArgumentException("The minimum rate must be positive and no larger than the maximum rate");
+		}
+		this.minRate = minRate;
+		this.maxRate = maxRate;
+		this.capacity = capacity;
+		this.rate = clamp(rate);
+		this.tokens = 0;
+	}
+
+	/**
+	 * Adds the current rate of tokens to the bucket
+	 */
+	public void refill() {
+		refill(1);
+	}
+
+	/**
+	 * Adds a multiple of the current rate of tokens to the bucket
+	 *
+	 * @param multiplier for the rate
+	 */
+	public void refill(int multiplier) {
+		refill(multiplier, capacity);
+	}
+
+	/**
+	 * Adds a multiple of the current rate of tokens to the bucket, without filling it above the given limit<br>
+	 * <br>
+	 * A limit equal to the rate stops tokens from being banked across refills where nothing was consumed, while a
+	 * larger multiplier still pays back overdrawn tokens faster.
+	 *
+	 * @param multiplier for the rate
+	 * @param limit the maximum number of tokens the bucket may hold after this refill, never more than its capacity
+	 */
+	public void refill(int multiplier, int limit) {
+		int max = Math.min(capacity, limit);
+		if (tokens < max) {
+			tokens = Math.min(max, tokens + rate * multiplier);
+		}
+	}
+
+	/**
+	 * Gets if there are tokens left in the bucket
+	 *
+	 * @return true if at least one token is available
+	 */
+	public boolean hasTokens() {
+		return tokens > 0;
+	}
+
+	/**
+	 * Gets the number of tokens in the bucket, which may be negative
+	 *
+	 * @return the number of tokens
+	 */
+	public int getTokens() {
+		return tokens;
+	}
+
+	/**
+	 * Removes tokens from the bucket
+	 *
+	 * @param amount of tokens to remove
+	 */
+	public void consume(int amount) {
+		tokens -= amount;
+	}
+
+	/**
+	 * Gets the number of tokens added per refill
+	 *
+	 * @return the rate
+	 */
+	public int getRate() {
+		return rate;
+	}
+
+	/**
+	 * Sets the number of tokens added per refill, limited to the minimum and maximum rate
+	 *
+	 * @param rate the new rate
+	 */
+	public void setRate(int rate) {
+		this.rate = clamp(rate);
+	}
+
+	/**
+	 * Increases the rate by a fixed amount
+	 *
+	 * @param amount to increase by
+	 */
+	public void increaseRate(int amount) {
+		setRate(rate + amount);
+	}
+
+	/**
+	 * Halves the rate
+	 */
+	public void decreaseRate() {
+		setRate(rate >> 1);
+	}
+
+	private int clamp(int rate) {
+		return Math.max(minRate, Math.min(maxRate, rate));
+	}
+}
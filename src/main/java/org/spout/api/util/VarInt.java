@@ -29,28 +29,130 @@ package org.spout.api.util;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.ByteBuffer;
+
+import org.jboss.netty.buffer.ChannelBuffer;
 
 import org.spout.api.util.list.ByteCircularBufferFIFO;
 
 /**
- * Implements a variable integer format.  All integers are supported, but small positive integers are represented using fewer bytes.
+ * Implements variable integer formats.<br>
+ * <br>
+ * The {@link Format#LEGACY} format supports all integers, but small positive integers are represented using fewer bytes.
  * 
  * 0 - 127:      1 byte
  * 128 - 32511:  2 bytes
  * Rest:         5 bytes
+ * 
+ * Strings are written as a length followed by one legacy integer per UTF-16 char.<br>
+ * <br>
+ * The {@link Format#COMPACT} format uses LEB128 integers (7 bits per byte, high bit set when more bytes follow) and
+ * writes strings as a length prefixed UTF-8 byte array. Packed int, long and short arrays can be written to and read from
+ * {@link ChannelBuffer}s and {@link ByteBuffer}s in a single bulk operation.
  */
 public class VarInt {
+	/**
+	 * The maximum number of bytes required to encode an int using the LEB128 format
+	 */
+	public static final int MAX_VARINT_LENGTH = 5;
+	/**
+	 * The maximum number of bytes required to encode a long using the LEB128 format
+	 */
+	public static final int MAX_VARLONG_LENGTH = 10;
+
+	/**
+	 * The wire formats supported by this class.<br>
+	 * The id of a format can be sent ahead of the data so that the receiving side knows how to decode it.
+	 */
+	public static enum Format {
+		/**
+		 * The original 1/2/5 byte integer format, strings written as one integer per char
+		 */
+		LEGACY(0),
+		/**
+		 * LEB128 integers, strings written as length prefixed UTF-8
+		 */
+		COMPACT(1);
+
+		private final byte id;
+
+		private Format(int id) {
+			this.id = (byte) id;
+		}
+
+		/**
+		 * Gets the id of this format
+		 * @return the id
+		 */
+		public byte getId() {
+			return id;
+		}
+
+		/**
+		 * Gets the format matching an id
+		 * @param id of the format
+		 * @return the format
+		 * @throws IllegalArgumentException if no format has the given id
+		 */
+		public static Format get(int id) {
+			for (Format format : values()) {
+				if (format.id == id) {
+					return format;
+				}
+			}
+			throw new IllegalArgumentException("Unknown VarInt format id " + id);
+		}
+
+		public void writeInt(OutputStream buf, int data) throws IOException {
+			if (this == COMPACT) {
+				VarInt.writeVarInt(buf, data);
+			} else {
+				VarInt.writeInt(buf, data);
+			}
+		}
+
+		public int readInt(InputStream buf) throws IOException {
+			if (this == COMPACT) {
+				return VarInt.readVarInt(buf);
+			} else {
+				return VarInt.readInt(buf);
+			}
+		}
+
+		public void writeString(OutputStream buf, String data) throws IOException {
+			if (this == COMPACT) {
+				VarInt.writeUTF8String(buf, data);
+			} else {
+				VarInt.writeString(buf, data);
+			}
+		}
+
+		public String readString(InputStream buf) throws IOException {
+			if (this == COMPACT) {
+				return VarInt.readUTF8String(buf);
+			} else {
+				return VarInt.readString(buf);
+			}
+		}
+	}
+
 	public static void writeString(OutputStream buf, String data) throws IOException {
 		if (data == null) {
 			writeInt(buf, -1);
 			return;
 		}
 
-		writeInt(buf, data.length());
-
-		for (int i = 0; i < data.length(); i++) {
-			writeInt(buf, data.charAt(i) & 0xFFFF);
+		final int length = data.length();
+		int encodedLength = getIntLength(length);
+		for (int i = 0; i < length; i++) {
+			encodedLength += getIntLength(data.charAt(i) & 0xFFFF);
+		}
+		byte[] arr = new byte[encodedLength];
+		int pos = encodeInt(arr, 0, length);
+		for (int i = 0; i < length; i++) {
+			pos = encodeInt(arr, pos, data.charAt(i) & 0xFFFF);
 		}
+		buf.write(arr, 0, pos);
 	}
 
 	public static void writeInt(ByteCircularBufferFIFO buf, int data) {
@@ -82,7 +184,45 @@ public class VarInt {
 			buf.write((byte)data);
 		}
 	}
-	
+
+	/**
+	 * Gets the number of bytes used to encode an integer in the legacy format
+	 * @param data to encode
+	 * @return the encoded length
+	 */
+	private static int getIntLength(int data) {
+		if (data < 0 || data >= 0x00007F00) {
+			return 5;
+		} else if (data >= 0x00000080) {
+			return 2;
+		} else {
+			return 1;
+		}
+	}
+
+	/**
+	 * Encodes an integer into an array using the legacy format
+	 * @param arr to write to
+	 * @param pos to start writing at
+	 * @param data to encode
+	 * @return the position after the last byte written
+	 */
+	private static int encodeInt(byte[] arr, int pos, int data) {
+		if (data < 0 || data >= 0x00007F00) {
+			arr[pos++] = (byte)(0xFF);
+			arr[pos++] = (byte)(data >> 24);
+			arr[pos++] = (byte)(data >> 16);
+			arr[pos++] = (byte)(data >> 8);
+			arr[pos++] = (byte)(data >> 0);
+		} else if (data >= 0x00000080) {
+			arr[pos++] = (byte)(0x80 | (data >> 8));
+			arr[pos++] = (byte)(       (data >> 0));
+		} else {
+			arr[pos++] = (byte)data;
+		}
+		return pos;
+	}
+
 	public static String readString(InputStream buf) throws IOException {
 		int length = readInt(buf);
 		if (length == -1) {
@@ -149,4 +289,629 @@ public class VarInt {
 		return data;
 	}
 
+	/**
+	 * Gets the number of bytes required to encode an int using the LEB128 format
+	 * @param data to encode
+	 * @return the number of bytes, 1 to 5
+	 */
+	public static int getVarIntLength(int data) {
+		if ((data & 0xFFFFFF80) == 0) {
+			return 1;
+		} else if ((data & 0xFFFFC000) == 0) {
+			return 2;
+		} else if ((data & 0xFFE00000) == 0) {
+			return 3;
+		} else if ((data & 0xF0000000) == 0) {
+			return 4;
+		}
+		return 5;
+	}
+
+	/**
+	 * Gets the number of bytes required to encode a long using the LEB128 format
+	 * @param data to encode
+	 * @return the number of bytes, 1 to 10
+	 */
+	public static int getVarLongLength(long data) {
+		int length = 1;
+		while ((data & 0xFFFFFFFFFFFFFF80L) != 0) {
+			data >>>= 7;
+			length++;
+		}
+		return length;
+	}
+
+	/**
+	 * Maps signed integers to unsigned integers so that values with a small magnitude encode using few bytes
+	 * @param data to encode
+	 * @return the zig-zag encoded value
+	 */
+	public static int encodeZigZag(int data) {
+		return (data << 1) ^ (data >> 31);
+	}
+
+	/**
+	 * Reverses {@link #encodeZigZag(int)}
+	 * @param data to decode
+	 * @return the signed value
+	 */
+	public static int decodeZigZag(int data) {
+		return (data >>> 1) ^ -(data & 1);
+	}
+
+	/**
+	 * Maps signed longs to unsigned longs so that values with a small magnitude encode using few bytes
+	 * @param data to encode
+	 * @return the zig-zag encoded value
+	 */
+	public static long encodeZigZag(long data) {
+		return (data << 1) ^ (data >> 63);
+	}
+
+	/**
+	 * Reverses {@link #encodeZigZag(long)}
+	 * @param data to decode
+	 * @return the signed value
+	 */
+	public static long decodeZigZag(long data) {
+		return (data >>> 1) ^ -(data & 1);
+	}
+
+	/**
+	 * Encodes an int into an array using the LEB128 format
+	 * @param arr to write to, must have at least {@link #MAX_VARINT_LENGTH} bytes remaining
+	 * @param pos to start writing at
+	 * @param data to encode
+	 * @return the position after the last byte written
+	 */
+	public static int encodeVarInt(byte[] arr, int pos, int data) {
+		while ((data & 0xFFFFFF80) != 0) {
+			arr[pos++] = (byte) ((data & 0x7F) | 0x80);
+			data >>>= 7;
+		}
+		arr[pos++] = (byte) data;
+		return pos;
+	}
+
+	/**
+	 * Encodes a long into an array using the LEB128 format
+	 * @param arr to write to, must have at least {@link #MAX_VARLONG_LENGTH} bytes remaining
+	 * @param pos to start writing at
+	 * @param data to encode
+	 * @return the position after the last byte written
+	 */
+	public static int encodeVarLong(byte[] arr, int pos, long data) {
+		while ((data & 0xFFFFFFFFFFFFFF80L) != 0) {
+			arr[pos++] = (byte) ((data & 0x7F) | 0x80);
+			data >>>= 7;
+		}
+		arr[pos++] = (byte) data;
+		return pos;
+	}
+
+	public static void writeVarInt(OutputStream buf, int data) throws IOException {
+		if ((data & 0xFFFFFF80) == 0) {
+			buf.write(data);
+			return;
+		}
+		byte[] arr = new byte[MAX_VARINT_LENGTH];
+		buf.write(arr, 0, encodeVarInt(arr, 0, data));
+	}
+
+	public static void writeVarLong(OutputStream buf, long data) throws IOException {
+		byte[] arr = new byte[MAX_VARLONG_LENGTH];
+		buf.write(arr, 0, encodeVarLong(arr, 0, data));
+	}
+
+	public static void writeVarInt(ChannelBuffer buf, int data) {
+		while ((data & 0xFFFFFF80) != 0) {
+			buf.writeByte((data & 0x7F) | 0x80);
+			data >>>= 7;
+		}
+		buf.writeByte(data);
+	}
+
+	public static void writeVarLong(ChannelBuffer buf, long data) {
+		while ((data & 0xFFFFFFFFFFFFFF80L) != 0) {
+			buf.writeByte((int) (data & 0x7F) | 0x80);
+			data >>>= 7;
+		}
+		buf.writeByte((int) data);
+	}
+
+	public static void writeVarInt(ByteBuffer buf, int data) {
+		while ((data & 0xFFFFFF80) != 0) {
+			buf.put((byte) ((data & 0x7F) | 0x80));
+			data >>>= 7;
+		}
+		buf.put((byte) data);
+	}
+
+	public static void writeVarLong(ByteBuffer buf, long data) {
+		while ((data & 0xFFFFFFFFFFFFFF80L) != 0) {
+			buf.put((byte) ((data & 0x7F) | 0x80));
+			data >>>= 7;
+		}
+		buf.put((byte) data);
+	}
+
+	public static int readVarInt(InputStream buf) throws IOException {
+		int data = 0;
+		for (int shift = 0; shift < 35; shift += 7) {
+			int b = buf.read();
+			if (b == -1) {
+				throw new IllegalStateException("InputStream reached end when trying to read integer");
+			}
+			data |= (b & 0x7F) << shift;
+			if ((b & 0x80) == 0) {
+				return data;
+			}
+		}
+		throw new IllegalStateException("Malformed variable length integer");
+	}
+
+	public static long readVarLong(InputStream buf) throws IOException {
+		long data = 0;
+		for (int shift = 0; shift < 70; shift += 7) {
+			int b = buf.read();
+			if (b == -1) {
+				throw new IllegalStateException("InputStream reached end when trying to read long");
+			}
+			data |= (long) (b & 0x7F) << shift;
+			if ((b & 0x80) == 0) {
+				return data;
+			}
+		}
+		throw new IllegalStateException("Malformed variable length long");
+	}
+
+	public static int readVarInt(ChannelBuffer buf) {
+		int data = 0;
+		for (int shift = 0; shift < 35; shift += 7) {
+			byte b = buf.readByte();
+			data |= (b & 0x7F) << shift;
+			if ((b & 0x80) == 0) {
+				return data;
+			}
+		}
+		throw new IllegalStateException("Malformed variable length integer");
+	}
+
+	public static long readVarLong(ChannelBuffer buf) {
+		long data = 0;
+		for (int shift = 0; shift < 70; shift += 7) {
+			byte b = buf.readByte();
+			data |= (long) (b & 0x7F) << shift;
+			if ((b & 0x80) == 0) {
+				return data;
+			}
+		}
+		throw new IllegalStateException("Malformed variable length long");
+	}
+
+	public static int readVarInt(ByteBuffer buf) {
+		int data = 0;
+		for (int shift = 0; shift < 35; shift += 7) {
+			byte b = buf.get();
+			data |= (b & 0x7F) << shift;
+			if ((b & 0x80) == 0) {
+				return data;
+			}
+		}
+		throw new IllegalStateException("Malformed variable length integer");
+	}
+
+	public static long readVarLong(ByteBuffer buf) {
+		long data = 0;
+		for (int shift = 0; shift < 70; shift += 7) {
+			byte b = buf.get();
+			data |= (long) (b & 0x7F) << shift;
+			if ((b & 0x80) == 0) {
+				return data;
+			}
+		}
+		throw new IllegalStateException("Malformed variable length long");
+	}
+
+	/**
+	 * Encodes a string as a LEB128 length followed by its UTF-8 bytes.<br>
+	 * The length is stored as the number of bytes plus one, so that a length of 0 represents a null string.<br>
+	 * Unpaired surrogate chars are encoded as 3 byte sequences, so that every String can be decoded back unchanged.
+	 * @param data to encode, may be null
+	 * @return the encoded string
+	 */
+	public static byte[] encodeUTF8String(String data) {
+		if (data == null) {
+			return new byte[] {0};
+		}
+		final int length = data.length();
+		int utfLength = 0;
+		for (int i = 0; i < length; i++) {
+			char c = data.charAt(i);
+			if (c < 0x80) {
+				utfLength++;
+			} else if (c < 0x800) {
+				utfLength += 2;
+			} else if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(data.charAt(i + 1))) {
+				utfLength += 4;
+				i++;
+			} else {
+				utfLength += 3;
+			}
+		}
+		byte[] arr = new byte[getVarIntLength(utfLength + 1) + utfLength];
+		int pos = encodeVarInt(arr, 0, utfLength + 1);
+		for (int i = 0; i < length; i++) {
+			char c = data.charAt(i);
+			if (c < 0x80) {
+				arr[pos++] = (byte) c;
+			} else if (c < 0x800) {
+				arr[pos++] = (byte) (0xC0 | (c >> 6));
+				arr[pos++] = (byte) (0x80 | (c & 0x3F));
+			} else if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(data.charAt(i + 1))) {
+				int codePoint = Character.toCodePoint(c, data.charAt(++i));
+				arr[pos++] = (byte) (0xF0 | (codePoint >> 18));
+				arr[pos++] = (byte) (0x80 | ((codePoint >> 12) & 0x3F));
+				arr[pos++] = (byte) (0x80 | ((codePoint >> 6) & 0x3F));
+				arr[pos++] = (byte) (0x80 | (codePoint & 0x3F));
+			} else {
+				arr[pos++] = (byte) (0xE0 | (c >> 12));
+				arr[pos++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+				arr[pos++] = (byte) (0x80 | (c & 0x3F));
+			}
+		}
+		return arr;
+	}
+
+	/**
+	 * Decodes UTF-8 bytes written by {@link #encodeUTF8String(String)}
+	 * @param arr containing the bytes
+	 * @param off of the first byte
+	 * @param length of the UTF-8 data in bytes
+	 * @return the decoded string
+	 */
+	public static String decodeUTF8(byte[] arr, int off, int length) {
+		char[] chars = new char[length];
+		int count = 0;
+		final int end = off + length;
+		while (off < end) {
+			int b = arr[off++] & 0xFF;
+			if (b < 0x80) {
+				chars[count++] = (char) b;
+			} else if (b < 0xC0) {
+				throw new IllegalStateException("Malformed UTF-8 string, unexpected continuation byte");
+			} else if (b < 0xE0) {
+				checkContinuation(arr, off, end, 1);
+				chars[count++] = (char) (((b & 0x1F) << 6) | (arr[off++] & 0x3F));
+			} else if (b < 0xF0) {
+				checkContinuation(arr, off, end, 2);
+				chars[count++] = (char) (((b & 0x0F) << 12) | ((arr[off++] & 0x3F) << 6) | (arr[off++] & 0x3F));
+			} else if (b < 0xF8) {
+				checkContinuation(arr, off, end, 3);
+				int codePoint = ((b & 0x07) << 18) | ((arr[off++] & 0x3F) << 12) | ((arr[off++] & 0x3F) << 6) | (arr[off++] & 0x3F);
+				if (codePoint < Character.MIN_SUPPLEMENTARY_CODE_POINT || codePoint > Character.MAX_CODE_POINT) {
+					throw new IllegalStateException("Malformed UTF-8 string, invalid code point " + codePoint);
+				}
+				count += Character.toChars(codePoint, chars, count);
+			} else {
+				throw new IllegalStateException("Malformed UTF-8 string, invalid lead byte");
+			}
+		}
+		return new String(chars, 0, count);
+	}
+
+	private static void checkContinuation(byte[] arr, int off, int end, int count) {
+		if (off + count > end) {
+			throw new IndexOutOfBoundsException("Buffer ran out of bytes when trying to read string");
+		}
+		for (int i = off; i < off + count; i++) {
+			if ((arr[i] & 0xC0) != 0x80) {
+				throw new IllegalStateException("Malformed UTF-8 string, missing continuation byte");
+			}
+		}
+	}
+
+	public static void writeUTF8String(OutputStream buf, String data) throws IOException {
+		buf.write(encodeUTF8String(data));
+	}
+
+	public static void writeUTF8String(ChannelBuffer buf, String data) {
+		buf.writeBytes(encodeUTF8String(data));
+	}
+
+	public static void writeUTF8String(ByteBuffer buf, String data) {
+		buf.put(encodeUTF8String(data));
+	}
+
+	public static String readUTF8String(InputStream buf) throws IOException {
+		int length = readVarInt(buf) - 1;
+		if (length == -1) {
+			return null;
+		} else if (length < 0) {
+			throw new IllegalStateException("Malformed string length " + length);
+		}
+		byte[] arr = new byte[length];
+		int read = 0;
+		while (read < length) {
+			int r = buf.read(arr, read, length - read);
+			if (r == -1) {
+				throw new IllegalStateException("InputStream reached end when trying to read string");
+			}
+			read += r;
+		}
+		return decodeUTF8(arr, 0, length);
+	}
+
+	public static String readUTF8String(ChannelBuffer buf) {
+		int length = readVarInt(buf) - 1;
+		if (length == -1) {
+			return null;
+		}
+		checkReadable(buf.readableBytes(), length);
+		if (buf.hasArray()) {
+			String data = decodeUTF8(buf.array(), buf.arrayOffset() + buf.readerIndex(), length);
+			buf.skipBytes(length);
+			return data;
+		}
+		byte[] arr = new byte[length];
+		buf.readBytes(arr);
+		return decodeUTF8(arr, 0, length);
+	}
+
+	public static String readUTF8String(ByteBuffer buf) {
+		int length = readVarInt(buf) - 1;
+		if (length == -1) {
+			return null;
+		}
+		checkReadable(buf.remaining(), length);
+		if (buf.hasArray()) {
+			String data = decodeUTF8(buf.array(), buf.arrayOffset() + buf.position(), length);
+			buf.position(buf.position() + length);
+			return data;
+		}
+		byte[] arr = new byte[length];
+		buf.get(arr);
+		return decodeUTF8(arr, 0, length);
+	}
+
+	/**
+	 * Encodes an int array as a LEB128 length followed by each element in LEB128 format
+	 * @param data to encode
+	 * @param length a single element array which receives the number of bytes written
+	 * @return an array holding the encoded data, only the first length[0] bytes are valid
+	 */
+	private static byte[] encodeInts(int[] data, int[] length) {
+		byte[] arr = new byte[MAX_VARINT_LENGTH * (data.length + 1)];
+		int pos = encodeVarInt(arr, 0, data.length);
+		for (int i = 0; i < data.length; i++) {
+			pos = encodeVarInt(arr, pos, data[i]);
+		}
+		length[0] = pos;
+		return arr;
+	}
+
+	private static byte[] encodeLongs(long[] data, int[] length) {
+		byte[] arr = new byte[MAX_VARINT_LENGTH + MAX_VARLONG_LENGTH * data.length];
+		int pos = encodeVarInt(arr, 0, data.length);
+		for (int i = 0; i < data.length; i++) {
+			pos = encodeVarLong(arr, pos, data[i]);
+		}
+		length[0] = pos;
+		return arr;
+	}
+
+	private static byte[] encodeShorts(short[] data, int[] length) {
+		byte[] arr = new byte[MAX_VARINT_LENGTH + 3 * data.length];
+		int pos = encodeVarInt(arr, 0, data.length);
+		for (int i = 0; i < data.length; i++) {
+			pos = encodeVarInt(arr, pos, data[i] & 0xFFFF);
+		}
+		length[0] = pos;
+		return arr;
+	}
+
+	public static void writeInts(ChannelBuffer buf, int[] data) {
+		int[] length = new int[1];
+		byte[] arr = encodeInts(data, length);
+		buf.writeBytes(arr, 0, length[0]);
+	}
+
+	public static void writeLongs(ChannelBuffer buf, long[] data) {
+		int[] length = new int[1];
+		byte[] arr = encodeLongs(data, length);
+		buf.writeBytes(arr, 0, length[0]);
+	}
+
+	public static void writeShorts(ChannelBuffer buf, short[] data) {
+		int[] length = new int[1];
+		byte[] arr = encodeShorts(data, length);
+		buf.writeBytes(arr, 0, length[0]);
+	}
+
+	public static void writeInts(ByteBuffer buf, int[] data) {
+		int[] length = new int[1];
+		byte[] arr = encodeInts(data, length);
+		buf.put(arr, 0, length[0]);
+	}
+
+	public static void writeLongs(ByteBuffer buf, long[] data) {
+		int[] length = new int[1];
+		byte[] arr = encodeLongs(data, length);
+		buf.put(arr, 0, length[0]);
+	}
+
+	public static void writeShorts(ByteBuffer buf, short[] data) {
+		int[] length = new int[1];
+		byte[] arr = encodeShorts(data, length);
+		buf.put(arr, 0, length[0]);
+	}
+
+	public static int[] readInts(ChannelBuffer buf) {
+		int[] data = new int[checkArrayLength(readVarInt(buf), buf.readableBytes())];
+		if (buf.hasArray()) {
+			int start = buf.arrayOffset() + buf.readerIndex();
+			int pos = decodeInts(buf.array(), start, start + buf.readableBytes(), data);
+			buf.skipBytes(pos - start);
+		} else {
+			for (int i = 0; i < data.length; i++) {
+				data[i] = readVarInt(buf);
+			}
+		}
+		return data;
+	}
+
+	public static long[] readLongs(ChannelBuffer buf) {
+		long[] data = new long[checkArrayLength(readVarInt(buf), buf.readableBytes())];
+		if (buf.hasArray()) {
+			int start = buf.arrayOffset() + buf.readerIndex();
+			int pos = decodeLongs(buf.array(), start, start + buf.readableBytes(), data);
+			buf.skipBytes(pos - start);
+		} else {
+			for (int i = 0; i < data.length; i++) {
+				data[i] = readVarLong(buf);
+			}
+		}
+		return data;
+	}
+
+	public static short[] readShorts(ChannelBuffer buf) {
+		short[] data = new short[checkArrayLength(readVarInt(buf), buf.readableBytes())];
+		if (buf.hasArray()) {
+			int start = buf.arrayOffset() + buf.readerIndex();
+			int pos = decodeShorts(buf.array(), start, start + buf.readableBytes(), data);
+			buf.skipBytes(pos - start);
+		} else {
+			for (int i = 0; i < data.length; i++) {
+				data[i] = (short) readVarInt(buf);
+			}
+		}
+		return data;
+	}
+
+	public static int[] readInts(ByteBuffer buf) {
+		int[] data = new int[checkArrayLength(readVarInt(buf), buf.remaining())];
+		if (buf.hasArray()) {
+			int start = buf.arrayOffset() + buf.position();
+			int pos = decodeInts(buf.array(), start, start + buf.remaining(), data);
+			buf.position(buf.position() + pos - start);
+		} else {
+			for (int i = 0; i < data.length; i++) {
+				data[i] = readVarInt(buf);
+			}
+		}
+		return data;
+	}
+
+	public static long[] readLongs(ByteBuffer buf) {
+		long[] data = new long[checkArrayLength(readVarInt(buf), buf.remaining())];
+		if (buf.hasArray()) {
+			int start = buf.arrayOffset() + buf.position();
+			int pos = decodeLongs(buf.array(), start, start + buf.remaining(), data);
+			buf.position(buf.position() + pos - start);
+		} else {
+			for (int i = 0; i < data.length; i++) {
+				data[i] = readVarLong(buf);
+			}
+		}
+		return data;
+	}
+
+	public static short[] readShorts(ByteBuffer buf) {
+		short[] data = new short[checkArrayLength(readVarInt(buf), buf.remaining())];
+		if (buf.hasArray()) {
+			int start = buf.arrayOffset() + buf.position();
+			int pos = decodeShorts(buf.array(), start, start + buf.remaining(), data);
+			buf.position(buf.position() + pos - start);
+		} else {
+			for (int i = 0; i < data.length; i++) {
+				data[i] = (short) readVarInt(buf);
+			}
+		}
+		return data;
+	}
+
+	private static int decodeInts(byte[] arr, int pos, int end, int[] data) {
+		for (int i = 0; i < data.length; i++) {
+			int value = 0;
+			int shift = 0;
+			byte b;
+			do {
+				if (pos >= end) {
+					throw new IndexOutOfBoundsException("Buffer ran out of bytes when trying to read integer array");
+				} else if (shift >= 35) {
+					throw new IllegalStateException("Malformed variable length integer");
+				}
+				b = arr[pos++];
+				value |= (b & 0x7F) << shift;
+				shift += 7;
+			} while ((b & 0x80) != 0);
+			data[i] = value;
+		}
+		return pos;
+	}
+
+	private static int decodeLongs(byte[] arr, int pos, int end, long[] data) {
+		for (int i = 0; i < data.length; i++) {
+			long value = 0;
+			int shift = 0;
+			byte b;
+			do {
+				if (pos >= end) {
+					throw new IndexOutOfBoundsException("Buffer ran out of bytes when trying to read long array");
+				} else if (shift >= 70) {
+					throw new IllegalStateException("Malformed variable length long");
+				}
+				b = arr[pos++];
+				value |= (long) (b & 0x7F) << shift;
+				shift += 7;
+			} while ((b & 0x80) != 0);
+			data[i] = value;
+		}
+		return pos;
+	}
+
+	private static int decodeShorts(byte[] arr, int pos, int end, short[] data) {
+		for (int i = 0; i < data.length; i++) {
+			int value = 0;
+			int shift = 0;
+			byte b;
+			do {
+				if (pos >= end) {
+					throw new IndexOutOfBoundsException("Buffer ran out of bytes when trying to read short array");
+				} else if (shift >= 21) {
+					throw new IllegalStateException("Malformed variable length short");
+				}
+				b = arr[pos++];
+				value |= (b & 0x7F) << shift;
+				shift += 7;
+			} while ((b & 0x80) != 0);
+			data[i] = (short) value;
+		}
+		return pos;
+	}
+
+	/**
+	 * Checks the length of an array read from a buffer.  Every element takes at least one byte, so a length
+	 * larger than the readable bytes can not be valid, and is rejected before the array is allocated.
+	 * @param length of the array
+	 * @param readable bytes left in the buffer
+	 * @return the length
+	 */
+	private static int checkArrayLength(int length, int readable) {
+		if (length < 0) {
+			throw new IllegalStateException("Malformed array length " + length);
+		} else if (length > readable) {
+			throw new IndexOutOfBoundsException("Buffer ran out of bytes when trying to read array of length " + length);
+		}
+		return length;
+	}
+
+	private static int checkReadable(int readable, int length) {
+		if (length < 0) {
+			throw new IllegalStateException("Malformed string length " + length);
+		} else if (length > readable) {
+			throw new IndexOutOfBoundsException("Buffer ran out of bytes when trying to read string");
+		}
+		return length;
+	}
 }
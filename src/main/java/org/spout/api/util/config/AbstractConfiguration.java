@@ -41,6 +41,7 @@ public abstract class AbstractConfiguration extends AbstractConfigurationNodeSou
 	private String pathSeparator;
 	private Pattern pathSeparatorPattern;
 	private boolean writesDefaults;
+	private volatile boolean dirty;
 
 	public AbstractConfiguration() {
 		super(null);
@@ -76,11 +77,31 @@ public abstract class AbstractConfiguration extends AbstractConfigurationNodeSou
 		for (Map.Entry<String, ConfigurationNode> entry : rawValues.entrySet()) {
 			addChild(entry.getValue());
 		}
+		dirty = false;
 	}
 
 	@Override
 	public void save() throws ConfigurationException {
 		saveFromNodes(getChildren());
+		dirty = false;
+	}
+
+	/**
+	 * Returns whether nodes of this configuration were set, added or removed since it was last loaded or saved.<br/>
+	 * Collection values which are modified in place are not tracked.
+	 *
+	 * @return whether this configuration is modified
+	 */
+	public boolean isDirty() {
+		return dirty;
+	}
+
+	/**
+	 * Marks this configuration as modified since it was last loaded or saved
+	 */
+	@Override
+	public void markDirty() {
+		dirty = true;
 	}
 
 	@Override
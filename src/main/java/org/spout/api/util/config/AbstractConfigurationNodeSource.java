@@ -59,6 +59,7 @@ public abstract class AbstractConfigurationNodeSource implements ConfigurationNo
 
 	@Override
 	public ConfigurationNode getChild(String name, boolean add) {
+		loadChildren();
 		ConfigurationNode node = children.get(name);
 		if (node == null) {
 			node = createConfigurationNode(ArrayUtils.add(getPathElements(), name), null);
@@ -72,9 +73,13 @@ public abstract class AbstractConfigurationNodeSource implements ConfigurationNo
 
 	@Override
 	public ConfigurationNode addChild(ConfigurationNode node) {
+		loadChildren();
 		ConfigurationNode ret = children.put(node.getPathElements()[node.getPathElements().length - 1], node);
 		node.setAttached(true);
 		node.setParent(this);
+		if (ret != node) {
+			markDirty();
+		}
 		return ret;
 	}
 
@@ -87,6 +92,7 @@ public abstract class AbstractConfigurationNodeSource implements ConfigurationNo
 
 	@Override
 	public ConfigurationNode removeChild(String key) {
+		loadChildren();
 		return removeChild(children.get(key));
 	}
 
@@ -103,6 +109,7 @@ public abstract class AbstractConfigurationNodeSource implements ConfigurationNo
 		}
 		node.setAttached(false);
 		node.setParent(null);
+		node.discardChildren();
 		for (Iterator<ConfigurationNode> i = node.children.values().iterator(); i.hasNext();) {
 			node.detachChild(i.next());
 			i.remove();
@@ -119,12 +126,37 @@ public abstract class AbstractConfigurationNodeSource implements ConfigurationNo
 				return null;
 			}
 			detachChild(node);
+			markDirty();
 		}
 		return node;
 	}
 
+	/**
+	 * Marks the configuration this node source belongs to as modified since it was last loaded or saved
+	 */
+	protected void markDirty() {
+		Configuration config = getConfiguration();
+		if (config != this && config instanceof AbstractConfiguration) {
+			((AbstractConfiguration) config).markDirty();
+		}
+	}
+
+	/**
+	 * Creates the children of this node source which have not been created yet.<br/>
+	 * Node sources which create their children on first access override this, it must be called before {@link #children} is read.
+	 */
+	protected void loadChildren() {
+	}
+
+	/**
+	 * Discards the children of this node source which have not been created yet
+	 */
+	protected void discardChildren() {
+	}
+
 	@Override
 	public Map<String, ConfigurationNode> getChildren() {
+		loadChildren();
 		return Collections.unmodifiableMap(children);
 	}
 
@@ -139,6 +171,7 @@ public abstract class AbstractConfigurationNodeSource implements ConfigurationNo
 
 	@Override
 	public Set<String> getKeys(boolean deep) {
+		loadChildren();
 		Set<String> keys = new LinkedHashSet<String>(deep ? children.size() * 2 : children.size());
 		for (Map.Entry<String, ConfigurationNode> entry : children.entrySet()) {
 			keys.add(entry.getKey());
@@ -180,11 +213,13 @@ public abstract class AbstractConfigurationNodeSource implements ConfigurationNo
 
 	@Override
 	public boolean hasChildren() {
+		loadChildren();
 		return children.size() > 0;
 	}
 
 	@Override
 	public boolean hasChild(String key) {
+		loadChildren();
 		return children.containsKey(key);
 	}
 
@@ -196,6 +231,7 @@ public abstract class AbstractConfigurationNodeSource implements ConfigurationNo
 		path = getConfiguration().ensureCorrectPath(path);
 		AbstractConfigurationNodeSource current = this;
 		for (String key : path) {
+		current.loadChildren();
 		ConfigurationNode node = current.children.get(key);
 		if (node == null) {
 			return false;
@@ -35,12 +35,17 @@ import org.spout.api.util.config.serialization.Serialization;
 import java.lang.ref.WeakReference;
 import java.lang.reflect.Type;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
 public class ConfigurationNode extends AbstractConfigurationNodeSource implements ValueHolder {
 	private Object value;
+	/**
+	 * The map of the children which have not been created yet, see {@link #loadChildren()}
+	 */
+	private Map<?, ?> pendingChildren;
 	private boolean attached;
 	private WeakReference<ConfigurationNodeSource> parent = new WeakReference<ConfigurationNodeSource>(null);
 
@@ -50,7 +55,11 @@ public class ConfigurationNode extends AbstractConfigurationNodeSource implement
 	public ConfigurationNode(Configuration config, String[] path, Object value) {
 		super(config);
 		this.path = path;
-		if (value != null) {
+		if (value instanceof Map<?, ?>) {
+			// The subtree is only created when it is accessed
+			checkAdded();
+			setPendingValue(value);
+		} else if (value != null) {
 			setValue(value);
 		}
 	}
@@ -216,6 +225,10 @@ public class ConfigurationNode extends AbstractConfigurationNodeSource implement
 
 	@Override
 	public Object getValue(Object def) {
+		Map<?, ?> pending = pendingChildren;
+		if (pending != null) {
+			return copyPending(pending);
+		}
 		if (hasChildren()) {
 			return getValues();
 		}
@@ -249,9 +262,16 @@ public class ConfigurationNode extends AbstractConfigurationNodeSource implement
 			for (Map.Entry<?, ?> entry : ((Map<?, ?>)value).entrySet()) {
 				addChild(createConfigurationNode(ArrayUtils.add(getPathElements(), entry.getKey().toString()), entry.getValue()));
 			}
+			markDirty();
 		} else {
 			if (value != null) {
-				removeChildren();
+				if (pendingChildren != null || hasChildren()) {
+					removeChildren();
+					markDirty();
+				}
+			}
+			if (value == null ? this.value != null : !value.equals(this.value)) {
+				markDirty();
 			}
 			this.value = value;
 		}
@@ -274,12 +294,72 @@ public class ConfigurationNode extends AbstractConfigurationNodeSource implement
 	 * Detach all this node's children, making sure to remove associations both ways
 	 */
 	private void removeChildren() {
+		discardChildren();
 		for (ConfigurationNode node : children.values()) {
 			detachChild(node);
 		}
 		children.clear();
 	}
 
+	/**
+	 * Creates the children from the map this node was created with.  The children are attached directly,
+	 * so creating them does not mark the configuration as modified.
+	 */
+	@Override
+	protected void loadChildren() {
+		Map<?, ?> pending = pendingChildren;
+		if (pending == null) {
+			return;
+		}
+		pendingChildren = null;
+		for (Map.Entry<?, ?> entry : pending.entrySet()) {
+			String key = entry.getKey().toString();
+			ConfigurationNode child = createConfigurationNode(ArrayUtils.add(getPathElements(), key), null);
+			child.setPendingValue(entry.getValue());
+			children.put(key, child);
+			child.setAttached(true);
+			child.setParent(this);
+		}
+	}
+
+	@Override
+	protected void discardChildren() {
+		pendingChildren = null;
+	}
+
+	/**
+	 * Sets the value of a node which is being loaded, the children of a map value are created when they are first accessed
+	 */
+	private void setPendingValue(Object value) {
+		if (value instanceof ValueHolder) {
+			value = ((ValueHolder) value).getValue();
+		}
+		if (value instanceof Map<?, ?>) {
+			this.value = null;
+			pendingChildren = ((Map<?, ?>) value).isEmpty() ? null : (Map<?, ?>) value;
+		} else {
+			this.value = value;
+		}
+	}
+
+	/**
+	 * Copies the maps of children which have not been created yet, giving the values the children would have
+	 */
+	private static Map<String, Object> copyPending(Map<?, ?> pending) {
+		Map<String, Object> ret = new LinkedHashMap<String, Object>();
+		for (Map.Entry<?, ?> entry : pending.entrySet()) {
+			Object value = entry.getValue();
+			if (value instanceof ValueHolder) {
+				value = ((ValueHolder) value).getValue();
+			}
+			if (value instanceof Map<?, ?>) {
+				value = ((Map<?, ?>) value).isEmpty() ? null : copyPending((Map<?, ?>) value);
+			}
+			ret.put(entry.getKey().toString(), value);
+		}
+		return ret;
+	}
+
 	protected void checkAdded() {
 		if (!isAttached()) {
 			getConfiguration().setNode(this);
@@ -290,6 +370,9 @@ public class ConfigurationNode extends AbstractConfigurationNodeSource implement
 		if (isAttached()) {
 			getParent().removeChild(this);
 		}
+		if (this.value != null) {
+			markDirty();
+		}
 		this.value = null;
 	}
 
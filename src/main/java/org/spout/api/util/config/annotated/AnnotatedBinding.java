@@ -0,0 +1,189 @@
+/*
+ * This file is part of SpoutAPI.
+ *
+ * Copyright (c) 2011-2012, Spout LLC <http://www.spout.org/>
+ * SpoutAPI is licensed under the Spout License Version 1.
+ *
+ * SpoutAPI is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * In addition, 180 days after any changes are published, you can use the
+ * software, incorporating those changes, under the terms of the MIT license,
+ * as described in the Spout License Version 1.
+ *
+ * SpoutAPI is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License,
+ * the MIT license and the Spout License Version 1 along with this program.
+ * If not, see <http://www.gnu.org/licenses/> for the GNU Lesser General Public
+ * License and see <http://spout.in/licensev1> for the full license, including
+ * the MIT license.
+ */
+package org.spout.api.util.config.annotated;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.spout.api.exception.ConfigurationException;
+import org.spout.api.util.ReflectionUtils;
+import org.spout.api.util.config.ConfigurationNode;
+
+/**
+ * The annotated fields and methods of a class, looked up once and shared by all annotated configurations using the class.
+ */
+final class AnnotatedBinding {
+	private static final ConcurrentMap<Class<?>, AnnotatedBinding> BINDINGS = new ConcurrentHashMap<Class<?>, AnnotatedBinding>();
+	private final List<FieldBinding> fields;
+	private final List<Method> loadMethods;
+	private final List<Method> saveMethods;
+
+	private AnnotatedBinding(Class<?> clazz) {
+		List<FieldBinding> fields = new ArrayList<FieldBinding>();
+		for (Field field : ReflectionUtils.getDeclaredFieldsRecur(clazz, Setting.class)) {
+			fields.add(new FieldBinding(field));
+		}
+		List<Method> loadMethods = new ArrayList<Method>();
+		List<Method> saveMethods = new ArrayList<Method>();
+		for (Method method : ReflectionUtils.getDeclaredMethodsRecur(clazz, Load.class, Save.class)) {
+			Class<?>[] parameters = method.getParameterTypes();
+			if (parameters.length == 0 || !ConfigurationNode.class.isAssignableFrom(parameters[0])) {
+				continue;
+			}
+			method.setAccessible(true);
+			if (method.isAnnotationPresent(Load.class)) {
+				loadMethods.add(method);
+			}
+			if (method.isAnnotationPresent(Save.class)) {
+				saveMethods.add(method);
+			}
+		}
+		this.fields = Collections.unmodifiableList(fields);
+		this.loadMethods = Collections.unmodifiableList(loadMethods);
+		this.saveMethods = Collections.unmodifiableList(saveMethods);
+	}
+
+	/**
+	 * Gets the binding for the given class, creating it on first use.
+	 *
+	 * @param clazz The class
+	 * @return The binding
+	 */
+	public static AnnotatedBinding get(Class<?> clazz) {
+		AnnotatedBinding binding = BINDINGS.get(clazz);
+		if (binding == null) {
+			binding = new AnnotatedBinding(clazz);
+			AnnotatedBinding old = BINDINGS.putIfAbsent(clazz, binding);
+			if (old != null) {
+				binding = old;
+			}
+		}
+		return binding;
+	}
+
+	/**
+	 * Clears the cached bindings, so the classes they were created for are no longer referenced.
+	 */
+	public static void clear() {
+		BINDINGS.clear();
+	}
+
+	public List<FieldBinding> getFields() {
+		return fields;
+	}
+
+	public void invokeLoad(Object target, ConfigurationNode node) throws ConfigurationException {
+		invoke(loadMethods, target, node);
+	}
+
+	public void invokeSave(Object target, ConfigurationNode node) throws ConfigurationException {
+		invoke(saveMethods, target, node);
+	}
+
+	private static void invoke(List<Method> methods, Object target, ConfigurationNode node) throws ConfigurationException {
+		for (Method method : methods) {
+			try {
+				method.invoke(target, node);
+			} catch (IllegalAccessException ex) {
+				throw new ConfigurationException(ex);
+			} catch (InvocationTargetException ex) {
+				throw new ConfigurationException(ex);
+			}
+		}
+	}
+
+	/**
+	 * A field annotated with {@link Setting}, with its path and type resolved.
+	 */
+	public static final class FieldBinding {
+		private final Field field;
+		private final Type type;
+		private final String[] path;
+
+		private FieldBinding(Field field) {
+			field.setAccessible(true);
+			String[] path = field.getAnnotation(Setting.class).value();
+			if (path.length == 0) {
+				path = new String[]{field.getName()};
+			}
+			this.field = field;
+			this.type = field.getGenericType();
+			this.path = path;
+		}
+
+		/**
+		 * Gets the path of the field, relative to the path of the object.
+		 *
+		 * @return The path, which should not be modified
+		 */
+		public String[] getPath() {
+			return path;
+		}
+
+		/**
+		 * Sets the field to the value of the node, or the node to the value of the field if the node has no value.
+		 *
+		 * @param target The object containing the field
+		 * @param node The node for the field
+		 * @throws ConfigurationException if the field could not be accessed
+		 */
+		public void load(Object target, ConfigurationNode node) throws ConfigurationException {
+			final Object value = node.getTypedValue(type);
+			try {
+				if (value != null) {
+					field.set(target, value);
+				} else {
+					node.setValue(type, field.get(target));
+				}
+			} catch (IllegalAccessException ex) {
+				throw new ConfigurationException(ex);
+			}
+		}
+
+		/**
+		 * Sets the node to the value of the field.
+		 *
+		 * @param target The object containing the field
+		 * @param node The node for the field
+		 * @throws ConfigurationException if the field could not be accessed
+		 */
+		public void save(Object target, ConfigurationNode node) throws ConfigurationException {
+			try {
+				node.setValue(type, field.get(target));
+			} catch (IllegalAccessException ex) {
+				throw new ConfigurationException(ex);
+			}
+		}
+	}
+}
@@ -54,4 +54,12 @@ public abstract class AnnotatedConfiguration extends ConfigurationWrapper {
 		save(this);
 		super.save();
 	}
+
+	/**
+	 * Clears the cached annotated fields and methods of the classes used with annotated configurations.
+	 * This is called when a plugin is disabled, so the cache does not keep the classes of the plugin loaded.
+	 */
+	public static void clearBindingCache() {
+		AnnotatedBinding.clear();
+	}
 }
@@ -26,23 +26,16 @@
  */
 package org.spout.api.util.config.annotated;
 
-import java.lang.reflect.Field;
-import java.lang.reflect.InvocationTargetException;
-import java.lang.reflect.Member;
-import java.lang.reflect.Method;
-import java.util.HashMap;
-import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
-import java.util.Map.Entry;
-import java.util.Set;
 
 import org.apache.commons.lang3.ArrayUtils;
 
 import org.spout.api.exception.ConfigurationException;
-import org.spout.api.util.ReflectionUtils;
 import org.spout.api.util.config.Configuration;
-import org.spout.api.util.config.ConfigurationNode;
 import org.spout.api.util.config.ConfigurationNodeSource;
+import org.spout.api.util.config.annotated.AnnotatedBinding.FieldBinding;
 
 /**
  * A configuration wrapper used to save annotated objects.
@@ -89,8 +82,7 @@ import org.spout.api.util.config.ConfigurationNodeSource;
  * 
  */
 public class AnnotatedObjectConfiguration extends AnnotatedConfiguration {
-	private final Map<Object, Set<Member>> objectMembers = new HashMap<Object, Set<Member>>();
-	private final Map<Object, String[]> objectPaths = new HashMap<Object, String[]>();
+	private final Map<Object, ObjectBinding> objects = new LinkedHashMap<Object, ObjectBinding>();
 
 	/**
 	 * Creates a new empty AnnotatedObjectConfiguration wrapper.
@@ -124,14 +116,8 @@ public class AnnotatedObjectConfiguration extends AnnotatedConfiguration {
 	 * configuration
 	 */
 	public void addObject(Object object, String... path) {
-		if (!objectMembers.containsKey(object)) {
-			final Set<Member> members = new HashSet<Member>();
-			members.addAll(ReflectionUtils.getDeclaredFieldsRecur(object.getClass(), Setting.class));
-			members.addAll(ReflectionUtils.getDeclaredMethodsRecur(object.getClass(), Load.class, Save.class));
-			objectMembers.put(object, members);
-		}
-		if (!objectPaths.containsKey(object)) {
-			objectPaths.put(object, path);
+		if (!objects.containsKey(object)) {
+			objects.put(object, new ObjectBinding(AnnotatedBinding.get(object.getClass()), path));
 		}
 	}
 
@@ -142,92 +128,50 @@ public class AnnotatedObjectConfiguration extends AnnotatedConfiguration {
 	 * @param object
 	 */
 	public void removeObject(Object object) {
-		objectMembers.remove(object);
-		objectPaths.remove(object);
+		objects.remove(object);
 	}
 
 	@Override
 	public void load(ConfigurationNodeSource source) throws ConfigurationException {
-		for (Entry<Object, Set<Member>> entry : objectMembers.entrySet()) {
+		for (Map.Entry<Object, ObjectBinding> entry : objects.entrySet()) {
 			final Object object = entry.getKey();
-			final String[] objectPath = objectPaths.get(object);
-			final Set<Method> methods = new HashSet<Method>();
-			for (Member member : entry.getValue()) {
-				if (member instanceof Method) {
-					final Method method = (Method) member;
-					if (method.isAnnotationPresent(Load.class)) {
-						methods.add(method);
-					}
-					continue;
-				}
-				final Field field = (Field) member;
-				field.setAccessible(true);
-				String[] fieldPath = field.getAnnotation(Setting.class).value();
-				if (fieldPath.length == 0) {
-					fieldPath = new String[]{field.getName()};
-				}
-				final ConfigurationNode fieldNode = source.getNode(ArrayUtils.addAll(objectPath, fieldPath));
-				final Object value = fieldNode.getTypedValue(field.getGenericType());
-				try {
-					if (value != null) {
-						field.set(object, value);
-					} else {
-						fieldNode.setValue(field.getGenericType(), field.get(object));
-					}
-				} catch (IllegalAccessException ex) {
-					throw new ConfigurationException(ex);
-				}
+			final ObjectBinding binding = entry.getValue();
+			final List<FieldBinding> fields = binding.binding.getFields();
+			for (int i = 0; i < fields.size(); i++) {
+				fields.get(i).load(object, source.getNode(binding.fieldPaths[i]));
 			}
-			invokeMethods(methods, object, source.getNode(objectPath));
+			binding.binding.invokeLoad(object, source.getNode(binding.path));
 		}
 	}
 
 	@Override
 	public void save(ConfigurationNodeSource source) throws ConfigurationException {
-		for (Entry<Object, Set<Member>> entry : objectMembers.entrySet()) {
+		for (Map.Entry<Object, ObjectBinding> entry : objects.entrySet()) {
 			final Object object = entry.getKey();
-			final String[] objectPath = objectPaths.get(object);
-			final Set<Method> methods = new HashSet<Method>();
-			for (Member member : entry.getValue()) {
-				if (member instanceof Method) {
-					final Method method = (Method) member;
-					if (method.isAnnotationPresent(Save.class)) {
-						methods.add(method);
-					}
-					continue;
-				}
-				final Field field = (Field) member;
-				field.setAccessible(true);
-				String[] fieldPath = field.getAnnotation(Setting.class).value();
-				if (fieldPath.length == 0) {
-					fieldPath = new String[]{field.getName()};
-				}
-				final ConfigurationNode fieldNode = source.getNode(ArrayUtils.addAll(objectPath, fieldPath));
-				try {
-					fieldNode.setValue(field.getGenericType(), field.get(object));
-				} catch (IllegalAccessException ex) {
-					throw new ConfigurationException(ex);
-				}
+			final ObjectBinding binding = entry.getValue();
+			final List<FieldBinding> fields = binding.binding.getFields();
+			for (int i = 0; i < fields.size(); i++) {
+				fields.get(i).save(object, source.getNode(binding.fieldPaths[i]));
 			}
-			invokeMethods(methods, object, source.getNode(objectPath));
+			binding.binding.invokeSave(object, source.getNode(binding.path));
 		}
 	}
 
-	private void invokeMethods(Set<Method> methods, Object target, ConfigurationNode nodeParam)
-			throws ConfigurationException {
-		for (Method method : methods) {
-			method.setAccessible(true);
-			Class<?>[] parameters = method.getParameterTypes();
-			if (parameters.length == 0
-					|| !ConfigurationNode.class.isAssignableFrom(parameters[0])) {
-				continue;
-			}
-			try {
-				method.invoke(target, nodeParam);
-			} catch (IllegalAccessException ex) {
-				throw new ConfigurationException(ex);
-			} catch (InvocationTargetException ex) {
-				throw new ConfigurationException(ex);
+	/**
+	 * The binding of an added object, with the full paths of its fields.
+	 */
+	private static class ObjectBinding {
+		private final AnnotatedBinding binding;
+		private final String[] path;
+		private final String[][] fieldPaths;
+
+		public ObjectBinding(AnnotatedBinding binding, String[] path) {
+			this.binding = binding;
+			this.path = path;
+			List<FieldBinding> fields = binding.getFields();
+			fieldPaths = new String[fields.size()][];
+			for (int i = 0; i < fieldPaths.length; i++) {
+				fieldPaths[i] = ArrayUtils.addAll(path, fields.get(i).getPath());
 			}
 		}
 	}
@@ -26,15 +26,10 @@
  */
 package org.spout.api.util.config.annotated;
 
-import java.lang.reflect.Field;
-import java.util.HashSet;
-import java.util.Set;
-
 import org.spout.api.exception.ConfigurationException;
-import org.spout.api.util.ReflectionUtils;
 import org.spout.api.util.config.Configuration;
-import org.spout.api.util.config.ConfigurationNode;
 import org.spout.api.util.config.ConfigurationNodeSource;
+import org.spout.api.util.config.annotated.AnnotatedBinding.FieldBinding;
 
 /**
  * The base class for annotated configurations Annotated configurations are
@@ -42,8 +37,6 @@ import org.spout.api.util.config.ConfigurationNodeSource;
  * with "@Setting"
  */
 public abstract class AnnotatedSubclassConfiguration extends AnnotatedConfiguration {
-	private final Set<Field> fields = new HashSet<Field>();
-	private boolean fieldsCached = false;
 	private boolean isConfigured;
 
 	public AnnotatedSubclassConfiguration(Configuration baseConfig) {
@@ -54,50 +47,18 @@ public abstract class AnnotatedSubclassConfiguration extends AnnotatedConfigurat
 		return isConfigured;
 	}
 
-	private Set<Field> getFields() {
-		if (!fieldsCached) {
-			fields.addAll(ReflectionUtils.getDeclaredFieldsRecur(getClass(), Setting.class));
-			fieldsCached = true;
-		}
-		return fields;
-	}
-
 	@Override
 	public void load(ConfigurationNodeSource source) throws ConfigurationException {
-		for (Field field : getFields()) {
-			field.setAccessible(true);
-			String[] key = field.getAnnotation(Setting.class).value();
-			if (key.length == 0) {
-				key = new String[]{field.getName()};
-			}
-			ConfigurationNode node = source.getNode(key);
-			final Object value = node.getTypedValue(field.getGenericType());
-			try {
-				if (value != null) {
-					field.set(this, value);
-				} else {
-					node.setValue(field.getGenericType(), field.get(this));
-				}
-			} catch (IllegalAccessException e) {
-				throw new ConfigurationException(e);
-			}
+		for (FieldBinding field : AnnotatedBinding.get(getClass()).getFields()) {
+			field.load(this, source.getNode(field.getPath()));
 		}
 		isConfigured = true;
 	}
 
 	@Override
 	public void save(ConfigurationNodeSource source) throws ConfigurationException {
-		for (Field field : getFields()) {
-			field.setAccessible(true);
-			String[] key = field.getAnnotation(Setting.class).value();
-			if (key.length == 0) {
-				key = new String[]{field.getName()};
-			}
-			try {
-				source.getNode(key).setValue(field.getGenericType(), field.get(this));
-			} catch (IllegalAccessException e) {
-				throw new ConfigurationException(e);
-			}
+		for (FieldBinding field : AnnotatedBinding.get(getClass()).getFields()) {
+			field.save(this, source.getNode(field.getPath()));
 		}
 	}
 }
@@ -29,13 +29,18 @@ package org.spout.api.util.config.serialization;
 import java.lang.reflect.Type;
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 public class Serialization {
-	private static final Map<Type, Serializer> CACHED_SERIALIZERS = new HashMap<Type, Serializer>();
-	private static final List<Serializer> SERIALIZERS = new ArrayList<Serializer>(
+	private static final ConcurrentMap<Type, GenericType> GENERIC_TYPES = new ConcurrentHashMap<Type, GenericType>();
+	/**
+	 * The serializers applicable to each type, in the order they were registered
+	 */
+	private static final ConcurrentMap<Type, Serializer[]> APPLICABLE_SERIALIZERS = new ConcurrentHashMap<Type, Serializer[]>();
+	private static final List<Serializer> SERIALIZERS = new CopyOnWriteArrayList<Serializer>(
 			Arrays.asList(new SameSerializer(),
 					new StringSerializer(),
 					new BooleanSerializer(),
@@ -48,14 +53,13 @@ public class Serialization {
 			));
 
 	public static Object deserialize(Type target, Object value) {
-		return deserialize(new GenericType(target), value);
+		return deserialize(getGenericType(target), value);
 	}
 
 	public static Object deserialize(GenericType type, Object value) {
 		Object ret;
-		for (Serializer serializer : SERIALIZERS) {
+		for (Serializer serializer : getSerializers(type)) {
 			if ((ret = serializer.deserialize(type, value)) != null) {
-				CACHED_SERIALIZERS.put(type.getRawType(), serializer);
 				return ret;
 			}
 		}
@@ -63,26 +67,64 @@ public class Serialization {
 	}
 
 	public static Object serialize(Type type, Object obj) {
-		return serialize(new GenericType(type), obj);
+		return serialize(getGenericType(type), obj);
 	}
 
 	public static Object serialize(GenericType type, Object obj) {
-		Serializer serializer = CACHED_SERIALIZERS.get(type.getRawType());
-		if (serializer != null && serializer.isApplicableSerialize(type, obj)) {
-			return serializer.serialize(type, obj);
-		} else {
-			Object ret;
-			for (Serializer ser : SERIALIZERS) {
-				if ((ret = ser.serialize(type, obj)) != null) {
-					CACHED_SERIALIZERS.put(type.getRawType(), ser);
-					return ret;
-				}
+		Object ret;
+		for (Serializer serializer : getSerializers(type)) {
+			if ((ret = serializer.serialize(type, obj)) != null) {
+				return ret;
 			}
 		}
 		return obj;
 	}
 
+	/**
+	 * Gets the {@link GenericType} for a type, which is only created once for each type.
+	 *
+	 * @param type The type
+	 * @return The generic type
+	 */
+	public static GenericType getGenericType(Type type) {
+		GenericType generic = GENERIC_TYPES.get(type);
+		if (generic == null) {
+			generic = new GenericType(type);
+			GenericType old = GENERIC_TYPES.putIfAbsent(type, generic);
+			if (old != null) {
+				generic = old;
+			}
+		}
+		return generic;
+	}
+
+	private static Serializer[] getSerializers(GenericType type) {
+		Serializer[] serializers = APPLICABLE_SERIALIZERS.get(type.getRawType());
+		if (serializers == null) {
+			List<Serializer> applicable = new ArrayList<Serializer>();
+			for (Serializer serializer : SERIALIZERS) {
+				if (serializer.isApplicable(type) && (serializer.getParametersRequired() == -1
+						|| type.getGenerics().length == serializer.getParametersRequired())) {
+					applicable.add(serializer);
+				}
+			}
+			serializers = applicable.toArray(new Serializer[applicable.size()]);
+			APPLICABLE_SERIALIZERS.put(type.getRawType(), serializers);
+		}
+		return serializers;
+	}
+
 	public static void registerSerializer(Serializer serializer) {
 		SERIALIZERS.add(serializer);
+		APPLICABLE_SERIALIZERS.clear();
+	}
+
+	/**
+	 * Clears the cached generic types and applicable serializers.  This is called when a plugin is disabled,
+	 * so the caches do not keep the classes of the plugin loaded.
+	 */
+	public static void clearCaches() {
+		GENERIC_TYPES.clear();
+		APPLICABLE_SERIALIZERS.clear();
 	}
 }
@@ -69,6 +69,13 @@ public abstract class Serializer {
 		return isApplicable(type);
 	}
 
+	/**
+	 * Checks if this serializer can handle the given type. The result is cached for each type, and this serializer is
+	 * only asked to serialize or deserialize values of types it is applicable to.
+	 *
+	 * @param type The type
+	 * @return true if applicable
+	 */
 	public abstract boolean isApplicable(GenericType type);
 
 	public boolean isApplicableSerialize(GenericType type, Object value) {
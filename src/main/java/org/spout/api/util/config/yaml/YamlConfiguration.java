@@ -49,7 +49,9 @@ import java.io.Reader;
 import java.io.StringReader;
 import java.io.StringWriter;
 import java.io.Writer;
+import java.lang.reflect.Array;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
@@ -63,11 +65,18 @@ public class YamlConfiguration extends MapBasedConfiguration implements FileConf
 	public static final String LINE_BREAK = DumperOptions.LineBreak.getPlatformLineBreak().getString();
 	public static final char COMMENT_CHAR = '#';
 	public static final Pattern COMMENT_REGEX = Pattern.compile(COMMENT_CHAR + " ?(.*)");
+	private static final long HASH_BASIS = 0xcbf29ce484222325L;
+	private static final long HASH_PRIME = 0x100000001b3L;
 	private final File file;
 	private final InputStream stream;
 	private final String string;
 	private final Yaml yaml;
 	private String[] header = null;
+	/**
+	 * A hash of the values last loaded from or saved to the file, used to skip saves which would not change the file
+	 */
+	private long savedHash;
+	private boolean hasSavedHash = false;
 
 	public YamlConfiguration(File file) {
 		this.file = file;
@@ -127,6 +136,7 @@ public class YamlConfiguration extends MapBasedConfiguration implements FileConf
 		if (file == null && stream == null && string == null) {
 			return Collections.emptyMap();
 		}
+		hasSavedHash = false;
 		BufferedReader in = null;
 		try {
 			if (file != null && !file.exists()) {
@@ -149,7 +159,10 @@ public class YamlConfiguration extends MapBasedConfiguration implements FileConf
 						inHeader = false;
 					}
 				}
-				buffer.append(str.replaceAll("\t", "    "));
+				if (str.indexOf('\t') != -1) {
+					str = str.replace("\t", "    ");
+				}
+				buffer.append(str);
 				buffer.append(LINE_BREAK);
 			}
 
@@ -159,6 +172,10 @@ public class YamlConfiguration extends MapBasedConfiguration implements FileConf
 
 			Object val = yaml.load(new StringReader(buffer.toString()));
 			if (val instanceof Map<?, ?>) {
+				if (file != null) {
+					savedHash = hashValue(HASH_BASIS, val);
+					hasSavedHash = true;
+				}
 				return (Map<?, ?>) val;
 			}
 		} catch (YAMLException e) {
@@ -177,31 +194,73 @@ public class YamlConfiguration extends MapBasedConfiguration implements FileConf
 		return Collections.emptyMap();
 	}
 
+	/**
+	 * Writes the map to a temporary file next to the configuration's file, which then replaces the configuration's file.
+	 * A failed save will therefore not leave a partially written file behind.<br/>
+	 * Nothing is written if the file exists, no node or header was changed through this configuration and the hash of
+	 * the map equals the hash of the values last loaded from or saved to the file, which also catches collection values
+	 * modified in place.<br/>
+	 * Subclasses which override {@link #getWriter()} are saved through it directly.
+	 */
 	@Override
 	protected void saveFromMap(Map<?, ?> map) throws ConfigurationException {
 		// Allow the usage of YamlConfiguration objects not created from a File.
 		if (file == null) {
 			return;
 		}
+		long hash = hashValue(HASH_BASIS, map);
+		if (!isDirty() && hasSavedHash && hash == savedHash && file.exists()) {
+			return;
+		}
+		if (overridesGetWriter()) {
+			saveThroughWriter(map);
+		} else {
+			saveThroughTempFile(map);
+		}
+		savedHash = hash;
+		hasSavedHash = true;
+	}
+
+	private void saveThroughWriter(Map<?, ?> map) throws ConfigurationException {
 		BufferedWriter writer = null;
+		try {
+			writer = new BufferedWriter(getWriter());
+			write(map, writer);
+		} catch (YAMLException e) {
+			throw new ConfigurationException(e);
+		} catch (IOException e) {
+			throw new ConfigurationException(e);
+		} finally {
+			try {
+				if (writer != null) {
+					writer.close();
+				}
+			} catch (IOException ignore) {
+			}
+		}
+	}
 
-		File parent = file.getParentFile();
+	private void saveThroughTempFile(Map<?, ?> map) throws ConfigurationException {
+		BufferedWriter writer = null;
+
+		File parent = file.getAbsoluteFile().getParentFile();
 
 		if (parent != null) {
 			parent.mkdirs();
 		}
 
+		File temp = null;
+		boolean replacing = false;
+		boolean written = false;
 		try {
-			writer = new BufferedWriter(getWriter());
-			if (getHeader() != null) {
-				for (String line : getHeader()) {
-					writer.append(COMMENT_CHAR).append(" ").append(line).append(LINE_BREAK);
-				}
-
-				writer.append(LINE_BREAK);
-			}
-
-			yaml.dump(map, writer);
+			temp = File.createTempFile("." + file.getName() + ".", ".tmp", parent);
+			writer = new BufferedWriter(getWriter(temp));
+			write(map, writer);
+			writer.close();
+			writer = null;
+			replacing = true;
+			replace(temp, file);
+			written = true;
 		} catch (YAMLException e) {
 			throw new ConfigurationException(e);
 		} catch (IOException e) {
@@ -209,14 +268,121 @@ public class YamlConfiguration extends MapBasedConfiguration implements FileConf
 		} finally {
 			try {
 				if (writer != null) {
-					writer.flush();
 					writer.close();
 				}
 			} catch (IOException ignore) {
 			}
+			// The new contents are kept if the replace failed without restoring the old file
+			if (!written && temp != null && (!replacing || file.exists())) {
+				temp.delete();
+			}
+		}
+	}
+
+	private void write(Map<?, ?> map, Writer writer) throws IOException {
+		if (getHeader() != null) {
+			for (String line : getHeader()) {
+				writer.append(COMMENT_CHAR).append(" ").append(line).append(LINE_BREAK);
+			}
+
+			writer.append(LINE_BREAK);
+		}
+
+		yaml.dump(map, writer);
+	}
+
+	/**
+	 * Returns whether a subclass overrides {@link #getWriter()}
+	 */
+	private boolean overridesGetWriter() {
+		for (Class<?> clazz = getClass(); clazz != YamlConfiguration.class; clazz = clazz.getSuperclass()) {
+			try {
+				clazz.getDeclaredMethod("getWriter");
+				return true;
+			} catch (NoSuchMethodException ignore) {
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Moves the source file over the target file, atomically where the platform allows renaming over an existing file.<br/>
+	 * Otherwise the target is first moved to a backup file, which is restored if the source can not be moved.
+	 */
+	private static void replace(File source, File target) throws IOException {
+		if (source.renameTo(target)) {
+			return;
+		}
+		// Some platforms can not rename over an existing file
+		File backup = null;
+		if (target.exists()) {
+			backup = File.createTempFile("." + target.getName() + ".", ".bak", source.getParentFile());
+			if (!backup.delete() || !target.renameTo(backup)) {
+				backup.delete();
+				throw new IOException("Unable to replace " + target);
+			}
+		}
+		if (!source.renameTo(target)) {
+			if (backup != null && !backup.renameTo(target)) {
+				throw new IOException("Unable to move " + source + " to " + target + ", the previous file was kept as " + backup);
+			}
+			throw new IOException("Unable to move " + source + " to " + target);
+		}
+		if (backup != null) {
+			backup.delete();
 		}
 	}
-	
+
+	/**
+	 * Adds a value loaded from or saved to YAML to a 64 bit FNV-1a hash, hashing the contents of the maps, collections and arrays it contains.
+	 * Empty maps hash like null, as nodes without children have no value.
+	 */
+	private static long hashValue(long hash, Object value) {
+		if (value == null || value instanceof Map<?, ?> && ((Map<?, ?>) value).isEmpty()) {
+			return hash(hash, 0);
+		} else if (value instanceof Map<?, ?>) {
+			hash = hash(hash, 1);
+			for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+				hash = hashValue(hash, entry.getKey().toString());
+				hash = hashValue(hash, entry.getValue());
+			}
+			return hash(hash, 2);
+		} else if (value instanceof Collection<?>) {
+			hash = hash(hash, 3);
+			for (Object element : (Collection<?>) value) {
+				hash = hashValue(hash, element);
+			}
+			return hash(hash, 4);
+		} else if (value.getClass().isArray()) {
+			hash = hash(hash, 5);
+			int length = Array.getLength(value);
+			for (int i = 0; i < length; i++) {
+				hash = hashValue(hash, Array.get(value, i));
+			}
+			return hash(hash, 6);
+		} else if (value instanceof Double || value instanceof Float) {
+			return hash(hash(hash, 7), Double.doubleToLongBits(((Number) value).doubleValue()));
+		} else if (value instanceof Long || value instanceof Integer || value instanceof Short || value instanceof Byte) {
+			return hash(hash(hash, 8), ((Number) value).longValue());
+		} else if (value instanceof Boolean) {
+			return hash(hash, (Boolean) value ? 9 : 10);
+		}
+		String string = value.toString();
+		hash = hash(hash, value instanceof String ? 11 : 12);
+		for (int i = 0; i < string.length(); i++) {
+			hash = hash(hash, string.charAt(i));
+		}
+		return hash(hash, string.length());
+	}
+
+	private static long hash(long hash, long value) {
+		for (int i = 0; i < 64; i += 16) {
+			hash ^= (value >>> i) & 0xFFFF;
+			hash *= HASH_PRIME;
+		}
+		return hash;
+	}
+
 	public String getYamlString() throws ConfigurationException {
 		StringWriter writer = null;
 
@@ -262,6 +428,7 @@ public class YamlConfiguration extends MapBasedConfiguration implements FileConf
 		}
 
 		this.header = header;
+		markDirty();
 	}
 
 	public String[] getHeader() {
@@ -283,7 +450,25 @@ public class YamlConfiguration extends MapBasedConfiguration implements FileConf
 		}
 	}
 
+	/**
+	 * Gets a writer for the configuration's file.  Saves are written through this writer directly, instead of through
+	 * a temporary file, when a subclass overrides it.
+	 *
+	 * @return the writer
+	 * @throws IOException when the file can not be opened
+	 */
 	protected Writer getWriter() throws IOException {
+		return getWriter(file);
+	}
+
+	/**
+	 * Gets a writer for a file, used to write the temporary file which replaces the configuration's file
+	 *
+	 * @param file the file to write
+	 * @return the writer
+	 * @throws IOException when the file can not be opened
+	 */
+	protected Writer getWriter(File file) throws IOException {
 		return new OutputStreamWriter(new FileOutputStream(file), "UTF-8");
 	}
 }
@@ -0,0 +1,428 @@
+/*
+ * This file is part of SpoutAPI.
+ *
+ * Copyright (c) 2011-2012, Spout LLC <http://www.spout.org/>
+ * SpoutAPI is licensed under the Spout License Version 1.
+ *
+ * SpoutAPI is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * In addition, 180 days after any changes are published, you can use the
+ * software, incorporating those changes, under the terms of the MIT license,
+ * as described in the Spout License Version 1.
+ *
+ * SpoutAPI is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License,
+ * the MIT license and the Spout License Version 1 along with this program.
+ * If not, see <http://www.gnu.org/licenses/> for the GNU Lesser General Public
+ * License and see <http://spout.in/licensev1> for the full license, including
+ * the MIT license.
+ */
+package org.spout.api.util.cuboid;
+
+import org.spout.api.material.Material;
+import org.spout.api.math.Vector3;
+
+/**
+ * A CuboidBuffer of material ids which stores its elements in compressed
+ * sections of 16x16x16 elements.<br>
+ * <br>
+ * A section holding a single id is stored as that id alone. A section is
+ * converted to a palette of at most 256 ids with one byte per element when
+ * it is first modified, and to a plain array of ids once the palette is full.
+ * Sections are never decoded as a whole when reading, and {@link #compact()}
+ * re-encodes them after large edits.<br>
+ * <br>
+ * Elements holding id 0 are considered empty when performing a masked copy.
+ * CuboidShortBuffers and other CompressedCuboidShortBuffers may be used as the
+ * source of a copy.
+ */
+public class CompressedCuboidShortBuffer extends CuboidBuffer {
+	public static final int SECTION_BITS = 4;
+	public static final int SECTION_SIZE = 1 << SECTION_BITS;
+	private static final int SECTION_MASK = SECTION_SIZE - 1;
+	public static final int SECTION_VOLUME = SECTION_SIZE * SECTION_SIZE * SECTION_SIZE;
+	private static final int MAX_PALETTE = 256;
+	private final int sectionsX;
+	private final int sectionsZ;
+	private final Section[] sections;
+	private CuboidShortBuffer source;
+	private CompressedCuboidShortBuffer compressedSource;
+	private short[] runBuffer;
+
+	public CompressedCuboidShortBuffer(int baseX, int baseY, int baseZ, int sizeX, int sizeY, int sizeZ) {
+		super(baseX, baseY, baseZ, sizeX, sizeY, sizeZ);
+		this.sectionsX = (sizeX + SECTION_MASK) >> SECTION_BITS;
+		this.sectionsZ = (sizeZ + SECTION_MASK) >> SECTION_BITS;
+		int sectionsY = (sizeY + SECTION_MASK) >> SECTION_BITS;
+		this.sections = new Section[sectionsX * sectionsY * sectionsZ];
+		for (int i = 0; i < sections.length; i++) {
+			sections[i] = new Section();
+		}
+	}
+
+	public CompressedCuboidShortBuffer(double baseX, double baseY, double baseZ, double sizeX, double sizeY, double sizeZ) {
+		this((int) baseX, (int) baseY, (int) baseZ, (int) sizeX, (int) sizeY, (int) sizeZ);
+	}
+
+	public CompressedCuboidShortBuffer(Vector3 base, Vector3 size) {
+		this((int) base.getX(), (int) base.getY(), (int) base.getZ(), (int) size.getX(), (int) size.getY(), (int) size.getZ());
+	}
+
+	@Override
+	public void write(CuboidBuffer source) {
+		if (source instanceof CompressedCuboidShortBuffer && isAligned((CompressedCuboidShortBuffer) source)) {
+			Section[] sourceSections = ((CompressedCuboidShortBuffer) source).sections;
+			for (int i = 0; i < sections.length; i++) {
+				sections[i].copy(sourceSections[i]);
+			}
+		} else {
+			super.write(source);
+		}
+	}
+
+	private boolean isAligned(CompressedCuboidShortBuffer other) {
+		return getBaseX() == other.getBaseX() && getBaseY() == other.getBaseY() && getBaseZ() == other.getBaseZ() && getSizeX() == other.getSizeX() && getSizeY() == other.getSizeY() && getSizeZ() == other.getSizeZ();
+	}
+
+	@Override
+	public void copyElement(int thisIndex, int sourceIndex, int runLength) {
+		copyRun(thisIndex, sourceIndex, runLength, false);
+	}
+
+	@Override
+	public void copyElementMasked(int thisIndex, int sourceIndex, int runLength) {
+		copyRun(thisIndex, sourceIndex, runLength, true);
+	}
+
+	private void copyRun(int thisIndex, int sourceIndex, int runLength, boolean masked) {
+		if (source != null) {
+			writeRun(thisIndex, source.getRawArray(), sourceIndex, runLength, masked);
+			return;
+		}
+		if (runBuffer == null) {
+			runBuffer = new short[SECTION_VOLUME];
+		}
+		for (int offset = 0; offset < runLength; offset += runBuffer.length) {
+			int length = Math.min(runBuffer.length, runLength - offset);
+			compressedSource.read(sourceIndex + offset, runBuffer, 0, length);
+			writeRun(thisIndex + offset, runBuffer, 0, length, masked);
+		}
+	}
+
+	@Override
+	public void setSource(CuboidBuffer source) {
+		if (source instanceof CuboidShortBuffer) {
+			this.source = (CuboidShortBuffer) source;
+			this.compressedSource = null;
+		} else if (source instanceof CompressedCuboidShortBuffer) {
+			this.source = null;
+			this.compressedSource = (CompressedCuboidShortBuffer) source;
+		} else {
+			throw new IllegalArgumentException("Only CuboidShortBuffers and CompressedCuboidShortBuffers may be used as the data source when copying to a CompressedCuboidShortBuffer");
+		}
+	}
+
+	public void set(int x, int y, int z, short id) {
+		int index = getIndex(x, y, z);
+		if (index < 0) {
+			throw new IllegalArgumentException("Coordinate (" + x + ", " + y + ", " + z + ") is outside the buffer");
+		}
+		int lx = x - getBaseX();
+		int ly = y - getBaseY();
+		int lz = z - getBaseZ();
+		getSection(lx, ly, lz).set(getSectionIndex(lx, ly, lz), id);
+	}
+
+	public void set(int x, int y, int z, Material material) {
+		set(x, y, z, material.getId());
+	}
+
+	public short get(int x, int y, int z) {
+		int index = getIndex(x, y, z);
+		if (index < 0) {
+			throw new IllegalArgumentException("Coordinate (" + x + ", " + y + ", " + z + ") is outside the buffer");
+		}
+		int lx = x - getBaseX();
+		int ly = y - getBaseY();
+		int lz = z - getBaseZ();
+		return getSection(lx, ly, lz).get(getSectionIndex(lx, ly, lz));
+	}
+
+	/**
+	 * Sets every element of this buffer to the given id, releasing the
+	 * storage of all sections
+	 *
+	 * @param id to set
+	 */
+	public void flood(short id) {
+		for (Section section : sections) {
+			section.fill(id);
+		}
+	}
+
+	/**
+	 * Re-encodes every section with the smallest representation able to
+	 * hold its current contents
+	 */
+	public void compact() {
+		int sectionsY = sections.length / (sectionsX * sectionsZ);
+		int i = 0;
+		for (int sy = 0; sy < sectionsY; sy++) {
+			int limitY = Math.min(SECTION_SIZE, getSizeY() - (sy << SECTION_BITS));
+			for (int sz = 0; sz < sectionsZ; sz++) {
+				int limitZ = Math.min(SECTION_SIZE, getSizeZ() - (sz << SECTION_BITS));
+				for (int sx = 0; sx < sectionsX; sx++) {
+					int limitX = Math.min(SECTION_SIZE, getSizeX() - (sx << SECTION_BITS));
+					sections[i++].compact(limitX, limitY, limitZ);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Gets if every element of this buffer holds the same id
+	 *
+	 * @return true if the buffer is uniform
+	 */
+	public boolean isUniform() {
+		if (sections.length == 0) {
+			return true;
+		}
+		short id = sections[0].uniform;
+		for (Section section : sections) {
+			if (!section.isUniform() || section.uniform != id) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Gets the number of sections which are not stored as a single id
+	 *
+	 * @return the number of allocated sections
+	 */
+	public int getAllocatedSections() {
+		int count = 0;
+		for (Section section : sections) {
+			if (!section.isUniform()) {
+				count++;
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * Decodes a run of elements, in the order used by {@link CuboidShortBuffer#getRawArray()}
+	 *
+	 * @param index of the first element
+	 * @param target array to decode into
+	 * @param targetIndex of the first decoded element in the target
+	 * @param length number of elements to decode
+	 */
+	public void read(int index, short[] target, int targetIndex, int length) {
+		final int sizeX = getSizeX();
+		final int sizeZ = getSizeZ();
+		int planeSize = sizeX * sizeZ;
+		int ly = index / planeSize;
+		int rem = index - ly * planeSize;
+		int lz = rem / sizeX;
+		int lx = rem - lz * sizeX;
+		final int end = targetIndex + length;
+		while (targetIndex < end) {
+			Section section = getSection(lx, ly, lz);
+			int rowEnd = Math.min(sizeX, (lx | SECTION_MASK) + 1);
+			int count = Math.min(rowEnd - lx, end - targetIndex);
+			if (section.isUniform()) {
+				short id = section.uniform;
+				for (int i = 0; i < count; i++) {
+					target[targetIndex++] = id;
+				}
+			} else {
+				int sectionIndex = getSectionIndex(lx, ly, lz);
+				for (int i = 0; i < count; i++) {
+					target[targetIndex++] = section.get(sectionIndex++);
+				}
+			}
+			lx += count;
+			if (lx == sizeX) {
+				lx = 0;
+				if (++lz == sizeZ) {
+					lz = 0;
+					ly++;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Decodes this buffer into a new CuboidShortBuffer
+	 *
+	 * @return the decoded buffer
+	 */
+	public CuboidShortBuffer toShortBuffer() {
+		CuboidShortBuffer buffer = new CuboidShortBuffer(getBase(), getSize());
+		buffer.write(this);
+		return buffer;
+	}
+
+	private void writeRun(int index, short[] values, int valueIndex, int length, boolean masked) {
+		final int sizeX = getSizeX();
+		final int sizeZ = getSizeZ();
+		int planeSize = sizeX * sizeZ;
+		int ly = index / planeSize;
+		int rem = index - ly * planeSize;
+		int lz = rem / sizeX;
+		int lx = rem - lz * sizeX;
+		final int end = valueIndex + length;
+		while (valueIndex < end) {
+			Section section = getSection(lx, ly, lz);
+			int rowEnd = Math.min(sizeX, (lx | SECTION_MASK) + 1);
+			int count = Math.min(rowEnd - lx, end - valueIndex);
+			int sectionIndex = getSectionIndex(lx, ly, lz);
+			for (int i = 0; i < count; i++) {
+				short id = values[valueIndex++];
+				if (!masked || id != 0) {
+					section.set(sectionIndex, id);
+				}
+				sectionIndex++;
+			}
+			lx += count;
+			if (lx == sizeX) {
+				lx = 0;
+				if (++lz == sizeZ) {
+					lz = 0;
+					ly++;
+				}
+			}
+		}
+	}
+
+	private Section getSection(int lx, int ly, int lz) {
+		return sections[((ly >> SECTION_BITS) * sectionsZ + (lz >> SECTION_BITS)) * sectionsX + (lx >> SECTION_BITS)];
+	}
+
+	private static int getSectionIndex(int lx, int ly, int lz) {
+		return (ly & SECTION_MASK) << (SECTION_BITS << 1) | (lz & SECTION_MASK) << SECTION_BITS | (lx & SECTION_MASK);
+	}
+
+	private static class Section {
+		private short uniform;
+		private short[] palette;
+		private int paletteSize;
+		private int lastPaletteIndex;
+		private byte[] indices;
+		private short[] values;
+
+		public boolean isUniform() {
+			return indices == null && values == null;
+		}
+
+		public short get(int index) {
+			if (values != null) {
+				return values[index];
+			} else if (indices != null) {
+				return palette[indices[index] & 0xFF];
+			}
+			return uniform;
+		}
+
+		public void set(int index, short id) {
+			if (values != null) {
+				values[index] = id;
+				return;
+			}
+			if (indices == null) {
+				if (id == uniform) {
+					return;
+				}
+				palette = new short[4];
+				palette[0] = uniform;
+				paletteSize = 1;
+				lastPaletteIndex = 0;
+				indices = new byte[SECTION_VOLUME];
+			}
+			int paletteIndex = getPaletteIndex(id);
+			if (paletteIndex < 0) {
+				toValues();
+				values[index] = id;
+			} else {
+				indices[index] = (byte) paletteIndex;
+			}
+		}
+
+		private int getPaletteIndex(short id) {
+			if (palette[lastPaletteIndex] == id) {
+				return lastPaletteIndex;
+			}
+			for (int i = 0; i < paletteSize; i++) {
+				if (palette[i] == id) {
+					return lastPaletteIndex = i;
+				}
+			}
+			if (paletteSize == MAX_PALETTE) {
+				return -1;
+			}
+			if (paletteSize == palette.length) {
+				short[] newPalette = new short[Math.min(MAX_PALETTE, paletteSize << 1)];
+				System.arraycopy(palette, 0, newPalette, 0, paletteSize);
+				palette = newPalette;
+			}
+			palette[paletteSize] = id;
+			return lastPaletteIndex = paletteSize++;
+		}
+
+		private void toValues() {
+			short[] newValues = new short[SECTION_VOLUME];
+			for (int i = 0; i < SECTION_VOLUME; i++) {
+				newValues[i] = get(i);
+			}
+			values = newValues;
+			indices = null;
+			palette = null;
+		}
+
+		public void fill(short id) {
+			uniform = id;
+			palette = null;
+			indices = null;
+			values = null;
+		}
+
+		public void copy(Section other) {
+			uniform = other.uniform;
+			paletteSize = other.paletteSize;
+			lastPaletteIndex = other.lastPaletteIndex;
+			palette = other.palette == null ? null : other.palette.clone();
+			indices = other.indices == null ? null : other.indices.clone();
+			values = other.values == null ? null : other.values.clone();
+		}
+
+		/**
+		 * Re-encodes this section, ignoring the elements beyond the given limits
+		 */
+		public void compact(int limitX, int limitY, int limitZ) {
+			if (isUniform()) {
+				return;
+			}
+			Section compacted = new Section();
+			compacted.uniform = get(0);
+			for (int y = 0; y < limitY; y++) {
+				for (int z = 0; z < limitZ; z++) {
+					int index = getSectionIndex(0, y, z);
+					for (int x = 0; x < limitX; x++, index++) {
+						compacted.set(index, get(index));
+					}
+				}
+			}
+			copy(compacted);
+		}
+	}
+}
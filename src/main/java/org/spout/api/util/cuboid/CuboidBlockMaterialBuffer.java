@@ -26,13 +26,23 @@
  */
 package org.spout.api.util.cuboid;
 
+import java.util.Arrays;
+
 import org.spout.api.material.BlockMaterial;
 import org.spout.api.math.Vector3;
 
+/**
+ * A CuboidBuffer of block materials and their data.
+ *
+ * Elements without a material are considered empty when performing a masked
+ * copy. A {@link CuboidShortBuffer} may be used as the source of a copy, in
+ * which case its ids are converted to materials with a data value of zero.
+ */
 public class CuboidBlockMaterialBuffer extends CuboidBuffer {
 	private final BlockMaterial[] buffer;
 	private final short[] data;
 	private CuboidBlockMaterialBuffer source;
+	private CuboidShortBuffer idSource;
 
 	public CuboidBlockMaterialBuffer(int baseX, int baseY, int baseZ, int sizeX, int sizeY, int sizeZ, BlockMaterial[] buffer, short[] data) {
 		super(baseX, baseY, baseZ, sizeX, sizeY, sizeZ);
@@ -54,9 +64,54 @@ public class CuboidBlockMaterialBuffer extends CuboidBuffer {
 
 	@Override
 	public void copyElement(int thisIndex, int sourceIndex, int runLength) {
+		if (source != null) {
+			System.arraycopy(source.buffer, sourceIndex, buffer, thisIndex, runLength);
+			System.arraycopy(source.data, sourceIndex, data, thisIndex, runLength);
+			return;
+		}
+		short[] ids = idSource.getRawArray();
+		short lastId = 0;
+		BlockMaterial lastMaterial = BlockMaterial.get(lastId);
 		final int end = thisIndex + runLength;
 		for (; thisIndex < end; thisIndex++) {
-			buffer[thisIndex] = source.buffer[sourceIndex++];
+			short id = ids[sourceIndex++];
+			if (id != lastId) {
+				lastId = id;
+				lastMaterial = BlockMaterial.get(id);
+			}
+			buffer[thisIndex] = lastMaterial;
+			data[thisIndex] = 0;
+		}
+	}
+
+	@Override
+	public void copyElementMasked(int thisIndex, int sourceIndex, int runLength) {
+		final int end = thisIndex + runLength;
+		if (source != null) {
+			BlockMaterial[] sourceBuffer = source.buffer;
+			short[] sourceData = source.data;
+			for (; thisIndex < end; thisIndex++, sourceIndex++) {
+				BlockMaterial material = sourceBuffer[sourceIndex];
+				if (material != null) {
+					buffer[thisIndex] = material;
+					data[thisIndex] = sourceData[sourceIndex];
+				}
+			}
+			return;
+		}
+		short[] ids = idSource.getRawArray();
+		short lastId = 0;
+		BlockMaterial lastMaterial = null;
+		for (; thisIndex < end; thisIndex++) {
+			short id = ids[sourceIndex++];
+			if (id != 0) {
+				if (id != lastId) {
+					lastId = id;
+					lastMaterial = BlockMaterial.get(id);
+				}
+				buffer[thisIndex] = lastMaterial;
+				data[thisIndex] = 0;
+			}
 		}
 	}
 
@@ -64,8 +119,12 @@ public class CuboidBlockMaterialBuffer extends CuboidBuffer {
 	public void setSource(CuboidBuffer source) {
 		if (source instanceof CuboidBlockMaterialBuffer) {
 			this.source = (CuboidBlockMaterialBuffer) source;
+			this.idSource = null;
+		} else if (source instanceof CuboidShortBuffer) {
+			this.source = null;
+			this.idSource = (CuboidShortBuffer) source;
 		} else {
-			throw new IllegalArgumentException("Only CuboidShortBuffers may be used as the data source when copying to a CuboidShortBuffer");
+			throw new IllegalArgumentException("Only CuboidBlockMaterialBuffers and CuboidShortBuffers may be used as the data source when copying to a CuboidBlockMaterialBuffer");
 		}
 	}
 
@@ -97,11 +156,16 @@ public class CuboidBlockMaterialBuffer extends CuboidBuffer {
 		return data[index];
 	}
 
+	public BlockMaterial[] getRawMaterialArray() {
+		return buffer;
+	}
+
+	public short[] getRawDataArray() {
+		return data;
+	}
 
 	public void flood(BlockMaterial material, short data) {
-		for (int i = 0; i < buffer.length; i++) {
-			this.buffer[i] = material;
-			this.data[i] = data;
-		}
+		Arrays.fill(this.buffer, material);
+		Arrays.fill(this.data, data);
 	}
 }
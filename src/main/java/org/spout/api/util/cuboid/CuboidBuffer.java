@@ -32,20 +32,24 @@ import org.spout.api.math.Vector3;
  * This class implements a Cuboid common methods for a one dimensional array
  * Cuboid Buffer
  *
- * Elements are stored in column order and each column is +1 on the Z dimension
+ * Elements are stored in row order and each row is +1 on the Z dimension
  * relative to the previous one.
  *
- * Each YZ plane is followed by the plane corresponding to +1 on the X
+ * Each XZ plane is followed by the plane corresponding to +1 on the Y
  * dimension.
  *
  * It is assumed that the Cuboid has dimensions (SX, SY, SZ) and the base is set
  * at the origin.
  *
- * buffer[0] = data(0, 0, 0 ) buffer[1] = data(0, 1, 0 ) ..... buffer[SY-1] =
- * data(0, SY-1, 0 ) buffer[SY] = data(0, 0 1 ) .... buffer[SZ*SY - 1] = data(0,
- * SY-1, SZ-1) buffer[SZ*SY] = data(1, 0, 0 ) .... buffer[SZ*SY*SX -1] =
+ * buffer[0] = data(0, 0, 0 ) buffer[1] = data(1, 0, 0 ) ..... buffer[SX-1] =
+ * data(SX-1, 0, 0 ) buffer[SX] = data(0, 0, 1 ) .... buffer[SZ*SX - 1] = data(SX-1,
+ * 0, SZ-1) buffer[SZ*SX] = data(0, 1, 0 ) .... buffer[SZ*SY*SX -1] =
  * data(SX-1, SY-1, SZ-1)
  *
+ * Copies between buffers are performed in contiguous runs. Runs are merged
+ * across rows and planes when both buffers span the full overlap along X and
+ * Z, so copying between equally sized and aligned buffers is a single run.
+ *
  * TODO is this the best package to put this?
  */
 public abstract class CuboidBuffer {
@@ -90,6 +94,30 @@ public abstract class CuboidBuffer {
 		this(base.getX(), base.getY(), base.getZ(), size.getX(), size.getY(), size.getZ());
 	}
 
+	protected final int getBaseX() {
+		return baseX;
+	}
+
+	protected final int getBaseY() {
+		return baseY;
+	}
+
+	protected final int getBaseZ() {
+		return baseZ;
+	}
+
+	protected final int getSizeX() {
+		return sizeX;
+	}
+
+	protected final int getSizeY() {
+		return sizeY;
+	}
+
+	protected final int getSizeZ() {
+		return sizeZ;
+	}
+
 	/**
 	 * Gets a Point representing the base of this CuboidBuffer
 	 */
@@ -105,35 +133,61 @@ public abstract class CuboidBuffer {
 	}
 
 	/**
-	 * Copies the data contained within the given CuboidShortBuffer to this one.
+	 * Copies the data contained within the given CuboidBuffer to this one.
 	 * Any non-overlapping locations are ignored
 	 *
-	 * @param source The CuboidShortBuffer source from which to copy the data.
+	 * @param source The CuboidBuffer source from which to copy the data.
 	 */
 	public void write(CuboidBuffer source) {
+		write(source, false);
+	}
+
+	/**
+	 * Copies the data contained within the given CuboidBuffer to this one,
+	 * skipping the elements which are empty in the source, see
+	 * {@link #copyElementMasked(int, int, int)}. Any non-overlapping
+	 * locations are ignored
+	 *
+	 * @param source The CuboidBuffer source from which to copy the data.
+	 */
+	public void writeMasked(CuboidBuffer source) {
+		write(source, true);
+	}
+
+	private void write(CuboidBuffer source, boolean masked) {
 		CuboidBufferCopyRun run = new CuboidBufferCopyRun(source, this);
 
 		int sourceIndex = run.getBaseSource();
 		int thisIndex = run.getBaseTarget();
+		if (sourceIndex == -1 || thisIndex == -1) {
+			return;
+		}
+
 		int runLength = run.getLength();
 		int innerRepeats = run.getInnerRepeats();
 		int outerRepeats = run.getOuterRepeats();
+		int innerSourceStep = run.getInnerSourceStep();
+		int innerTargetStep = run.getInnerTargetStep();
+		int outerSourceStep = run.getOuterSourceStep();
+		int outerTargetStep = run.getOuterTargetStep();
 
 		setSource(source);
 
-		if (!(sourceIndex == -1 || thisIndex == -1)) {
-			for (int x = 0; x < outerRepeats; x++) {
-				int outerSourceIndex = sourceIndex;
-				int outerThisIndex = thisIndex;
-				for (int z = 0; z < innerRepeats; z++) {
-					copyElement(outerThisIndex, outerSourceIndex, runLength);
-
-					outerSourceIndex += source.Zinc;
-					outerThisIndex += Zinc;
+		for (int y = 0; y < outerRepeats; y++) {
+			int innerSourceIndex = sourceIndex;
+			int innerThisIndex = thisIndex;
+			for (int z = 0; z < innerRepeats; z++) {
+				if (masked) {
+					copyElementMasked(innerThisIndex, innerSourceIndex, runLength);
+				} else {
+					copyElement(innerThisIndex, innerSourceIndex, runLength);
 				}
-				sourceIndex += source.Xinc;
-				thisIndex += Xinc;
+
+				innerSourceIndex += innerSourceStep;
+				innerThisIndex += innerTargetStep;
 			}
+			sourceIndex += outerSourceStep;
+			thisIndex += outerTargetStep;
 		}
 	}
 
@@ -153,8 +207,27 @@ public abstract class CuboidBuffer {
 		return new CuboidBufferCopyRun(this, other);
 	}
 
+	/**
+	 * Copies a contiguous run of elements from the current source, see {@link #setSource(CuboidBuffer)}
+	 *
+	 * @param thisIndex the index of the first element in this buffer
+	 * @param sourceIndex the index of the first element in the source
+	 * @param runLength the number of elements to copy
+	 */
 	public abstract void copyElement(int thisIndex, int sourceIndex, int runLength);
 
+	/**
+	 * Copies the non-empty elements of a contiguous run from the current source.
+	 * By default every element is considered non-empty.
+	 *
+	 * @param thisIndex the index of the first element in this buffer
+	 * @param sourceIndex the index of the first element in the source
+	 * @param runLength the number of elements to copy
+	 */
+	public void copyElementMasked(int thisIndex, int sourceIndex, int runLength) {
+		copyElement(thisIndex, sourceIndex, runLength);
+	}
+
 	public abstract void setSource(CuboidBuffer source);
 
 	@Override
@@ -171,6 +244,13 @@ public abstract class CuboidBuffer {
 		private int overlapSizeZ;
 		private int sourceIndex;
 		private int targetIndex;
+		private int length;
+		private int innerRepeats;
+		private int outerRepeats;
+		private int innerSourceStep;
+		private int innerTargetStep;
+		private int outerSourceStep;
+		private int outerTargetStep;
 
 		public CuboidBufferCopyRun(CuboidBuffer source, CuboidBuffer target) {
 			overlapBaseX = Math.max(source.baseX, target.baseX);
@@ -181,7 +261,7 @@ public abstract class CuboidBuffer {
 			overlapSizeY = Math.min(source.topY, target.topY) - overlapBaseY;
 			overlapSizeZ = Math.min(source.topZ, target.topZ) - overlapBaseZ;
 
-			if (overlapSizeX < 0 || overlapSizeY < 0 || overlapSizeZ < 0) {
+			if (overlapSizeX <= 0 || overlapSizeY <= 0 || overlapSizeZ <= 0) {
 				sourceIndex = -1;
 				targetIndex = -1;
 				return;
@@ -189,6 +269,24 @@ public abstract class CuboidBuffer {
 
 			sourceIndex = getIndex(source, overlapBaseX, overlapBaseY, overlapBaseZ);
 			targetIndex = getIndex(target, overlapBaseX, overlapBaseY, overlapBaseZ);
+
+			length = overlapSizeX;
+			innerRepeats = overlapSizeZ;
+			outerRepeats = overlapSizeY;
+			innerSourceStep = source.Zinc;
+			innerTargetStep = target.Zinc;
+			outerSourceStep = source.Yinc;
+			outerTargetStep = target.Yinc;
+
+			// Rows spanning both buffers are contiguous, so merge them into planes, and planes into a single run
+			if (overlapSizeX == source.sizeX && overlapSizeX == target.sizeX) {
+				length *= innerRepeats;
+				innerRepeats = 1;
+				if (overlapSizeZ == source.sizeZ && overlapSizeZ == target.sizeZ) {
+					length *= outerRepeats;
+					outerRepeats = 1;
+				}
+			}
 		}
 
 		public int getBaseSource() {
@@ -199,16 +297,35 @@ public abstract class CuboidBuffer {
 			return targetIndex;
 		}
 
+		/**
+		 * Gets the number of contiguous elements in each run
+		 */
 		public int getLength() {
-			return overlapSizeY;
+			return length;
 		}
 
 		public int getInnerRepeats() {
-			return overlapSizeZ;
+			return innerRepeats;
 		}
 
 		public int getOuterRepeats() {
-			return overlapSizeX;
+			return outerRepeats;
+		}
+
+		public int getInnerSourceStep() {
+			return innerSourceStep;
+		}
+
+		public int getInnerTargetStep() {
+			return innerTargetStep;
+		}
+
+		public int getOuterSourceStep() {
+			return outerSourceStep;
+		}
+
+		public int getOuterTargetStep() {
+			return outerTargetStep;
 		}
 	}
 }
@@ -26,12 +26,26 @@
  */
 package org.spout.api.util.cuboid;
 
+import java.util.Arrays;
+
+import org.spout.api.material.BlockMaterial;
 import org.spout.api.material.Material;
 import org.spout.api.math.Vector3;
 
+/**
+ * A CuboidBuffer of material ids.
+ *
+ * Elements holding id 0 are considered empty when performing a masked copy.
+ * A {@link CuboidBlockMaterialBuffer} may be used as the source of a copy, in
+ * which case the ids of its materials are copied, as may a
+ * {@link CompressedCuboidShortBuffer}.
+ */
 public class CuboidShortBuffer extends CuboidBuffer {
 	private final short[] buffer;
 	private CuboidShortBuffer source;
+	private CuboidBlockMaterialBuffer materialSource;
+	private CompressedCuboidShortBuffer compressedSource;
+	private short[] runBuffer;
 
 	public CuboidShortBuffer(int baseX, int baseY, int baseZ, int sizeX, int sizeY, int sizeZ, short[] buffer) {
 		super(baseX, baseY, baseZ, sizeX, sizeY, sizeZ);
@@ -52,18 +66,71 @@ public class CuboidShortBuffer extends CuboidBuffer {
 
 	@Override
 	public void copyElement(int thisIndex, int sourceIndex, int runLength) {
+		if (source != null) {
+			System.arraycopy(source.buffer, sourceIndex, buffer, thisIndex, runLength);
+			return;
+		} else if (compressedSource != null) {
+			compressedSource.read(sourceIndex, buffer, thisIndex, runLength);
+			return;
+		}
+		BlockMaterial[] materials = materialSource.getRawMaterialArray();
 		final int end = thisIndex + runLength;
 		for (; thisIndex < end; thisIndex++) {
-			buffer[thisIndex] = source.buffer[sourceIndex++];
+			BlockMaterial material = materials[sourceIndex++];
+			buffer[thisIndex] = material == null ? 0 : material.getId();
+		}
+	}
+
+	@Override
+	public void copyElementMasked(int thisIndex, int sourceIndex, int runLength) {
+		final int end = thisIndex + runLength;
+		if (compressedSource != null) {
+			if (runBuffer == null) {
+				runBuffer = new short[CompressedCuboidShortBuffer.SECTION_VOLUME];
+			}
+			for (int offset = 0; offset < runLength; offset += runBuffer.length) {
+				int length = Math.min(runBuffer.length, runLength - offset);
+				compressedSource.read(sourceIndex + offset, runBuffer, 0, length);
+				for (int i = 0; i < length; i++) {
+					if (runBuffer[i] != 0) {
+						buffer[thisIndex + offset + i] = runBuffer[i];
+					}
+				}
+			}
+			return;
+		}
+		if (source != null) {
+			short[] sourceBuffer = source.buffer;
+			for (; thisIndex < end; thisIndex++) {
+				short id = sourceBuffer[sourceIndex++];
+				if (id != 0) {
+					buffer[thisIndex] = id;
+				}
+			}
+			return;
+		}
+		BlockMaterial[] materials = materialSource.getRawMaterialArray();
+		for (; thisIndex < end; thisIndex++) {
+			BlockMaterial material = materials[sourceIndex++];
+			if (material != null) {
+				buffer[thisIndex] = material.getId();
+			}
 		}
 	}
 
 	@Override
 	public void setSource(CuboidBuffer source) {
+		this.source = null;
+		this.materialSource = null;
+		this.compressedSource = null;
 		if (source instanceof CuboidShortBuffer) {
 			this.source = (CuboidShortBuffer) source;
+		} else if (source instanceof CuboidBlockMaterialBuffer) {
+			this.materialSource = (CuboidBlockMaterialBuffer) source;
+		} else if (source instanceof CompressedCuboidShortBuffer) {
+			this.compressedSource = (CompressedCuboidShortBuffer) source;
 		} else {
-			throw new IllegalArgumentException("Only CuboidShortBuffers may be used as the data source when copying to a CuboidShortBuffer");
+			throw new IllegalArgumentException("Only CuboidShortBuffers, CuboidBlockMaterialBuffers and CompressedCuboidShortBuffers may be used as the data source when copying to a CuboidShortBuffer");
 		}
 	}
 
@@ -95,8 +162,6 @@ public class CuboidShortBuffer extends CuboidBuffer {
 	}
 
 	public void flood(short id) {
-		for (int i = 0; i < buffer.length; i++) {
-			buffer[i] = id;
-		}
+		Arrays.fill(buffer, id);
 	}
 }
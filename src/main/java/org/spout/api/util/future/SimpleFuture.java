@@ -78,7 +78,15 @@ public class SimpleFuture<T> implements Future<T> {
 	@SuppressWarnings("unchecked")
 	@Override
 	public boolean cancel(boolean mayInterruptIfRunning) {
-		return resultRef.compareAndSet(null, (T)CANCEL);
+		if (!resultRef.compareAndSet(null, (T)CANCEL)) {
+			return false;
+		}
+
+		synchronized (resultRef) {
+			resultRef.notifyAll();
+		}
+
+		return true;
 	}
 
 	@Override
@@ -264,7 +264,7 @@ public interface AtomicBlockStore {
 	 * @return true if there were dirty blocks
 	 */
 	public boolean resetDirtyArrays();
-	
+
 	/**
 	 * Gets the number of dirty blocks since the last update
 	 *
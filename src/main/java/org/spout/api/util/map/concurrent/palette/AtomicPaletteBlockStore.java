@@ -36,8 +36,9 @@ import org.spout.api.material.source.MaterialSource;
 import org.spout.api.math.Vector3;
 import org.spout.api.render.RenderMaterial;
 import org.spout.api.util.map.concurrent.AtomicBlockStore;
+import org.spout.api.util.map.concurrent.VersionedBlockStore;
 
-public class AtomicPaletteBlockStore implements AtomicBlockStore {
+public class AtomicPaletteBlockStore implements AtomicBlockStore, VersionedBlockStore {
 	
 	private final int side;
 	private final int shift;
@@ -51,6 +52,7 @@ public class AtomicPaletteBlockStore implements AtomicBlockStore {
 	private final int[] newState;
 	private final int[] oldState;
 	private final AtomicInteger dirtyBlocks = new AtomicInteger(0);
+	private final AtomicInteger version = new AtomicInteger(0);
 	
 	public AtomicPaletteBlockStore(int shift, boolean storeState) {
 		this(shift, storeState, 10);
@@ -261,7 +263,13 @@ public class AtomicPaletteBlockStore implements AtomicBlockStore {
 		return newState[i];
 	}
 
+	@Override
+	public int getVersion() {
+		return version.get();
+	}
+
 	public void markDirty(int x, int y, int z, int oldState, int newState) {
+		version.incrementAndGet();
 		int index = incrementDirtyIndex();
 		if (index < dirtyX.length) {
 			dirtyX[index] = (byte) x;
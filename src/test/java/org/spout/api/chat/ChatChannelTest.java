@@ -0,0 +1,91 @@
+/*
+ * This file is part of SpoutAPI.
+ *
+ * Copyright (c) 2011-2012, Spout LLC <http://www.spout.org/>
+ * SpoutAPI is licensed under the Spout License Version 1.
+ *
+ * SpoutAPI is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * In addition, 180 days after any changes are published, you can use the
+ * software, incorporating those changes, under the terms of the MIT license,
+ * as described in the Spout License Version 1.
+ *
+ * SpoutAPI is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License,
+ * the MIT license and the Spout License Version 1 along with this program.
+ * If not, see <http://www.gnu.org/licenses/> for the GNU Lesser General Public
+ * License and see <http://spout.in/licensev1> for the full license, including
+ * the MIT license.
+ */
+package org.spout.api.chat;
+
+import static org.junit.Assert.assertSame;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.powermock.api.mockito.PowerMockito;
+import org.spout.api.chat.channel.ChatChannel;
+import org.spout.api.command.CommandSource;
+import org.spout.api.entity.Player;
+import org.spout.api.protocol.Message;
+import org.spout.api.protocol.Protocol;
+import org.spout.api.protocol.Session;
+import org.spout.api.protocol.SharedMessage;
+
+public class ChatChannelTest {
+
+	@Test
+	public void testBroadcast() {
+		Protocol protocol = PowerMockito.mock(Protocol.class);
+		Message chat = PowerMockito.mock(Message.class);
+		PowerMockito.when(protocol.getChatMessage(any(ChatArguments.class))).thenReturn(chat);
+
+		final Set<CommandSource> receivers = new HashSet<CommandSource>();
+		Session[] sessions = new Session[3];
+		for (int i = 0; i < sessions.length; i++) {
+			sessions[i] = PowerMockito.mock(Session.class);
+			PowerMockito.when(sessions[i].getProtocol()).thenReturn(protocol);
+			Player player = PowerMockito.mock(Player.class);
+			PowerMockito.when(player.getSession()).thenReturn(sessions[i]);
+			receivers.add(player);
+		}
+		CommandSource console = PowerMockito.mock(CommandSource.class);
+		receivers.add(console);
+
+		ChatChannel channel = new ChatChannel("test") {
+			@Override
+			public Set<CommandSource> getReceivers() {
+				return receivers;
+			}
+		};
+		channel.broadcastToReceivers(new ChatArguments("hello"));
+
+		verify(protocol, times(1)).getChatMessage(any(ChatArguments.class));
+		verify(console, times(1)).sendMessage(any(ChatArguments.class));
+		Message first = null;
+		for (Session session : sessions) {
+			ArgumentCaptor<Message> sent = ArgumentCaptor.forClass(Message.class);
+			verify(session).send(eq(false), sent.capture());
+			SharedMessage shared = (SharedMessage) sent.getValue();
+			assertSame(chat, shared.getMessage());
+			if (first == null) {
+				first = shared;
+			}
+			assertSame("The encoded message was not shared", first, shared);
+		}
+	}
+}
@@ -27,6 +27,14 @@
 package org.spout.api.command;
 
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.util.List;
+
 import org.junit.Before;
 import org.junit.Test;
 
@@ -56,6 +64,45 @@ public class SimpleCommandTest implements CommandSource {
 		testCommand.execute(this, "test1", new ChatArguments("hellothere").toSections(ChatSection.SplitType.WORD), -1, false);
 	}
 
+	@Test
+	public void testChildLookup() {
+		testCommand.addSubCommand(this, "teleport").closeSubCommand();
+		testCommand.addSubCommand(this, "tell").closeSubCommand();
+		testCommand.addSubCommand(this, "time").closeSubCommand();
+		Command tell = testCommand.getChild("tell");
+		assertNotNull(tell);
+		assertSame(tell, testCommand.getChild("TELL"));
+		assertSame(tell, testCommand.getChild("tel", true));
+		assertNull(testCommand.getChild("tel", false));
+		assertNull(testCommand.getChild("tl", true));
+
+		List<ChatArguments> matches = testCommand.getMatchingChildren("te");
+		assertEquals(2, matches.size());
+		assertEquals("tell", matches.get(0).getPlainString());
+		assertEquals("teleport", matches.get(1).getPlainString());
+
+		testCommand.removeChild("tell");
+		assertNull(testCommand.getChild("tel", true));
+		assertEquals(1, testCommand.getMatchingChildren("te").size());
+	}
+
+	@Test
+	public void testManyMatchingChildren() {
+		// Long names sort before the short ones in the child index
+		for (int i = 0; i < 60; i++) {
+			testCommand.addSubCommand(this, "ma" + (char) ('a' + i / 26) + (char) ('a' + i % 26) + "long").closeSubCommand();
+		}
+		testCommand.addSubCommand(this, "ma").closeSubCommand();
+		testCommand.addSubCommand(this, "maz").closeSubCommand();
+
+		List<ChatArguments> matches = testCommand.getMatchingChildren("ma");
+		assertEquals(50, matches.size());
+		assertEquals("maz", matches.get(0).getPlainString());
+		for (ChatArguments match : matches) {
+			assertFalse("The exact match was completed", match.getPlainString().equals("ma"));
+		}
+	}
+
 	@Override
 	public boolean sendMessage(Object... message) {
 		return sendRawMessage(message);
@@ -0,0 +1,68 @@
+/*
+ * This file is part of SpoutAPI.
+ *
+ * Copyright (c) 2011-2012, Spout LLC <http://www.spout.org/>
+ * SpoutAPI is licensed under the Spout License Version 1.
+ *
+ * SpoutAPI is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * In addition, 180 days after any changes are published, you can use the
+ * software, incorporating those changes, under the terms of the MIT license,
+ * as described in the Spout License Version 1.
+ *
+ * SpoutAPI is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License,
+ * the MIT license and the Spout License Version 1 along with this program.
+ * If not, see <http://www.gnu.org/licenses/> for the GNU Lesser General Public
+ * License and see <http://spout.in/licensev1> for the full license, including
+ * the MIT license.
+ */
+package org.spout.api.component;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import org.junit.Test;
+
+public class BaseComponentHolderTest {
+
+	@Test
+	public void test() {
+		BaseComponentHolder holder = new BaseComponentHolder();
+		ConcreteComponent component = holder.add(ConcreteComponent.class);
+
+		assertSame(component, holder.get(ConcreteComponent.class));
+		assertSame("Component was not found by its supertype", component, holder.get(AbstractComponent.class));
+		assertNull("Supertype should not match exactly", holder.getExact(AbstractComponent.class));
+		assertNull(holder.get(OtherComponent.class));
+		assertEquals(2, holder.values().size());
+
+		holder.detach(AbstractComponent.class);
+		assertNull("Detached component was still found", holder.get(ConcreteComponent.class));
+		assertNull("Detached component was still found by its supertype", holder.get(AbstractComponent.class));
+		assertEquals(1, holder.values().size());
+
+		OtherComponent other = holder.add(OtherComponent.class);
+		assertSame(other, holder.get(AbstractComponent.class));
+	}
+
+	public static abstract class AbstractComponent extends Component {
+		@Override
+		public void onTick(float dt) {
+		}
+	}
+
+	public static class ConcreteComponent extends AbstractComponent {
+	}
+
+	public static class OtherComponent extends AbstractComponent {
+	}
+}
@@ -0,0 +1,131 @@
+/*
+ * This file is part of SpoutAPI.
+ *
+ * Copyright (c) 2011-2012, Spout LLC <http://www.spout.org/>
+ * SpoutAPI is licensed under the Spout License Version 1.
+ *
+ * SpoutAPI is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * In addition, 180 days after any changes are published, you can use the
+ * software, incorporating those changes, under the terms of the MIT license,
+ * as described in the Spout License Version 1.
+ *
+ * SpoutAPI is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License,
+ * the MIT license and the Spout License Version 1 along with this program.
+ * If not, see <http://www.gnu.org/licenses/> for the GNU Lesser General Public
+ * License and see <http://spout.in/licensev1> for the full license, including
+ * the MIT license.
+ */
+package org.spout.api.component;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.junit.Test;
+
+public class ComponentSystemTest {
+
+	@Test
+	public void testTick() {
+		ComponentSystem system = new ComponentSystem();
+		CountingComponent a = new CountingComponent();
+		CountingComponent b = new CountingComponent();
+		system.register(a);
+		system.register(b);
+
+		system.tick(1F);
+		assertEquals(1, a.ticks);
+		assertEquals(1, b.ticks);
+
+		system.unregister(a);
+		system.tick(1F);
+		assertEquals("Unregistered component was ticked", 1, a.ticks);
+		assertEquals(2, b.ticks);
+
+		ComponentSystem.ComponentGroup group = system.get(CountingComponent.class);
+		assertEquals(1, group.getSize());
+		assertEquals(2, group.getTicks());
+		assertFalse(group.isThreadsafe());
+
+		CountingComponent c = new CountingComponent();
+		system.register(c);
+		system.unregister(c);
+		system.tick(1F);
+		assertEquals("Component removed before its first tick was ticked", 0, c.ticks);
+
+		system.register(b);
+		system.tick(1F);
+		assertEquals("Component registered twice was ticked twice", 4, b.ticks);
+		assertEquals(1, group.getSize());
+
+		system.unregister(b);
+		system.register(b);
+		system.register(b);
+		system.tick(1F);
+		assertEquals(1, group.getSize());
+	}
+
+	@Test
+	public void testRegisteredThenUnregistered() {
+		ComponentSystem system = new ComponentSystem();
+		CountingComponent a = new CountingComponent();
+		system.register(a);
+		system.tick(1F);
+		assertEquals(1, a.ticks);
+
+		system.register(a);
+		system.unregister(a);
+		system.tick(1F);
+		assertEquals("Member registered again and then unregistered was ticked", 1, a.ticks);
+		assertEquals(0, system.get(CountingComponent.class).getSize());
+	}
+
+	@Test
+	public void testParallel() throws InterruptedException {
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		try {
+			ComponentSystem system = new ComponentSystem(executor, 4);
+			List<ParallelComponent> components = new ArrayList<ParallelComponent>();
+			for (int i = 0; i < 1000; i++) {
+				ParallelComponent component = new ParallelComponent();
+				components.add(component);
+				system.register(component);
+			}
+			system.tick(1F);
+			system.tick(1F);
+			for (ParallelComponent component : components) {
+				assertEquals(2, component.ticks);
+			}
+			assertTrue(system.get(ParallelComponent.class).isThreadsafe());
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	public static class CountingComponent extends Component {
+		protected int ticks = 0;
+
+		@Override
+		public void onTick(float dt) {
+			ticks++;
+		}
+	}
+
+	@ThreadsafeTick
+	public static class ParallelComponent extends CountingComponent {
+	}
+}
@@ -32,9 +32,12 @@ import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.Serializable;
+import java.util.Arrays;
 
 import org.junit.Test;
 
+import org.spout.api.util.VarInt;
+
 
 public class GenericDatatableMapTest {
 	String intString = "Int Value";
@@ -96,6 +99,35 @@ public class GenericDatatableMapTest {
 		DatatableMap map2 = GenericDatatableMap.readMap(in);
 
 		checkMap(map2);
+
+		out = new ByteArrayOutputStream();
+
+		((GenericDatatableMap) map1).output(out, VarInt.Format.COMPACT);
+
+		in = new ByteArrayInputStream(out.toByteArray());
+
+		DatatableMap map3 = GenericDatatableMap.readMap(in);
+
+		checkMap(map3);
+
+		byte[] legacy = map1.compress();
+		try {
+			ManagedHashMap.setSerializationFormat(VarInt.Format.COMPACT);
+			byte[] compact = map1.compress();
+			assertTrue("Serialization format flag was ignored", !Arrays.equals(legacy, compact));
+			DatatableMap map4 = new GenericDatatableMap();
+			map4.decompress(compact);
+			checkMap(map4);
+
+			out = new ByteArrayOutputStream();
+			map1.output(out);
+			checkMap(GenericDatatableMap.readMap(new ByteArrayInputStream(out.toByteArray())));
+		} finally {
+			ManagedHashMap.setSerializationFormat(VarInt.Format.LEGACY);
+		}
+		DatatableMap map5 = new GenericDatatableMap();
+		map5.decompress(legacy);
+		checkMap(map5);
 	}
 
 	private void checkMap(DatatableMap map) {
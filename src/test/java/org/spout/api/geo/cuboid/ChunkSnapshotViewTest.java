@@ -0,0 +1,105 @@
+/*
+ * This file is part of SpoutAPI.
+ *
+ * Copyright (c) 2011-2012, Spout LLC <http://www.spout.org/>
+ * SpoutAPI is licensed under the Spout License Version 1.
+ *
+ * SpoutAPI is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * In addition, 180 days after any changes are published, you can use the
+ * software, incorporating those changes, under the terms of the MIT license,
+ * as described in the Spout License Version 1.
+ *
+ * SpoutAPI is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License,
+ * the MIT license and the Spout License Version 1 along with this program.
+ * If not, see <http://www.gnu.org/licenses/> for the GNU Lesser General Public
+ * License and see <http://spout.in/licensev1> for the full license, including
+ * the MIT license.
+ */
+package org.spout.api.geo.cuboid;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+import org.junit.Test;
+import org.powermock.api.mockito.PowerMockito;
+
+import org.spout.api.material.block.BlockFullState;
+import org.spout.api.util.map.concurrent.AtomicBlockStore;
+import org.spout.api.util.map.concurrent.palette.AtomicPaletteBlockStore;
+
+public class ChunkSnapshotViewTest {
+	@Test
+	public void testAccessors() {
+		short[] ids = new short[ChunkSnapshotView.VOLUME];
+		short[] data = new short[ChunkSnapshotView.VOLUME];
+		byte[] light = new byte[ChunkSnapshotView.VOLUME / 2];
+		for (int i = 0; i < ids.length; i++) {
+			ids[i] = (short) (i * 7);
+			data[i] = (short) (i & 3);
+		}
+		int index = (5 << 8) | (6 << 4) | 7;
+		light[index >> 1] = (byte) 0xA0;
+		ChunkSnapshotView view = new ChunkSnapshotView(ids, data, light, null, 0);
+
+		assertEquals(ids[index], view.getBlockId(7, 5, 6));
+		assertEquals(ids[index], view.getBlockId(7 + 32, 5 - 16, 6 + 48));
+		assertEquals(BlockFullState.getPacked(ids[index], data[index]), view.getBlockFullState(7, 5, 6));
+		assertEquals(10, view.getBlockLight(7, 5, 6));
+		assertEquals(0, view.getBlockLight(6, 5, 6));
+
+		short[] row = new short[ChunkSnapshotView.ROW_SIZE];
+		view.getBlockIdRow(5, 6, row, 0);
+		assertEquals(ids[index], row[7]);
+		int[] plane = new int[ChunkSnapshotView.PLANE_SIZE];
+		view.getBlockFullStatePlane(5, plane, 0);
+		assertEquals(view.getBlockFullState(7, 5, 6), plane[(6 << 4) | 7]);
+		assertArrayEquals(ids, view.copyBlockIds());
+		assertNotSame(ids, view.copyBlockIds());
+
+		assertFalse(view.hasLight());
+		try {
+			view.getBlockSkyLight(0, 0, 0);
+			fail("Sky light was not included");
+		} catch (IllegalStateException expected) {
+		}
+	}
+
+	@Test
+	public void testReuse() {
+		AtomicBlockStore store = new AtomicPaletteBlockStore(ChunkSnapshot.CHUNK_SIZE_BITS, false);
+		store.setBlock(1, 2, 3, (short) 4, (short) 5);
+		ChunkSnapshotView view = ChunkSnapshotView.of(store, null);
+		assertEquals(4, view.getBlockId(1, 2, 3));
+		assertEquals(5, view.getBlockData(1, 2, 3));
+		assertSame(view, ChunkSnapshotView.of(store, view));
+
+		store.setBlock(1, 2, 3, (short) 6, (short) 0);
+		ChunkSnapshotView changed = ChunkSnapshotView.of(store, view);
+		assertNotSame(view, changed);
+		assertEquals(4, view.getBlockId(1, 2, 3));
+		assertEquals(6, changed.getBlockId(1, 2, 3));
+	}
+
+	@Test
+	public void testUnversionedStore() {
+		AtomicBlockStore store = PowerMockito.mock(AtomicBlockStore.class);
+		PowerMockito.when(store.getBlockIdArray()).thenReturn(new short[ChunkSnapshotView.VOLUME]);
+		PowerMockito.when(store.getDataArray()).thenReturn(new short[ChunkSnapshotView.VOLUME]);
+		ChunkSnapshotView view = ChunkSnapshotView.of(store, null);
+		assertEquals(ChunkSnapshotView.NO_VERSION, view.getVersion());
+		assertNotSame("View of a store without a version was reused", view, ChunkSnapshotView.of(store, view));
+	}
+}
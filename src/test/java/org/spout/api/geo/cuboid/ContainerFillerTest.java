@@ -0,0 +1,206 @@
+/*
+ * This file is part of SpoutAPI.
+ *
+ * Copyright (c) 2011-2012, Spout LLC <http://www.spout.org/>
+ * SpoutAPI is licensed under the Spout License Version 1.
+ *
+ * SpoutAPI is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * In addition, 180 days after any changes are published, you can use the
+ * software, incorporating those changes, under the terms of the MIT license,
+ * as described in the Spout License Version 1.
+ *
+ * SpoutAPI is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License,
+ * the MIT license and the Spout License Version 1 along with this program.
+ * If not, see <http://www.gnu.org/licenses/> for the GNU Lesser General Public
+ * License and see <http://spout.in/licensev1> for the full license, including
+ * the MIT license.
+ */
+package org.spout.api.geo.cuboid;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import gnu.trove.list.array.TByteArrayList;
+import gnu.trove.list.array.TIntArrayList;
+
+import org.junit.Test;
+
+import org.spout.api.material.block.BlockFullState;
+
+public class ContainerFillerTest {
+	private static final int SIZE_X = 4;
+	private static final int SIZE_Y = 3;
+	private static final int SIZE_Z = 5;
+	private static final int VOLUME = SIZE_X * SIZE_Y * SIZE_Z;
+
+	@Test
+	public void testBlockOrders() {
+		Random random = new Random(7);
+		short[] ids = new short[VOLUME];
+		short[] data = new short[VOLUME];
+		for (int i = 0; i < VOLUME; i++) {
+			ids[i] = (short) random.nextInt(100);
+			data[i] = (short) random.nextInt(16);
+		}
+		for (ContainerFillOrder order : ContainerFillOrder.values()) {
+			TestBlockContainer single = new TestBlockContainer(order);
+			ContainerFiller.fill(single, ids, data, ContainerFillOrder.XZY, SIZE_X, SIZE_Y, SIZE_Z);
+			TestBulkBlockContainer bulk = new TestBulkBlockContainer(order);
+			ContainerFiller.fill(bulk, ids, data, ContainerFillOrder.XZY, SIZE_X, SIZE_Y, SIZE_Z);
+
+			assertEquals(VOLUME, single.states.size());
+			assertArrayEquals(single.states.toArray(), bulk.states.toArray());
+			assertEquals(order.getThirdSize(SIZE_X, SIZE_Y, SIZE_Z), bulk.calls);
+
+			// The first element in the container order is always the source origin
+			assertEquals(BlockFullState.getPacked(ids[0], data[0]), single.states.get(0));
+		}
+		// An identical order keeps the source order
+		TestBlockContainer same = new TestBlockContainer(ContainerFillOrder.XZY);
+		ContainerFiller.fill(same, ids, null, ContainerFillOrder.XZY, SIZE_X, SIZE_Y, SIZE_Z);
+		for (int i = 0; i < VOLUME; i++) {
+			assertEquals(BlockFullState.getPacked(ids[i], (short) 0), same.states.get(i));
+		}
+	}
+
+	@Test
+	public void testUniform() {
+		short[] ids = new short[VOLUME];
+		Arrays.fill(ids, (short) 3);
+		TestBulkBlockContainer bulk = new TestBulkBlockContainer(ContainerFillOrder.YXZ);
+		ContainerFiller.fill(bulk, ids, null, ContainerFillOrder.XZY, SIZE_X, SIZE_Y, SIZE_Z);
+		assertEquals(1, bulk.calls);
+		assertEquals(VOLUME, bulk.states.size());
+
+		byte[] light = new byte[(VOLUME + 1) / 2];
+		Arrays.fill(light, (byte) 0x77);
+		TestBulkLightContainer bulkLight = new TestBulkLightContainer(ContainerFillOrder.ZYX);
+		ContainerFiller.fill(bulkLight, light, ContainerFillOrder.XZY, SIZE_X, SIZE_Y, SIZE_Z);
+		assertEquals(1, bulkLight.calls);
+		assertEquals(VOLUME, bulkLight.levels.size());
+		assertEquals(7, bulkLight.levels.get(VOLUME - 1));
+	}
+
+	@Test
+	public void testLight() {
+		byte[] light = new byte[VOLUME / 2];
+		light[0] = (byte) 0x21;
+		light[1] = (byte) 0x0F;
+		TestBulkLightContainer bulk = new TestBulkLightContainer(ContainerFillOrder.XZY);
+		ContainerFiller.fill(bulk, light, ContainerFillOrder.XZY, SIZE_X, SIZE_Y, SIZE_Z);
+		assertEquals(1, bulk.levels.get(0));
+		assertEquals(2, bulk.levels.get(1));
+		assertEquals(15, bulk.levels.get(2));
+		assertEquals(0, bulk.levels.get(3));
+
+		TestLightContainer single = new TestLightContainer(ContainerFillOrder.YZX);
+		ContainerFiller.fill(single, light, ContainerFillOrder.XZY, SIZE_X, SIZE_Y, SIZE_Z);
+		TestBulkLightContainer reordered = new TestBulkLightContainer(ContainerFillOrder.YZX);
+		ContainerFiller.fill(reordered, light, ContainerFillOrder.XZY, SIZE_X, SIZE_Y, SIZE_Z);
+		assertArrayEquals(single.levels.toArray(), reordered.levels.toArray());
+	}
+
+	private static class TestBlockContainer implements BlockContainer {
+		private final ContainerFillOrder order;
+		protected final TIntArrayList states = new TIntArrayList();
+
+		public TestBlockContainer(ContainerFillOrder order) {
+			this.order = order;
+		}
+
+		@Override
+		public ContainerFillOrder getOrder() {
+			return order;
+		}
+
+		@Override
+		public void setBlockFullState(int state) {
+			states.add(state);
+		}
+	}
+
+	private static class TestBulkBlockContainer extends TestBlockContainer implements BulkBlockContainer {
+		private int calls = 0;
+
+		public TestBulkBlockContainer(ContainerFillOrder order) {
+			super(order);
+		}
+
+		@Override
+		public void setBlockFullState(int state) {
+			throw new IllegalStateException("Bulk container should not be filled per block");
+		}
+
+		@Override
+		public void setBlockFullStates(int[] states, int offset, int length) {
+			calls++;
+			this.states.add(states, offset, length);
+		}
+
+		@Override
+		public void fillBlockFullState(int state, int count) {
+			calls++;
+			for (int i = 0; i < count; i++) {
+				states.add(state);
+			}
+		}
+	}
+
+	private static class TestLightContainer implements LightContainer {
+		private final ContainerFillOrder order;
+		protected final TByteArrayList levels = new TByteArrayList();
+
+		public TestLightContainer(ContainerFillOrder order) {
+			this.order = order;
+		}
+
+		@Override
+		public ContainerFillOrder getOrder() {
+			return order;
+		}
+
+		@Override
+		public void setLightLevel(byte light) {
+			levels.add(light);
+		}
+	}
+
+	private static class TestBulkLightContainer extends TestLightContainer implements BulkLightContainer {
+		private int calls = 0;
+
+		public TestBulkLightContainer(ContainerFillOrder order) {
+			super(order);
+		}
+
+		@Override
+		public void setLightLevel(byte light) {
+			throw new IllegalStateException("Bulk container should not be filled per block");
+		}
+
+		@Override
+		public void setLightLevels(byte[] light, int offset, int length) {
+			calls++;
+			levels.add(light, offset, length);
+		}
+
+		@Override
+		public void fillLightLevel(byte light, int count) {
+			calls++;
+			for (int i = 0; i < count; i++) {
+				levels.add(light);
+			}
+		}
+	}
+}
@@ -78,4 +78,81 @@ public class TransformTest {
 		assertEquals("Copy of transform hashcodes do not match", transform.hashCode(), copy.hashCode());
 	}
 
+	@Test
+	public void testPrimitives() {
+		World mock = PowerMockito.mock(World.class);
+		Transform transform = new Transform();
+		transform.setPosition(mock, 1, 2, 3);
+		transform.setRotation(0, 0, 0, 1);
+		transform.setScale(2, 2, 2);
+		transform.translate(1, -1, 0.5F);
+
+		float[] values = new float[Transform.SIZE];
+		assertSame(mock, transform.get(values));
+		assertArrayEquals(new float[] {2, 1, 3.5F, 0, 0, 0, 1, 2, 2, 2}, values, 0);
+		assertEquals(new Point(mock, 2, 1, 3.5F), transform.getPosition());
+
+		float[] position = new float[3];
+		assertSame(mock, transform.getPosition(position));
+		assertArrayEquals(new float[] {2, 1, 3.5F}, position, 0);
+
+		Transform copy = transform.copy();
+		assertTrue(copy.isPositionEqual(transform));
+		assertTrue(copy.isRotationEqual(transform));
+		assertTrue(copy.isScaleEqual(transform));
+		copy.translate(0, 1, 0);
+		assertFalse(copy.isPositionEqual(transform));
+	}
+
+	@Test
+	public void testSetFromComponents() {
+		World mock = PowerMockito.mock(World.class);
+		Quaternion rotation = new Quaternion(90F, 0, 1, 0);
+		Transform transform = new Transform(new Point(mock, 1, 2, 3), rotation, new Vector3(2, 2, 2));
+		float[] values = new float[Transform.SIZE];
+		transform.get(values);
+
+		Transform other = new Transform();
+		other.set(mock, values);
+		assertEquals("Rotation components were read as an angle and axis", rotation, other.getRotation());
+		assertEquals(transform, other);
+	}
+
+	@Test
+	public void testValuesArePublished() {
+		World mock = PowerMockito.mock(World.class);
+		Transform transform = new Transform();
+		transform.setPosition(mock, 1, 2, 3);
+		assertSame("Position should be published on write, not created on read", transform.getPosition(), transform.getPosition());
+		assertSame(transform.getRotation(), transform.getRotation());
+		assertSame(transform.getScale(), transform.getScale());
+
+		Transform zero = new Transform(new Point(mock, 0, 0, 0), Quaternion.IDENTITY, Vector3.ONE);
+		Transform negativeZero = new Transform(new Point(mock, -0.0F, 0, 0), Quaternion.IDENTITY, Vector3.ONE);
+		assertEquals("Transforms should compare their components like the components do", zero.getPosition().equals(negativeZero.getPosition()), zero.equals(negativeZero));
+	}
+
+	@Test
+	public void testConcurrentReads() throws InterruptedException {
+		final Transform transform = new Transform();
+		transform.set(new Point(null, 0, 0, 0), new Quaternion(0, 0, 0, 0, true), new Vector3(0, 0, 0));
+		final int writes = 100000;
+		Thread writer = new Thread() {
+			@Override
+			public void run() {
+				for (int i = 0; i < writes; i++) {
+					transform.set(new Point(null, i, i, i), new Quaternion(i, i, i, i, true), new Vector3(i, i, i));
+				}
+			}
+		};
+		writer.start();
+		float[] values = new float[Transform.SIZE];
+		while (writer.isAlive()) {
+			transform.get(values);
+			for (int i = 1; i < Transform.SIZE; i++) {
+				assertEquals("Torn read of transform", values[0], values[i], 0);
+			}
+		}
+		writer.join();
+	}
 }
@@ -251,6 +251,50 @@ public class InventoryTest extends EngineFaker {
 		assertTrue(inventory.containsExactly(mat, amount));
 	}
 
+	@Test
+	public void testBatch() {
+		final List<Integer> single = new ArrayList<Integer>();
+		final List<int[]> batches = new ArrayList<int[]>();
+		inventory.addViewer(new InventoryViewer() {
+			@Override
+			public void onSlotSet(Inventory inventory, int slot, ItemStack item) {
+				single.add(slot);
+			}
+		});
+		inventory.addViewer(new BatchInventoryViewer() {
+			@Override
+			public void onSlotSet(Inventory inventory, int slot, ItemStack item) {
+				batches.add(new int[] {slot});
+			}
+
+			@Override
+			public void onSlotsSet(Inventory inventory, int[] slots, ItemStack[] items) {
+				batches.add(slots);
+			}
+		});
+
+		inventory.beginBatch();
+		inventory.set(3, getRandomItem());
+		inventory.set(1, getRandomItem());
+		inventory.set(3, null);
+		assertTrue(inventory.isBatching());
+		assertTrue("Viewers were notified during a batch", single.isEmpty() && batches.isEmpty());
+		inventory.endBatch();
+		assertFalse(inventory.isBatching());
+
+		assertEquals("Each changed slot should be sent once", 2, single.size());
+		assertEquals(1, batches.size());
+		assertEquals(2, batches.get(0).length);
+		assertEquals(1, batches.get(0)[0]);
+		assertEquals(3, batches.get(0)[1]);
+
+		single.clear();
+		batches.clear();
+		inventory.clear();
+		assertEquals(inventory.size(), single.size());
+		assertEquals("Clearing the inventory should send a single batch", 1, batches.size());
+	}
+
 	private ItemStack getRandomItem() {
 		return new ItemStack(getRandomMaterial(), getRandomSize());
 	}
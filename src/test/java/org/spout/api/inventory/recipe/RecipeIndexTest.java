@@ -0,0 +1,97 @@
+/*
+ * This file is part of SpoutAPI.
+ *
+ * Copyright (c) 2011-2012, Spout LLC <http://www.spout.org/>
+ * SpoutAPI is licensed under the Spout License Version 1.
+ *
+ * SpoutAPI is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * In addition, 180 days after any changes are published, you can use the
+ * software, incorporating those changes, under the terms of the MIT license,
+ * as described in the Spout License Version 1.
+ *
+ * SpoutAPI is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License,
+ * the MIT license and the Spout License Version 1 along with this program.
+ * If not, see <http://www.gnu.org/licenses/> for the GNU Lesser General Public
+ * License and see <http://spout.in/licensev1> for the full license, including
+ * the MIT license.
+ */
+package org.spout.api.inventory.recipe;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import org.spout.api.material.BlockMaterial;
+import org.spout.api.material.Material;
+
+public class RecipeIndexTest {
+	@Before
+	public void setupMaterials() {
+		EngineFaker.setupEngine();
+	}
+
+	@Test
+	public void testShapeless() {
+		ShapelessRecipe recipe = new RecipeBuilder().setResult(BlockMaterial.SOLID, 1).addIngredient(BlockMaterial.UNBREAKABLE).addIngredient(BlockMaterial.UNBREAKABLE).addIngredient(BlockMaterial.SOLID_RED).buildShapelessRecipe();
+		ShapelessRecipe other = new RecipeBuilder().setResult(BlockMaterial.SOLID, 1).addIngredient(BlockMaterial.UNBREAKABLE).addIngredient(BlockMaterial.SOLID_RED).addIngredient(BlockMaterial.SOLID_RED).buildShapelessRecipe();
+		RecipeIndex index = new RecipeIndex();
+		assertTrue(index.addRecipe(recipe));
+		assertTrue(index.addRecipe(other));
+		assertFalse("Recipe was added twice", index.addRecipe(recipe));
+
+		assertSame(recipe, index.matchShapelessRecipe(Arrays.asList((Material) BlockMaterial.SOLID_RED, BlockMaterial.UNBREAKABLE, null, BlockMaterial.UNBREAKABLE)));
+		assertSame(other, index.matchShapelessRecipe(Arrays.asList((Material) BlockMaterial.SOLID_RED, BlockMaterial.UNBREAKABLE, BlockMaterial.SOLID_RED)));
+		assertNull(index.matchShapelessRecipe(Arrays.asList((Material) BlockMaterial.SOLID_RED, BlockMaterial.UNBREAKABLE)));
+		assertNull(index.matchShapelessRecipe(Arrays.asList((Material) BlockMaterial.SOLID_RED, BlockMaterial.SOLID_RED, BlockMaterial.SOLID_RED)));
+
+		assertTrue(index.removeRecipe(recipe));
+		assertNull(index.matchShapelessRecipe(Arrays.asList((Material) BlockMaterial.SOLID_RED, BlockMaterial.UNBREAKABLE, BlockMaterial.UNBREAKABLE)));
+		assertSame(other, index.matchShapelessRecipe(Arrays.asList((Material) BlockMaterial.SOLID_RED, BlockMaterial.UNBREAKABLE, BlockMaterial.SOLID_RED)));
+	}
+
+	@Test
+	public void testShaped() {
+		RecipeBuilder builder = new RecipeBuilder();
+		builder.setIngredient('A', BlockMaterial.SOLID).setIngredient('B', BlockMaterial.UNBREAKABLE);
+		builder.addRow("BB").addRow("AA");
+		builder.setResult(BlockMaterial.SOLID, 1);
+		ShapedRecipe recipe = builder.buildShapedRecipe();
+		RecipeIndex index = new RecipeIndex();
+		assertTrue(index.addRecipe(recipe));
+
+		List<List<Material>> grid = new ArrayList<List<Material>>();
+		grid.add(Arrays.asList(null, null, (Material) null));
+		grid.add(Arrays.asList(null, (Material) BlockMaterial.UNBREAKABLE, BlockMaterial.UNBREAKABLE));
+		grid.add(Arrays.asList(null, (Material) BlockMaterial.SOLID, BlockMaterial.SOLID));
+		assertSame("Recipe was not matched in a larger grid", recipe, index.matchShapedRecipe(grid));
+
+		grid.set(1, Arrays.asList((Material) BlockMaterial.UNBREAKABLE, BlockMaterial.UNBREAKABLE, null));
+		assertNull("Recipe matched with a different shape", index.matchShapedRecipe(grid));
+
+		grid.set(1, Arrays.asList(null, (Material) BlockMaterial.SOLID, BlockMaterial.SOLID));
+		grid.set(2, Arrays.asList(null, (Material) BlockMaterial.UNBREAKABLE, BlockMaterial.UNBREAKABLE));
+		assertNull("Recipe matched with rows swapped", index.matchShapedRecipe(grid));
+
+		assertTrue(index.removeRecipe(recipe));
+		grid.set(1, Arrays.asList(null, (Material) BlockMaterial.UNBREAKABLE, BlockMaterial.UNBREAKABLE));
+		grid.set(2, Arrays.asList(null, (Material) BlockMaterial.SOLID, BlockMaterial.SOLID));
+		assertNull(index.matchShapedRecipe(grid));
+	}
+}
@@ -58,11 +58,41 @@ public class LanguageTest {
 		assertEquals("Teste org.spout.api.lang!", dict.tr("Testing %0!", source, CLASS, new String[] {"org.spout.api.lang"}));
 	}
 
+	@Test
+	public void testTranslator() {
+		Translator translator = new Translator(dict, LanguageTest.class);
+		assertEquals("Teste 5!", translator.tr("Testing %0!", source, 5));
+		assertEquals("Untranslated 1 %2 $1", translator.tr("Untranslated %0 %2 %1", source, 1, "$1"));
+		assertEquals("Testing %0!", new Translator(dict, "other.Class").tr("Testing %0!", source));
+	}
+
+	@Test
+	public void testBroadcast() {
+		TestCommandSource[] receivers = new TestCommandSource[5];
+		for (int i = 0; i < receivers.length; i++) {
+			receivers[i] = new TestCommandSource(i % 2 == 0 ? Locale.GERMAN_DE : Locale.ENGLISH_US);
+		}
+		dict.formatted = 0;
+		dict.broadcast("Testing %0!", receivers, CLASS, new Object[] {"broadcast"});
+		assertEquals(2, dict.formatted);
+		for (int i = 0; i < receivers.length; i++) {
+			assertEquals(i % 2 == 0 ? "Teste broadcast!" : "Testing broadcast!", receivers[i].received.getPlainString());
+		}
+	}
+
 	public static class TestPluginDictionary extends CommonPluginDictionary {
+		int formatted;
+
 		public TestPluginDictionary() {
 			load();
 		}
 
+		@Override
+		protected MessageTemplate getTemplate(String source, Locale locale, int key, Number num) {
+			formatted++;
+			return super.getTemplate(source, locale, key, num);
+		}
+
 		@Override
 		protected InputStream openLangResource(String filename) {
 			return LanguageTest.class.getResourceAsStream("/" + filename);
@@ -75,6 +105,16 @@ public class LanguageTest {
 	}
 	
 	public static class TestCommandSource implements CommandSource {
+		private final Locale locale;
+		ChatArguments received;
+
+		public TestCommandSource() {
+			this(Locale.GERMAN_DE);
+		}
+
+		public TestCommandSource(Locale locale) {
+			this.locale = locale;
+		}
 		
 		@Override
 		public boolean hasPermission(String node) {
@@ -148,6 +188,7 @@ public class LanguageTest {
 		
 		@Override
 		public boolean sendMessage(ChatArguments message) {
+			received = message;
 			return false;
 		}
 		
@@ -163,7 +204,7 @@ public class LanguageTest {
 		
 		@Override
 		public Locale getPreferredLocale() {
-			return Locale.GERMAN_DE;
+			return locale;
 		}
 		
 	}
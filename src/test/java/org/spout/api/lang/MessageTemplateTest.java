@@ -0,0 +1,57 @@
+/*
+ * This file is part of SpoutAPI.
+ *
+ * Copyright (c) 2011-2012, Spout LLC <http://www.spout.org/>
+ * SpoutAPI is licensed under the Spout License Version 1.
+ *
+ * SpoutAPI is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * In addition, 180 days after any changes are published, you can use the
+ * software, incorporating those changes, under the terms of the MIT license,
+ * as described in the Spout License Version 1.
+ *
+ * SpoutAPI is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License,
+ * the MIT license and the Spout License Version 1 along with this program.
+ * If not, see <http://www.gnu.org/licenses/> for the GNU Lesser General Public
+ * License and see <http://spout.in/licensev1> for the full license, including
+ * the MIT license.
+ */
+package org.spout.api.lang;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class MessageTemplateTest {
+	@Test
+	public void testFormat() {
+		MessageTemplate template = MessageTemplate.compile("%1 gave %0 to %1");
+		assertTrue(template.hasPlaceholders());
+		assertEquals("Bob gave 3 to Bob", template.format(3, "Bob"));
+		assertEquals("null gave %% to null", MessageTemplate.compile("%1 gave %%0 to %1").format("%", null));
+
+		assertEquals("%1 and %2", MessageTemplate.compile("%1 and %2").format("a"));
+		assertEquals("ten: k, 100% sure", MessageTemplate.compile("ten: %10, 100% sure").format("a", "b", "c", "d", "e", "f", "g", "h", "i", "j", "k"));
+		assertEquals("$0 \\1", MessageTemplate.compile("%0 %1").format("$0", "\\1"));
+	}
+
+	@Test
+	public void testNoPlaceholders() {
+		String source = "No %placeholders %n here";
+		MessageTemplate template = MessageTemplate.compile(source);
+		assertFalse(template.hasPlaceholders());
+		assertSame(source, template.format(1, 2));
+		assertEquals("", MessageTemplate.compile("").format());
+	}
+}
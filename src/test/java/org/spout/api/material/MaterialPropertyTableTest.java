@@ -0,0 +1,110 @@
+/*
+ * This file is part of SpoutAPI.
+ *
+ * Copyright (c) 2011-2012, Spout LLC <http://www.spout.org/>
+ * SpoutAPI is licensed under the Spout License Version 1.
+ *
+ * SpoutAPI is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * In addition, 180 days after any changes are published, you can use the
+ * software, incorporating those changes, under the terms of the MIT license,
+ * as described in the Spout License Version 1.
+ *
+ * SpoutAPI is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License,
+ * the MIT license and the Spout License Version 1 along with this program.
+ * If not, see <http://www.gnu.org/licenses/> for the GNU Lesser General Public
+ * License and see <http://spout.in/licensev1> for the full license, including
+ * the MIT license.
+ */
+package org.spout.api.material;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import org.spout.api.collision.CollisionStrategy;
+import org.spout.api.inventory.recipe.EngineFaker;
+import org.spout.api.material.block.BlockFullState;
+
+public class MaterialPropertyTableTest {
+	@Before
+	public void setUp() {
+		EngineFaker.setupEngine();
+	}
+
+	@Test
+	public void testProperties() {
+		BlockMaterial[] materials = {BlockMaterial.AIR, BlockMaterial.SOLID, BlockMaterial.UNBREAKABLE, BlockMaterial.SKYBOX};
+		MaterialPropertyTable table = MaterialRegistry.getProperties();
+		assertSame(table, MaterialRegistry.getProperties());
+		for (BlockMaterial material : materials) {
+			int state = BlockFullState.getPacked(material);
+			assertEquals(material.getOpacity(), table.getOpacity(state));
+			assertEquals(material.getOcclusion(material.getData()).get(), table.getOcclusion(state));
+			assertEquals(material.isSolid(), table.isSolid(state));
+			assertEquals(material.hasCollision(), table.hasCollision(state));
+			assertEquals(material.getFriction(), table.getFriction(state), 0F);
+			assertEquals(material.getHardness(), table.getHardness(state), 0F);
+			int index = table.getIndex(state);
+			assertEquals(material.getOpacity(), table.getOpacityAt(index));
+			assertEquals(material.getHardness(), table.getHardnessAt(index), 0F);
+		}
+		assertEquals(100F, table.getHardness(BlockFullState.getPacked(BlockMaterial.UNBREAKABLE)), 0F);
+	}
+
+	@Test
+	public void testUnregisteredState() {
+		MaterialPropertyTable table = MaterialRegistry.getProperties();
+		int state = BlockFullState.getPacked(Short.MAX_VALUE, (short) 3);
+		assertEquals(0, table.getIndex(state));
+		assertEquals(0, table.getOpacity(state));
+		assertFalse(table.isSolid(state));
+	}
+
+	@Test
+	public void testUncoveredData() {
+		BlockMaterial root = new BlockMaterial((short) 0xFF, "PropertyTableRoot", null).setHardness(1F);
+		BlockMaterial sub = new BlockMaterial("PropertyTableSub", 1, root, null).setHardness(3F);
+		MaterialPropertyTable table = MaterialRegistry.getProperties();
+		assertEquals(3F, table.getHardness(BlockFullState.getPacked(sub)), 0F);
+		assertEquals(1F, table.getHardness(BlockFullState.getPacked(root)), 0F);
+
+		int uncovered = BlockFullState.getPacked(root.getId(), (short) 0x2);
+		assertSame(root, root.getSubMaterial((short) 0x2));
+		assertEquals(1F, table.getHardness(uncovered), 0F);
+		assertEquals("Data without a sub material did not use the root's properties", 1F, table.getHardness(BlockFullState.getPacked(root.getId(), (short) 0x11)), 0F);
+		int outsideMask = BlockFullState.getPacked(root.getId(), (short) 0x101);
+		assertEquals("Data outside the data mask was not ignored", 3F, table.getHardness(outsideMask), 0F);
+	}
+
+	@Test
+	public void testRebuild() {
+		BlockMaterial material = new BlockMaterial("PropertyTableTest").setHardness(2F);
+		MaterialPropertyTable table = MaterialRegistry.getProperties();
+		int state = BlockFullState.getPacked(material);
+		assertEquals(2F, table.getHardness(state), 0F);
+		assertTrue(table.isSolid(state));
+
+		material.setHardness(5F).setTransparent().setCollision(CollisionStrategy.NOCOLLIDE);
+		MaterialPropertyTable rebuilt = MaterialRegistry.getProperties();
+		assertNotSame(table, rebuilt);
+		assertEquals(2F, table.getHardness(state), 0F);
+		assertEquals(5F, rebuilt.getHardness(state), 0F);
+		assertEquals(0, rebuilt.getOpacity(state));
+		assertEquals(0, rebuilt.getOcclusion(state));
+		assertFalse(rebuilt.hasCollision(state));
+	}
+}
@@ -0,0 +1,175 @@
+/*
+ * This file is part of SpoutAPI.
+ *
+ * Copyright (c) 2011-2012, Spout LLC <http://www.spout.org/>
+ * SpoutAPI is licensed under the Spout License Version 1.
+ *
+ * SpoutAPI is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * In addition, 180 days after any changes are published, you can use the
+ * software, incorporating those changes, under the terms of the MIT license,
+ * as described in the Spout License Version 1.
+ *
+ * SpoutAPI is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License,
+ * the MIT license and the Spout License Version 1 along with this program.
+ * If not, see <http://www.gnu.org/licenses/> for the GNU Lesser General Public
+ * License and see <http://spout.in/licensev1> for the full license, including
+ * the MIT license.
+ */
+package org.spout.api.permissions;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.After;
+import org.junit.Test;
+import org.powermock.api.mockito.PowerMockito;
+import org.spout.api.entity.Player;
+import org.spout.api.event.EventHandler;
+import org.spout.api.event.EventManager;
+import org.spout.api.event.HandlerList;
+import org.spout.api.event.Listener;
+import org.spout.api.event.Result;
+import org.spout.api.event.SimpleEventManager;
+import org.spout.api.event.player.PlayerJoinEvent;
+import org.spout.api.event.player.PlayerLeaveEvent;
+import org.spout.api.event.server.permissions.PermissionGetAllWithNodeEvent;
+import org.spout.api.event.server.permissions.PermissionNodeEvent;
+import org.spout.api.event.server.permissions.PermissionsChangeEvent;
+
+public class PermissionCacheTest {
+	@After
+	public void tearDown() {
+		// Handler lists are static, so listeners registered by one test would see the events of the next
+		HandlerList.unregisterAll();
+	}
+
+	@Test
+	public void test() {
+		EventManager events = new SimpleEventManager();
+		PermissionCache cache = new PermissionCache(events);
+		TestPermissions permissions = new TestPermissions();
+		events.registerEvents(permissions, this);
+
+		PermissionsSubject a = PowerMockito.mock(PermissionsSubject.class);
+		PermissionsSubject b = PowerMockito.mock(PermissionsSubject.class);
+		permissions.subjects.put(a, new HashSet<String>(Collections.singleton("chat")));
+		permissions.subjects.put(b, new HashSet<String>());
+
+		assertTrue(cache.hasPermission(a, null, "chat"));
+		assertTrue(cache.hasPermission(a, null, "chat"));
+		assertFalse(cache.hasPermission(b, null, "chat"));
+		assertEquals("Cached checks should not call the event", 2, permissions.checks);
+		assertEquals(1, cache.getHits());
+
+		Set<PermissionsSubject> receivers = cache.getAllWithNode("chat");
+		assertEquals(Collections.singleton(a), receivers);
+		assertSame("Receivers should be cached", receivers, cache.getAllWithNode("chat"));
+
+		permissions.subjects.get(b).add("chat");
+		events.callEvent(new PermissionsChangeEvent(b, null));
+		assertTrue(cache.getAllWithNode("chat").contains(b));
+		assertTrue(cache.hasPermission(b, null, "chat"));
+		assertEquals(1, permissions.getAllCalls);
+
+		permissions.subjects.get(a).remove("chat");
+		events.callEvent(new PermissionsChangeEvent(null, "chat"));
+		assertFalse(cache.hasPermission(a, null, "chat"));
+		assertEquals(Collections.singleton(b), cache.getAllWithNode("chat"));
+
+		cache.remove(b);
+		assertTrue(cache.getAllWithNode("chat").isEmpty());
+	}
+
+	@Test
+	public void testJoinLeave() {
+		EventManager events = new SimpleEventManager();
+		PermissionCache cache = new PermissionCache(events);
+		TestPermissions permissions = new TestPermissions();
+		events.registerEvents(permissions, this);
+
+		assertTrue(cache.getAllWithNode("chat").isEmpty());
+
+		Player player = PowerMockito.mock(Player.class);
+		permissions.subjects.put(player, new HashSet<String>(Collections.singleton("chat")));
+		events.callEvent(new PlayerJoinEvent(player));
+		assertEquals(Collections.singleton(player), cache.getAllWithNode("chat"));
+
+		events.callEvent(new PlayerLeaveEvent(player));
+		assertTrue(cache.getAllWithNode("chat").isEmpty());
+		assertEquals(1, permissions.getAllCalls);
+	}
+
+	@Test
+	public void testWildcard() {
+		EventManager events = new SimpleEventManager();
+		PermissionCache cache = new PermissionCache(events);
+		TestPermissions permissions = new TestPermissions();
+		events.registerEvents(permissions, this);
+
+		PermissionsSubject a = PowerMockito.mock(PermissionsSubject.class);
+		permissions.subjects.put(a, new HashSet<String>());
+		assertFalse(cache.hasPermission(a, null, "foo.bar"));
+		assertFalse(cache.hasPermission(a, null, "other"));
+		assertTrue(cache.getAllWithNode("foo.bar").isEmpty());
+
+		permissions.subjects.get(a).add("foo.*");
+		events.callEvent(new PermissionsChangeEvent(null, "foo.*"));
+		assertTrue("Wildcard change did not invalidate the nodes under it", cache.hasPermission(a, null, "foo.bar"));
+		assertEquals(Collections.singleton(a), cache.getAllWithNode("foo.bar"));
+		int checks = permissions.checks;
+		assertFalse(cache.hasPermission(a, null, "other"));
+		assertEquals("Wildcard change invalidated a node outside it", checks, permissions.checks);
+
+		permissions.subjects.get(a).add("*");
+		events.callEvent(new PermissionsChangeEvent(null, "*"));
+		assertTrue(cache.hasPermission(a, null, "other"));
+	}
+
+	public static class TestPermissions implements Listener {
+		private final Map<PermissionsSubject, Set<String>> subjects = new HashMap<PermissionsSubject, Set<String>>();
+		private int checks = 0;
+		private int getAllCalls = 0;
+
+		@EventHandler
+		public void onPermissionNode(PermissionNodeEvent event) {
+			checks++;
+			if (hasNode(subjects.get(event.getSubject()), event.getNodes())) {
+				event.setResult(Result.ALLOW);
+			}
+		}
+
+		@EventHandler
+		public void onGetAllWithNode(PermissionGetAllWithNodeEvent event) {
+			getAllCalls++;
+			for (Map.Entry<PermissionsSubject, Set<String>> entry : subjects.entrySet()) {
+				event.getReceivers().put(entry.getKey(), hasNode(entry.getValue(), event.getNodes()) ? Result.ALLOW : Result.DEFAULT);
+			}
+		}
+
+		private static boolean hasNode(Set<String> granted, String[] nodes) {
+			for (String node : nodes) {
+				if (granted.contains(node)) {
+					return true;
+				}
+			}
+			return false;
+		}
+	}
+}
@@ -0,0 +1,148 @@
+/*
+ * This file is part of SpoutAPI.
+ *
+ * Copyright (c) 2011-2012, Spout LLC <http://www.spout.org/>
+ * SpoutAPI is licensed under the Spout License Version 1.
+ *
+ * SpoutAPI is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * In addition, 180 days after any changes are published, you can use the
+ * software, incorporating those changes, under the terms of the MIT license,
+ * as described in the Spout License Version 1.
+ *
+ * SpoutAPI is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License,
+ * the MIT license and the Spout License Version 1 along with this program.
+ * If not, see <http://www.gnu.org/licenses/> for the GNU Lesser General Public
+ * License and see <http://spout.in/licensev1> for the full license, including
+ * the MIT license.
+ */
+package org.spout.api.plugin;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.Field;
+import java.util.Arrays;
+import java.util.Set;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+
+import org.apache.commons.io.IOUtils;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.spout.api.Engine;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.mock;
+
+public class CommonClassLoaderTest {
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	public static class Dummy {
+	}
+
+	private File createJar(String name, String... entries) throws IOException {
+		File file = folder.newFile(name);
+		JarOutputStream out = new JarOutputStream(new FileOutputStream(file));
+		try {
+			for (String entry : entries) {
+				out.putNextEntry(new JarEntry(entry));
+				if (entry.endsWith(".class")) {
+					InputStream in = getClass().getClassLoader().getResourceAsStream(entry);
+					if (in != null) {
+						try {
+							IOUtils.copy(in, out);
+						} finally {
+							in.close();
+						}
+					}
+				}
+				out.closeEntry();
+			}
+		} finally {
+			out.close();
+		}
+		return file;
+	}
+
+	@Test
+	public void testScanPackages() throws IOException {
+		File jar = createJar("scan.jar", "a/b/C.class", "a/b/D.class", "E.class", "META-INF/MANIFEST.MF", "a/properties.yml");
+		Set<String> packages = CommonClassLoader.scanPackages(jar.toURI().toURL());
+		assertEquals(2, packages.size());
+		assertTrue(packages.contains("a.b"));
+		assertTrue(packages.contains(""));
+
+		assertEquals(null, CommonClassLoader.scanPackages(folder.getRoot().toURI().toURL()));
+	}
+
+	@Test
+	public void testFindPluginClass() throws Exception {
+		String name = Dummy.class.getName();
+		File jar = createJar("dummy.jar", name.replace('.', '/') + ".class");
+		CommonClassLoader.scanJars(Arrays.asList(jar, createJar("other.jar", "x/Y.class")));
+
+		CommonClassLoader loader = new CommonClassLoader(null, getClass().getClassLoader());
+		loader.addURL(jar.toURI().toURL());
+		assertTrue(CommonClassLoader.getLoaders(name).contains(loader));
+		assertFalse(CommonClassLoader.getLoaders("x.Y").contains(loader));
+
+		Class<?> clazz = CommonClassLoader.findPluginClass(name);
+		assertSame(loader, clazz.getClassLoader());
+		assertNotSame(Dummy.class, clazz);
+		assertSame(clazz, CommonClassLoader.findPluginClass(name));
+
+		String missing = CommonClassLoaderTest.class.getPackage().getName() + ".Missing";
+		try {
+			CommonClassLoader.findPluginClass(missing);
+			fail("Missing class was found");
+		} catch (ClassNotFoundException expected) {
+		}
+		assertTrue(CommonClassLoader.isMiss(missing));
+
+		new CommonClassLoader(null, getClass().getClassLoader()).addURL(createJar("another.jar", "x/Z.class").toURI().toURL());
+		assertFalse(CommonClassLoader.isMiss(missing));
+	}
+
+	@Test
+	public void testMissWhileLoading() throws Exception {
+		CommonPluginLoader pluginLoader = new CommonPluginLoader(mock(Engine.class), null, 0);
+		CommonClassLoader requester = new CommonClassLoader(pluginLoader, getClass().getClassLoader());
+		requester.setPlugin(createPlugin("Requester"));
+
+		CommonClassLoader loading = new CommonClassLoader(pluginLoader, getClass().getClassLoader());
+		loading.addURL(createJar("loading.jar", "loading/Present.class").toURI().toURL());
+
+		String name = "loading.Missing";
+		assertEquals(null, pluginLoader.getClassByName(name, requester));
+		assertFalse("A miss was recorded while a plugin was still loading", CommonClassLoader.isMiss(name));
+
+		loading.setPlugin(createPlugin("Loading"));
+		assertEquals(null, pluginLoader.getClassByName(name, requester));
+		assertTrue(CommonClassLoader.isMiss(name));
+	}
+
+	private static CommonPlugin createPlugin(String name) throws Exception {
+		CommonPlugin plugin = mock(CommonPlugin.class);
+		Field description = CommonPlugin.class.getDeclaredField("description");
+		description.setAccessible(true);
+		description.set(plugin, new PluginDescriptionFile(name, "1", "test." + name, Platform.ALL));
+		return plugin;
+	}
+}
@@ -0,0 +1,229 @@
+/*
+ * This file is part of SpoutAPI.
+ *
+ * Copyright (c) 2011-2012, Spout LLC <http://www.spout.org/>
+ * SpoutAPI is licensed under the Spout License Version 1.
+ *
+ * SpoutAPI is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * In addition, 180 days after any changes are published, you can use the
+ * software, incorporating those changes, under the terms of the MIT license,
+ * as described in the Spout License Version 1.
+ *
+ * SpoutAPI is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License,
+ * the MIT license and the Spout License Version 1 along with this program.
+ * If not, see <http://www.gnu.org/licenses/> for the GNU Lesser General Public
+ * License and see <http://spout.in/licensev1> for the full license, including
+ * the MIT license.
+ */
+package org.spout.api.plugin;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.logging.Logger;
+import java.util.regex.Pattern;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.spout.api.Engine;
+import org.spout.api.exception.InvalidDescriptionFileException;
+import org.spout.api.exception.InvalidPluginException;
+import org.spout.api.exception.UnknownDependencyException;
+import org.spout.api.plugin.security.CommonSecurityManager;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class CommonPluginManagerTest {
+	private static final List<String> loaded = Collections.synchronizedList(new ArrayList<String>());
+	private static final List<String> enabled = Collections.synchronizedList(new ArrayList<String>());
+	private static final List<String> wrongThread = Collections.synchronizedList(new ArrayList<String>());
+	private static final List<String> wrongOrder = Collections.synchronizedList(new ArrayList<String>());
+	private static volatile Thread callingThread;
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	public static class TestPluginLoader implements ConcurrentPluginLoader {
+		public TestPluginLoader(Engine engine, CommonSecurityManager manager, double key) {
+		}
+
+		@Override
+		public Pattern[] getPatterns() {
+			return new Pattern[]{Pattern.compile("\\.plg$")};
+		}
+
+		@Override
+		public void enablePlugin(Plugin plugin) {
+			if (!plugin.getDescription().isThreadsafe() && Thread.currentThread() != callingThread) {
+				wrongThread.add(plugin.getName());
+			}
+			for (String dependency : getDependencies(plugin.getDescription())) {
+				if (!enabled.contains(dependency)) {
+					wrongOrder.add(plugin.getName());
+				}
+			}
+			enabled.add(plugin.getName());
+		}
+
+		@Override
+		public void disablePlugin(Plugin plugin) {
+			enabled.remove(plugin.getName());
+		}
+
+		@Override
+		public Plugin loadPlugin(File file) throws InvalidPluginException, UnknownDependencyException, InvalidDescriptionFileException {
+			return loadPlugin(file, false);
+		}
+
+		@Override
+		public Plugin loadPlugin(File file, boolean ignoreSoftDependencies) throws InvalidPluginException, UnknownDependencyException, InvalidDescriptionFileException {
+			return loadPlugin(file, getDescription(file), ignoreSoftDependencies);
+		}
+
+		@Override
+		public Plugin loadPlugin(File file, final PluginDescriptionFile description, boolean ignoreSoftDependencies) throws UnknownDependencyException {
+			if (!description.isThreadsafe() && Thread.currentThread() != callingThread) {
+				wrongThread.add(description.getName());
+			}
+			for (String dependency : getDependencies(description)) {
+				if (!loaded.contains(dependency)) {
+					throw new UnknownDependencyException(dependency);
+				}
+			}
+			loaded.add(description.getName());
+
+			Plugin plugin = mock(Plugin.class);
+			when(plugin.getName()).thenReturn(description.getName());
+			when(plugin.getDescription()).thenReturn(description);
+			when(plugin.getPluginLoader()).thenReturn(this);
+			when(plugin.isEnabled()).thenAnswer(new Answer<Boolean>() {
+				@Override
+				public Boolean answer(InvocationOnMock invocation) {
+					return enabled.contains(description.getName());
+				}
+			});
+			return plugin;
+		}
+
+		@Override
+		public PluginDescriptionFile getDescription(File file) throws InvalidPluginException, InvalidDescriptionFileException {
+			try {
+				return new PluginDescriptionFile(FileUtils.readFileToString(file));
+			} catch (IOException e) {
+				throw new InvalidPluginException(e);
+			}
+		}
+
+		private List<String> getDependencies(PluginDescriptionFile description) {
+			return description.getDepends() == null ? Collections.<String>emptyList() : description.getDepends();
+		}
+	}
+
+	/**
+	 * A loader which only implements {@link PluginLoader}, so its plugins are loaded one at a time
+	 */
+	public static class SequentialPluginLoader implements PluginLoader {
+		private final TestPluginLoader loader;
+
+		public SequentialPluginLoader(Engine engine, CommonSecurityManager manager, double key) {
+			loader = new TestPluginLoader(engine, manager, key);
+		}
+
+		@Override
+		public Pattern[] getPatterns() {
+			return new Pattern[]{Pattern.compile("\\.seq$")};
+		}
+
+		@Override
+		public void enablePlugin(Plugin plugin) {
+			loader.enablePlugin(plugin);
+		}
+
+		@Override
+		public void disablePlugin(Plugin plugin) {
+			loader.disablePlugin(plugin);
+		}
+
+		@Override
+		public Plugin loadPlugin(File file) throws InvalidPluginException, UnknownDependencyException, InvalidDescriptionFileException {
+			return loader.loadPlugin(file);
+		}
+
+		@Override
+		public Plugin loadPlugin(File file, boolean ignoreSoftDependencies) throws InvalidPluginException, UnknownDependencyException, InvalidDescriptionFileException {
+			return loader.loadPlugin(file, ignoreSoftDependencies);
+		}
+	}
+
+	private void createPlugin(String name, String extra) throws IOException {
+		createPlugin(name, ".plg", extra);
+	}
+
+	private void createPlugin(String name, String extension, String extra) throws IOException {
+		FileUtils.writeStringToFile(new File(folder.getRoot(), name + extension), "name: " + name + "\nversion: 1\nmain: test." + name + "\nplatform: ALL\n" + extra);
+	}
+
+	@Test
+	public void testDependencyOrder() throws IOException {
+		Engine engine = mock(Engine.class);
+		when(engine.getLogger()).thenReturn(Logger.getLogger(CommonPluginManagerTest.class.getName()));
+		CommonPluginManager manager = new CommonPluginManager(engine, new CommonSecurityManager(0), 0);
+		manager.registerPluginLoader(TestPluginLoader.class);
+		manager.registerPluginLoader(SequentialPluginLoader.class);
+		callingThread = Thread.currentThread();
+
+		createPlugin("A", "threadsafe: true\n");
+		createPlugin("B", "depends: [A]\n");
+		createPlugin("C", "depends: [B]\nsoftdepends: [D, Missing]\nthreadsafe: true\n");
+		createPlugin("D", "softdepends: [A]\n");
+		createPlugin("E", "depends: [Missing]\n");
+		createPlugin("F", "softdepends: [G]\n");
+		createPlugin("G", "softdepends: [F]\n");
+		createPlugin("H", "depends: [I]\n");
+		createPlugin("I", "depends: [H]\n");
+		createPlugin("J", ".seq", "depends: [A]\n");
+		createPlugin("K", "depends: [J]\nthreadsafe: true\n");
+
+		List<Plugin> plugins = manager.loadPlugins(folder.getRoot());
+		assertEquals(8, plugins.size());
+		assertEquals(8, loaded.size());
+		assertTrue("Plugins which are not threadsafe were loaded on another thread: " + wrongThread, wrongThread.isEmpty());
+		assertTrue(loaded.indexOf("A") < loaded.indexOf("B"));
+		assertTrue(loaded.indexOf("B") < loaded.indexOf("C"));
+		assertTrue(loaded.indexOf("D") < loaded.indexOf("C"));
+		assertTrue(loaded.indexOf("A") < loaded.indexOf("D"));
+		assertTrue(loaded.contains("F"));
+		assertTrue(loaded.contains("G"));
+		assertFalse(loaded.contains("E"));
+		assertFalse(loaded.contains("H"));
+		assertFalse(loaded.contains("I"));
+		assertTrue(loaded.indexOf("A") < loaded.indexOf("J"));
+		assertTrue(loaded.indexOf("J") < loaded.indexOf("K"));
+		assertTrue(manager.getLoadTime("C") >= 0);
+		assertEquals(-1, manager.getLoadTime("E"));
+
+		manager.enablePlugins(null);
+		assertEquals(8, enabled.size());
+		assertTrue("Plugins were enabled before their dependencies: " + wrongOrder, wrongOrder.isEmpty());
+		assertTrue("Plugins which are not threadsafe were enabled on another thread: " + wrongThread, wrongThread.isEmpty());
+		assertTrue(manager.getEnableTime("C") >= 0);
+	}
+}
@@ -0,0 +1,155 @@
+/*
+ * This file is part of SpoutAPI.
+ *
+ * Copyright (c) 2011-2012, Spout LLC <http://www.spout.org/>
+ * SpoutAPI is licensed under the Spout License Version 1.
+ *
+ * SpoutAPI is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * In addition, 180 days after any changes are published, you can use the
+ * software, incorporating those changes, under the terms of the MIT license,
+ * as described in the Spout License Version 1.
+ *
+ * SpoutAPI is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License,
+ * the MIT license and the Spout License Version 1 along with this program.
+ * If not, see <http://www.gnu.org/licenses/> for the GNU Lesser General Public
+ * License and see <http://spout.in/licensev1> for the full license, including
+ * the MIT license.
+ */
+package org.spout.api.protocol;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+
+import org.junit.Test;
+import org.powermock.api.mockito.PowerMockito;
+import org.spout.api.event.SimpleEventManager;
+import org.spout.api.event.chunk.ChunkUnloadEvent;
+import org.spout.api.event.world.WorldUnloadEvent;
+import org.spout.api.geo.World;
+import org.spout.api.geo.cuboid.Chunk;
+
+public class ChunkMessageCacheTest {
+
+	@Test
+	public void test() {
+		Protocol protocol = PowerMockito.mock(Protocol.class);
+		World world = mockWorld();
+		Chunk a = mockChunk(world, 0, 0, 0);
+		Chunk b = mockChunk(world, 1, 0, 0);
+		Chunk c = mockChunk(world, 0, 1, 0);
+		List<Message> messages = Collections.singletonList(PowerMockito.mock(Message.class));
+
+		ChunkMessageCache cache = new ChunkMessageCache(100);
+
+		assertNull(cache.get(a, protocol, 1));
+		List<Message> shared = cache.put(a, protocol, 1, messages, 40);
+		assertEquals(1, shared.size());
+		assertTrue("Chunk message was not wrapped for sharing", shared.get(0) instanceof SharedMessage);
+		assertSame("Chunk messages were not shared", shared, cache.get(a, protocol, 1));
+		assertNull("Messages were returned for an old version of the chunk", cache.get(a, protocol, 2));
+		assertEquals(0, cache.getEntries());
+		assertEquals(0, cache.getSize());
+
+		cache.put(a, protocol, 2, messages, 40);
+		cache.put(b, protocol, 2, messages, 40);
+		assertNotNull(cache.get(a, protocol, 2));
+		cache.put(c, protocol, 2, messages, 40);
+		assertEquals("Cache exceeded its maximum size", 80, cache.getSize());
+		assertNull("Least recently used chunk was not evicted", cache.get(b, protocol, 2));
+		assertNotNull(cache.get(a, protocol, 2));
+		assertEquals(1, cache.getEvictions());
+
+		cache.invalidate(a);
+		assertNull(cache.get(a, protocol, 2));
+		assertEquals(40, cache.getSize());
+
+		assertEquals(3, cache.getHits());
+		assertEquals(4, cache.getMisses());
+	}
+
+	@Test
+	public void testUnload() {
+		Protocol protocol = PowerMockito.mock(Protocol.class);
+		World world = mockWorld();
+		Chunk chunk = mockChunk(world, 2, 3, 4);
+		List<Message> messages = Collections.singletonList(PowerMockito.mock(Message.class));
+
+		ChunkMessageCache cache = new ChunkMessageCache(100);
+		SimpleEventManager events = new SimpleEventManager();
+		events.registerEvents(cache, this);
+
+		List<Message> shared = cache.put(chunk, protocol, 1, messages, 40);
+		assertSame("Messages were not found for a chunk object at the same position", shared, cache.get(mockChunk(world, 2, 3, 4), protocol, 1));
+		assertNull("Messages were returned for a chunk in another world", cache.get(mockChunk(mockWorld(), 2, 3, 4), protocol, 1));
+
+		events.callEvent(new ChunkUnloadEvent(chunk));
+		assertNull("Messages were returned for an unloaded chunk", cache.get(chunk, protocol, 1));
+		assertEquals(0, cache.getSize());
+
+		cache.put(chunk, protocol, 1, messages, 40);
+		events.callEvent(new WorldUnloadEvent(world));
+		assertNull("Messages were returned for a chunk of an unloaded world", cache.get(chunk, protocol, 1));
+		assertEquals(0, cache.getEntries());
+	}
+
+	@Test
+	public void testInvalidateProtocols() {
+		Protocol first = PowerMockito.mock(Protocol.class);
+		Protocol second = PowerMockito.mock(Protocol.class);
+		World world = mockWorld();
+		Chunk a = mockChunk(world, 0, 0, 0);
+		Chunk b = mockChunk(world, 0, 0, 1);
+		List<Message> messages = Collections.singletonList(PowerMockito.mock(Message.class));
+
+		ChunkMessageCache cache = new ChunkMessageCache(100);
+		cache.put(a, first, 1, messages, 20);
+		cache.put(a, second, 1, messages, 20);
+		cache.put(b, first, 1, messages, 20);
+		cache.put(a, first, 2, messages, 30);
+		assertEquals("Replaced messages were counted twice", 70, cache.getSize());
+
+		cache.invalidate(mockChunk(world, 0, 0, 0));
+		assertNull(cache.get(a, first, 2));
+		assertNull("Messages for another protocol were not invalidated", cache.get(a, second, 1));
+		assertNotNull("Messages for another chunk were invalidated", cache.get(b, first, 1));
+		assertEquals(1, cache.getEntries());
+		assertEquals(20, cache.getSize());
+
+		cache.put(a, first, 3, messages, 100);
+		assertNull("Evicted messages were returned", cache.get(b, first, 1));
+		cache.invalidate(a);
+		assertEquals(0, cache.getEntries());
+		assertEquals(0, cache.getSize());
+	}
+
+	private static World mockWorld() {
+		World world = PowerMockito.mock(World.class);
+		PowerMockito.when(world.getUID()).thenReturn(UUID.randomUUID());
+		return world;
+	}
+
+	private static Chunk mockChunk(World world, int x, int y, int z) {
+		Chunk chunk = PowerMockito.mock(Chunk.class);
+		PowerMockito.when(chunk.getWorld()).thenReturn(world);
+		PowerMockito.when(chunk.getX()).thenReturn(x);
+		PowerMockito.when(chunk.getY()).thenReturn(y);
+		PowerMockito.when(chunk.getZ()).thenReturn(z);
+		return chunk;
+	}
+}
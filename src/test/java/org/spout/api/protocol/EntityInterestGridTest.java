@@ -0,0 +1,188 @@
+/*
+ * This file is part of SpoutAPI.
+ *
+ * Copyright (c) 2011-2012, Spout LLC <http://www.spout.org/>
+ * SpoutAPI is licensed under the Spout License Version 1.
+ *
+ * SpoutAPI is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * In addition, 180 days after any changes are published, you can use the
+ * software, incorporating those changes, under the terms of the MIT license,
+ * as described in the Spout License Version 1.
+ *
+ * SpoutAPI is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License,
+ * the MIT license and the Spout License Version 1 along with this program.
+ * If not, see <http://www.gnu.org/licenses/> for the GNU Lesser General Public
+ * License and see <http://spout.in/licensev1> for the full license, including
+ * the MIT license.
+ */
+package org.spout.api.protocol;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import gnu.trove.map.hash.TIntObjectHashMap;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+import org.powermock.api.mockito.PowerMockito;
+import org.spout.api.component.implementation.TransformComponent;
+import org.spout.api.entity.Entity;
+import org.spout.api.entity.Player;
+import org.spout.api.event.SimpleEventManager;
+import org.spout.api.event.entity.EntityDespawnEvent;
+import org.spout.api.geo.World;
+import org.spout.api.geo.discrete.Point;
+
+public class EntityInterestGridTest {
+
+	@Test
+	public void test() {
+		World world = PowerMockito.mock(World.class);
+		World other = PowerMockito.mock(World.class);
+
+		EntityInterestGrid grid = new EntityInterestGrid();
+		Entity near = mockEntity(1, false);
+		Entity moving = mockEntity(2, true);
+		Entity far = mockEntity(3, false);
+
+		grid.update(near, new Point(world, 5, 5, 5));
+		grid.update(moving, new Point(world, 20, 5, 5));
+		grid.update(far, new Point(world, 200, 5, 5));
+		assertEquals(3, grid.size());
+
+		Point center = new Point(world, 0, 0, 0);
+		TIntObjectHashMap<Entity> synced = new TIntObjectHashMap<Entity>();
+		List<Entity> spawn = new ArrayList<Entity>();
+		List<Entity> destroy = new ArrayList<Entity>();
+		List<Entity> update = new ArrayList<Entity>();
+
+		grid.diff(center, 2, synced, spawn, destroy, update);
+		assertEquals(2, spawn.size());
+		assertTrue(spawn.contains(near) && spawn.contains(moving));
+		assertTrue(destroy.isEmpty() && update.isEmpty());
+
+		synced.put(1, near);
+		synced.put(2, moving);
+		spawn.clear();
+		grid.diff(center, 2, synced, spawn, destroy, update);
+		assertTrue(spawn.isEmpty() && destroy.isEmpty());
+		assertEquals("Only entities with a dirty transform should be updated", 1, update.size());
+		assertTrue(update.contains(moving));
+
+		update.clear();
+		grid.update(moving, new Point(other, 20, 5, 5));
+		grid.diff(center, 2, synced, spawn, destroy, update);
+		assertTrue(spawn.isEmpty() && update.isEmpty());
+		assertEquals(1, destroy.size());
+		assertTrue("Entity moved to another world was not destroyed", destroy.contains(moving));
+
+		destroy.clear();
+		grid.remove(near);
+		grid.diff(center, 2, synced, spawn, destroy, update);
+		assertTrue("Removed entity was not destroyed", destroy.contains(near));
+		assertEquals(2, grid.size());
+
+		// Large radius, which scans the occupied cells rather than the view volume
+		spawn.clear();
+		destroy.clear();
+		grid.diff(center, 20, new TIntObjectHashMap<Entity>(), spawn, destroy, update);
+		assertEquals(1, spawn.size());
+		assertTrue(spawn.contains(far));
+	}
+
+	@Test
+	public void testDespawn() {
+		World world = PowerMockito.mock(World.class);
+		EntityInterestGrid grid = new EntityInterestGrid();
+		SimpleEventManager events = new SimpleEventManager();
+		events.registerEvents(grid, this);
+
+		Entity entity = mockEntity(1, false);
+		grid.update(entity, new Point(world, 5, 5, 5));
+		grid.update(entity, new Point(world, 6, 5, 5));
+		assertEquals(1, grid.size());
+
+		events.callEvent(new EntityDespawnEvent(entity));
+		assertEquals("Despawned entity was not removed from the grid", 0, grid.size());
+	}
+
+	@Test
+	public void testSyncEntities() {
+		World world = PowerMockito.mock(World.class);
+		Player player = PowerMockito.mock(Player.class);
+		TransformComponent transform = PowerMockito.mock(TransformComponent.class);
+		PowerMockito.when(transform.getPosition()).thenReturn(new Point(world, 0, 0, 0));
+		PowerMockito.when(player.getTransform()).thenReturn(transform);
+		PowerMockito.when(player.getViewDistance()).thenReturn(32);
+		Session session = PowerMockito.mock(Session.class);
+		PowerMockito.when(session.getPlayer()).thenReturn(player);
+		RecordingSynchronizer synchronizer = new RecordingSynchronizer(session);
+
+		EntityInterestGrid grid = NetworkSynchronizer.getInterestGrid();
+		Entity near = mockEntity(101, true);
+		Entity far = mockEntity(102, false);
+		try {
+			grid.update(near, new Point(world, 5, 5, 5));
+			grid.update(far, new Point(world, 500, 5, 5));
+			synchronizer.syncEntities();
+			assertEquals(1, synchronizer.spawned.size());
+			assertTrue(synchronizer.hasSpawned(near));
+			assertFalse("Entity outside view distance was spawned", synchronizer.hasSpawned(far));
+
+			synchronizer.syncEntities();
+			assertEquals(1, synchronizer.updated.size());
+			assertTrue(synchronizer.updated.contains(near));
+
+			grid.remove(near);
+			synchronizer.syncEntities();
+			assertTrue("Removed entity was not destroyed", synchronizer.destroyed.contains(near));
+			assertFalse(synchronizer.hasSpawned(near));
+		} finally {
+			grid.remove(near);
+			grid.remove(far);
+		}
+	}
+
+	private static class RecordingSynchronizer extends NetworkSynchronizer {
+		private final List<Entity> spawned = new ArrayList<Entity>();
+		private final List<Entity> destroyed = new ArrayList<Entity>();
+		private final List<Entity> updated = new ArrayList<Entity>();
+
+		public RecordingSynchronizer(Session session) {
+			super(session, 0);
+		}
+
+		@Override
+		public void syncEntity(Entity e, boolean spawn, boolean destroy, boolean update) {
+			if (spawn) {
+				spawned.add(e);
+			} else if (destroy) {
+				destroyed.add(e);
+			} else if (update) {
+				updated.add(e);
+			}
+			super.syncEntity(e, spawn, destroy, update);
+		}
+	}
+
+	private Entity mockEntity(int id, boolean dirty) {
+		Entity entity = PowerMockito.mock(Entity.class);
+		TransformComponent transform = PowerMockito.mock(TransformComponent.class);
+		PowerMockito.when(transform.isDirty()).thenReturn(dirty);
+		PowerMockito.when(entity.getId()).thenReturn(id);
+		PowerMockito.when(entity.getTransform()).thenReturn(transform);
+		return entity;
+	}
+}
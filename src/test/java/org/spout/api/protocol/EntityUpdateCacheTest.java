@@ -0,0 +1,148 @@
+/*
+ * This file is part of SpoutAPI.
+ *
+ * Copyright (c) 2011-2012, Spout LLC <http://www.spout.org/>
+ * SpoutAPI is licensed under the Spout License Version 1.
+ *
+ * SpoutAPI is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * In addition, 180 days after any changes are published, you can use the
+ * software, incorporating those changes, under the terms of the MIT license,
+ * as described in the Spout License Version 1.
+ *
+ * SpoutAPI is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License,
+ * the MIT license and the Spout License Version 1 along with this program.
+ * If not, see <http://www.gnu.org/licenses/> for the GNU Lesser General Public
+ * License and see <http://spout.in/licensev1> for the full license, including
+ * the MIT license.
+ */
+package org.spout.api.protocol;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.verify;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.powermock.api.mockito.PowerMockito;
+import org.spout.api.entity.Entity;
+import org.spout.api.protocol.reposition.NullRepositionManager;
+import org.spout.api.protocol.reposition.RepositionManager;
+import org.spout.api.scheduler.TickStage;
+
+public class EntityUpdateCacheTest {
+	private int stage;
+
+	@Before
+	public void setUp() {
+		stage = TickStage.getStageInt();
+	}
+
+	@After
+	public void tearDown() {
+		TickStage.setStage(stage);
+	}
+
+	@Test
+	public void test() {
+		Entity entity = PowerMockito.mock(Entity.class);
+		PowerMockito.when(entity.getId()).thenReturn(5);
+
+		CountingProtocol protocol = new CountingProtocol();
+		EntityUpdateCache cache = new EntityUpdateCache();
+		RepositionManager nullRm = NullRepositionManager.getInstance();
+
+		List<Message> first = cache.getUpdateMessages(protocol, entity, nullRm);
+		for (int i = 0; i < 10; i++) {
+			assertSame("Update messages were not shared between observers", first, cache.getUpdateMessages(protocol, entity, nullRm));
+		}
+		assertEquals("Update messages were generated more than once in a tick", 1, protocol.updates);
+		assertEquals(1, first.size());
+		assertTrue("Update message was not wrapped for sharing", first.get(0) instanceof SharedMessage);
+
+		RepositionManager rm = PowerMockito.mock(RepositionManager.class);
+		cache.getUpdateMessages(protocol, entity, rm);
+		cache.getUpdateMessages(protocol, entity, rm);
+		assertEquals("Repositioned update messages should not be shared", 3, protocol.updates);
+
+		TickStage.setStage(TickStage.SNAPSHOT);
+		TickStage.setStage(TickStage.TICKSTART);
+		cache.getUpdateMessages(protocol, entity, nullRm);
+		assertEquals("Update messages were not regenerated for a new tick", 4, protocol.updates);
+	}
+
+	@Test
+	public void testSynchronizer() {
+		Entity entity = PowerMockito.mock(Entity.class);
+		PowerMockito.when(entity.getId()).thenReturn(6);
+		CountingProtocol protocol = new CountingProtocol();
+		NetworkSynchronizer.getEntityUpdateCache().clear();
+
+		Session a = PowerMockito.mock(Session.class);
+		Session b = PowerMockito.mock(Session.class);
+		NetworkSynchronizer syncA = new ProtocolSynchronizer(a, protocol);
+		NetworkSynchronizer syncB = new ProtocolSynchronizer(b, protocol);
+
+		syncA.syncEntity(entity, false, false, true);
+		assertEquals("Entity which was not spawned was updated", 0, protocol.updates);
+
+		syncA.syncEntity(entity, true, false, false);
+		syncB.syncEntity(entity, true, false, false);
+		syncA.syncEntity(entity, false, false, true);
+		syncB.syncEntity(entity, false, false, true);
+		assertEquals("Update messages were generated more than once in a tick", 1, protocol.updates);
+
+		Message message = NetworkSynchronizer.getEntityUpdateCache().getUpdateMessages(protocol, entity, NullRepositionManager.getInstance()).get(0);
+		verify(a).send(false, message);
+		verify(b).send(false, message);
+	}
+
+	private static class ProtocolSynchronizer extends NetworkSynchronizer {
+		private final EntityProtocol protocol;
+
+		public ProtocolSynchronizer(Session session, EntityProtocol protocol) {
+			super(session, 0);
+			this.protocol = protocol;
+		}
+
+		@Override
+		protected EntityProtocol getEntityProtocol(Entity e) {
+			return protocol;
+		}
+	}
+
+	private static class CountingProtocol implements EntityProtocol {
+		private int updates = 0;
+
+		@Override
+		public List<Message> getSpawnMessages(Entity entity, RepositionManager rm) {
+			return null;
+		}
+
+		@Override
+		public List<Message> getDestroyMessages(Entity entity) {
+			return null;
+		}
+
+		@Override
+		public List<Message> getUpdateMessages(Entity entity, RepositionManager rm) {
+			updates++;
+			List<Message> messages = new ArrayList<Message>();
+			messages.add(PowerMockito.mock(Message.class));
+			return messages;
+		}
+	}
+}
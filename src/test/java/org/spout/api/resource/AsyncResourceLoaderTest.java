@@ -0,0 +1,261 @@
+/*
+ * This file is part of SpoutAPI.
+ *
+ * Copyright (c) 2011-2012, Spout LLC <http://www.spout.org/>
+ * SpoutAPI is licensed under the Spout License Version 1.
+ *
+ * SpoutAPI is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * In addition, 180 days after any changes are published, you can use the
+ * software, incorporating those changes, under the terms of the MIT license,
+ * as described in the Spout License Version 1.
+ *
+ * SpoutAPI is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License,
+ * the MIT license and the Spout License Version 1 along with this program.
+ * If not, see <http://www.gnu.org/licenses/> for the GNU Lesser General Public
+ * License and see <http://spout.in/licensev1> for the full license, including
+ * the MIT license.
+ */
+package org.spout.api.resource;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.commons.io.IOUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class AsyncResourceLoaderTest {
+	private ExecutorService executor;
+	private TestLoader loader;
+
+	@Before
+	public void setUp() {
+		executor = Executors.newFixedThreadPool(4);
+		loader = new TestLoader();
+	}
+
+	@After
+	public void tearDown() {
+		executor.shutdownNow();
+	}
+
+	@Test
+	public void testConcurrentRequestsShareLoad() throws Exception {
+		AsyncResourceLoader<TestResource> async = new AsyncResourceLoader<TestResource>(loader, new TestResolver(), executor, new TestWeigher(), 1024);
+		loader.gate = new CountDownLatch(1);
+		URI uri = URI.create("test://host/a.txt");
+		Future<TestResource> first = async.getResourceAsync(uri);
+		Future<TestResource> second = async.getResourceAsync(uri);
+		Future<TestResource> cancelled = async.getResourceAsync(uri);
+		assertNotSame("Callers should not share a future", first, second);
+		assertTrue(cancelled.cancel(false));
+		assertTrue(cancelled.isCancelled());
+		assertNull(cancelled.get());
+		assertTrue("Cancelling one caller affected another", !second.isCancelled());
+		loader.gate.countDown();
+
+		TestResource resource = first.get();
+		assertSame(resource, second.get());
+		assertEquals("a.txt", resource.content);
+		assertEquals(uri, resource.getPath());
+		assertSame(resource, async.getResource(uri));
+		assertEquals(1, loader.decoded.get());
+		assertEquals(1, async.getLoadCount());
+		assertEquals(1, async.getMissCount());
+		assertEquals(3, async.getHitCount());
+		assertEquals(5, async.getWeight());
+	}
+
+	@Test
+	public void testWeightEviction() throws Exception {
+		AsyncResourceLoader<TestResource> async = new AsyncResourceLoader<TestResource>(loader, new TestResolver(), executor, new TestWeigher(), 12);
+		URI a = URI.create("test://host/a.txt");
+		URI b = URI.create("test://host/b.txt");
+		URI c = URI.create("test://host/c.txt");
+		URI large = URI.create("test://host/too-large-to-cache.txt");
+		async.getResource(a);
+		async.getResource(b);
+		async.getResource(a);
+		async.getResource(c);
+
+		assertEquals(2, async.getCachedCount());
+		assertEquals(10, async.getWeight());
+		assertTrue(async.getCached(a) != null);
+		assertNull(async.getCached(b));
+
+		async.getResource(large);
+		assertNull(async.getCached(large));
+		assertEquals(10, async.getWeight());
+
+		assertTrue(async.invalidate(a));
+		assertEquals(5, async.getWeight());
+		async.invalidateAll();
+		assertEquals(0, async.getWeight());
+	}
+
+	@Test
+	public void testMissingResource() throws Exception {
+		AsyncResourceLoader<TestResource> async = new AsyncResourceLoader<TestResource>(loader, new TestResolver(), executor, new TestWeigher(), 1024);
+		URI missing = URI.create("test://host/missing.txt");
+		try {
+			async.getResourceAsync(missing).get();
+			fail("Missing resource should not load");
+		} catch (ExecutionException e) {
+			assertTrue(e.getCause() instanceof ResourceNotFoundException);
+		}
+		try {
+			async.getResource(missing);
+			fail("Missing resource should not load");
+		} catch (ResourceNotFoundException expected) {
+		}
+		assertEquals(2, async.getFailureCount());
+		assertEquals(0, async.getCachedCount());
+	}
+
+	@Test
+	public void testInvalidateDuringLoad() throws Exception {
+		AsyncResourceLoader<TestResource> async = new AsyncResourceLoader<TestResource>(loader, new TestResolver(), executor, new TestWeigher(), 1024);
+		loader.gate = new CountDownLatch(1);
+		URI uri = URI.create("test://host/a.txt");
+		Future<TestResource> stale = async.getResourceAsync(uri);
+		assertTrue("Invalidating a loading resource should be reported", async.invalidate(uri));
+		loader.gate.countDown();
+		assertEquals("a.txt", stale.get().content);
+		assertNull("Resource invalidated while loading was cached", async.getCached(uri));
+
+		TestResource fresh = async.getResource(uri);
+		assertNotSame(stale.get(), fresh);
+		assertSame(fresh, async.getCached(uri));
+		assertEquals(2, loader.decoded.get());
+	}
+
+	@Test
+	public void testWeigher() throws Exception {
+		ResourceWeigher<TestResource> decodedSize = new ResourceWeigher<TestResource>() {
+			@Override
+			public long getWeight(TestResource resource, long bytesRead) {
+				return resource.content.length() * 100;
+			}
+		};
+		AsyncResourceLoader<TestResource> async = new AsyncResourceLoader<TestResource>(loader, new TestResolver(), executor, decodedSize, 800);
+		async.getResource(URI.create("test://host/a.txt"));
+		assertEquals(500, async.getWeight());
+		async.getResource(URI.create("test://host/b.txt"));
+		assertEquals("Weight was not taken from the weigher", 1, async.getCachedCount());
+		try {
+			new AsyncResourceLoader<TestResource>(loader, executor, null, 1024);
+			fail("A weigher is required");
+		} catch (IllegalArgumentException expected) {
+		}
+	}
+
+	private static class TestWeigher implements ResourceWeigher<TestResource> {
+		@Override
+		public long getWeight(TestResource resource, long bytesRead) {
+			return resource.content.length();
+		}
+	}
+
+	private static class TestResource extends Resource {
+		private final String content;
+
+		public TestResource(String content) {
+			this.content = content;
+		}
+	}
+
+	private static class TestLoader extends BasicResourceLoader<TestResource> {
+		private final AtomicInteger decoded = new AtomicInteger();
+		private volatile CountDownLatch gate;
+
+		@Override
+		public String getFallbackResourceName() {
+			return "test://host/fallback.txt";
+		}
+
+		@Override
+		public TestResource getResource(InputStream stream) {
+			try {
+				if (gate != null) {
+					gate.await();
+				}
+				decoded.incrementAndGet();
+				return new TestResource(IOUtils.toString(stream));
+			} catch (InterruptedException e) {
+				throw new IllegalStateException(e);
+			} catch (IOException e) {
+				throw new IllegalStateException(e);
+			}
+		}
+
+		@Override
+		public String getProtocol() {
+			return "test";
+		}
+
+		@Override
+		public String[] getExtensions() {
+			return new String[] {"txt"};
+		}
+	}
+
+	private static class TestResolver implements ResourcePathResolver {
+		@Override
+		public boolean existsInPath(String host, String path) {
+			return !path.contains("missing");
+		}
+
+		@Override
+		public boolean existsInPath(URI uri) {
+			return existsInPath(uri.getHost(), uri.getPath());
+		}
+
+		@Override
+		public InputStream getStream(String host, String path) {
+			if (!existsInPath(host, path)) {
+				return null;
+			}
+			return new ByteArrayInputStream(path.substring(1).getBytes());
+		}
+
+		@Override
+		public InputStream getStream(URI uri) {
+			return getStream(uri.getHost(), uri.getPath());
+		}
+
+		@Override
+		public String[] list(String host, String path) {
+			return new String[0];
+		}
+
+		@Override
+		public String[] list(URI uri) {
+			return new String[0];
+		}
+	}
+}
@@ -0,0 +1,103 @@
+/*
+ * This file is part of SpoutAPI.
+ *
+ * Copyright (c) 2011-2012, Spout LLC <http://www.spout.org/>
+ * SpoutAPI is licensed under the Spout License Version 1.
+ *
+ * SpoutAPI is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * In addition, 180 days after any changes are published, you can use the
+ * software, incorporating those changes, under the terms of the MIT license,
+ * as described in the Spout License Version 1.
+ *
+ * SpoutAPI is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License,
+ * the MIT license and the Spout License Version 1 along with this program.
+ * If not, see <http://www.gnu.org/licenses/> for the GNU Lesser General Public
+ * License and see <http://spout.in/licensev1> for the full license, including
+ * the MIT license.
+ */
+package org.spout.api.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+public class StringTrieTest {
+
+	@Test
+	public void testExact() {
+		StringTrie<Integer> trie = new StringTrie<Integer>();
+		trie.put("help", 1);
+		trie.put("hello", 2);
+		trie.put("", 3);
+		assertEquals(3, trie.size());
+		assertEquals(Integer.valueOf(1), trie.get("help"));
+		assertEquals(Integer.valueOf(2), trie.get("hello"));
+		assertEquals(Integer.valueOf(3), trie.get(""));
+		assertNull(trie.get("hel"));
+		assertNull(trie.get("helpme"));
+
+		assertEquals(Integer.valueOf(1), trie.remove("help"));
+		assertNull(trie.get("help"));
+		assertEquals(2, trie.size());
+	}
+
+	@Test
+	public void testPrefix() {
+		StringTrie<Integer> trie = new StringTrie<Integer>();
+		for (String s : new String[] {"time", "tp", "tell", "teleport", "give", "te"}) {
+			trie.put(s, 0);
+		}
+		List<String> keys = new ArrayList<String>();
+		assertEquals(3, trie.getKeysWithPrefix("te", keys, 10));
+		assertEquals(Arrays.asList("te", "teleport", "tell"), keys);
+
+		keys.clear();
+		assertEquals(2, trie.getKeysWithPrefix("t", keys, 2));
+		assertEquals(0, trie.getKeysWithPrefix("x", keys, 10));
+	}
+
+	@Test
+	public void testClosest() {
+		StringTrie<String> trie = new StringTrie<String>();
+		for (String s : new String[] {"time", "tp", "tell", "teleport", "give"}) {
+			trie.put(s, s);
+		}
+		assertEquals("time", trie.getClosest("tme", 1));
+		assertEquals("tell", trie.getClosest("tel", 1));
+		assertEquals("give", trie.getClosest("gvie", 2));
+		assertNull(trie.getClosest("gvie", 1));
+		assertEquals("teleport", trie.getClosest("teleport", 0));
+		assertNull(trie.getClosest("banana", 2));
+
+		String[] words = {"alpha", "beta", "gamma", "delta", "epsilon", "zeta", "eta", "theta"};
+		for (String w : words) {
+			trie.put(w, w);
+		}
+		for (String query : new String[] {"alpa", "bta", "gama", "delt", "epsilon", "zet", "et", "thta", "x"}) {
+			String expected = null;
+			int best = 3;
+			for (String w : new String[] {"alpha", "beta", "delta", "epsilon", "eta", "gamma", "give", "tell", "teleport", "theta", "time", "tp", "zeta"}) {
+				int d = StringUtil.getLevenshteinDistance(query, w);
+				if (d < best) {
+					best = d;
+					expected = w;
+				}
+			}
+			assertEquals("Closest match for " + query, expected, trie.getClosest(query, 2));
+		}
+	}
+}
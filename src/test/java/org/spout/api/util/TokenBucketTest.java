@@ -0,0 +1,81 @@
+/*
+ * This file is part of SpoutAPI.
+ *
+ * Copyright (c) 2011-2012, Spout LLC <http://www.spout.org/>
+ * SpoutAPI is licensed under the Spout License Version 1.
+ *
+ * SpoutAPI is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * In addition, 180 days after any changes are published, you can use the
+ * software, incorporating those changes, under the terms of the MIT license,
+ * as described in the Spout License Version 1.
+ *
+ * SpoutAPI is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License,
+ * the MIT license and the Spout License Version 1 along with this program.
+ * If not, see <http://www.gnu.org/licenses/> for the GNU Lesser General Public
+ * License and see <http://spout.in/licensev1> for the full license, including
+ * the MIT license.
+ */
+package org.spout.api.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class TokenBucketTest {
+
+	@Test
+	public void test() {
+		TokenBucket bucket = new TokenBucket(10, 2, 20, 40);
+		assertFalse(bucket.hasTokens());
+
+		bucket.refill();
+		assertEquals(10, bucket.getTokens());
+
+		bucket.refill(4);
+		assertEquals("Bucket exceeded its capacity", 40, bucket.getTokens());
+
+		bucket.consume(45);
+		assertFalse(bucket.hasTokens());
+		bucket.refill();
+		assertEquals("Overdrawn tokens were not paid back", 5, bucket.getTokens());
+
+		bucket.increaseRate(100);
+		assertEquals("Rate exceeded the maximum", 20, bucket.getRate());
+		bucket.decreaseRate();
+		assertEquals(10, bucket.getRate());
+		for (int i = 0; i < 10; i++) {
+			bucket.decreaseRate();
+		}
+		assertEquals("Rate fell below the minimum", 2, bucket.getRate());
+		assertTrue(bucket.hasTokens());
+	}
+
+	@Test
+	public void testLimit() {
+		TokenBucket bucket = new TokenBucket(10, 2, 20, 40);
+		for (int i = 0; i < 5; i++) {
+			bucket.refill(4, bucket.getRate());
+		}
+		assertEquals("Tokens were banked across idle refills", 10, bucket.getTokens());
+
+		bucket.consume(45);
+		bucket.refill(4, bucket.getRate());
+		assertEquals("Overdrawn tokens were not paid back", 5, bucket.getTokens());
+		bucket.refill(4, bucket.getRate());
+		assertEquals(10, bucket.getTokens());
+
+		bucket.refill(1, 100);
+		assertEquals("Bucket exceeded its capacity", 20, bucket.getTokens());
+	}
+}
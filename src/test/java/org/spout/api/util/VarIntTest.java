@@ -26,13 +26,19 @@
  */
 package org.spout.api.util;
 
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.util.Random;
 
+import org.jboss.netty.buffer.ChannelBuffer;
+import org.jboss.netty.buffer.ChannelBuffers;
 import org.junit.Test;
 
 import org.spout.api.util.list.ByteCircularBufferFIFO;
@@ -116,6 +122,125 @@ public class VarIntTest {
 		in.close();
 	}
 
+	@Test
+	public void testCompact() throws IOException {
+		Random r = new Random();
+
+		int[] ints = new int[LENGTH];
+		long[] longs = new long[LENGTH];
+		short[] shorts = new short[LENGTH];
+		for (int i = 0; i < LENGTH; i++) {
+			ints[i] = r.nextInt() >> r.nextInt(32);
+			longs[i] = r.nextLong() >> r.nextInt(64);
+			shorts[i] = (short) r.nextInt();
+		}
+		ints[0] = Integer.MIN_VALUE;
+		ints[1] = Integer.MAX_VALUE;
+		ints[2] = -1;
+		longs[0] = Long.MIN_VALUE;
+		longs[1] = Long.MAX_VALUE;
+
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		for (int i = 0; i < LENGTH; i++) {
+			VarInt.writeVarInt(out, ints[i]);
+			VarInt.writeVarLong(out, longs[i]);
+		}
+		ByteArrayInputStream in = new ByteArrayInputStream(out.toByteArray());
+		for (int i = 0; i < LENGTH; i++) {
+			assertEquals(ints[i], VarInt.readVarInt(in));
+			assertEquals(longs[i], VarInt.readVarLong(in));
+		}
+
+		for (int i = -1000; i < 1000; i++) {
+			assertEquals(i, VarInt.decodeZigZag(VarInt.encodeZigZag(i)));
+			assertEquals((long) i, VarInt.decodeZigZag(VarInt.encodeZigZag((long) i)));
+		}
+
+		String[] strings = {"String 1", null, "", "Gr\u00FC\u00DFe \u20AC", "\uD83D\uDE00 pair", "lone \uD800 surrogate \uDC00"};
+
+		ChannelBuffer channelBuffer = ChannelBuffers.dynamicBuffer();
+		VarInt.writeInts(channelBuffer, ints);
+		VarInt.writeLongs(channelBuffer, longs);
+		VarInt.writeShorts(channelBuffer, shorts);
+		for (String s : strings) {
+			VarInt.writeUTF8String(channelBuffer, s);
+		}
+		assertArrayEquals(ints, VarInt.readInts(channelBuffer));
+		assertArrayEquals(longs, VarInt.readLongs(channelBuffer));
+		assertArrayEquals(shorts, VarInt.readShorts(channelBuffer));
+		for (String s : strings) {
+			matchString("String mismatch with read/write UTF-8 string " + s, s, VarInt.readUTF8String(channelBuffer));
+		}
+		assertEquals(0, channelBuffer.readableBytes());
+
+		ByteBuffer byteBuffer = ByteBuffer.allocate(channelBuffer.writerIndex());
+		VarInt.writeInts(byteBuffer, ints);
+		VarInt.writeLongs(byteBuffer, longs);
+		VarInt.writeShorts(byteBuffer, shorts);
+		for (String s : strings) {
+			VarInt.writeUTF8String(byteBuffer, s);
+		}
+		byteBuffer.flip();
+		assertArrayEquals(ints, VarInt.readInts(byteBuffer));
+		assertArrayEquals(longs, VarInt.readLongs(byteBuffer));
+		assertArrayEquals(shorts, VarInt.readShorts(byteBuffer));
+		for (String s : strings) {
+			matchString("String mismatch with read/write UTF-8 string " + s, s, VarInt.readUTF8String(byteBuffer));
+		}
+		assertEquals(0, byteBuffer.remaining());
+
+		for (VarInt.Format format : VarInt.Format.values()) {
+			assertEquals(format, VarInt.Format.get(format.getId()));
+			out = new ByteArrayOutputStream();
+			for (String s : strings) {
+				format.writeString(out, s);
+			}
+			in = new ByteArrayInputStream(out.toByteArray());
+			for (String s : strings) {
+				matchString("String mismatch with " + format + " string " + s, s, format.readString(in));
+			}
+		}
+	}
+
+	@Test
+	public void testMalformed() {
+		// Array lengths which are negative or larger than the remaining bytes
+		assertMalformedInts(ChannelBuffers.wrappedBuffer(new byte[] {(byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, 0x0F}));
+		assertMalformedInts(ChannelBuffers.wrappedBuffer(new byte[] {(byte) 0x80, (byte) 0x80, (byte) 0x80, 0x40, 1, 2}));
+
+		// Truncated sequences, stray continuation bytes and code points above U+10FFFF
+		assertMalformedString(new byte[] {3, 'a', (byte) 0xC3});
+		assertMalformedString(new byte[] {3, (byte) 0xE2, (byte) 0x82});
+		assertMalformedString(new byte[] {2, (byte) 0x80});
+		assertMalformedString(new byte[] {3, (byte) 0xC3, 'a'});
+		assertMalformedString(new byte[] {5, (byte) 0xF4, (byte) 0x90, (byte) 0x80, (byte) 0x80});
+		assertMalformedString(new byte[] {2, (byte) 0xFF});
+	}
+
+	private static void assertMalformedInts(ChannelBuffer buf) {
+		try {
+			VarInt.readInts(buf);
+			fail("Malformed array length was accepted");
+		} catch (IllegalStateException e) {
+		} catch (IndexOutOfBoundsException e) {
+		}
+	}
+
+	private static void assertMalformedString(byte[] data) {
+		try {
+			VarInt.readUTF8String(ChannelBuffers.wrappedBuffer(data));
+			fail("Malformed UTF-8 string was accepted");
+		} catch (IllegalStateException e) {
+		} catch (IndexOutOfBoundsException e) {
+		}
+		try {
+			VarInt.readUTF8String(ByteBuffer.wrap(data));
+			fail("Malformed UTF-8 string was accepted");
+		} catch (IllegalStateException e) {
+		} catch (IndexOutOfBoundsException e) {
+		}
+	}
+
 	private void matchString(String message, String s1, String s2) {
 		boolean match = (s1 == s2) || (s1 != null && s1.equals(s2));
 		assertTrue(message, match);
@@ -109,4 +109,21 @@ public class ConfigurationTest {
 		assertEquals(actualValue, value);
 		config.setPathSeparator(".");
 	}
+
+	@Test
+	public void testDirty() throws ConfigurationException {
+		assertFalse(config.isDirty());
+		config.getNode("string-type").setValue("someString");
+		assertFalse(config.isDirty());
+		config.getNode("foo", "bar").setValue("changed");
+		assertTrue(config.isDirty());
+		config.save();
+		assertFalse(config.isDirty());
+		config.getNode("int-type").remove();
+		assertTrue(config.isDirty());
+		config.load();
+		assertFalse(config.isDirty());
+		config.getNode(TEST_PATH).setValue(TEST_VALUE);
+		assertTrue(config.isDirty());
+	}
 }
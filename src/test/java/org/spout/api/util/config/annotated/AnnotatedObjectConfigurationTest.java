@@ -78,6 +78,31 @@ public class AnnotatedObjectConfigurationTest {
 		Assert.assertEquals(LOAD_TEST_SPECIAL_NODE, object.special, 0);
 	}
 
+	@Test
+	public void testMultipleObjects() throws ConfigurationException {
+		final MapConfiguration map = new MapConfiguration();
+		map.getNode("first", "integer").setValue(1);
+		map.getNode("second", "integer").setValue(2);
+		final TestObject first = new TestObject();
+		final TestObject second = new TestObject();
+		final TestObject removed = new TestObject();
+		final AnnotatedObjectConfiguration annotated = new AnnotatedObjectConfiguration(map);
+		annotated.addObject(first, "first");
+		annotated.addObject(second, "second");
+		annotated.addObject(removed, "removed");
+		annotated.removeObject(removed);
+		annotated.load(map);
+		Assert.assertEquals(1, first.integer);
+		Assert.assertEquals(2, second.integer);
+		Assert.assertEquals(SAVE_TEST_OBJECT_STRING, annotated.getNode("first", "string").getString());
+		Assert.assertFalse(map.hasNode("removed"));
+
+		map.getNode("second", "integer").setValue(3);
+		annotated.load(map);
+		Assert.assertEquals(1, first.integer);
+		Assert.assertEquals(3, second.integer);
+	}
+
 	private static class TestObject {
 		@Setting
 		private String string = SAVE_TEST_OBJECT_STRING;
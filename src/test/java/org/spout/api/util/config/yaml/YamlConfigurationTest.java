@@ -0,0 +1,160 @@
+/*
+ * This file is part of SpoutAPI.
+ *
+ * Copyright (c) 2011-2012, Spout LLC <http://www.spout.org/>
+ * SpoutAPI is licensed under the Spout License Version 1.
+ *
+ * SpoutAPI is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * In addition, 180 days after any changes are published, you can use the
+ * software, incorporating those changes, under the terms of the MIT license,
+ * as described in the Spout License Version 1.
+ *
+ * SpoutAPI is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License,
+ * the MIT license and the Spout License Version 1 along with this program.
+ * If not, see <http://www.gnu.org/licenses/> for the GNU Lesser General Public
+ * License and see <http://spout.in/licensev1> for the full license, including
+ * the MIT license.
+ */
+package org.spout.api.util.config.yaml;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import org.spout.api.exception.ConfigurationException;
+
+public class YamlConfigurationTest {
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void testSaveAndLoad() throws ConfigurationException, IOException {
+		File file = new File(folder.getRoot(), "config.yml");
+		YamlConfiguration config = new YamlConfiguration(file);
+		config.setHeader("Test header");
+		config.getNode("section.node").setValue("value");
+		config.getNode("section.number").setValue(42);
+		assertTrue(config.isDirty());
+		config.save();
+		assertFalse(config.isDirty());
+		assertTrue(file.exists());
+		assertEquals(1, folder.getRoot().list().length);
+
+		YamlConfiguration loaded = new YamlConfiguration(file);
+		loaded.load();
+		assertEquals("value", loaded.getNode("section.node").getString());
+		assertEquals(42, loaded.getNode("section.number").getInt());
+		assertEquals("Test header", loaded.getHeader()[0]);
+		assertFalse(loaded.isDirty());
+	}
+
+	@Test
+	public void testUnchangedSaveSkipsWrite() throws ConfigurationException, IOException {
+		File file = new File(folder.getRoot(), "config.yml");
+		YamlConfiguration config = new YamlConfiguration(file);
+		config.getNode("node").setValue("value");
+		config.save();
+
+		FileWriter writer = new FileWriter(file);
+		writer.write("node: external\n");
+		writer.close();
+
+		config.getNode("node").setValue("value");
+		config.save();
+		assertEquals("node: external\n", FileUtils.readFileToString(file));
+
+		config.getNode("node").setValue("changed");
+		config.save();
+		YamlConfiguration loaded = new YamlConfiguration(file);
+		loaded.load();
+		assertEquals("changed", loaded.getNode("node").getString());
+		assertEquals(1, folder.getRoot().list().length);
+	}
+
+	@Test
+	@SuppressWarnings("unchecked")
+	public void testListModifiedInPlace() throws ConfigurationException, IOException {
+		File file = new File(folder.getRoot(), "config.yml");
+		YamlConfiguration config = new YamlConfiguration(file);
+		config.getNode("list").setValue(new ArrayList<String>(Arrays.asList("a", "b")));
+		config.save();
+
+		YamlConfiguration loaded = new YamlConfiguration(file);
+		loaded.load();
+		List<String> list = loaded.getNode("list").getStringList();
+		assertEquals(Arrays.asList("a", "b"), list);
+		assertFalse("Reading a list marked the configuration as modified", loaded.isDirty());
+
+		((List<Object>) loaded.getNode("list").getValue()).add("c");
+		loaded.save();
+		YamlConfiguration reloaded = new YamlConfiguration(file);
+		reloaded.load();
+		assertEquals(Arrays.asList("a", "b", "c"), reloaded.getNode("list").getStringList());
+	}
+
+	@Test
+	public void testNestedSections() throws ConfigurationException, IOException {
+		File file = new File(folder.getRoot(), "config.yml");
+		FileWriter writer = new FileWriter(file);
+		writer.write("a:\n    b:\n        c: 1\n        d: [x, y]\n    e: {}\nf: value\n");
+		writer.close();
+
+		YamlConfiguration config = new YamlConfiguration(file);
+		config.load();
+		config.save();
+		assertEquals("Unchanged sections were rewritten", "a:\n    b:\n        c: 1\n        d: [x, y]\n    e: {}\nf: value\n", FileUtils.readFileToString(file));
+
+		assertEquals(1, config.getNode("a.b.c").getInt());
+		assertEquals(Arrays.asList("x", "y"), config.getNode("a", "b", "d").getStringList());
+		assertTrue(config.getKeys(true).contains("a.b.c"));
+		assertFalse("Reading a section marked the configuration as modified", config.isDirty());
+
+		config.getNode("a.b.c").setValue(2);
+		config.getNode("a").removeChild("e");
+		config.save();
+		YamlConfiguration loaded = new YamlConfiguration(file);
+		loaded.load();
+		assertEquals(2, loaded.getNode("a.b.c").getInt());
+		assertEquals("value", loaded.getNode("f").getString());
+		assertFalse(loaded.getNode("a").hasChild("e"));
+		assertEquals(Arrays.asList("x", "y"), loaded.getNode("a.b.d").getStringList());
+	}
+
+	@Test
+	public void testOverriddenWriter() throws ConfigurationException {
+		final StringWriter out = new StringWriter();
+		YamlConfiguration config = new YamlConfiguration(new File(folder.getRoot(), "config.yml")) {
+			@Override
+			protected Writer getWriter() {
+				return out;
+			}
+		};
+		config.getNode("node").setValue("value");
+		config.save();
+		assertEquals("node: value\n", out.toString().replace(YamlConfiguration.LINE_BREAK, "\n"));
+		assertEquals(0, folder.getRoot().list().length);
+	}
+}
@@ -0,0 +1,120 @@
+/*
+ * This file is part of SpoutAPI.
+ *
+ * Copyright (c) 2011-2012, Spout LLC <http://www.spout.org/>
+ * SpoutAPI is licensed under the Spout License Version 1.
+ *
+ * SpoutAPI is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * In addition, 180 days after any changes are published, you can use the
+ * software, incorporating those changes, under the terms of the MIT license,
+ * as described in the Spout License Version 1.
+ *
+ * SpoutAPI is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License,
+ * the MIT license and the Spout License Version 1 along with this program.
+ * If not, see <http://www.gnu.org/licenses/> for the GNU Lesser General Public
+ * License and see <http://spout.in/licensev1> for the full license, including
+ * the MIT license.
+ */
+package org.spout.api.util.cuboid;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+public class CompressedCuboidShortBufferTest {
+	@Test
+	public void testUniform() {
+		CompressedCuboidShortBuffer buffer = new CompressedCuboidShortBuffer(0, 0, 0, 256, 128, 256);
+		buffer.flood((short) 1);
+		assertTrue(buffer.isUniform());
+		assertEquals(0, buffer.getAllocatedSections());
+		assertEquals(1, buffer.get(255, 127, 255));
+
+		buffer.set(10, 10, 10, (short) 1);
+		assertEquals(0, buffer.getAllocatedSections());
+		buffer.set(10, 10, 10, (short) 2);
+		assertEquals(1, buffer.getAllocatedSections());
+		assertFalse(buffer.isUniform());
+		assertEquals(2, buffer.get(10, 10, 10));
+		assertEquals(1, buffer.get(11, 10, 10));
+
+		buffer.set(10, 10, 10, (short) 1);
+		buffer.compact();
+		assertEquals(0, buffer.getAllocatedSections());
+		assertTrue(buffer.isUniform());
+	}
+
+	@Test
+	public void testPaletteOverflow() {
+		CompressedCuboidShortBuffer buffer = new CompressedCuboidShortBuffer(0, 0, 0, 16, 16, 16);
+		for (int i = 0; i < 1000; i++) {
+			buffer.set(i & 15, (i >> 4) & 15, i >> 8, (short) i);
+		}
+		for (int i = 0; i < 1000; i++) {
+			assertEquals(i, buffer.get(i & 15, (i >> 4) & 15, i >> 8));
+		}
+		assertEquals(0, buffer.get(15, 15, 15));
+	}
+
+	@Test
+	public void testCopy() {
+		Random random = new Random(3);
+		CuboidShortBuffer dense = new CuboidShortBuffer(-5, 3, 7, 37, 21, 19);
+		short[] raw = dense.getRawArray();
+		for (int i = 0; i < raw.length; i++) {
+			raw[i] = (short) random.nextInt(300);
+		}
+
+		CompressedCuboidShortBuffer compressed = new CompressedCuboidShortBuffer(-5, 3, 7, 37, 21, 19);
+		compressed.write(dense);
+		assertArrayEquals(raw, compressed.toShortBuffer().getRawArray());
+
+		CompressedCuboidShortBuffer aligned = new CompressedCuboidShortBuffer(-5, 3, 7, 37, 21, 19);
+		aligned.write(compressed);
+		assertArrayEquals(raw, aligned.toShortBuffer().getRawArray());
+
+		CompressedCuboidShortBuffer offset = new CompressedCuboidShortBuffer(0, 0, 0, 20, 20, 20);
+		offset.flood((short) -1);
+		offset.write(compressed);
+		for (int x = 0; x < 20; x++) {
+			for (int y = 0; y < 20; y++) {
+				for (int z = 0; z < 20; z++) {
+					short expected = dense.getIndex(x, y, z) == -1 ? -1 : dense.get(x, y, z);
+					assertEquals(expected, offset.get(x, y, z));
+				}
+			}
+		}
+	}
+
+	@Test
+	public void testMaskedCopy() {
+		CompressedCuboidShortBuffer source = new CompressedCuboidShortBuffer(0, 0, 0, 32, 32, 32);
+		source.set(20, 5, 31, (short) 4);
+		CuboidShortBuffer target = new CuboidShortBuffer(0, 0, 0, 32, 32, 32);
+		target.flood((short) 9);
+		target.writeMasked(source);
+		assertEquals(4, target.get(20, 5, 31));
+		assertEquals(9, target.get(0, 0, 0));
+
+		CompressedCuboidShortBuffer compressedTarget = new CompressedCuboidShortBuffer(0, 0, 0, 32, 32, 32);
+		compressedTarget.flood((short) 9);
+		compressedTarget.writeMasked(source);
+		assertEquals(4, compressedTarget.get(20, 5, 31));
+		assertEquals(9, compressedTarget.get(31, 31, 31));
+		assertEquals(1, compressedTarget.getAllocatedSections());
+	}
+}
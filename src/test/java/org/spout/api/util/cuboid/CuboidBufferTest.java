@@ -0,0 +1,134 @@
+/*
+ * This file is part of SpoutAPI.
+ *
+ * Copyright (c) 2011-2012, Spout LLC <http://www.spout.org/>
+ * SpoutAPI is licensed under the Spout License Version 1.
+ *
+ * SpoutAPI is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * In addition, 180 days after any changes are published, you can use the
+ * software, incorporating those changes, under the terms of the MIT license,
+ * as described in the Spout License Version 1.
+ *
+ * SpoutAPI is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License,
+ * the MIT license and the Spout License Version 1 along with this program.
+ * If not, see <http://www.gnu.org/licenses/> for the GNU Lesser General Public
+ * License and see <http://spout.in/licensev1> for the full license, including
+ * the MIT license.
+ */
+package org.spout.api.util.cuboid;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+import org.spout.api.inventory.recipe.EngineFaker;
+import org.spout.api.material.BlockMaterial;
+
+public class CuboidBufferTest {
+	@Test
+	public void testAlignedWrite() {
+		CuboidShortBuffer source = createRandom(16, 0, 16, 16, 16, 16);
+		CuboidShortBuffer target = new CuboidShortBuffer(16, 0, 16, 16, 16, 16);
+		target.write(source);
+		assertRegion(source, target, 16, 0, 16, 16, 16, 16);
+	}
+
+	@Test
+	public void testOverlappingWrite() {
+		Random random = new Random(1);
+		for (int i = 0; i < 50; i++) {
+			CuboidShortBuffer source = createRandom(random.nextInt(20) - 10, random.nextInt(20) - 10, random.nextInt(20) - 10, random.nextInt(12) + 1, random.nextInt(12) + 1, random.nextInt(12) + 1);
+			CuboidShortBuffer target = new CuboidShortBuffer(random.nextInt(20) - 10, random.nextInt(20) - 10, random.nextInt(20) - 10, random.nextInt(12) + 1, random.nextInt(12) + 1, random.nextInt(12) + 1);
+			target.flood((short) -1);
+			target.write(source);
+			int[] base = {(int) target.getBase().getX(), (int) target.getBase().getY(), (int) target.getBase().getZ()};
+			int[] size = {(int) target.getSize().getX(), (int) target.getSize().getY(), (int) target.getSize().getZ()};
+			for (int x = base[0]; x < base[0] + size[0]; x++) {
+				for (int y = base[1]; y < base[1] + size[1]; y++) {
+					for (int z = base[2]; z < base[2] + size[2]; z++) {
+						short expected = source.getIndex(x, y, z) == -1 ? -1 : source.get(x, y, z);
+						assertEquals(expected, target.get(x, y, z));
+					}
+				}
+			}
+		}
+	}
+
+	@Test
+	public void testMaskedWrite() {
+		CuboidShortBuffer source = new CuboidShortBuffer(0, 0, 0, 4, 4, 4);
+		source.set(1, 2, 3, (short) 5);
+		source.set(3, 3, 3, (short) 7);
+		CuboidShortBuffer target = new CuboidShortBuffer(0, 0, 0, 4, 4, 4);
+		target.flood((short) 2);
+		target.writeMasked(source);
+		assertEquals(5, target.get(1, 2, 3));
+		assertEquals(7, target.get(3, 3, 3));
+		assertEquals(2, target.get(0, 0, 0));
+		assertEquals(2, target.get(3, 2, 3));
+	}
+
+	@Test
+	public void testMaterialConversion() {
+		EngineFaker.setupEngine();
+		CuboidShortBuffer ids = new CuboidShortBuffer(0, 0, 0, 4, 4, 4);
+		ids.set(1, 1, 1, BlockMaterial.SOLID);
+		ids.set(2, 1, 1, BlockMaterial.UNBREAKABLE);
+
+		CuboidBlockMaterialBuffer materials = new CuboidBlockMaterialBuffer(0, 0, 0, 4, 4, 4);
+		materials.flood(BlockMaterial.SOLID_RED, (short) 3);
+		materials.writeMasked(ids);
+		assertSame(BlockMaterial.SOLID, materials.get(1, 1, 1));
+		assertSame(BlockMaterial.UNBREAKABLE, materials.get(2, 1, 1));
+		assertEquals(0, materials.getData(2, 1, 1));
+		assertSame(BlockMaterial.SOLID_RED, materials.get(0, 0, 0));
+		assertEquals(3, materials.getData(0, 0, 0));
+
+		materials.write(ids);
+		assertSame(BlockMaterial.AIR, materials.get(0, 0, 0));
+		assertSame(BlockMaterial.SOLID, materials.get(1, 1, 1));
+
+		CuboidBlockMaterialBuffer copy = new CuboidBlockMaterialBuffer(0, 0, 0, 4, 4, 4);
+		materials.set(3, 3, 3, BlockMaterial.SOLID_GREEN, (short) 9);
+		copy.write(materials);
+		assertSame(BlockMaterial.SOLID_GREEN, copy.get(3, 3, 3));
+		assertEquals(9, copy.getData(3, 3, 3));
+
+		CuboidShortBuffer converted = new CuboidShortBuffer(0, 0, 0, 4, 4, 4);
+		converted.write(copy);
+		assertEquals(BlockMaterial.SOLID_GREEN.getId(), converted.get(3, 3, 3));
+		assertEquals(BlockMaterial.UNBREAKABLE.getId(), converted.get(2, 1, 1));
+	}
+
+	private static CuboidShortBuffer createRandom(int bx, int by, int bz, int sx, int sy, int sz) {
+		CuboidShortBuffer buffer = new CuboidShortBuffer(bx, by, bz, sx, sy, sz);
+		Random random = new Random(bx ^ by ^ bz);
+		short[] raw = buffer.getRawArray();
+		for (int i = 0; i < raw.length; i++) {
+			raw[i] = (short) random.nextInt(Short.MAX_VALUE);
+		}
+		return buffer;
+	}
+
+	private static void assertRegion(CuboidShortBuffer expected, CuboidShortBuffer actual, int bx, int by, int bz, int sx, int sy, int sz) {
+		for (int x = bx; x < bx + sx; x++) {
+			for (int y = by; y < by + sy; y++) {
+				for (int z = bz; z < bz + sz; z++) {
+					assertEquals(expected.get(x, y, z), actual.get(x, y, z));
+				}
+			}
+		}
+	}
+}